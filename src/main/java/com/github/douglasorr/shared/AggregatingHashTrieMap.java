@@ -0,0 +1,189 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A variant of {@link com.github.douglasorr.shared.HashTrieMap}, in which the nodes of the trie cache the aggregate
+ * of the values beneath them, under a user-supplied {@link com.github.douglasorr.shared.Aggregator}.
+ * <p>{@link #aggregate()} (the aggregate of all values in the map) is O(1), and {@link #with(Object, Object)}
+ * &amp; {@link #without(Object)} only recompute the aggregates of the nodes on the path that they copy (each from at
+ * most 32 children), so consecutive versions of the map share all other aggregates.</p>
+ * <p>This shares the implementation of {@link com.github.douglasorr.shared.HashTrieMap} (including the flat form of
+ * small maps) - the aggregate is stored in a field that HashTrieMap nodes with more than 2 children leave empty, so
+ * the nodes are no bigger than HashTrieMap's (nodes with 1 or 2 children compute their aggregate when needed).</p>
+ * <p>The iteration order of a hash trie is arbitrary, so the aggregator's <code>combine</code> must be commutative,
+ * as well as associative (e.g. sum, min, max or count).</p>
+ * <p>The aggregator is not considered by {@link #equals(Object)} (which follows the {@link java.util.Map}
+ * contract).</p>
+ */
+public class AggregatingHashTrieMap<K, V, A> extends AbstractMap<K, V> implements SharedMap<K, V>, Externalizable {
+    private static final long serialVersionUID = 6181325007437516292L;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // (mNodes contains the aggregator, and creates the nodes of mMap)
+    private HashTrieMap.AggregateNodes<V, A> mNodes;
+    private HashTrieMap<K, V> mMap;
+
+    private AggregatingHashTrieMap(HashTrieMap.AggregateNodes<V, A> nodes, HashTrieMap<K, V> map) {
+        mNodes = nodes;
+        mMap = map;
+    }
+
+    // *** Factories ***
+
+    /**
+     * Create an empty map without an aggregator (only for use by deserialization).
+     * <p>Until the aggregator has been restored by {@link #readExternal(java.io.ObjectInput)}, {@link #aggregate()},
+     * {@link #with(Object, Object)} &amp; {@link #without(Object)} throw an <code>IllegalStateException</code>.</p>
+     */
+    public AggregatingHashTrieMap() {
+        this((HashTrieMap.AggregateNodes<V, A>) null, HashTrieMap.<K, V> empty());
+    }
+    public AggregatingHashTrieMap(Aggregator<V, A> aggregator) {
+        this(new HashTrieMap.AggregateNodes<V, A>(aggregator), HashTrieMap.<K, V> empty());
+    }
+    public AggregatingHashTrieMap(Aggregator<V, A> aggregator, Map<? extends K, ? extends V> m) {
+        AggregatingHashTrieMap<K, V, A> map;
+        if (m instanceof AggregatingHashTrieMap && ((AggregatingHashTrieMap) m).aggregator() == aggregator) {
+            // O(1) copy - we can just view the same data
+            map = (AggregatingHashTrieMap<K, V, A>) m;
+        } else {
+            map = empty(aggregator);
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                map = map.with(entry.getKey(), entry.getValue());
+            }
+        }
+        mNodes = map.mNodes;
+        mMap = map.mMap;
+    }
+
+    public static <K, V, A> AggregatingHashTrieMap<K, V, A> empty(Aggregator<V, A> aggregator) {
+        return new AggregatingHashTrieMap<K, V, A>(aggregator);
+    }
+    /**
+     * Create a map containing the given key-&gt;value pairs.
+     * @param aggregator the aggregator for values of the map
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type K), and values (type V), in which
+     * later mappings will overwrite earlier ones
+     * @return a map containing all of the key-&gt;value mappings
+     */
+    public static <K, V, A> AggregatingHashTrieMap<K, V, A> of(Aggregator<V, A> aggregator, K key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("AggregatingHashTrieMap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        AggregatingHashTrieMap<K, V, A> m = AggregatingHashTrieMap.<K, V, A> empty(aggregator).with(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((K) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** Aggregates ***
+
+    /**
+     * @return the aggregator used to summarise the values of this map
+     */
+    public Aggregator<V, A> aggregator() {
+        return mNodes == null ? null : mNodes.aggregator;
+    }
+
+    /**
+     * @return the aggregate of all values in the map (O(1))
+     */
+    public A aggregate() {
+        return mMap.aggregate(nodes("aggregate()"));
+    }
+
+    private HashTrieMap.AggregateNodes<V, A> nodes(String method) throws IllegalStateException {
+        if (mNodes == null) {
+            throw new IllegalStateException(method + " called on an AggregatingHashTrieMap without an aggregator (which should only be created by deserialization)");
+        }
+        return mNodes;
+    }
+
+    // *** AbstractMap ***
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return mMap.entrySet();
+    }
+
+    // overridden for performance
+    @Override
+    public Set<K> keySet() {
+        return mMap.keySet();
+    }
+
+    @Override
+    public int size() {
+        return mMap.size();
+    }
+
+    // overridden for performance
+    @Override
+    public boolean containsKey(Object key) {
+        return mMap.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return mMap.get(key);
+    }
+
+    // *** SharedMap ***
+
+    @Override
+    public AggregatingHashTrieMap<K, V, A> with(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to an AggregatingHashTrieMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to an AggregatingHashTrieMap");
+        }
+        final HashTrieMap.AggregateNodes<V, A> nodes = nodes("with()");
+        if (mMap.get(key) == value) {
+            return this; // unchanged (so the aggregates need not be recomputed)
+        }
+        return new AggregatingHashTrieMap<K, V, A>(nodes, mMap.with(key, value, nodes));
+    }
+
+    @Override
+    public AggregatingHashTrieMap<K, V, A> without(K key) {
+        if (key == null) {
+            throw new NullPointerException("Cannot remove a null key from an AggregatingHashTrieMap");
+        }
+        final HashTrieMap.AggregateNodes<V, A> nodes = nodes("without()");
+        final HashTrieMap<K, V> newMap = mMap.without(key, nodes);
+        return newMap == mMap ? this : new AggregatingHashTrieMap<K, V, A>(nodes, newMap);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(aggregator());
+        out.writeInt(size());
+        for (Map.Entry<K, V> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final Aggregator<V, A> aggregator = (Aggregator<V, A>) in.readObject();
+        final int size = in.readInt();
+        AggregatingHashTrieMap<K, V, A> m = empty(aggregator);
+        for (int i = 0; i < size; ++i) {
+            m = m.with((K) in.readObject(), (V) in.readObject());
+        }
+        mNodes = m.mNodes;
+        mMap = m.mMap;
+    }
+}
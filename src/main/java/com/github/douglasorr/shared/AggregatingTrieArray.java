@@ -0,0 +1,442 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A trie-based implementation of {@link com.github.douglasorr.shared.SharedArray} (with the same 32-way layout as
+ * {@link com.github.douglasorr.shared.TrieArray}), in which every node of the trie caches the aggregate of its
+ * elements, under a user-supplied {@link com.github.douglasorr.shared.Aggregator} (as in a persistent segment tree).
+ * <p>The aggregates are kept up to date as nodes are copied by {@link #append(Object)}, {@link #update(int, Object)}
+ * and {@link #take(int)}, so that {@link #aggregate(int, int)} of any range is (small) O(log(N)) - it combines at
+ * most two partial paths through the trie, and the cached aggregates of every node in between.
+ * Appending combines a single new value with the cached aggregates along the path to the end of the array, while
+ * updating or truncating recomputes the aggregate of each copied node from its (at most 32) children.</p>
+ * <p>The aggregator is not considered by {@link #equals(Object)} (which follows the {@link java.util.List}
+ * contract).</p>
+ */
+public class AggregatingTrieArray<T, A> extends AbstractList<T> implements SharedArray<T>, Externalizable, RandomAccess {
+    private static final long serialVersionUID = -2107405584937730151L;
+    private static final int NBITS = 5;
+    private static final int BLOCK_SIZE = (1 << NBITS);
+    private static final int MASK = BLOCK_SIZE - 1;
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /**
+     * A node of the trie, with the aggregate of all elements beneath it.
+     * Children are values (in a leaf node, at level 0) or child Nodes.
+     */
+    private static final class Node {
+        final Object[] children;
+        final Object aggregate;
+
+        Node(Object[] children, Object aggregate) {
+            this.children = children;
+            this.aggregate = aggregate;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private Aggregator<T, A> mAggregator;
+    private int mSize;
+    // the trie contains all full blocks, apart from the last (which is stored in mEnd, with 1-32 elements,
+    // or 0 elements if the array is empty)
+    private Node mRoot;
+    private Object[] mEnd;
+    private A mEndAggregate;
+
+    private AggregatingTrieArray(Aggregator<T, A> aggregator, Node root, Object[] end, A endAggregate, int size) {
+        mAggregator = aggregator;
+        mRoot = root;
+        mEnd = end;
+        mEndAggregate = endAggregate;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    /**
+     * Create an empty array without an aggregator (only for use by deserialization).
+     */
+    public AggregatingTrieArray() {
+        this(null, null, NO_VALUES, null, 0);
+    }
+    public AggregatingTrieArray(Aggregator<T, A> aggregator) {
+        this(aggregator, null, NO_VALUES, aggregator.identity(), 0);
+    }
+    public AggregatingTrieArray(Aggregator<T, A> aggregator, Collection<T> c) {
+        AggregatingTrieArray<T, A> a;
+        if (c instanceof AggregatingTrieArray && ((AggregatingTrieArray) c).mAggregator == aggregator) {
+            a = (AggregatingTrieArray<T, A>) c;
+        } else {
+            a = empty(aggregator).appendAll(c);
+        }
+        mAggregator = a.mAggregator;
+        mRoot = a.mRoot;
+        mEnd = a.mEnd;
+        mEndAggregate = a.mEndAggregate;
+        mSize = a.mSize;
+    }
+
+    public static <T, A> AggregatingTrieArray<T, A> empty(Aggregator<T, A> aggregator) {
+        return new AggregatingTrieArray<T, A>(aggregator);
+    }
+    public static <T, A> AggregatingTrieArray<T, A> of(Aggregator<T, A> aggregator, T... values) {
+        return empty(aggregator).appendAll(Arrays.asList(values));
+    }
+
+    // *** Trie helpers ***
+
+    private static int rootSize(int size) {
+        return size <= 1 ? 0 : size - (1 + (size - 1) % BLOCK_SIZE);
+    }
+
+    /**
+     * @return the level of the root of a trie containing <code>rootSize</code> (a nonzero multiple of 32) elements
+     * (0 if the root is a leaf)
+     */
+    private static int rootLevel(int rootSize) {
+        return (31 - Integer.numberOfLeadingZeros(rootSize - 1)) / NBITS;
+    }
+
+    /**
+     * @return the number of elements in a full node at <code>level</code>
+     */
+    private static long capacity(int level) {
+        return 1L << (NBITS * (level + 1));
+    }
+
+    private A combineValues(Object[] values, int begin, int end, A aggregate) {
+        for (int i = begin; i < end; ++i) {
+            aggregate = mAggregator.combine(aggregate, mAggregator.of((T) values[i]));
+        }
+        return aggregate;
+    }
+
+    private A combineNodes(Object[] nodes) {
+        A aggregate = (A) ((Node) nodes[0]).aggregate;
+        for (int i = 1; i < nodes.length; ++i) {
+            aggregate = mAggregator.combine(aggregate, (A) ((Node) nodes[i]).aggregate);
+        }
+        return aggregate;
+    }
+
+    private Node findLeaf(int index) {
+        Node node = mRoot;
+        for (int level = rootLevel(rootSize(mSize)); 0 < level; --level) {
+            node = (Node) node.children[(index >>> (NBITS * level)) & MASK];
+        }
+        return node;
+    }
+
+    private AggregatingTrieArray<T, A> create(Node root, Object[] end, A endAggregate, int size) {
+        return new AggregatingTrieArray<T, A>(mAggregator, root, end, endAggregate, size);
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || mSize <= index) {
+            throw new IndexOutOfBoundsException(index + " (size " + mSize + ")");
+        }
+        final int rootSize = rootSize(mSize);
+        return index < rootSize
+                ? (T) findLeaf(index).children[index & MASK]
+                : (T) mEnd[index - rootSize];
+    }
+
+    // Overrides for performance
+
+    @Override
+    public Iterator<T> iterator() {
+        return new CachedIterator();
+    }
+
+    // An iterator which caches the current leaf block (as for TrieArray)
+    private class CachedIterator implements Iterator<T> {
+        private int mNextIndex = 0;
+        private final int mRootSize = rootSize(mSize);
+        private Object[] mCurrentBlock = null;
+        private int mCurrentBlockStart = -1;
+
+        @Override
+        public T next() {
+            if (mSize <= mNextIndex) {
+                throw new NoSuchElementException(String.format("Iterator next() out of bounds (position: %d, size: %d)", mNextIndex, mSize));
+            }
+            final int index = mNextIndex++;
+            if (mRootSize <= index) {
+                return (T) mEnd[index - mRootSize];
+            }
+            if ((index & ~MASK) != mCurrentBlockStart) {
+                mCurrentBlock = findLeaf(index).children;
+                mCurrentBlockStart = index & ~MASK;
+            }
+            return (T) mCurrentBlock[index & MASK];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNextIndex < mSize;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate an AggregatingTrieArray using its iterator)");
+        }
+    }
+
+    // *** Aggregates ***
+
+    /**
+     * @return the aggregator used to summarise the elements of this array
+     */
+    public Aggregator<T, A> aggregator() {
+        return mAggregator;
+    }
+
+    /**
+     * @return the aggregate of all elements in the array (O(1))
+     */
+    public A aggregate() {
+        return mRoot == null
+                ? mEndAggregate
+                : mAggregator.combine((A) mRoot.aggregate, mEndAggregate);
+    }
+
+    /**
+     * Compute the aggregate of a range of elements, in (small) O(log(N)).
+     * @param from the index of the first element in the range
+     * @param to the end index of the range (exclusive)
+     * @return the aggregate of elements <code>[from, to)</code>, in order
+     */
+    public A aggregate(int from, int to) throws IndexOutOfBoundsException {
+        if (!(0 <= from && from <= to && to <= mSize)) {
+            throw new IndexOutOfBoundsException(String.format("aggregate(%d, %d) out of bounds (size: %d)", from, to, mSize));
+        }
+        final int rootSize = rootSize(mSize);
+        A aggregate = mAggregator.identity();
+        if (from < rootSize) {
+            aggregate = aggregateNode(mRoot, rootLevel(rootSize), 0, rootSize, from, Math.min(to, rootSize), aggregate);
+        }
+        if (rootSize < to) {
+            aggregate = (from <= rootSize && to == mSize)
+                    ? mAggregator.combine(aggregate, mEndAggregate)
+                    : combineValues(mEnd, Math.max(from, rootSize) - rootSize, to - rootSize, aggregate);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Combine <code>aggregate</code> with the aggregate of elements <code>[from, to)</code> within a node.
+     * @param node the node to search
+     * @param level the level of node (0 = a leaf)
+     * @param nodeStart the index of the first element in node
+     * @param rootSize the number of elements in the trie (which may limit the size of node)
+     * @param from the start of the range (which may be before node)
+     * @param to the end of the range (which may be after node)
+     * @param aggregate the aggregate of all elements before the range within node
+     * @return the combined aggregate
+     */
+    private A aggregateNode(Node node, int level, int nodeStart, int rootSize, int from, int to, A aggregate) {
+        if (from <= nodeStart && Math.min(nodeStart + capacity(level), rootSize) <= to) {
+            return mAggregator.combine(aggregate, (A) node.aggregate);
+        }
+        if (level == 0) {
+            return combineValues(node.children, Math.max(from - nodeStart, 0), Math.min(to - nodeStart, BLOCK_SIZE), aggregate);
+        }
+        final int childSize = 1 << (NBITS * level);
+        final int first = Math.max(from - nodeStart, 0) / childSize;
+        final int last = Math.min((to - 1 - nodeStart) / childSize, node.children.length - 1);
+        for (int i = first; i <= last; ++i) {
+            aggregate = aggregateNode((Node) node.children[i], level - 1, nodeStart + i * childSize, rootSize, from, to, aggregate);
+        }
+        return aggregate;
+    }
+
+    // *** SharedArray ***
+
+    /**
+     * Copy the path to <code>index</code>, recomputing the aggregate of each copied node.
+     */
+    private Node updateNode(Node node, int level, int index, T value) {
+        final Object[] children = Arrays.copyOf(node.children, node.children.length);
+        if (level == 0) {
+            children[index & MASK] = value;
+            return new Node(children, combineValues(children, 0, children.length, mAggregator.identity()));
+        } else {
+            final int childIndex = (index >>> (NBITS * level)) & MASK;
+            children[childIndex] = updateNode((Node) children[childIndex], level - 1, index, value);
+            return new Node(children, combineNodes(children));
+        }
+    }
+
+    @Override
+    public AggregatingTrieArray<T, A> update(int index, T value) throws IndexOutOfBoundsException {
+        if (index < 0 || mSize <= index) {
+            throw new IndexOutOfBoundsException(index + " (size " + mSize + ")");
+        }
+        final int rootSize = rootSize(mSize);
+        if (index < rootSize) {
+            return create(updateNode(mRoot, rootLevel(rootSize), index, value), mEnd, mEndAggregate, mSize);
+        } else {
+            final Object[] end = Arrays.copyOf(mEnd, mEnd.length);
+            end[index - rootSize] = value;
+            return create(mRoot, end, combineValues(end, 0, end.length, mAggregator.identity()), mSize);
+        }
+    }
+
+    /**
+     * @return a chain of single-child nodes from <code>level</code> down to <code>leaf</code>
+     */
+    private static Node path(int level, Node leaf) {
+        return level == 0 ? leaf : new Node(new Object[] { path(level - 1, leaf) }, leaf.aggregate);
+    }
+
+    /**
+     * Copy the path to the end of the trie, to add a new leaf at <code>index</code>.
+     * As the leaf follows all other elements, the aggregate of each copied node is just combined with the leaf's.
+     */
+    private Node pushLeaf(Node node, int level, int index, Node leaf) {
+        final int childIndex = (index >>> (NBITS * level)) & MASK;
+        final Node child = childIndex < node.children.length
+                ? pushLeaf((Node) node.children[childIndex], level - 1, index, leaf)
+                : path(level - 1, leaf);
+        final Object[] children = Arrays.copyOf(node.children, childIndex + 1);
+        children[childIndex] = child;
+        return new Node(children, mAggregator.combine((A) node.aggregate, (A) leaf.aggregate));
+    }
+
+    @Override
+    public AggregatingTrieArray<T, A> append(T value) {
+        if (mEnd.length < BLOCK_SIZE) {
+            // extend the 'end' array
+            final Object[] end = Arrays.copyOf(mEnd, mEnd.length + 1);
+            end[mEnd.length] = value;
+            return create(mRoot, end, mAggregator.combine(mEndAggregate, mAggregator.of(value)), mSize + 1);
+        }
+
+        // insert 'end' into the trie
+        final Node leaf = new Node(mEnd, mEndAggregate);
+        final int rootSize = rootSize(mSize);
+        Node root;
+        if (rootSize == 0) {
+            root = leaf;
+        } else {
+            final int level = rootLevel(rootSize);
+            root = rootSize == capacity(level)
+                    ? new Node(new Object[] { mRoot, path(level, leaf) }, mAggregator.combine((A) mRoot.aggregate, mEndAggregate))
+                    : pushLeaf(mRoot, level, rootSize, leaf);
+        }
+        return create(root, new Object[] { value }, mAggregator.of(value), mSize + 1);
+    }
+
+    @Override
+    public AggregatingTrieArray<T, A> appendAll(Collection<T> values) {
+        AggregatingTrieArray<T, A> a = this;
+        for (T value : values) {
+            a = a.append(value);
+        }
+        return a;
+    }
+
+    @Override
+    public AggregatingTrieArray<T, A> remend() {
+        return take(mSize - 1);
+    }
+
+    /**
+     * Copy the path to the end of the first <code>count</code> elements, recomputing the aggregate of each copied node.
+     */
+    private Node takeNode(Node node, int level, int count) {
+        if (level == 0 || count == capacity(level)) {
+            return node;
+        }
+        final int childSize = 1 << (NBITS * level);
+        final int nchildren = (count + childSize - 1) / childSize;
+        final Node last = (Node) node.children[nchildren - 1];
+        final Node newLast = takeNode(last, level - 1, count - (nchildren - 1) * childSize);
+        if (nchildren == node.children.length && newLast == last) {
+            return node;
+        }
+        final Object[] children = Arrays.copyOf(node.children, nchildren);
+        children[nchildren - 1] = newLast;
+        return new Node(children, combineNodes(children));
+    }
+
+    @Override
+    public AggregatingTrieArray<T, A> take(int n) throws IndexOutOfBoundsException {
+        if (!(0 <= n && n <= mSize)) {
+            throw new IndexOutOfBoundsException(String.format("Trying to take(%d) from a %d-element array", n, mSize));
+        } else if (n == mSize) {
+            return this;
+        } else if (n == 0) {
+            return empty(mAggregator);
+        }
+
+        final int rootSize = rootSize(mSize);
+        if (rootSize < n) {
+            // just shrink the 'end' array
+            final Object[] end = Arrays.copyOf(mEnd, n - rootSize);
+            return create(mRoot, end, combineValues(end, 0, end.length, mAggregator.identity()), n);
+        }
+
+        // the new 'end' is taken from the trie, which is truncated
+        final int newRootSize = rootSize(n);
+        final Node endLeaf = findLeaf(newRootSize);
+        final Object[] end;
+        final A endAggregate;
+        if (n - newRootSize == BLOCK_SIZE) {
+            end = endLeaf.children;
+            endAggregate = (A) endLeaf.aggregate;
+        } else {
+            end = Arrays.copyOf(endLeaf.children, n - newRootSize);
+            endAggregate = combineValues(end, 0, end.length, mAggregator.identity());
+        }
+        Node root = null;
+        if (newRootSize != 0) {
+            root = mRoot;
+            final int newLevel = rootLevel(newRootSize);
+            for (int level = rootLevel(rootSize); newLevel < level; --level) {
+                root = (Node) root.children[0];
+            }
+            root = takeNode(root, newLevel, newRootSize);
+        }
+        return create(root, end, endAggregate, n);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(mAggregator);
+        out.writeInt(mSize);
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final Aggregator<T, A> aggregator = (Aggregator<T, A>) in.readObject();
+        final int size = in.readInt();
+        AggregatingTrieArray<T, A> a = empty(aggregator);
+        for (int i = 0; i < size; ++i) {
+            a = a.append((T) in.readObject());
+        }
+        mAggregator = a.mAggregator;
+        mRoot = a.mRoot;
+        mEnd = a.mEnd;
+        mEndAggregate = a.mEndAggregate;
+        mSize = a.mSize;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.douglasorr.shared;
+
+/**
+ * A summary of a sequence of values (a monoid), which can be cached in the nodes of an aggregating collection
+ * (such as {@link com.github.douglasorr.shared.AggregatingTrieArray}).
+ * <p>For example, a sum over <code>Double</code> values:</p>
+ * <pre>
+ * new Aggregator&lt;Double, Double&gt;() {
+ *     public Double identity() { return 0.0; }
+ *     public Double of(Double value) { return value; }
+ *     public Double combine(Double left, Double right) { return left + right; }
+ * }
+ * </pre>
+ * <p>{@link #combine(Object, Object)} must be associative, and {@link #identity()} must be an identity for it
+ * (so that the aggregate does not depend on how the values are grouped into nodes). For an unordered collection
+ * (such as {@link com.github.douglasorr.shared.AggregatingHashTrieMap}), it must also be commutative.
+ * To serialize a collection, the aggregator must also be serializable.</p>
+ * @param <T> the type of values
+ * @param <A> the type of aggregates
+ */
+public interface Aggregator<T, A> {
+    /**
+     * @return the aggregate of no values
+     */
+    A identity();
+
+    /**
+     * @param value a single value
+     * @return the aggregate of just <code>value</code>
+     */
+    A of(T value);
+
+    /**
+     * @param left the aggregate of a sequence of values
+     * @param right the aggregate of a sequence of values that follows <code>left</code>
+     * @return the aggregate of both sequences (in order)
+     */
+    A combine(A left, A right);
+}
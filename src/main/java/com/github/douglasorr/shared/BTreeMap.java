@@ -0,0 +1,850 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared sorted map, as a persistent B+ tree.
+ * <p>All entries are stored in wide leaf nodes (of up to 32 keys &amp; values, in sorted arrays), and each
+ * branch node stores the number of entries beneath each of its children, so as well as the standard
+ * map operations {@link #get(Object)}, {@link #with(Object, Object)} and {@link #without(Object)},
+ * the positional operations {@link #rank(Object)} and {@link #select(int)} take O(log(n)) time.
+ * Sub-maps ({@link #subMap(Object, boolean, Object, boolean)}, {@link #headMap(Object, boolean)},
+ * {@link #tailMap(Object, boolean)}) are also O(log(n)), as they share all but the edges of the tree.</p>
+ * <p>Keys are ordered by their natural ordering, or by a <code>Comparator</code>, as for
+ * <code>TreeMap</code>. Neither keys nor values may be null.</p>
+ */
+public class BTreeMap<K,V> extends AbstractMap<K,V> implements SharedSortedMap<K,V>, Externalizable {
+    private static final long serialVersionUID = 3518046151862946612L;
+    private static final int MAX_WIDTH = 32;
+    private static final int MIN_WIDTH = MAX_WIDTH / 2;
+
+    // Nodes are never modified once they are reachable from a map.
+    // All leaves are at the same depth, and all nodes (except the root, and nodes on the edge of
+    // a sub-map) contain between MIN_WIDTH and MAX_WIDTH keys or children.
+
+    private static final class Leaf {
+        public final Object[] keys;
+        public final Object[] values;
+        Leaf(Object[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static final class Branch {
+        // keys[i] is the first key in children[i] (except keys[0], which is never used, and may be out of date)
+        public final Object[] keys;
+        public final Object[] children;
+        // sizes[i] is the total number of entries in children[0..i]
+        public final int[] sizes;
+        Branch(Object[] keys, Object[] children) {
+            this.keys = keys;
+            this.children = children;
+            this.sizes = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; ++i) {
+                total += size(children[i]);
+                sizes[i] = total;
+            }
+        }
+    }
+
+    private static final Leaf EMPTY_LEAF = new Leaf(new Object[0], new Object[0]);
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // root :: Leaf | Branch | null
+    private Object mRoot;
+    private Comparator<? super K> mComparator;
+    private boolean mDescending;
+    // cached implementations
+    private transient Set<Entry<K, V>> mEntrySet = null;
+    private transient NavigableSet<K> mKeySet = null;
+
+    private BTreeMap(Object root, Comparator<? super K> comparator, boolean descending) {
+        mRoot = root;
+        mComparator = comparator;
+        mDescending = descending;
+    }
+
+    // *** Factories ***
+
+    public BTreeMap() {
+        this(null, null, false);
+    }
+    public BTreeMap(Comparator<? super K> comparator) {
+        this(null, comparator, false);
+    }
+    public BTreeMap(Map<? extends K, ? extends V> m) {
+        BTreeMap<K,V> map;
+        if (m instanceof BTreeMap) {
+            // O(1) copy - we can just view the same data
+            map = (BTreeMap<K,V>) m;
+        } else {
+            // O(n log(n)) copy from a general Map (keeping the order of a SortedMap)
+            map = new BTreeMap<K,V>(null, (m instanceof SortedMap) ? ((SortedMap<K,?>) m).comparator() : null, false);
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                map = map.with(entry.getKey(), entry.getValue());
+            }
+        }
+        mRoot = map.mRoot;
+        mComparator = map.mComparator;
+        mDescending = map.mDescending;
+    }
+    public static final BTreeMap EMPTY = new BTreeMap();
+    public static <K,V> BTreeMap<K,V> empty() {
+        return EMPTY;
+    }
+    public static <K,V> BTreeMap<K,V> empty(Comparator<? super K> comparator) {
+        return new BTreeMap<K,V>(comparator);
+    }
+    public static <K,V> BTreeMap<K,V> singleton(K key, V value) {
+        return BTreeMap.<K,V> empty().with(key, value);
+    }
+    public static <K,V> BTreeMap<K,V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a map containing the given key-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>BTreeMap.of("one", 1, "two", 2, "three", 3);</code>
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type K), and values (type V), in which
+     * later mappings will overwrite earlier ones
+     * @return a map containing all of the key-&gt;value mappings
+     */
+    public static <K,V> BTreeMap<K,V> of(K key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("BTreeMap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        BTreeMap<K,V> m = singleton(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((K) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** Tree helpers (all in ascending order) ***
+
+    private static int size(Object node) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).keys.length;
+        } else {
+            final int[] sizes = ((Branch) node).sizes;
+            return sizes.length == 0 ? 0 : sizes[sizes.length - 1];
+        }
+    }
+
+    // the number of keys (in a leaf) or children (in a branch)
+    private static int width(Object node) {
+        return (node instanceof Leaf) ? ((Leaf) node).keys.length : ((Branch) node).children.length;
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        final T[] result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        result[index] = value;
+        return result;
+    }
+    private static <T> T[] remove(T[] array, int index) {
+        final T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+    private static <T> T[] replace(T[] array, int index, T value) {
+        final T[] result = Arrays.copyOf(array, array.length);
+        result[index] = value;
+        return result;
+    }
+
+    // the index of the child of 'branch' that could contain 'key' (keys before the first key go in the first child)
+    private static int childIndex(Branch branch, Object key, Comparator comparator) {
+        final int index = Arrays.binarySearch(branch.keys, 1, branch.keys.length, key, comparator);
+        return index < 0 ? -index - 2 : index;
+    }
+
+    // split a node that has grown too wide into two nodes (of roughly equal width)
+    private static Object[] split(Object node) {
+        final int n = width(node);
+        final int mid = n / 2;
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            return new Object[] {
+                    new Leaf(Arrays.copyOfRange(leaf.keys, 0, mid), Arrays.copyOfRange(leaf.values, 0, mid)),
+                    new Leaf(Arrays.copyOfRange(leaf.keys, mid, n), Arrays.copyOfRange(leaf.values, mid, n))
+            };
+        } else {
+            final Branch branch = (Branch) node;
+            return new Object[] {
+                    new Branch(Arrays.copyOfRange(branch.keys, 0, mid), Arrays.copyOfRange(branch.children, 0, mid)),
+                    new Branch(Arrays.copyOfRange(branch.keys, mid, n), Arrays.copyOfRange(branch.children, mid, n))
+            };
+        }
+    }
+
+    // join two adjacent nodes (at the same depth), where 'separator' is the first key of 'right'
+    private static Object join(Object left, Object right, Object separator) {
+        if (width(left) == 0) {
+            return right;
+        } else if (width(right) == 0) {
+            return left;
+        } else if (left instanceof Leaf) {
+            final Leaf l = (Leaf) left, r = (Leaf) right;
+            final Object[] keys = Arrays.copyOf(l.keys, l.keys.length + r.keys.length);
+            System.arraycopy(r.keys, 0, keys, l.keys.length, r.keys.length);
+            final Object[] values = Arrays.copyOf(l.values, l.values.length + r.values.length);
+            System.arraycopy(r.values, 0, values, l.values.length, r.values.length);
+            return new Leaf(keys, values);
+        } else {
+            final Branch l = (Branch) left, r = (Branch) right;
+            final Object[] keys = Arrays.copyOf(l.keys, l.keys.length + r.keys.length);
+            System.arraycopy(r.keys, 0, keys, l.keys.length, r.keys.length);
+            keys[l.keys.length] = separator;
+            final Object[] children = Arrays.copyOf(l.children, l.children.length + r.children.length);
+            System.arraycopy(r.children, 0, children, l.children.length, r.children.length);
+            return new Branch(keys, children);
+        }
+    }
+
+    /**
+     * Insert or replace a key in the tree.
+     * @return the new node, or a pair of nodes <code>Object[] { left, right }</code> if the node had to split
+     */
+    private static Object insert(Object node, Object key, Object value, Comparator comparator) {
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            final int index = Arrays.binarySearch(leaf.keys, key, comparator);
+            if (0 <= index) {
+                // replace the value (sharing the keys)
+                return leaf.values[index] == value ? leaf : new Leaf(leaf.keys, replace(leaf.values, index, value));
+            }
+            final Leaf result = new Leaf(insert(leaf.keys, -index - 1, key), insert(leaf.values, -index - 1, value));
+            return MAX_WIDTH < result.keys.length ? split(result) : result;
+
+        } else {
+            final Branch branch = (Branch) node;
+            final int index = childIndex(branch, key, comparator);
+            final Object child = insert(branch.children[index], key, value, comparator);
+            if (child == branch.children[index]) {
+                return branch;
+
+            } else if (child instanceof Object[]) {
+                // the child split - add the new child after it
+                final Object[] pair = (Object[]) child;
+                final Object[] keys = insert(branch.keys, index + 1, firstKey(pair[1]));
+                final Object[] children = insert(replace(branch.children, index, pair[0]), index + 1, pair[1]);
+                final Branch result = new Branch(keys, children);
+                return MAX_WIDTH < children.length ? split(result) : result;
+
+            } else {
+                // just replace the child (sharing the keys)
+                return new Branch(branch.keys, replace(branch.children, index, child));
+            }
+        }
+    }
+
+    /**
+     * Remove a key from the tree.
+     * @return the new node (which may be too narrow, or even empty - but never contains empty nodes),
+     * or <code>node</code> itself, if the key was not found
+     */
+    private static Object remove(Object node, Object key, Comparator comparator) {
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            final int index = Arrays.binarySearch(leaf.keys, key, comparator);
+            return index < 0 ? leaf : new Leaf(remove(leaf.keys, index), remove(leaf.values, index));
+
+        } else {
+            final Branch branch = (Branch) node;
+            final int index = childIndex(branch, key, comparator);
+            final Object child = remove(branch.children[index], key, comparator);
+            if (child == branch.children[index]) {
+                return branch;
+
+            } else if (size(child) == 0) {
+                // the child is empty - remove it altogether
+                return branch.children.length == 1 ? EMPTY_LEAF : new Branch(remove(branch.keys, index), remove(branch.children, index));
+
+            } else if (MIN_WIDTH <= width(child) || branch.children.length == 1) {
+                return new Branch(branch.keys, replace(branch.children, index, child));
+
+            } else {
+                // the child is too narrow - join it with a sibling (and split again, if that is too wide)
+                final int left = (index == 0) ? 0 : index - 1;
+                final Object leftChild = (left == index) ? child : branch.children[left];
+                final Object rightChild = (left == index) ? branch.children[left + 1] : child;
+                final Object joined = join(leftChild, rightChild, branch.keys[left + 1]);
+                if (width(joined) <= MAX_WIDTH) {
+                    return new Branch(remove(branch.keys, left + 1), remove(replace(branch.children, left, joined), left + 1));
+                } else {
+                    final Object[] pair = split(joined);
+                    final Object[] children = Arrays.copyOf(branch.children, branch.children.length);
+                    children[left] = pair[0];
+                    children[left + 1] = pair[1];
+                    return new Branch(replace(branch.keys, left + 1, firstKey(pair[1])), children);
+                }
+            }
+        }
+    }
+
+    private static Object firstKey(Object node) {
+        while (node instanceof Branch) {
+            node = ((Branch) node).children[0];
+        }
+        return ((Leaf) node).keys[0];
+    }
+
+    // the first 'n' entries of 'node' (0 < n <= size(node))
+    private static Object take(Object node, int n) {
+        if (n == size(node)) {
+            return node;
+        } else if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            return new Leaf(Arrays.copyOf(leaf.keys, n), Arrays.copyOf(leaf.values, n));
+        } else {
+            final Branch branch = (Branch) node;
+            int index = 0;
+            while (branch.sizes[index] < n) {
+                ++index;
+            }
+            final int before = (index == 0) ? 0 : branch.sizes[index - 1];
+            final Object[] children = Arrays.copyOf(branch.children, index + 1);
+            children[index] = take(children[index], n - before);
+            return new Branch(Arrays.copyOf(branch.keys, index + 1), children);
+        }
+    }
+
+    // all but the first 'n' entries of 'node' (0 <= n < size(node))
+    private static Object drop(Object node, int n) {
+        if (n == 0) {
+            return node;
+        } else if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            return new Leaf(Arrays.copyOfRange(leaf.keys, n, leaf.keys.length), Arrays.copyOfRange(leaf.values, n, leaf.values.length));
+        } else {
+            final Branch branch = (Branch) node;
+            int index = 0;
+            while (branch.sizes[index] <= n) {
+                ++index;
+            }
+            final int before = (index == 0) ? 0 : branch.sizes[index - 1];
+            final Object[] children = Arrays.copyOfRange(branch.children, index, branch.children.length);
+            children[0] = drop(children[0], n - before);
+            return new Branch(Arrays.copyOfRange(branch.keys, index, branch.keys.length), children);
+        }
+    }
+
+    // remove single-child branches & empty nodes from the root
+    private static Object normalizeRoot(Object root) {
+        while (root instanceof Branch && ((Branch) root).children.length == 1) {
+            root = ((Branch) root).children[0];
+        }
+        return (root == null || width(root) == 0) ? null : root;
+    }
+
+    private int compare(Object a, Object b) {
+        return (mComparator == null) ? ((Comparable<Object>) a).compareTo(b) : ((Comparator<Object>) mComparator).compare(a, b);
+    }
+
+    // the number of keys less than (or equal to, if inclusive) key, in ascending order
+    private int countBefore(Object key, boolean inclusive) {
+        int count = 0;
+        Object node = mRoot;
+        if (node == null) {
+            return 0;
+        }
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            final int index = childIndex(branch, key, mComparator);
+            count += (index == 0) ? 0 : branch.sizes[index - 1];
+            node = branch.children[index];
+        }
+        final int index = Arrays.binarySearch(((Leaf) node).keys, key, (Comparator) mComparator);
+        return count + (index < 0 ? -index - 1 : (inclusive ? index + 1 : index));
+    }
+
+    // the entry at an index in ascending order (0 <= index < size())
+    private Entry<K,V> entryAt(int index) {
+        Object node = mRoot;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            int child = 0;
+            while (branch.sizes[child] <= index) {
+                ++child;
+            }
+            index -= (child == 0) ? 0 : branch.sizes[child - 1];
+            node = branch.children[child];
+        }
+        final Leaf leaf = (Leaf) node;
+        return new SimpleImmutableEntry<K,V>((K) leaf.keys[index], (V) leaf.values[index]);
+    }
+
+    // the map of entries with ascending indices [from, to)
+    private BTreeMap<K,V> slice(int from, int to) {
+        if (from == 0 && to == size()) {
+            return this;
+        } else if (to <= from) {
+            return new BTreeMap<K,V>(null, mComparator, mDescending);
+        } else {
+            return new BTreeMap<K,V>(normalizeRoot(drop(take(mRoot, to), from)), mComparator, mDescending);
+        }
+    }
+
+    // *** AbstractMap ***
+
+    // Iterates through the leaves of the tree, in ascending or descending order
+    private static class EntryIterator<K,V> implements Iterator<Entry<K,V>> {
+        private final boolean mDescending;
+        // the path from the root to the current leaf (branches, and the index of the child we are in)
+        private final Branch[] mBranches;
+        private final int[] mIndices;
+        private Leaf mLeaf;
+        private int mIndex;
+        private int mRemaining;
+
+        EntryIterator(Object root, boolean descending) {
+            mDescending = descending;
+            mRemaining = (root == null) ? 0 : size(root);
+            int depth = 0;
+            for (Object node = root; node instanceof Branch; node = ((Branch) node).children[0]) {
+                ++depth;
+            }
+            mBranches = new Branch[depth];
+            mIndices = new int[depth];
+            if (root != null) {
+                descend(root, 0);
+            }
+        }
+
+        // walk down to the first (or last, if descending) leaf under 'node', which is at 'depth'
+        private void descend(Object node, int depth) {
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                final int index = mDescending ? branch.children.length - 1 : 0;
+                mBranches[depth] = branch;
+                mIndices[depth] = index;
+                node = branch.children[index];
+                ++depth;
+            }
+            mLeaf = (Leaf) node;
+            mIndex = mDescending ? mLeaf.keys.length - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return 0 < mRemaining;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (mRemaining == 0) {
+                throw new NoSuchElementException("Iterator next() called at the end of a BTreeMap");
+            }
+            if (mIndex < 0 || mLeaf.keys.length <= mIndex) {
+                // move to the next leaf - find the deepest branch that has another child
+                int depth = mBranches.length - 1;
+                final int step = mDescending ? -1 : 1;
+                while (true) {
+                    final int index = mIndices[depth] + step;
+                    if (0 <= index && index < mBranches[depth].children.length) {
+                        mIndices[depth] = index;
+                        descend(mBranches[depth].children[index], depth + 1);
+                        break;
+                    }
+                    --depth;
+                }
+            }
+            --mRemaining;
+            final int index = mIndex;
+            mIndex += mDescending ? -1 : 1;
+            return new SimpleImmutableEntry<K,V>((K) mLeaf.keys[index], (V) mLeaf.values[index]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its' iterator)");
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator<K,V>(mRoot, mDescending);
+        }
+
+        @Override
+        public int size() {
+            return BTreeMap.this.size();
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<K,V> mapping = (Entry) o;
+            V value = BTreeMap.this.get(mapping.getKey());
+            return value != null && value.equals(mapping.getValue());
+        }
+    }
+
+    private class KeySet extends AbstractSet<K> implements NavigableSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            final Iterator<Entry<K,V>> entryIterator = new EntryIterator<K,V>(mRoot, mDescending);
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return entryIterator.hasNext();
+                }
+                @Override
+                public K next() {
+                    return entryIterator.next().getKey();
+                }
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its' iterator)");
+                }
+            };
+        }
+        @Override
+        public int size() {
+            return BTreeMap.this.size();
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object key) {
+            return BTreeMap.this.containsKey(key);
+        }
+
+        // NavigableSet
+        @Override
+        public K lower(K key) {
+            return lowerKey(key);
+        }
+        @Override
+        public K floor(K key) {
+            return floorKey(key);
+        }
+        @Override
+        public K ceiling(K key) {
+            return ceilingKey(key);
+        }
+        @Override
+        public K higher(K key) {
+            return higherKey(key);
+        }
+        @Override
+        public K pollFirst() {
+            throw new UnsupportedOperationException("pollFirst() called on an immutable set");
+        }
+        @Override
+        public K pollLast() {
+            throw new UnsupportedOperationException("pollLast() called on an immutable set");
+        }
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return descendingMap().navigableKeySet();
+        }
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return headMap(toElement, inclusive).navigableKeySet();
+        }
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return tailMap(fromElement, inclusive).navigableKeySet();
+        }
+        @Override
+        public Comparator<? super K> comparator() {
+            return BTreeMap.this.comparator();
+        }
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+        @Override
+        public K first() {
+            return firstKey();
+        }
+        @Override
+        public K last() {
+            return lastKey();
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> s = mEntrySet;
+        return s != null ? s : (mEntrySet = new EntrySet());
+    }
+
+    // overridden for performance
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    // overridden for performance
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return mRoot == null ? 0 : size(mRoot);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null || mRoot == null) {
+            return null;
+        }
+        Object node = mRoot;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            node = branch.children[childIndex(branch, key, mComparator)];
+        }
+        final Leaf leaf = (Leaf) node;
+        final int index = Arrays.binarySearch(leaf.keys, key, (Comparator) mComparator);
+        return index < 0 ? null : (V) leaf.values[index];
+    }
+
+    // *** SharedSortedMap ***
+
+    @Override
+    public BTreeMap<K,V> with(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a BTreeMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a BTreeMap");
+        }
+        if (mRoot == null) {
+            compare(key, key); // type check, as for TreeMap
+            return new BTreeMap<K,V>(new Leaf(new Object[] { key }, new Object[] { value }), mComparator, mDescending);
+        }
+        final Object root = insert(mRoot, key, value, mComparator);
+        if (root == mRoot) {
+            return this;
+        } else if (root instanceof Object[]) {
+            final Object[] pair = (Object[]) root;
+            return new BTreeMap<K,V>(new Branch(new Object[] { firstKey(pair[0]), firstKey(pair[1]) }, pair), mComparator, mDescending);
+        } else {
+            return new BTreeMap<K,V>(root, mComparator, mDescending);
+        }
+    }
+
+    @Override
+    public BTreeMap<K,V> without(K key) {
+        if (key == null || mRoot == null) {
+            return this;
+        }
+        final Object root = remove(mRoot, key, mComparator);
+        return root == mRoot ? this : new BTreeMap<K,V>(normalizeRoot(root), mComparator, mDescending);
+    }
+
+    @Override
+    public int rank(K key) {
+        return mDescending ? size() - countBefore(key, true) : countBefore(key, false);
+    }
+
+    @Override
+    public Entry<K,V> select(int index) throws IndexOutOfBoundsException {
+        final int size = size();
+        if (!(0 <= index && index < size)) {
+            throw new IndexOutOfBoundsException(index + " (size " + size + ")");
+        }
+        return entryAt(mDescending ? size - 1 - index : index);
+    }
+
+    // *** NavigableMap ***
+
+    @Override
+    public Comparator<? super K> comparator() {
+        if (mDescending) {
+            return Collections.reverseOrder((Comparator<K>) mComparator);
+        }
+        return mComparator;
+    }
+
+    // the entry at an ascending index, or null if it is out of range
+    private Entry<K,V> entryOrNull(int index) {
+        return (0 <= index && index < size()) ? entryAt(index) : null;
+    }
+    // ascending versions of lower/floor/ceiling/higher
+    private Entry<K,V> below(K key, boolean inclusive) {
+        return entryOrNull(countBefore(key, inclusive) - 1);
+    }
+    private Entry<K,V> above(K key, boolean inclusive) {
+        return entryOrNull(countBefore(key, !inclusive));
+    }
+    private static <K> K keyOrNull(Entry<K,?> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return mDescending ? above(key, false) : below(key, false);
+    }
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerEntry(key));
+    }
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return mDescending ? above(key, true) : below(key, true);
+    }
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorEntry(key));
+    }
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return mDescending ? below(key, true) : above(key, true);
+    }
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingEntry(key));
+    }
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return mDescending ? below(key, false) : above(key, false);
+    }
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+    @Override
+    public Entry<K, V> firstEntry() {
+        return isEmpty() ? null : select(0);
+    }
+    @Override
+    public Entry<K, V> lastEntry() {
+        return isEmpty() ? null : select(size() - 1);
+    }
+    @Override
+    public K firstKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("firstKey() called on an empty map");
+        }
+        return firstEntry().getKey();
+    }
+    @Override
+    public K lastKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("lastKey() called on an empty map");
+        }
+        return lastEntry().getKey();
+    }
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException("pollFirstEntry() called on an immutable map");
+    }
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException("pollLastEntry() called on an immutable map");
+    }
+
+    @Override
+    public BTreeMap<K, V> descendingMap() {
+        return new BTreeMap<K,V>(mRoot, mComparator, !mDescending);
+    }
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        NavigableSet<K> s = mKeySet;
+        return s != null ? s : (mKeySet = new KeySet());
+    }
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public BTreeMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (0 < compare(fromKey, toKey) * (mDescending ? -1 : 1)) {
+            throw new IllegalArgumentException("subMap() called with fromKey > toKey");
+        }
+        return mDescending
+                ? slice(countBefore(toKey, !toInclusive), countBefore(fromKey, fromInclusive))
+                : slice(countBefore(fromKey, !fromInclusive), countBefore(toKey, toInclusive));
+    }
+    @Override
+    public BTreeMap<K, V> headMap(K toKey, boolean inclusive) {
+        return mDescending
+                ? slice(countBefore(toKey, !inclusive), size())
+                : slice(0, countBefore(toKey, inclusive));
+    }
+    @Override
+    public BTreeMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return mDescending
+                ? slice(0, countBefore(fromKey, inclusive))
+                : slice(countBefore(fromKey, !inclusive), size());
+    }
+    @Override
+    public BTreeMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+    @Override
+    public BTreeMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+    @Override
+    public BTreeMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(mComparator);
+        out.writeBoolean(mDescending);
+        out.writeInt(size());
+        for (Entry<K,V> entry : new Iterable<Entry<K,V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<K,V>(mRoot, false);
+            }
+        }) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final Comparator<? super K> comparator = (Comparator<? super K>) in.readObject();
+        final boolean descending = in.readBoolean();
+        final int size = in.readInt();
+        BTreeMap<K,V> map = new BTreeMap<K,V>(comparator);
+        for (int i = 0; i < size; ++i) {
+            map = map.with((K) in.readObject(), (V) in.readObject());
+        }
+        mRoot = map.mRoot;
+        mComparator = comparator;
+        mDescending = descending;
+    }
+}
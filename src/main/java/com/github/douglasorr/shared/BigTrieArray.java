@@ -0,0 +1,482 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A trie-based implementation of {@link com.github.douglasorr.shared.SharedBigArray}, with the same
+ * layout as {@link com.github.douglasorr.shared.TrieArray} (a 32-way trie, plus an 'end' block of up to
+ * 32 elements), but with <code>long</code> sizes &amp; indices.
+ * <p>Supports (small) O(log(N)) insertion at end ({@link #append}), update ({@link #update(long, Object)}),
+ * and indexing ({@link #get(long)}), and {@link #take(long)}. The nodes are plain <code>Object[]</code>
+ * blocks, just as for TrieArray, so the memory used per element is the same.</p>
+ */
+public class BigTrieArray<T> implements SharedBigArray<T>, Externalizable {
+    private static final long serialVersionUID = -4431097760211453307L;
+    private static final int NBITS = 5;
+    private static final int BLOCK_SIZE = (1 << NBITS);
+    private static final int MASK = BLOCK_SIZE - 1;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private long mSize;
+    private Object[] mRoot;
+    private Object mEnd;
+
+    private BigTrieArray(Object[] root, Object end, long size) {
+        mRoot = root;
+        mEnd = end;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    public BigTrieArray() {
+        this(null, null, 0);
+    }
+    public BigTrieArray(Iterable<? extends T> values) {
+        BigTrieArray<T> a;
+        if (values instanceof BigTrieArray) {
+            a = (BigTrieArray<T>) values;
+        } else {
+            a = BigTrieArray.<T> empty().appendAll(values);
+        }
+        mRoot = a.mRoot;
+        mEnd = a.mEnd;
+        mSize = a.mSize;
+    }
+
+    public static final BigTrieArray EMPTY = new BigTrieArray();
+    public static <T> BigTrieArray<T> empty() {
+        return EMPTY;
+    }
+    public static <T> BigTrieArray<T> singleton(T value) {
+        return new BigTrieArray<T>(null, value, 1);
+    }
+    public static <T> BigTrieArray<T> of(T... values) {
+        return BigTrieArray.<T> empty().appendAll(Arrays.asList(values));
+    }
+
+    /**
+     * Create an array containing <code>n</code> copies of <code>value</code>.
+     * <p>Full subtries of the result are shared, so this takes O(log(n)) time &amp; memory
+     * (until the array is updated, when only the updated paths are copied).</p>
+     * @param n the size of the array
+     * @param value the value for every element
+     * @return an array of <code>n</code> elements, all equal to <code>value</code>
+     */
+    public static <T> BigTrieArray<T> nCopies(long n, T value) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot create a BigTrieArray of negative size (" + n + ")");
+        } else if (n == 0) {
+            return empty();
+        }
+        final long rootSize = rootSize(n);
+        final int rootLevel = height(n) - 1;
+
+        // full[level] is a full node of that level, containing 32^(level + 1) elements
+        final Object[][] full = new Object[Math.max(rootLevel + 1, 1)][];
+        full[0] = new Object[BLOCK_SIZE];
+        Arrays.fill(full[0], value);
+        for (int level = 1; level <= rootLevel; ++level) {
+            full[level] = new Object[BLOCK_SIZE];
+            Arrays.fill(full[level], full[level - 1]);
+        }
+
+        final Object[] root = rootSize == 0 ? null : buildCopies(full, rootLevel, rootSize);
+        final long endSize = n - rootSize;
+        Object end;
+        if (endSize == 1) {
+            end = value;
+        } else if (endSize == BLOCK_SIZE) {
+            end = full[0];
+        } else {
+            final Object[] endArray = new Object[(int) endSize];
+            Arrays.fill(endArray, value);
+            end = endArray;
+        }
+        return new BigTrieArray<T>(root, end, n);
+    }
+
+    /**
+     * Build a node of <code>level</code> containing the first <code>count</code> elements
+     * (a multiple of 32) of a full node, sharing full children.
+     */
+    private static Object[] buildCopies(Object[][] full, int level, long count) {
+        if (level == 0) {
+            assert(count == BLOCK_SIZE);
+            return full[0];
+        }
+        final long childSize = 1L << (NBITS * level);
+        final int nchildren = (int) ((count + childSize - 1) / childSize);
+        if (nchildren == BLOCK_SIZE && count == BLOCK_SIZE * childSize) {
+            return full[level];
+        }
+        final Object[] node = new Object[nchildren];
+        for (int i = 0; i < nchildren - 1; ++i) {
+            node[i] = full[level - 1];
+        }
+        node[nchildren - 1] = buildCopies(full, level - 1, count - (nchildren - 1) * childSize);
+        return node;
+    }
+
+    // *** Queries ***
+
+    @Override
+    public long size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new CachedIterator(0);
+    }
+
+    /**
+     * @param index the index of the first element to return
+     * @return an iterator over the elements from <code>index</code> to the end of the array
+     */
+    public Iterator<T> iterator(long index) {
+        if (0 <= index && index <= mSize) {
+            return new CachedIterator(index);
+        } else {
+            throw new IndexOutOfBoundsException(String.format("iterator() requested for out of bounds index (position: %d, size: %d)", index, mSize));
+        }
+    }
+
+    // An iterator which caches the current leaf block (as for TrieArray)
+    private class CachedIterator implements Iterator<T> {
+        private long mNextIndex;
+        private final long mRootSize;
+        private Object[] mCurrentBlock = null;
+        private long mCurrentBlockIndex = -1;
+
+        public CachedIterator(long index) {
+            mNextIndex = index;
+            mRootSize = rootSize(mSize);
+        }
+
+        @Override
+        public T next() {
+            if (mSize <= mNextIndex) {
+                throw new NoSuchElementException(String.format("Iterator next() out of bounds (position: %d, size: %d)", mNextIndex, mSize));
+            }
+            final long index = mNextIndex++;
+            if (index < mRootSize) {
+                if (((mCurrentBlockIndex ^ index) & ~MASK) != 0) {
+                    mCurrentBlock = (Object[]) findNode(mRoot, height(mSize) - 1, index, 1);
+                    mCurrentBlockIndex = index;
+                }
+                return (T) mCurrentBlock[(int) (index & MASK)];
+            } else {
+                return get(index);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNextIndex < mSize;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a BigTrieArray using its iterator)");
+        }
+    }
+
+    // *** SharedBigArray ***
+
+    private static long rootSize(long size) {
+        return size <= 1 ? 0 : size - (1 + (size - 1) % BLOCK_SIZE);
+    }
+    private static int height(long size) {
+        long rootSize = rootSize(size);
+        return rootSize <= 1
+                ? 0
+                : 1 + (63 - Long.numberOfLeadingZeros(rootSize - 1)) / NBITS;
+    }
+
+    /**
+     * Find the node (non-terminal, or terminal) at <code>index</code> in level
+     * <code>targetLevel</code> (as {@link com.github.douglasorr.shared.TrieArray}).
+     */
+    private static Object findNode(Object root, int rootLevel, long targetIndex, int targetLevel) {
+        Object current = root;
+        for (int level = rootLevel; targetLevel <= level; --level) {
+            int childIndex = (int) ((targetIndex >>> (NBITS * level)) & MASK);
+            current = ((Object[]) current)[childIndex];
+        }
+        return current;
+    }
+
+    private static Object shrinkEnd(Object[] end, int n) {
+        if (n == 1) {
+            return end[0];
+        } else if (n == end.length) {
+            return end;
+        } else {
+            return Arrays.copyOf(end, n);
+        }
+    }
+
+    @Override
+    public T get(long index) {
+        if (index < 0 || mSize <= index) {
+            throw new IndexOutOfBoundsException(index + " (size " + mSize + ")");
+        }
+
+        long rootSize = rootSize(mSize);
+        if (index < rootSize) {
+            return (T) findNode(mRoot, height(mSize) - 1, index, 0);
+
+        } else if (mSize - rootSize == 1) {
+            return (T) mEnd;
+
+        } else {
+            return (T) ((Object[]) mEnd)[(int) (index - rootSize)];
+        }
+    }
+
+    @Override
+    public BigTrieArray<T> update(long index, T value) throws IndexOutOfBoundsException {
+        if (index < 0 || mSize <= index) {
+            throw new IndexOutOfBoundsException(index + " (size " + mSize + ")");
+        }
+
+        long rootSize = rootSize(mSize);
+        if (index < rootSize) {
+            // copy the path from the root to the leaf
+            final Object[] newRoot = Arrays.copyOf(mRoot, mRoot.length);
+            Object[] parent = newRoot;
+            for (int level = height(mSize) - 1; 1 <= level; --level) {
+                final int childIndex = (int) ((index >>> (NBITS * level)) & MASK);
+                final Object[] child = (Object[]) parent[childIndex];
+                final Object[] copy = Arrays.copyOf(child, child.length);
+                parent[childIndex] = copy;
+                parent = copy;
+            }
+            parent[(int) (index & MASK)] = value;
+            return new BigTrieArray<T>(newRoot, mEnd, mSize);
+
+        } else if (mSize - rootSize == 1) {
+            return new BigTrieArray<T>(mRoot, value, mSize);
+
+        } else {
+            Object[] endArray = (Object[]) mEnd;
+            Object[] newEnd = Arrays.copyOf(endArray, endArray.length);
+            newEnd[(int) (index - rootSize)] = value;
+            return new BigTrieArray<T>(mRoot, newEnd, mSize);
+        }
+    }
+
+    @Override
+    public BigTrieArray<T> append(T value) {
+        final long rootSize = rootSize(mSize);
+
+        if (mSize == 0) {
+            // create a singleton
+            return singleton(value);
+
+        } else if (mSize == BLOCK_SIZE) {
+            // create a 1-element 'end'
+            return new BigTrieArray<T>((Object[]) mEnd, value, mSize + 1);
+
+        } else if (mSize - rootSize == 1) {
+            // split a 1-element 'end'
+            return new BigTrieArray<T>(mRoot, new Object[]{mEnd, value}, mSize + 1);
+
+        } else if (mSize - rootSize < BLOCK_SIZE) {
+            // extend the 'end' array
+            Object[] endArray = (Object[]) mEnd;
+            Object[] end = Arrays.copyOf(endArray, endArray.length + 1);
+            end[end.length - 1] = value;
+            return new BigTrieArray<T>(mRoot, end, mSize + 1);
+
+        } else {
+            // insert 'end'
+
+            Object[] newRoot = null;
+            Object[] parent = null;
+            int parentIndex = -1;
+            Object[] current = mRoot;
+            if (height(mSize) < height(mSize + 1)) {
+                newRoot = parent = new Object[] { mRoot, null };
+                parentIndex = 1;
+                current = null;
+            }
+
+            // build a new slice of tree, copying from the old
+            for (int level = height(mSize) - 1; 1 <= level; --level) {
+                final int childIndex = (int) ((rootSize >>> (NBITS * level)) & MASK);
+
+                // patch up the new trie
+                final Object[] copy = (current == null)
+                        ? new Object[] { null }
+                        : Arrays.copyOf(current, childIndex + 1);
+                if (newRoot == null) { newRoot = copy; }
+                else { parent[parentIndex] = copy; }
+                parent = copy;
+                parentIndex = childIndex;
+
+                if (level != 1) {
+                    current = (current != null && childIndex < current.length)
+                            ? (Object[]) current[childIndex]
+                            : null;
+                }
+            }
+            parent[parentIndex] = mEnd;
+            return new BigTrieArray<T>(newRoot, value, mSize + 1);
+        }
+    }
+
+    /**
+     * Returns a new array, with all elements of <code>values</code> added on to the
+     * end, in iteration order.
+     * (The original array is unmodified.)
+     * @param values the values at the end of the returned array
+     * @return a new array with <code>values</code> at the end
+     */
+    public BigTrieArray<T> appendAll(Iterable<? extends T> values) {
+        BigTrieArray<T> a = this;
+        for (T value : values) {
+            a = a.append(value);
+        }
+        return a;
+    }
+
+    @Override
+    public BigTrieArray<T> remend() {
+        return take(mSize - 1);
+    }
+
+    @Override
+    public BigTrieArray<T> take(long n) throws IndexOutOfBoundsException {
+        final long rootSize = rootSize(mSize);
+
+        if (!(0 <= n && n <= mSize)) {
+            throw new IndexOutOfBoundsException(String.format("Trying to take(%d) from a %d-element array", n, mSize));
+
+        } else if (n == mSize) {
+            return this;
+
+        } else if (n == 0) {
+            return empty();
+
+        } else if (1 <= n - rootSize) {
+            // just shrink the 'end' array
+            return new BigTrieArray<T>(mRoot, shrinkEnd((Object[]) mEnd, (int) (n - rootSize)), n);
+
+        } else {
+            // we have run out of capacity in mEnd, so we need to get a new root, and end
+
+            final int oldHeight = height(mSize);
+            final long newRootSize = rootSize(n);
+            final int newHeight = height(n);
+
+            // build a new slice of tree, copying from the old
+            Object[] newRoot = null;
+            if (newRootSize != 0) {
+                Object[] parent = null;
+                int parentIndex = -1;
+                Object[] current = mRoot;
+                for (int level = oldHeight - 1; 0 <= level; --level) {
+                    final int childIndex = (int) (((newRootSize - 1) >>> (NBITS * level)) & MASK);
+                    if (level <= newHeight - 1) {
+                        // patch up the new trie
+                        final Object[] copy = Arrays.copyOf(current, childIndex + 1);
+                        if (newRoot == null) {
+                            newRoot = copy;
+                        } else {
+                            parent[parentIndex] = copy;
+                        }
+                        parent = copy;
+                        parentIndex = childIndex;
+                    }
+                    if (0 < level) {
+                        current = (Object[]) current[childIndex];
+                    }
+                }
+            }
+
+            // find the new end node, and resize it as necessary
+            final Object[] endBlock = (Object[]) findNode(mRoot, oldHeight - 1, newRootSize, 1);
+            return new BigTrieArray<T>(newRoot, shrinkEnd(endBlock, (int) (n - newRootSize)), n);
+        }
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof SharedBigArray)) {
+            return false;
+        }
+        final SharedBigArray<?> other = (SharedBigArray) o;
+        if (other.size() != mSize) {
+            return false;
+        }
+        final Iterator<?> otherIt = other.iterator();
+        for (T value : this) {
+            final Object otherValue = otherIt.next();
+            if (!(value == null ? otherValue == null : value.equals(otherValue))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the same hash code as a {@link java.util.List} of the same elements
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (T value : this) {
+            hashCode = 31 * hashCode + (value == null ? 0 : value.hashCode());
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (T value : this) {
+            if (sb.length() != 1) {
+                sb.append(", ");
+            }
+            sb.append(value);
+        }
+        return sb.append("]").toString();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeLong(mSize);
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final long size = in.readLong();
+        BigTrieArray<Object> a = empty();
+        for (long i = 0; i < size; ++i) {
+            a = a.append(in.readObject());
+        }
+        mRoot = a.mRoot;
+        mEnd = a.mEnd;
+        mSize = a.mSize;
+    }
+}
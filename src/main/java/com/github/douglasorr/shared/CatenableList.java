@@ -0,0 +1,285 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractSequentialList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A shared list supporting O(1) concatenation, based on Okasaki's catenable lists.
+ * <p>The list is a tree: each node has a non-empty {@link com.github.douglasorr.shared.LinkedList}
+ * of leading elements, followed by a queue of child lists, so {@link #concat(java.util.Collection)},
+ * {@link #append(Object)} and {@link #prepend(Object)} are all O(1), and {@link #head()} is O(1).
+ * {@link #tail()} must sometimes merge the children of the root, but does so lazily, so is amortized O(1).
+ * A {@link com.github.douglasorr.shared.LinkedList} can be wrapped as a catenable list in O(1)
+ * ({@link #wrap(LinkedList)}).</p>
+ * <p>Like {@link com.github.douglasorr.shared.LinkedList}, indexing is <code>O(n)</code>, this list
+ * does not support iteration in reverse order via a <code>listIterator</code>, and it cannot contain null.</p>
+ */
+public class CatenableList<T> extends AbstractSequentialList<T> implements SharedCatList<T>, Externalizable {
+    private static final long serialVersionUID = -2315547264420914398L;
+
+    /**
+     * A child list, which may not have been linked together yet.
+     * Forcing is synchronized, so that the (memoized) result can be safely shared between threads.
+     */
+    private static final class Suspension<T> {
+        private final int mSize;
+        private CatenableList<T> mValue;
+        private TrieQueue<Suspension<T>> mPending;
+
+        Suspension(CatenableList<T> value) {
+            mSize = value.size();
+            mValue = value;
+        }
+        Suspension(TrieQueue<Suspension<T>> pending, int size) {
+            mSize = size;
+            mPending = pending;
+        }
+        synchronized CatenableList<T> force() {
+            if (mValue == null) {
+                mValue = linkAll(mPending, mSize);
+                mPending = null; // release the queue once linked
+            }
+            return mValue;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private LinkedList<T> mPrefix;
+    private TrieQueue<Suspension<T>> mChildren;
+    private int mSize;
+
+    private CatenableList(LinkedList<T> prefix, TrieQueue<Suspension<T>> children, int size) {
+        mPrefix = prefix;
+        mChildren = children;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    public CatenableList() {
+        this(LinkedList.<T> empty(), TrieQueue.<Suspension<T>> empty(), 0);
+    }
+    public CatenableList(Collection<? extends T> c) {
+        CatenableList<T> list = from(c);
+        mPrefix = list.mPrefix;
+        mChildren = list.mChildren;
+        mSize = list.mSize;
+    }
+    public static final CatenableList<?> EMPTY = new CatenableList();
+    public static <T> CatenableList<T> empty() { return (CatenableList<T>) EMPTY; }
+    public static <T> CatenableList<T> singleton(T value) {
+        return wrap(LinkedList.singleton(checkNotNull(value)));
+    }
+    public static <T> CatenableList<T> of(T... elements) {
+        for (T element : elements) {
+            checkNotNull(element);
+        }
+        return wrap(LinkedList.of(elements));
+    }
+
+    /**
+     * View a linked list as a catenable list, in O(1).
+     * @param list the list to wrap
+     * @return a catenable list with the same elements as <code>list</code>
+     */
+    public static <T> CatenableList<T> wrap(LinkedList<T> list) {
+        return list.isEmpty()
+                ? CatenableList.<T> empty()
+                : new CatenableList<T>(list, TrieQueue.<Suspension<T>> empty(), list.size());
+    }
+
+    // O(1) for CatenableList or LinkedList, otherwise O(n)
+    private static <T> CatenableList<T> from(Collection<? extends T> c) {
+        if (c instanceof CatenableList) {
+            return (CatenableList<T>) c;
+        } else if (c instanceof LinkedList) {
+            return wrap((LinkedList<T>) c);
+        } else {
+            return of((T[]) c.toArray());
+        }
+    }
+
+    private static <T> T checkNotNull(T value) {
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a CatenableList");
+        }
+        return value;
+    }
+
+    // link together a non-empty queue of children (but only force the first child)
+    private static <T> CatenableList<T> linkAll(TrieQueue<Suspension<T>> children, int size) {
+        final CatenableList<T> first = children.peek().force();
+        final TrieQueue<Suspension<T>> rest = children.dequeue();
+        return rest.isEmpty() ? first : first.link(new Suspension<T>(rest, size - first.mSize));
+    }
+
+    private CatenableList<T> link(Suspension<T> child) {
+        return new CatenableList<T>(mPrefix, mChildren.enqueue(child), mSize + child.mSize);
+    }
+
+    // *** SharedList ***
+
+    @Override
+    public CatenableList<T> prepend(T head) {
+        return new CatenableList<T>(mPrefix.prepend(checkNotNull(head)), mChildren, mSize + 1);
+    }
+
+    @Override
+    public T head() throws NoSuchElementException {
+        if (mSize == 0) {
+            throw new NoSuchElementException("Head of an empty list");
+        } else {
+            return mPrefix.head();
+        }
+    }
+
+    @Override
+    public CatenableList<T> tail() throws NoSuchElementException {
+        if (mSize == 0) {
+            throw new NoSuchElementException("Tail of an empty list");
+        }
+        final LinkedList<T> prefixTail = mPrefix.tail();
+        if (!prefixTail.isEmpty()) {
+            return new CatenableList<T>(prefixTail, mChildren, mSize - 1);
+        } else if (mChildren.isEmpty()) {
+            return empty();
+        } else {
+            return linkAll(mChildren, mSize - 1);
+        }
+    }
+
+    // *** SharedCatList ***
+
+    @Override
+    public CatenableList<T> append(T value) {
+        return concat(singleton(value));
+    }
+
+    @Override
+    public CatenableList<T> concat(Collection<? extends T> values) {
+        final CatenableList<T> other = from(values);
+        if (other.mSize == 0) {
+            return this;
+        } else if (mSize == 0) {
+            return other;
+        } else {
+            return link(new Suspension<T>(other));
+        }
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public ListIterator<T> listIterator(final int startIndex) {
+        if (!(0 <= startIndex && startIndex <= size())) {
+            throw new IndexOutOfBoundsException("ListIterator starts out of the bounds of the list");
+        }
+        return new ListIterator<T>() {
+            private int index = 0;
+            private Iterator<T> elements = mPrefix.iterator();
+            // a pre-order traversal of the tree, forcing children as we reach them
+            private final ArrayDeque<Iterator<Suspension<T>>> children = new ArrayDeque<Iterator<Suspension<T>>>();
+            {
+                if (!mChildren.isEmpty()) {
+                    children.push(mChildren.iterator());
+                }
+                for (int i = 0; i < startIndex; ++i) {
+                    next();
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < mSize;
+            }
+            @Override
+            public int nextIndex() {
+                return index;
+            }
+            @Override
+            public T next() {
+                if (mSize <= index) {
+                    throw new NoSuchElementException(String.format("Iterator next() out of bounds (position: %d, size: %d)", index, mSize));
+                }
+                while (!elements.hasNext()) {
+                    final Iterator<Suspension<T>> siblings = children.peek();
+                    if (siblings.hasNext()) {
+                        final CatenableList<T> child = siblings.next().force();
+                        elements = child.mPrefix.iterator();
+                        if (!child.mChildren.isEmpty()) {
+                            children.push(child.mChildren.iterator());
+                        }
+                    } else {
+                        children.pop();
+                    }
+                }
+                ++index;
+                return elements.next();
+            }
+
+            // Backwards iteration - not implemented (pretend we're always at the beginning of the list)
+            @Override
+            public boolean hasPrevious() {
+                return false;
+            }
+            @Override
+            public int previousIndex() {
+                return -1;
+            }
+            @Override
+            public T previous() {
+                throw new UnsupportedOperationException("Cannot iterate backwards through a CatenableList");
+            }
+
+            // Mutable operations - not implemented
+            @Override
+            public void add(T t) {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+            @Override
+            public void set(T t) {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mSize);
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        final Object[] buffer = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            buffer[i] = in.readObject();
+        }
+        final CatenableList<T> list = wrap((LinkedList<T>) LinkedList.of(buffer));
+        mPrefix = list.mPrefix;
+        mChildren = list.mChildren;
+        mSize = list.mSize;
+    }
+}
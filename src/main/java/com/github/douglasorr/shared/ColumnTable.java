@@ -0,0 +1,853 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A column-oriented implementation of {@link com.github.douglasorr.shared.SharedTable}.
+ * <p>Each column is stored separately, as a {@link com.github.douglasorr.shared.TrieArray} of blocks of
+ * 64 primitive values (<code>long[]</code>, <code>double[]</code>, or <code>int[]</code> codes into a
+ * dictionary of distinct strings), so a column scan reads each block sequentially without chasing a
+ * pointer per cell. See {@link #longColumn(String)}, {@link #doubleColumn(String)} and
+ * {@link #stringColumn(String)} for column scans (e.g. sum, min/max &amp; filter).</p>
+ * <p>{@link #appendRow(Object...)}, {@link #updateCell(int, String, Object)} and {@link #takeRows(int)} copy at
+ * most one block per column (and the path to it), sharing the other blocks, and
+ * {@link #updateCell(int, String, Object)} shares all other columns with the original table.</p>
+ * <p>The dictionary of a string column only grows (strings that are no longer used by any row
+ * are not removed).</p>
+ */
+public class ColumnTable implements SharedTable, Externalizable {
+    private static final long serialVersionUID = 3064427713981232865L;
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int MASK = BLOCK_SIZE - 1;
+
+    /**
+     * A column of values, stored as a trie of blocks, all of which are full, apart from the last.
+     * @param <B> the type of a block (a primitive array)
+     */
+    abstract static class Column<B> {
+        final TrieArray<B> mBlocks;
+        final int mSize;
+
+        Column(TrieArray<B> blocks, int size) {
+            mBlocks = blocks;
+            mSize = size;
+        }
+
+        abstract ColumnType type();
+        abstract B newBlock(int length);
+        abstract Column<B> create(TrieArray<B> blocks, int size);
+        abstract Object getObject(int row);
+        abstract Column<B> updateObject(int row, Object value);
+        abstract Column<B> appendObject(Object value);
+        abstract void writeValues(ObjectOutput out) throws IOException;
+        abstract boolean blockEquals(B block, Column<B> other, B otherBlock);
+        abstract int hashBlock(int hashCode, B block);
+
+        /**
+         * @return the number of rows in the column
+         */
+        public int size() {
+            return mSize;
+        }
+
+        void checkRow(int row) {
+            if (row < 0 || mSize <= row) {
+                throw new IndexOutOfBoundsException(row + " (size " + mSize + ")");
+            }
+        }
+
+        private int blockLength(int block) {
+            return block < (mSize - 1) >>> BLOCK_BITS ? BLOCK_SIZE : ((mSize - 1) & MASK) + 1;
+        }
+
+        /**
+         * @return a copy of the block containing <code>row</code>, to update
+         */
+        B copyBlock(int row) {
+            final int length = blockLength(row >>> BLOCK_BITS);
+            final B copy = newBlock(length);
+            System.arraycopy(mBlocks.get(row >>> BLOCK_BITS), 0, copy, 0, length);
+            return copy;
+        }
+
+        TrieArray<B> withBlock(int row, B block) {
+            return mBlocks.update(row >>> BLOCK_BITS, block);
+        }
+
+        /**
+         * @return a copy of the last block, with space for one more value at the end (or a new block)
+         */
+        B copyLastBlock() {
+            final int length = mSize & MASK;
+            final B copy = newBlock(length + 1);
+            if (length != 0) {
+                System.arraycopy(mBlocks.get(mBlocks.size() - 1), 0, copy, 0, length);
+            }
+            return copy;
+        }
+
+        TrieArray<B> withLastBlock(B block) {
+            return (mSize & MASK) == 0
+                    ? mBlocks.append(block)
+                    : mBlocks.update(mBlocks.size() - 1, block);
+        }
+
+        Column<B> take(int n) {
+            if (!(0 <= n && n <= mSize)) {
+                throw new IndexOutOfBoundsException(String.format("Trying to take(%d) from a %d-row table", n, mSize));
+            }
+            if (n == mSize) {
+                return this;
+            }
+            final int nblocks = (n + MASK) >>> BLOCK_BITS;
+            TrieArray<B> blocks = mBlocks.take(nblocks);
+            if ((n & MASK) != 0) {
+                final B last = newBlock(n & MASK);
+                System.arraycopy(blocks.get(nblocks - 1), 0, last, 0, n & MASK);
+                blocks = blocks.update(nblocks - 1, last);
+            }
+            return create(blocks, n);
+        }
+
+        /**
+         * @return the blocks for a column of <code>n</code> values, in which every full block
+         * is <code>full</code> (shared), and the last is <code>last</code>
+         */
+        static <B> TrieArray<B> filledBlocks(int n, B full, B last) {
+            final TrieArray<B> blocks = TrieArray.<B> empty().appendAll(Collections.nCopies(n >>> BLOCK_BITS, full));
+            return (n & MASK) == 0 ? blocks : blocks.append(last);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (o == null || o.getClass() != getClass() || ((Column<B>) o).mSize != mSize) {
+                return false;
+            }
+            final Column<B> other = (Column<B>) o;
+            final Iterator<B> otherBlocks = other.mBlocks.iterator();
+            for (B block : mBlocks) {
+                if (!blockEquals(block, other, otherBlocks.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the same hash code as a {@link java.util.List} of the (boxed) values
+         */
+        @Override
+        public int hashCode() {
+            int hashCode = 1;
+            for (B block : mBlocks) {
+                hashCode = hashBlock(hashCode, block);
+            }
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < mSize; ++i) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+                sb.append(getObject(i));
+            }
+            return sb.append("]").toString();
+        }
+    }
+
+    /**
+     * A column of <code>long</code> values.
+     */
+    public static final class LongColumn extends Column<long[]> {
+        private static final long[] ZEROS = new long[BLOCK_SIZE];
+
+        private LongColumn(TrieArray<long[]> blocks, int size) {
+            super(blocks, size);
+        }
+
+        private static LongColumn zeros(int n) {
+            return new LongColumn(filledBlocks(n, ZEROS, new long[n & MASK]), n);
+        }
+
+        public long get(int row) {
+            checkRow(row);
+            return mBlocks.get(row >>> BLOCK_BITS)[row & MASK];
+        }
+
+        LongColumn update(int row, long value) {
+            checkRow(row);
+            final long[] block = copyBlock(row);
+            block[row & MASK] = value;
+            return new LongColumn(withBlock(row, block), mSize);
+        }
+
+        LongColumn append(long value) {
+            final long[] block = copyLastBlock();
+            block[block.length - 1] = value;
+            return new LongColumn(withLastBlock(block), mSize + 1);
+        }
+
+        /**
+         * @return the sum of all values in the column (which may overflow)
+         */
+        public long sum() {
+            long sum = 0;
+            for (long[] block : mBlocks) {
+                for (long value : block) {
+                    sum += value;
+                }
+            }
+            return sum;
+        }
+
+        public long min() throws NoSuchElementException {
+            if (mSize == 0) {
+                throw new NoSuchElementException("min() called on an empty column");
+            }
+            long min = Long.MAX_VALUE;
+            for (long[] block : mBlocks) {
+                for (long value : block) {
+                    min = Math.min(min, value);
+                }
+            }
+            return min;
+        }
+
+        public long max() throws NoSuchElementException {
+            if (mSize == 0) {
+                throw new NoSuchElementException("max() called on an empty column");
+            }
+            long max = Long.MIN_VALUE;
+            for (long[] block : mBlocks) {
+                for (long value : block) {
+                    max = Math.max(max, value);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @param lower the inclusive lower bound
+         * @param upper the exclusive upper bound
+         * @return the set of rows with a value in [<code>lower</code> <code>upper</code>)
+         */
+        public BitSet filterRange(long lower, long upper) {
+            final BitSet result = new BitSet(mBlocks.size() << BLOCK_BITS);
+            int offset = 0;
+            for (long[] block : mBlocks) {
+                for (int j = 0; j < block.length; ++j) {
+                    if (lower <= block[j] && block[j] < upper) {
+                        result.set(offset + j);
+                    }
+                }
+                offset += BLOCK_SIZE;
+            }
+            return result;
+        }
+
+        private static long toLong(Object value) {
+            if (value == null) {
+                throw new NullPointerException("Cannot add a null value to a LONG column");
+            }
+            if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                throw new IllegalArgumentException("Cannot add a " + value.getClass().getSimpleName() + " to a LONG column");
+            }
+            return ((Number) value).longValue();
+        }
+
+        @Override
+        ColumnType type() {
+            return ColumnType.LONG;
+        }
+        @Override
+        long[] newBlock(int length) {
+            return new long[length];
+        }
+        @Override
+        LongColumn create(TrieArray<long[]> blocks, int size) {
+            return new LongColumn(blocks, size);
+        }
+        @Override
+        Object getObject(int row) {
+            return get(row);
+        }
+        @Override
+        LongColumn updateObject(int row, Object value) {
+            return update(row, toLong(value));
+        }
+        @Override
+        LongColumn appendObject(Object value) {
+            return append(toLong(value));
+        }
+        @Override
+        void writeValues(ObjectOutput out) throws IOException {
+            for (long[] block : mBlocks) {
+                for (long value : block) {
+                    out.writeLong(value);
+                }
+            }
+        }
+        @Override
+        boolean blockEquals(long[] block, Column<long[]> other, long[] otherBlock) {
+            return Arrays.equals(block, otherBlock);
+        }
+        @Override
+        int hashBlock(int hashCode, long[] block) {
+            for (long value : block) {
+                hashCode = 31 * hashCode + (int) (value ^ (value >>> 32));
+            }
+            return hashCode;
+        }
+    }
+
+    /**
+     * A column of <code>double</code> values.
+     */
+    public static final class DoubleColumn extends Column<double[]> {
+        private static final double[] ZEROS = new double[BLOCK_SIZE];
+
+        private DoubleColumn(TrieArray<double[]> blocks, int size) {
+            super(blocks, size);
+        }
+
+        private static DoubleColumn zeros(int n) {
+            return new DoubleColumn(filledBlocks(n, ZEROS, new double[n & MASK]), n);
+        }
+
+        public double get(int row) {
+            checkRow(row);
+            return mBlocks.get(row >>> BLOCK_BITS)[row & MASK];
+        }
+
+        DoubleColumn update(int row, double value) {
+            checkRow(row);
+            final double[] block = copyBlock(row);
+            block[row & MASK] = value;
+            return new DoubleColumn(withBlock(row, block), mSize);
+        }
+
+        DoubleColumn append(double value) {
+            final double[] block = copyLastBlock();
+            block[block.length - 1] = value;
+            return new DoubleColumn(withLastBlock(block), mSize + 1);
+        }
+
+        /**
+         * @return the sum of all values in the column (added in row order)
+         */
+        public double sum() {
+            double sum = 0;
+            for (double[] block : mBlocks) {
+                for (double value : block) {
+                    sum += value;
+                }
+            }
+            return sum;
+        }
+
+        public double min() throws NoSuchElementException {
+            if (mSize == 0) {
+                throw new NoSuchElementException("min() called on an empty column");
+            }
+            double min = Double.POSITIVE_INFINITY;
+            for (double[] block : mBlocks) {
+                for (double value : block) {
+                    min = Math.min(min, value);
+                }
+            }
+            return min;
+        }
+
+        public double max() throws NoSuchElementException {
+            if (mSize == 0) {
+                throw new NoSuchElementException("max() called on an empty column");
+            }
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] block : mBlocks) {
+                for (double value : block) {
+                    max = Math.max(max, value);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @param lower the inclusive lower bound
+         * @param upper the exclusive upper bound
+         * @return the set of rows with a value in [<code>lower</code> <code>upper</code>)
+         */
+        public BitSet filterRange(double lower, double upper) {
+            final BitSet result = new BitSet(mBlocks.size() << BLOCK_BITS);
+            int offset = 0;
+            for (double[] block : mBlocks) {
+                for (int j = 0; j < block.length; ++j) {
+                    if (lower <= block[j] && block[j] < upper) {
+                        result.set(offset + j);
+                    }
+                }
+                offset += BLOCK_SIZE;
+            }
+            return result;
+        }
+
+        private static double toDouble(Object value) {
+            if (value == null) {
+                throw new NullPointerException("Cannot add a null value to a DOUBLE column");
+            }
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException("Cannot add a " + value.getClass().getSimpleName() + " to a DOUBLE column");
+            }
+            return ((Number) value).doubleValue();
+        }
+
+        @Override
+        ColumnType type() {
+            return ColumnType.DOUBLE;
+        }
+        @Override
+        double[] newBlock(int length) {
+            return new double[length];
+        }
+        @Override
+        DoubleColumn create(TrieArray<double[]> blocks, int size) {
+            return new DoubleColumn(blocks, size);
+        }
+        @Override
+        Object getObject(int row) {
+            return get(row);
+        }
+        @Override
+        DoubleColumn updateObject(int row, Object value) {
+            return update(row, toDouble(value));
+        }
+        @Override
+        DoubleColumn appendObject(Object value) {
+            return append(toDouble(value));
+        }
+        @Override
+        void writeValues(ObjectOutput out) throws IOException {
+            for (double[] block : mBlocks) {
+                for (double value : block) {
+                    out.writeDouble(value);
+                }
+            }
+        }
+        @Override
+        boolean blockEquals(double[] block, Column<double[]> other, double[] otherBlock) {
+            return Arrays.equals(block, otherBlock);
+        }
+        @Override
+        int hashBlock(int hashCode, double[] block) {
+            for (double value : block) {
+                final long bits = Double.doubleToLongBits(value);
+                hashCode = 31 * hashCode + (int) (bits ^ (bits >>> 32));
+            }
+            return hashCode;
+        }
+    }
+
+    /**
+     * A column of (nullable) <code>String</code> values, stored as codes into a dictionary of distinct strings.
+     */
+    public static final class StringColumn extends Column<int[]> {
+        private static final int NULL_CODE = -1;
+        private static final int[] NULLS = new int[BLOCK_SIZE];
+        static {
+            Arrays.fill(NULLS, NULL_CODE);
+        }
+
+        // mDictionary: code -> string, mCodes: string -> code
+        private final TrieArray<String> mDictionary;
+        private final HashTrieMap<String, Integer> mCodes;
+
+        private StringColumn(TrieArray<int[]> blocks, int size, TrieArray<String> dictionary, HashTrieMap<String, Integer> codes) {
+            super(blocks, size);
+            mDictionary = dictionary;
+            mCodes = codes;
+        }
+
+        private static StringColumn nulls(int n) {
+            final int[] last = new int[n & MASK];
+            Arrays.fill(last, NULL_CODE);
+            return new StringColumn(filledBlocks(n, NULLS, last), n, TrieArray.<String> empty(), HashTrieMap.<String, Integer> empty());
+        }
+
+        public String get(int row) {
+            checkRow(row);
+            return decode(mBlocks.get(row >>> BLOCK_BITS)[row & MASK]);
+        }
+
+        private String decode(int code) {
+            return code == NULL_CODE ? null : mDictionary.get(code);
+        }
+
+        /**
+         * Find the code for <code>value</code>, adding it to the dictionary if needed.
+         * @param block the block to write the code into
+         */
+        private StringColumn withValue(TrieArray<int[]> blocks, int size, int[] block, int index, String value) {
+            if (value == null) {
+                block[index] = NULL_CODE;
+                return new StringColumn(blocks, size, mDictionary, mCodes);
+            }
+            final Integer code = mCodes.get(value);
+            if (code != null) {
+                block[index] = code;
+                return new StringColumn(blocks, size, mDictionary, mCodes);
+            } else {
+                block[index] = mDictionary.size();
+                return new StringColumn(blocks, size, mDictionary.append(value), mCodes.with(value, mDictionary.size()));
+            }
+        }
+
+        StringColumn update(int row, String value) {
+            checkRow(row);
+            final int[] block = copyBlock(row);
+            return withValue(withBlock(row, block), mSize, block, row & MASK, value);
+        }
+
+        StringColumn append(String value) {
+            final int[] block = copyLastBlock();
+            return withValue(withLastBlock(block), mSize + 1, block, block.length - 1, value);
+        }
+
+        /**
+         * @return the number of distinct (non-null) strings in the dictionary of this column
+         * (which may include strings that are no longer in the column)
+         */
+        public int dictionarySize() {
+            return mDictionary.size();
+        }
+
+        /**
+         * @param value the value to search for (which may be null)
+         * @return the set of rows with a value equal to <code>value</code>
+         */
+        public BitSet filterEquals(String value) {
+            final Integer code = value == null ? Integer.valueOf(NULL_CODE) : mCodes.get(value);
+            if (code == null) {
+                return new BitSet();
+            }
+            final int target = code;
+            final BitSet result = new BitSet(mBlocks.size() << BLOCK_BITS);
+            int offset = 0;
+            for (int[] block : mBlocks) {
+                for (int j = 0; j < block.length; ++j) {
+                    if (block[j] == target) {
+                        result.set(offset + j);
+                    }
+                }
+                offset += BLOCK_SIZE;
+            }
+            return result;
+        }
+
+        private static String toString(Object value) {
+            if (value != null && !(value instanceof String)) {
+                throw new IllegalArgumentException("Cannot add a " + value.getClass().getSimpleName() + " to a STRING column");
+            }
+            return (String) value;
+        }
+
+        @Override
+        ColumnType type() {
+            return ColumnType.STRING;
+        }
+        @Override
+        int[] newBlock(int length) {
+            return new int[length];
+        }
+        @Override
+        StringColumn create(TrieArray<int[]> blocks, int size) {
+            return new StringColumn(blocks, size, mDictionary, mCodes);
+        }
+        @Override
+        Object getObject(int row) {
+            return get(row);
+        }
+        @Override
+        StringColumn updateObject(int row, Object value) {
+            return update(row, toString(value));
+        }
+        @Override
+        StringColumn appendObject(Object value) {
+            return append(toString(value));
+        }
+        @Override
+        void writeValues(ObjectOutput out) throws IOException {
+            for (int[] block : mBlocks) {
+                for (int code : block) {
+                    out.writeObject(decode(code));
+                }
+            }
+        }
+        @Override
+        boolean blockEquals(int[] block, Column<int[]> other, int[] otherBlock) {
+            final StringColumn otherColumn = (StringColumn) other;
+            for (int j = 0; j < block.length; ++j) {
+                final String value = decode(block[j]);
+                final String otherValue = otherColumn.decode(otherBlock[j]);
+                if (!(value == null ? otherValue == null : value.equals(otherValue))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        @Override
+        int hashBlock(int hashCode, int[] block) {
+            for (int code : block) {
+                hashCode = 31 * hashCode + (code == NULL_CODE ? 0 : mDictionary.get(code).hashCode());
+            }
+            return hashCode;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private LinkedHashTrieMap<String, Column<?>> mColumns;
+    private int mRows;
+
+    private ColumnTable(LinkedHashTrieMap<String, Column<?>> columns, int rows) {
+        mColumns = columns;
+        mRows = rows;
+    }
+
+    // *** Factories ***
+
+    public ColumnTable() {
+        this(LinkedHashTrieMap.<String, Column<?>> empty(), 0);
+    }
+    public ColumnTable(SharedTable table) {
+        ColumnTable t;
+        if (table instanceof ColumnTable) {
+            t = (ColumnTable) table;
+        } else {
+            t = empty();
+            for (String column : table.columnNames()) {
+                t = t.withColumn(column, table.columnType(column));
+            }
+            final List<String> names = table.columnNames();
+            final Object[] row = new Object[names.size()];
+            for (int i = 0; i < table.rowCount(); ++i) {
+                for (int j = 0; j < row.length; ++j) {
+                    row[j] = table.get(i, names.get(j));
+                }
+                t = t.appendRow(row);
+            }
+        }
+        mColumns = t.mColumns;
+        mRows = t.mRows;
+    }
+
+    public static final ColumnTable EMPTY = new ColumnTable();
+    public static ColumnTable empty() {
+        return EMPTY;
+    }
+    /**
+     * Create an empty table with the given columns.
+     * <p>For example:</p>
+     * <code>ColumnTable.of("name", ColumnType.STRING, "price", ColumnType.DOUBLE);</code>
+     * @param column the name of the first column
+     * @param type the type of the first column
+     * @param columnTypes an even number of column names (type String), and types (type ColumnType)
+     * @return an empty table with the given columns
+     */
+    public static ColumnTable of(String column, ColumnType type, Object... columnTypes) {
+        if (columnTypes.length % 2 != 0) {
+            throw new IllegalArgumentException("ColumnTable.of() called with an odd number of columnTypes (cannot partition them into pairs)");
+        }
+        ColumnTable t = empty().withColumn(column, type);
+        for (int i = 0; i < columnTypes.length; i += 2) {
+            t = t.withColumn((String) columnTypes[i], (ColumnType) columnTypes[i + 1]);
+        }
+        return t;
+    }
+
+    // *** Columns ***
+
+    private Column<?> column(String column) {
+        final Column<?> c = mColumns.get(column);
+        if (c == null) {
+            throw new IllegalArgumentException("No column named '" + column + "' in this ColumnTable");
+        }
+        return c;
+    }
+
+    private Column<?> column(String column, ColumnType type) {
+        final Column<?> c = column(column);
+        if (c.type() != type) {
+            throw new IllegalArgumentException("Column '" + column + "' is a " + c.type() + " column, not " + type);
+        }
+        return c;
+    }
+
+    /**
+     * @param column the name of a {@link com.github.douglasorr.shared.SharedTable.ColumnType#LONG} column
+     * @return the column, for typed access &amp; scans
+     */
+    public LongColumn longColumn(String column) throws IllegalArgumentException {
+        return (LongColumn) column(column, ColumnType.LONG);
+    }
+
+    /**
+     * @param column the name of a {@link com.github.douglasorr.shared.SharedTable.ColumnType#DOUBLE} column
+     * @return the column, for typed access &amp; scans
+     */
+    public DoubleColumn doubleColumn(String column) throws IllegalArgumentException {
+        return (DoubleColumn) column(column, ColumnType.DOUBLE);
+    }
+
+    /**
+     * @param column the name of a {@link com.github.douglasorr.shared.SharedTable.ColumnType#STRING} column
+     * @return the column, for typed access &amp; scans
+     */
+    public StringColumn stringColumn(String column) throws IllegalArgumentException {
+        return (StringColumn) column(column, ColumnType.STRING);
+    }
+
+    private static Column<?> defaultColumn(ColumnType type, int rows) {
+        switch (type) {
+            case LONG: return LongColumn.zeros(rows);
+            case DOUBLE: return DoubleColumn.zeros(rows);
+            case STRING: return StringColumn.nulls(rows);
+            default: throw new IllegalArgumentException("Unknown column type " + type);
+        }
+    }
+
+    // *** SharedTable ***
+
+    @Override
+    public int rowCount() {
+        return mRows;
+    }
+
+    @Override
+    public List<String> columnNames() {
+        return Collections.unmodifiableList(new ArrayList<String>(mColumns.keySet()));
+    }
+
+    @Override
+    public ColumnType columnType(String column) throws IllegalArgumentException {
+        return column(column).type();
+    }
+
+    @Override
+    public Object get(int row, String column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return column(column).getObject(row);
+    }
+
+    @Override
+    public ColumnTable withColumn(String column, ColumnType type) throws IllegalArgumentException {
+        if (column == null) {
+            throw new NullPointerException("Cannot add a null column to a ColumnTable");
+        }
+        if (mColumns.containsKey(column)) {
+            throw new IllegalArgumentException("ColumnTable already has a column named '" + column + "'");
+        }
+        return new ColumnTable(mColumns.with(column, defaultColumn(type, mRows)), mRows);
+    }
+
+    @Override
+    public ColumnTable appendRow(Object... values) throws IllegalArgumentException {
+        if (values.length != mColumns.size()) {
+            throw new IllegalArgumentException(String.format("appendRow() called with %d values, for a table with %d columns",
+                    values.length, mColumns.size()));
+        }
+        LinkedHashTrieMap<String, Column<?>> columns = mColumns;
+        int i = 0;
+        for (Map.Entry<String, Column<?>> entry : mColumns.entrySet()) {
+            columns = columns.with(entry.getKey(), entry.getValue().appendObject(values[i++]));
+        }
+        return new ColumnTable(columns, mRows + 1);
+    }
+
+    @Override
+    public ColumnTable updateCell(int row, String column, Object value) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return new ColumnTable(mColumns.with(column, column(column).updateObject(row, value)), mRows);
+    }
+
+    @Override
+    public ColumnTable takeRows(int n) throws IndexOutOfBoundsException {
+        if (!(0 <= n && n <= mRows)) {
+            throw new IndexOutOfBoundsException(String.format("Trying to takeRows(%d) from a %d-row table", n, mRows));
+        }
+        if (n == mRows) {
+            return this;
+        }
+        LinkedHashTrieMap<String, Column<?>> columns = mColumns;
+        for (Map.Entry<String, Column<?>> entry : mColumns.entrySet()) {
+            columns = columns.with(entry.getKey(), entry.getValue().take(n));
+        }
+        return new ColumnTable(columns, n);
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof ColumnTable
+                && ((ColumnTable) o).mRows == mRows
+                && new ArrayList<String>(mColumns.keySet()).equals(new ArrayList<String>(((ColumnTable) o).mColumns.keySet()))
+                && mColumns.equals(((ColumnTable) o).mColumns));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mColumns.hashCode() + mRows;
+    }
+
+    @Override
+    public String toString() {
+        return mColumns.toString();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mRows);
+        out.writeInt(mColumns.size());
+        for (Map.Entry<String, Column<?>> entry : mColumns.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().type().ordinal());
+        }
+        for (Column<?> column : mColumns.values()) {
+            column.writeValues(out);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int rows = in.readInt();
+        final int ncolumns = in.readInt();
+        final String[] names = new String[ncolumns];
+        final ColumnType[] types = new ColumnType[ncolumns];
+        for (int i = 0; i < ncolumns; ++i) {
+            names[i] = in.readUTF();
+            types[i] = ColumnType.values()[in.readInt()];
+        }
+        LinkedHashTrieMap<String, Column<?>> columns = LinkedHashTrieMap.empty();
+        for (int i = 0; i < ncolumns; ++i) {
+            Column<?> column = defaultColumn(types[i], 0);
+            for (int row = 0; row < rows; ++row) {
+                switch (types[i]) {
+                    case LONG: column = ((LongColumn) column).append(in.readLong()); break;
+                    case DOUBLE: column = ((DoubleColumn) column).append(in.readDouble()); break;
+                    case STRING: column = ((StringColumn) column).append((String) in.readObject()); break;
+                }
+            }
+            columns = columns.with(names[i], column);
+        }
+        mColumns = columns;
+        mRows = rows;
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared bidirectional map, as a pair of
+ * {@link com.github.douglasorr.shared.HashTrieMap}s (key-&gt;value, and value-&gt;key).
+ * <p>Lookup in either direction, {@link #with(Object, Object)} and {@link #without(Object)}
+ * all take O(log(n)) time, and {@link #inverse()} takes O(1) time (the inverse shares both maps).</p>
+ */
+public class HashTrieBiMap<K,V> extends AbstractMap<K,V> implements SharedBiMap<K,V>, Externalizable {
+    private static final long serialVersionUID = 2603937151478429017L;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private HashTrieMap<K,V> mForward;
+    private HashTrieMap<V,K> mBackward;
+    // cached implementations
+    private transient HashTrieBiMap<V,K> mInverse = null;
+
+    private HashTrieBiMap(HashTrieMap<K,V> forward, HashTrieMap<V,K> backward) {
+        mForward = forward;
+        mBackward = backward;
+    }
+
+    // *** Factories ***
+
+    public HashTrieBiMap() {
+        this(HashTrieMap.<K,V> empty(), HashTrieMap.<V,K> empty());
+    }
+    public HashTrieBiMap(Map<? extends K, ? extends V> m) {
+        HashTrieBiMap<K,V> map;
+        if (m instanceof HashTrieBiMap) {
+            map = (HashTrieBiMap<K,V>) m;
+        } else {
+            map = empty();
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                map = map.with(entry.getKey(), entry.getValue());
+            }
+        }
+        mForward = map.mForward;
+        mBackward = map.mBackward;
+    }
+    public static final HashTrieBiMap EMPTY = new HashTrieBiMap();
+    public static <K,V> HashTrieBiMap<K,V> empty() {
+        return EMPTY;
+    }
+    public static <K,V> HashTrieBiMap<K,V> singleton(K key, V value) {
+        return HashTrieBiMap.<K,V> empty().with(key, value);
+    }
+    public static <K,V> HashTrieBiMap<K,V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a map containing the given key-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>HashTrieBiMap.of("one", 1, "two", 2, "three", 3);</code>
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type K), and values (type V), in which
+     * later mappings will overwrite earlier ones (but values must be unique)
+     * @return a map containing all of the key-&gt;value mappings
+     * @throws IllegalArgumentException if a value is mapped from more than one key
+     */
+    public static <K,V> HashTrieBiMap<K,V> of(K key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("HashTrieBiMap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        HashTrieBiMap<K,V> m = singleton(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((K) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** AbstractMap ***
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return mForward.entrySet();
+    }
+
+    // overridden for performance
+    @Override
+    public Set<K> keySet() {
+        return mForward.keySet();
+    }
+
+    @Override
+    public Set<V> values() {
+        return mBackward.keySet();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mForward.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return mBackward.containsKey(value);
+    }
+
+    @Override
+    public int size() {
+        return mForward.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        return mForward.get(key);
+    }
+
+    // *** SharedBiMap ***
+
+    @Override
+    public HashTrieBiMap<V,K> inverse() {
+        HashTrieBiMap<V,K> inverse = mInverse;
+        if (inverse == null) {
+            inverse = new HashTrieBiMap<V,K>(mBackward, mForward);
+            inverse.mInverse = this;
+            mInverse = inverse;
+        }
+        return inverse;
+    }
+
+    @Override
+    public HashTrieBiMap<K,V> with(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a HashTrieBiMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a HashTrieBiMap");
+        }
+        final K existingKey = mBackward.get(value);
+        if (existingKey != null) {
+            if (existingKey.equals(key)) {
+                return this; // already mapped
+            }
+            throw new IllegalArgumentException("Cannot add a value to a HashTrieBiMap that is already mapped from a different key"
+                    + " (value: " + value + ", existing key: " + existingKey + ", new key: " + key + ")");
+        }
+        return withUnchecked(key, value);
+    }
+
+    @Override
+    public HashTrieBiMap<K,V> forceWith(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a HashTrieBiMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a HashTrieBiMap");
+        }
+        final K existingKey = mBackward.get(value);
+        if (existingKey == null) {
+            return withUnchecked(key, value);
+        } else if (existingKey.equals(key)) {
+            return this; // already mapped
+        } else {
+            // remove the existing key for this value first
+            return new HashTrieBiMap<K,V>(mForward.without(existingKey), mBackward).withUnchecked(key, value);
+        }
+    }
+
+    /** Add the mapping key-&gt;value, where value is not currently mapped from any key. */
+    private HashTrieBiMap<K,V> withUnchecked(K key, final V value) {
+        final Object[] oldValue = new Object[1];
+        final HashTrieMap<K,V> newForward = mForward.compute(key, new HashTrieMap.Update<V>() {
+            @Override
+            public V apply(V current) {
+                oldValue[0] = current;
+                return value;
+            }
+        });
+        final HashTrieMap<V,K> backward = oldValue[0] == null ? mBackward : mBackward.without((V) oldValue[0]);
+        return new HashTrieBiMap<K,V>(newForward, backward.with(value, key));
+    }
+
+    @Override
+    public HashTrieBiMap<K,V> without(K key) {
+        if (key == null) {
+            return this; // never present
+        }
+        final Object[] oldValue = new Object[1];
+        final HashTrieMap<K,V> newForward = mForward.compute(key, new HashTrieMap.Update<V>() {
+            @Override
+            public V apply(V current) {
+                oldValue[0] = current;
+                return null;
+            }
+        });
+        if (newForward == mForward) {
+            return this;
+        }
+        return newForward.isEmpty()
+                ? HashTrieBiMap.<K,V> empty()
+                : new HashTrieBiMap<K,V>(newForward, mBackward.without((V) oldValue[0]));
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (Map.Entry<K,V> entry : this.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        HashTrieBiMap<K,V> m = HashTrieBiMap.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((K) in.readObject(), (V) in.readObject());
+        }
+        mForward = m.mForward;
+        mBackward = m.mBackward;
+    }
+}
@@ -0,0 +1,647 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of {@link com.github.douglasorr.shared.SharedGraph}, based on a pair of
+ * {@link com.github.douglasorr.shared.HashTrieMap}s from each node to a
+ * {@link com.github.douglasorr.shared.HashTrieSet} of its successors (&amp; predecessors).
+ * <p>{@link #withEdge(Object, Object)} &amp; {@link #withoutEdge(Object, Object)} update each adjacency
+ * map with a single search of the trie, and {@link #withoutNode(Object)} updates only the adjacency
+ * sets of the node's neighbours.</p>
+ * <p>The topological order (see {@link #topologicalOrder()}, {@link #isAcyclic()} &amp;
+ * {@link #isReachable(Object, Object)}) is computed the first time it is needed, then maintained
+ * incrementally by every graph derived from this one - adding an edge only reorders the nodes
+ * whose order lies between its source &amp; target (the Pearce-Kelly algorithm).</p>
+ * <p>{@link #breadthFirst(Object)} &amp; {@link #depthFirst(Object)} do not allocate for each node
+ * visited (the pending nodes &amp; visited set are stored in flat arrays, which grow as needed).</p>
+ */
+public class HashTrieGraph<N> implements SharedGraph<N>, Externalizable {
+    private static final long serialVersionUID = -3315081622931576204L;
+    private static final Object CYCLIC = new Object();
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private HashTrieMap<N, HashTrieSet<N>> mSuccessors;
+    private HashTrieMap<N, HashTrieSet<N>> mPredecessors;
+    private int mEdgeCount;
+
+    // cached topological order - null (unknown), CYCLIC, or an Order
+    private transient Object mOrder;
+
+    /**
+     * A topological order, which assigns a distinct rank to every node, such that the source of every edge
+     * has a lower rank than its target.
+     */
+    private static final class Order<N> {
+        final HashTrieMap<N, Integer> ranks;
+        // bounds on the ranks in use (so that new nodes can be given the lowest or highest rank)
+        final int lowest;
+        final int highest;
+
+        Order(HashTrieMap<N, Integer> ranks, int lowest, int highest) {
+            this.ranks = ranks;
+            this.lowest = lowest;
+            this.highest = highest;
+        }
+    }
+
+    private HashTrieGraph(HashTrieMap<N, HashTrieSet<N>> successors, HashTrieMap<N, HashTrieSet<N>> predecessors,
+                          int edgeCount, Object order) {
+        mSuccessors = successors;
+        mPredecessors = predecessors;
+        mEdgeCount = edgeCount;
+        mOrder = order;
+    }
+
+    // *** Factories ***
+
+    public HashTrieGraph() {
+        mSuccessors = HashTrieMap.EMPTY;
+        mPredecessors = HashTrieMap.EMPTY;
+        mEdgeCount = 0;
+    }
+    public HashTrieGraph(SharedGraph<N> graph) {
+        if (graph instanceof HashTrieGraph) {
+            final HashTrieGraph<N> g = (HashTrieGraph<N>) graph;
+            mSuccessors = g.mSuccessors;
+            mPredecessors = g.mPredecessors;
+            mEdgeCount = g.mEdgeCount;
+            mOrder = g.mOrder;
+        } else {
+            HashTrieGraph<N> g = empty();
+            for (N node : graph.nodes()) {
+                g = g.withNode(node);
+            }
+            for (N node : graph.nodes()) {
+                for (N successor : graph.successors(node)) {
+                    g = g.withEdge(node, successor);
+                }
+            }
+            mSuccessors = g.mSuccessors;
+            mPredecessors = g.mPredecessors;
+            mEdgeCount = g.mEdgeCount;
+        }
+    }
+
+    public static final HashTrieGraph EMPTY = new HashTrieGraph();
+    public static <N> HashTrieGraph<N> empty() {
+        return EMPTY;
+    }
+    /**
+     * Create a graph from a list of edges.
+     * <p>For example:</p>
+     * <code>HashTrieGraph.of("a", "b", "b", "c");</code>
+     * @param from the source of the first edge
+     * @param to the target of the first edge
+     * @param edges an even number of nodes (type N), alternating between the source &amp; target of each edge
+     * @return a graph containing the given edges (and no other nodes)
+     */
+    public static <N> HashTrieGraph<N> of(N from, N to, Object... edges) {
+        if (edges.length % 2 != 0) {
+            throw new IllegalArgumentException("HashTrieGraph.of() called with an odd number of edges (cannot partition them into pairs)");
+        }
+        HashTrieGraph<N> g = HashTrieGraph.<N> empty().withEdge(from, to);
+        for (int i = 0; i < edges.length; i += 2) {
+            g = g.withEdge((N) edges[i], (N) edges[i + 1]);
+        }
+        return g;
+    }
+
+    // *** Adjacency helpers ***
+
+    private static <N> HashTrieMap<N, HashTrieSet<N>> addTo(HashTrieMap<N, HashTrieSet<N>> adjacency, N node, final N neighbour) {
+        return adjacency.compute(node, new HashTrieMap.Update<HashTrieSet<N>>() {
+            @Override
+            public HashTrieSet<N> apply(HashTrieSet<N> neighbours) {
+                if (neighbours == null) {
+                    return HashTrieSet.singleton(neighbour);
+                }
+                return neighbours.contains(neighbour) ? neighbours : neighbours.with(neighbour);
+            }
+        });
+    }
+
+    private static <N> HashTrieMap<N, HashTrieSet<N>> ensureNode(HashTrieMap<N, HashTrieSet<N>> adjacency, N node) {
+        return adjacency.compute(node, new HashTrieMap.Update<HashTrieSet<N>>() {
+            @Override
+            public HashTrieSet<N> apply(HashTrieSet<N> neighbours) {
+                return neighbours == null ? HashTrieSet.<N> empty() : neighbours;
+            }
+        });
+    }
+
+    private static <N> HashTrieMap<N, HashTrieSet<N>> removeFrom(HashTrieMap<N, HashTrieSet<N>> adjacency, N node, final N neighbour) {
+        return adjacency.compute(node, new HashTrieMap.Update<HashTrieSet<N>>() {
+            @Override
+            public HashTrieSet<N> apply(HashTrieSet<N> neighbours) {
+                return neighbours == null ? null : neighbours.without(neighbour);
+            }
+        });
+    }
+
+    // *** SharedGraph ***
+
+    @Override
+    public Set<N> nodes() {
+        return mSuccessors.keySet();
+    }
+
+    @Override
+    public int edgeCount() {
+        return mEdgeCount;
+    }
+
+    @Override
+    public boolean containsNode(Object node) {
+        return mSuccessors.containsKey(node);
+    }
+
+    @Override
+    public boolean containsEdge(Object from, Object to) {
+        final HashTrieSet<N> successors = mSuccessors.get(from);
+        return successors != null && successors.contains(to);
+    }
+
+    @Override
+    public HashTrieSet<N> successors(N node) {
+        final HashTrieSet<N> successors = mSuccessors.get(node);
+        return successors == null ? HashTrieSet.<N> empty() : successors;
+    }
+
+    @Override
+    public HashTrieSet<N> predecessors(N node) {
+        final HashTrieSet<N> predecessors = mPredecessors.get(node);
+        return predecessors == null ? HashTrieSet.<N> empty() : predecessors;
+    }
+
+    @Override
+    public HashTrieGraph<N> withNode(N node) {
+        if (node == null) {
+            throw new NullPointerException("Cannot add a null node to a HashTrieGraph");
+        }
+        if (containsNode(node)) {
+            return this;
+        }
+        Object order = mOrder;
+        if (order instanceof Order) {
+            final Order<N> o = (Order<N>) order;
+            order = o.highest == Integer.MAX_VALUE ? null
+                    : new Order<N>(o.ranks.with(node, o.highest + 1), o.lowest, o.highest + 1);
+        }
+        return new HashTrieGraph<N>(mSuccessors.with(node, HashTrieSet.<N> empty()),
+                mPredecessors.with(node, HashTrieSet.<N> empty()),
+                mEdgeCount, order);
+    }
+
+    @Override
+    public HashTrieGraph<N> withEdge(N from, N to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Cannot add a null node to a HashTrieGraph");
+        }
+        if (containsEdge(from, to)) {
+            return this;
+        }
+        final HashTrieMap<N, HashTrieSet<N>> successors = ensureNode(addTo(mSuccessors, from, to), to);
+        final HashTrieMap<N, HashTrieSet<N>> predecessors = ensureNode(addTo(mPredecessors, to, from), from);
+        final Object order = mOrder instanceof Order
+                ? orderWithEdge((Order<N>) mOrder, successors, predecessors, from, to)
+                : mOrder;
+        return new HashTrieGraph<N>(successors, predecessors, mEdgeCount + 1, order);
+    }
+
+    @Override
+    public HashTrieGraph<N> withoutEdge(N from, N to) {
+        if (!containsEdge(from, to)) {
+            return this;
+        }
+        // removing an edge keeps a topological order valid, but may break a cycle
+        return new HashTrieGraph<N>(removeFrom(mSuccessors, from, to), removeFrom(mPredecessors, to, from),
+                mEdgeCount - 1, mOrder == CYCLIC ? null : mOrder);
+    }
+
+    @Override
+    public HashTrieGraph<N> withoutNode(N node) {
+        final HashTrieSet<N> successors = mSuccessors.get(node);
+        if (successors == null) {
+            return this;
+        }
+        final HashTrieSet<N> predecessors = mPredecessors.get(node);
+        HashTrieMap<N, HashTrieSet<N>> newSuccessors = mSuccessors.without(node);
+        HashTrieMap<N, HashTrieSet<N>> newPredecessors = mPredecessors.without(node);
+        for (N successor : successors) {
+            if (!successor.equals(node)) {
+                newPredecessors = removeFrom(newPredecessors, successor, node);
+            }
+        }
+        for (N predecessor : predecessors) {
+            if (!predecessor.equals(node)) {
+                newSuccessors = removeFrom(newSuccessors, predecessor, node);
+            }
+        }
+        final int removed = successors.size() + predecessors.size() - (successors.contains(node) ? 1 : 0);
+        Object order = null;
+        if (mOrder instanceof Order) {
+            final Order<N> o = (Order<N>) mOrder;
+            order = new Order<N>(o.ranks.without(node), o.lowest, o.highest);
+        }
+        return new HashTrieGraph<N>(newSuccessors, newPredecessors, mEdgeCount - removed, order);
+    }
+
+    @Override
+    public Iterable<N> breadthFirst(final N start) {
+        return new Iterable<N>() {
+            @Override
+            public Iterator<N> iterator() {
+                return new Traversal<N>(start, true, mSuccessors, null, 0, 0);
+            }
+        };
+    }
+
+    @Override
+    public Iterable<N> depthFirst(final N start) {
+        return new Iterable<N>() {
+            @Override
+            public Iterator<N> iterator() {
+                return new Traversal<N>(start, false, mSuccessors, null, 0, 0);
+            }
+        };
+    }
+
+    @Override
+    public boolean isReachable(N from, N to) {
+        if (!containsNode(from) || !containsNode(to)) {
+            return false;
+        }
+        if (from.equals(to)) {
+            return true;
+        }
+        final Object order = order();
+        final Traversal<N> traversal;
+        if (order instanceof Order) {
+            // every node on a path from -> to has a rank between rank(from) and rank(to)
+            final HashTrieMap<N, Integer> ranks = ((Order<N>) order).ranks;
+            final int fromRank = ranks.get(from);
+            final int toRank = ranks.get(to);
+            if (toRank < fromRank) {
+                return false;
+            }
+            traversal = new Traversal<N>(from, false, mSuccessors, ranks, fromRank, toRank);
+        } else {
+            traversal = new Traversal<N>(from, false, mSuccessors, null, 0, 0);
+        }
+        while (traversal.hasNext()) {
+            if (traversal.next().equals(to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isAcyclic() {
+        return order() instanceof Order;
+    }
+
+    @Override
+    public TrieArray<N> topologicalOrder() throws IllegalStateException {
+        final Object order = order();
+        if (!(order instanceof Order)) {
+            throw new IllegalStateException("topologicalOrder() called on a HashTrieGraph that contains a cycle");
+        }
+        final HashTrieMap<N, Integer> ranks = ((Order<N>) order).ranks;
+        final Object[] nodes = new Object[mSuccessors.size()];
+        mSuccessors.copyKeys(nodes, 0);
+        Arrays.sort(nodes, new Comparator<Object>() {
+            @Override
+            public int compare(Object a, Object b) {
+                return ranks.get(a).compareTo(ranks.get(b));
+            }
+        });
+        return new TrieArray<N>((List<N>) (List) Arrays.asList(nodes));
+    }
+
+    // *** Topological order ***
+
+    /**
+     * @return the topological order of this graph (computing it, if needed), or CYCLIC
+     */
+    private Object order() {
+        if (mOrder == null) {
+            mOrder = computeOrder();
+        }
+        return mOrder;
+    }
+
+    /**
+     * Compute a topological order from scratch (Kahn's algorithm).
+     */
+    private Object computeOrder() {
+        final Object[] ready = new Object[mSuccessors.size()];
+        int tail = 0;
+        final Map<N, Integer> remainingPredecessors = new HashMap<N, Integer>();
+        for (Map.Entry<N, HashTrieSet<N>> entry : mPredecessors.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                ready[tail++] = entry.getKey();
+            } else {
+                remainingPredecessors.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        HashTrieMap<N, Integer> ranks = HashTrieMap.empty();
+        int head = 0;
+        for (; head < tail; ++head) {
+            final N node = (N) ready[head];
+            ranks = ranks.with(node, head);
+            for (N successor : mSuccessors.get(node)) {
+                final int remaining = remainingPredecessors.get(successor) - 1;
+                if (remaining == 0) {
+                    remainingPredecessors.remove(successor);
+                    ready[tail++] = successor;
+                } else {
+                    remainingPredecessors.put(successor, remaining);
+                }
+            }
+        }
+        // any nodes that were never ready are on (or after) a cycle
+        return head == ready.length ? new Order<N>(ranks, 0, head - 1) : CYCLIC;
+    }
+
+    /**
+     * Update a topological order of this graph, for the graph with an additional edge.
+     * @return the new order, CYCLIC, or null (unknown)
+     */
+    private static <N> Object orderWithEdge(Order<N> order, HashTrieMap<N, HashTrieSet<N>> successors,
+                                            HashTrieMap<N, HashTrieSet<N>> predecessors, N from, N to) {
+        if (from.equals(to)) {
+            return CYCLIC;
+        }
+        HashTrieMap<N, Integer> ranks = order.ranks;
+        int lowest = order.lowest;
+        int highest = order.highest;
+        // a new source node can go first, and a new target node can go last
+        Integer fromRank = ranks.get(from);
+        if (fromRank == null) {
+            if (lowest == Integer.MIN_VALUE) {
+                return null;
+            }
+            fromRank = --lowest;
+            ranks = ranks.with(from, fromRank);
+        }
+        Integer toRank = ranks.get(to);
+        if (toRank == null) {
+            if (highest == Integer.MAX_VALUE) {
+                return null;
+            }
+            toRank = ++highest;
+            ranks = ranks.with(to, toRank);
+        }
+        if (fromRank < toRank) {
+            return new Order<N>(ranks, lowest, highest);
+        }
+
+        // only the nodes ranked in [toRank, fromRank] can be affected - the ones reachable from 'to'
+        // must be moved after the ones that reach 'from', reusing the same ranks
+        final List<N> forward = new ArrayList<N>();
+        final Traversal<N> forwardTraversal = new Traversal<N>(to, false, successors, ranks, toRank, fromRank);
+        while (forwardTraversal.hasNext()) {
+            final N node = forwardTraversal.next();
+            if (node.equals(from)) {
+                return CYCLIC;
+            }
+            forward.add(node);
+        }
+        final List<N> backward = new ArrayList<N>();
+        final Traversal<N> backwardTraversal = new Traversal<N>(from, false, predecessors, ranks, toRank, fromRank);
+        while (backwardTraversal.hasNext()) {
+            backward.add(backwardTraversal.next());
+        }
+
+        final HashTrieMap<N, Integer> oldRanks = ranks;
+        final Comparator<N> byRank = new Comparator<N>() {
+            @Override
+            public int compare(N a, N b) {
+                return oldRanks.get(a).compareTo(oldRanks.get(b));
+            }
+        };
+        Collections.sort(backward, byRank);
+        Collections.sort(forward, byRank);
+        final int[] pool = new int[backward.size() + forward.size()];
+        int i = 0;
+        for (N node : backward) {
+            pool[i++] = oldRanks.get(node);
+        }
+        for (N node : forward) {
+            pool[i++] = oldRanks.get(node);
+        }
+        Arrays.sort(pool);
+        i = 0;
+        for (N node : backward) {
+            ranks = ranks.with(node, pool[i++]);
+        }
+        for (N node : forward) {
+            ranks = ranks.with(node, pool[i++]);
+        }
+        return new Order<N>(ranks, lowest, highest);
+    }
+
+    // *** Traversal ***
+
+    /**
+     * A breadth-first or depth-first traversal, which stores the pending nodes in a single array
+     * (a queue or a stack), and the visited nodes in a {@link VisitedSet}.
+     * <p>Optionally, the traversal is limited to nodes with a rank (in a topological order)
+     * in the range <code>[minRank, maxRank]</code>.</p>
+     */
+    private static final class Traversal<N> implements Iterator<N> {
+        private final HashTrieMap<N, HashTrieSet<N>> mAdjacency;
+        private final boolean mBreadthFirst;
+        private final HashTrieMap<N, Integer> mRanks;
+        private final int mMinRank;
+        private final int mMaxRank;
+        private final VisitedSet mVisited = new VisitedSet();
+        // a queue [mHead, mTail) for breadth-first, or a stack [0, mTail) for depth-first
+        private Object[] mPending = new Object[16];
+        private int mHead = 0;
+        private int mTail = 0;
+
+        Traversal(N start, boolean breadthFirst, HashTrieMap<N, HashTrieSet<N>> adjacency,
+                  HashTrieMap<N, Integer> ranks, int minRank, int maxRank) {
+            mAdjacency = adjacency;
+            mBreadthFirst = breadthFirst;
+            mRanks = ranks;
+            mMinRank = minRank;
+            mMaxRank = maxRank;
+            if (adjacency.containsKey(start)) {
+                mPending[mTail++] = start;
+                if (breadthFirst) {
+                    mVisited.add(start);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!mBreadthFirst) {
+                // depth-first may push a node more than once - skip those already visited
+                while (mTail != 0 && mVisited.contains(mPending[mTail - 1])) {
+                    mPending[--mTail] = null;
+                }
+            }
+            return mHead != mTail;
+        }
+
+        @Override
+        public N next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final N node;
+            if (mBreadthFirst) {
+                node = (N) mPending[mHead];
+                mPending[mHead++] = null;
+            } else {
+                node = (N) mPending[--mTail];
+                mPending[mTail] = null;
+                mVisited.add(node);
+            }
+            final HashTrieSet<N> neighbours = mAdjacency.get(node);
+            reserve(neighbours.size());
+            // copy all neighbours to the end of the queue/stack, then filter them in place
+            final int end = mTail + neighbours.copyTo(mPending, mTail);
+            int write = mTail;
+            for (int read = mTail; read < end; ++read) {
+                final Object neighbour = mPending[read];
+                mPending[read] = null;
+                if (inRange(neighbour) && (mBreadthFirst ? mVisited.add(neighbour) : !mVisited.contains(neighbour))) {
+                    mPending[write++] = neighbour;
+                }
+            }
+            mTail = write;
+            return node;
+        }
+
+        private boolean inRange(Object node) {
+            if (mRanks == null) {
+                return true;
+            }
+            final int rank = mRanks.get(node);
+            return mMinRank <= rank && rank <= mMaxRank;
+        }
+
+        private void reserve(int count) {
+            if (mPending.length < mTail + count) {
+                if (mHead != 0) {
+                    System.arraycopy(mPending, mHead, mPending, 0, mTail - mHead);
+                    Arrays.fill(mPending, mTail - mHead, mTail, null);
+                    mTail -= mHead;
+                    mHead = 0;
+                }
+                if (mPending.length < mTail + count) {
+                    mPending = Arrays.copyOf(mPending, Math.max(2 * mPending.length, mTail + count));
+                }
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedGraph using its iterator)");
+        }
+    }
+
+    /**
+     * A minimal open-addressing (linear probing) hash set, for the visited nodes of a {@link Traversal}.
+     */
+    private static final class VisitedSet {
+        private Object[] mTable = new Object[16];
+        private int mSize = 0;
+
+        private static int slot(Object[] table, Object value) {
+            final int mask = table.length - 1;
+            final int hash = value.hashCode();
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (table[index] != null && !table[index].equals(value)) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        boolean contains(Object value) {
+            return mTable[slot(mTable, value)] != null;
+        }
+
+        /**
+         * @return true if the value was added, false if it was already present
+         */
+        boolean add(Object value) {
+            final int index = slot(mTable, value);
+            if (mTable[index] != null) {
+                return false;
+            }
+            mTable[index] = value;
+            if (mTable.length < 2 * ++mSize) {
+                final Object[] oldTable = mTable;
+                mTable = new Object[2 * oldTable.length];
+                for (Object v : oldTable) {
+                    if (v != null) {
+                        mTable[slot(mTable, v)] = v;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof HashTrieGraph
+                && mSuccessors.equals(((HashTrieGraph) o).mSuccessors));
+    }
+
+    @Override
+    public int hashCode() {
+        return mSuccessors.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mSuccessors.toString();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mSuccessors.size());
+        for (N node : mSuccessors.keySet()) {
+            out.writeObject(node);
+        }
+        out.writeInt(mEdgeCount);
+        for (Map.Entry<N, HashTrieSet<N>> entry : mSuccessors.entrySet()) {
+            for (N successor : entry.getValue()) {
+                out.writeObject(entry.getKey());
+                out.writeObject(successor);
+            }
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        HashTrieGraph<N> g = empty();
+        final int nodes = in.readInt();
+        for (int i = 0; i < nodes; ++i) {
+            g = g.withNode((N) in.readObject());
+        }
+        final int edges = in.readInt();
+        for (int i = 0; i < edges; ++i) {
+            g = g.withEdge((N) in.readObject(), (N) in.readObject());
+        }
+        mSuccessors = g.mSuccessors;
+        mPredecessors = g.mPredecessors;
+        mEdgeCount = g.mEdgeCount;
+    }
+}
@@ -15,11 +15,17 @@ import java.util.*;
  * <p>The standard map operations, implemented by {@link #get(Object)},
  * {@link #with(Object, Object)} and {@link #without(Object)} all take
  * O(log(n)) time, and the map itself consumes O(n) memory.</p>
+ * <p>Small maps (of 2 to 8 entries) are not stored as a trie, but as a flat array of keys &amp; values,
+ * which is searched linearly (by hash code) - this is more compact than a trie at these sizes.</p>
  */
 public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>, Externalizable {
     private static final long serialVersionUID = -976712368400781259L;
     private static final int HASH_SHIFT = 5;
     private static final int HASH_MASK = (1 << HASH_SHIFT) - 1;
+    // the largest map that is stored 'flat' (larger maps are stored as a trie)
+    private static final int FLAT_MAX_SIZE = 8;
+    private static final Object[] FLAT_EMPTY = new Object[0];
+    private static final int[] HASHES_EMPTY = new int[0];
 
     // A node in the trie structure, which has a location-defined hash code prefix
     // and contains a list of children which may be nodes, a single entry, or a collision
@@ -27,22 +33,166 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
     // For a chunk 'h' of hash code (which is in the range [0 HASH_MASK]), it is present if
     // hasChild & (1 << h) != 0.
     // The index of the child of this 'h' is popCount(hasChild & ((1 << h) - 1)).
-    private static class Node {
-        // children :: [Node | SimpleMapEntry | SimpleMapEntry[]]
-        public final Object[] children;
+    // Nodes with 1 or 2 children (most of the nodes in the sparse lower levels of a large trie) hold
+    // their children in fields, saving the header of a separate children array (& an indirection in get).
+    // Nodes are created by a Nodes factory (so that AggregatingHashTrieMap can fill in the aggregate).
+    private static final class Node {
         public final int hasChild;
-        private Node(Object[] children, int hasChild) {
-            this.children = children;
+        // if there are 1 or 2 children, they are c0 & c1, otherwise c0 is an Object[] of the children
+        // (& c1 is null, or the aggregate of the values beneath the node, for an AggregatingHashTrieMap)
+        private final Object c0, c1;
+        private Node(int hasChild, Object c0, Object c1) {
             this.hasChild = hasChild;
-            assert children != null;
+            this.c0 = c0;
+            this.c1 = c1;
+        }
+
+        // children :: [Node | SimpleMapEntry | SimpleMapEntry[]]
+        static Node of(Object[] children, int hasChild, Nodes nodes) {
+            return of(children, hasChild, nodes, null, null);
+        }
+        // (original & added are passed on to Nodes.create())
+        static Node of(Object[] children, int hasChild, Nodes nodes, Node original, Object added) {
             assert Integer.bitCount(hasChild) == children.length;
+            switch (children.length) {
+                case 1: return nodes.create(hasChild, children[0], null, original, added);
+                case 2: return nodes.create(hasChild, children[0], children[1], original, added);
+                default: return nodes.create(hasChild, children, null, original, added);
+            }
+        }
+
+        /** @return the number of children */
+        int length() {
+            return Integer.bitCount(hasChild);
+        }
+
+        /** @return the child at <code>index</code> (which must be less than {@link #length()}) */
+        Object child(int index) {
+            return 2 < length() ? ((Object[]) c0)[index] : index == 0 ? c0 : c1;
+        }
+
+        /** @return a new array of all the children */
+        Object[] children() {
+            switch (length()) {
+                case 1: return new Object[] { c0 };
+                case 2: return new Object[] { c0, c1 };
+                default: return ((Object[]) c0).clone();
+            }
+        }
+
+        /** @return a new node, with the child at <code>index</code> replaced */
+        Node withChild(int index, Object child, Nodes nodes) {
+            final Object[] children = children();
+            children[index] = child;
+            return of(children, hasChild, nodes);
+        }
+
+        /** @return a new node, with a child added at <code>index</code> (with the hash chunk <code>mask</code>) */
+        Node withNewChild(int index, int mask, Object child, Nodes nodes) {
+            final int length = length();
+            final Object[] children = new Object[length + 1];
+            for (int i = 0; i < index; ++i) {
+                children[i] = child(i);
+            }
+            children[index] = child;
+            for (int i = index; i < length; ++i) {
+                children[i + 1] = child(i);
+            }
+            return of(children, hasChild | mask, nodes, this, child);
+        }
+
+        /** @return a new node, without the child at <code>index</code> (with the hash chunk <code>mask</code>) */
+        Node withoutChild(int index, int mask, Nodes nodes) {
+            final int length = length();
+            final Object[] children = new Object[length - 1];
+            for (int i = 0; i < children.length; ++i) {
+                children[i] = child(i + (index <= i ? 1 : 0));
+            }
+            return of(children, hasChild & ~mask, nodes);
+        }
+    }
+
+    /**
+     * Creates the nodes of a trie. This is the hook for {@link com.github.douglasorr.shared.AggregatingHashTrieMap},
+     * which shares the trie implementation of HashTrieMap, but with nodes that cache an aggregate.
+     */
+    static class Nodes {
+        static final Nodes PLAIN = new Nodes();
+
+        /**
+         * @param hasChild the hash chunks of the children (as for {@link Node})
+         * @param c0 the first child (or an Object[] of the children, as for {@link Node})
+         * @param c1 the second child
+         * @param original if not <code>null</code>, the node which this replaces, by adding the child
+         * <code>added</code> (otherwise the node is created from scratch)
+         * @param added the child added to <code>original</code>
+         * @return a new node
+         */
+        Node create(int hasChild, Object c0, Object c1, Node original, Object added) {
+            return new Node(hasChild, c0, c1);
+        }
+    }
+
+    /**
+     * Creates nodes that cache an aggregate of their values, for {@link AggregatingHashTrieMap}.
+     * <p>The aggregate is kept in the unused <code>c1</code> of nodes with more than 2 children (so the nodes are no
+     * bigger than for HashTrieMap). Nodes with 1 or 2 children combine the aggregates of their children on demand,
+     * which visits at most 2^7 nodes (but is usually much less, as small nodes are near the leaves).</p>
+     */
+    static final class AggregateNodes<V, A> extends Nodes {
+        final Aggregator<V, A> aggregator;
+
+        AggregateNodes(Aggregator<V, A> aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        A aggregateOf(Object current) {
+            if (current instanceof Node) {
+                final Node node = (Node) current;
+                if (2 < node.length()) {
+                    return (A) node.c1;
+                }
+                final A aggregate = aggregateOf(node.c0);
+                return node.c1 == null ? aggregate : aggregator.combine(aggregate, aggregateOf(node.c1));
+            } else if (current instanceof SimpleImmutableEntry) {
+                return aggregator.of(((SimpleImmutableEntry<?, V>) current).getValue());
+            } else {
+                final SimpleImmutableEntry<?, V>[] collision = (SimpleImmutableEntry[]) current;
+                A aggregate = aggregator.of(collision[0].getValue());
+                for (int i = 1; i < collision.length; ++i) {
+                    aggregate = aggregator.combine(aggregate, aggregator.of(collision[i].getValue()));
+                }
+                return aggregate;
+            }
+        }
+
+        @Override
+        Node create(int hasChild, Object c0, Object c1, Node original, Object added) {
+            if (Integer.bitCount(hasChild) <= 2) {
+                return new Node(hasChild, c0, c1);
+            }
+            A aggregate;
+            if (original != null && 2 < original.length()) {
+                // a new child just adds its value to the aggregate
+                aggregate = aggregator.combine((A) original.c1, aggregateOf(added));
+            } else {
+                final Object[] children = (Object[]) c0;
+                aggregate = aggregateOf(children[0]);
+                for (int i = 1; i < children.length; ++i) {
+                    aggregate = aggregator.combine(aggregate, aggregateOf(children[i]));
+                }
+            }
+            return new Node(hasChild, c0, aggregate);
         }
     }
 
     // these would all be final, but for Java's horrid readExternal() deserialization
-    // root :: Node | SimpleMapEntry | SimpleMapEntry[] | Null
+    // root :: Object[] | Node | SimpleMapEntry | SimpleMapEntry[] | Null
+    // a map of size [2 FLAT_MAX_SIZE] is 'flat' - the root is an Object[] of alternating keys & values,
+    // and hashes contains the hash code of each key (otherwise hashes is null)
     private Object mRoot;
     private int mSize;
+    private int[] mHashes;
     // cached implementations
     private transient Set<Entry<K, V>> mEntrySet = null;
     private transient Set<K> mKeySet = null;
@@ -51,6 +201,11 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
         mRoot = root;
         mSize = size;
     }
+    private HashTrieMap(Object[] flat, int[] hashes) {
+        mRoot = flat;
+        mSize = hashes.length;
+        mHashes = hashes;
+    }
 
     // *** Factories ***
 
@@ -71,6 +226,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
         }
         mRoot = hashMap.mRoot;
         mSize = hashMap.mSize;
+        mHashes = hashMap.mHashes;
     }
     public static final HashTrieMap EMPTY = new HashTrieMap(null, 0);
     public static <K,V> HashTrieMap<K,V> empty() {
@@ -108,7 +264,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
     private class EntrySet extends AbstractSet<Entry<K, V>> {
         @Override
         public Iterator<Entry<K, V>> iterator() {
-            return new PreOrderIterator<K, V>(HashTrieMap.this.mRoot);
+            return HashTrieMap.this.entryIterator();
         }
 
         @Override
@@ -129,7 +285,31 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
     private class KeySet extends AbstractSet<K> {
         @Override
         public Iterator<K> iterator() {
-            final Iterator<Entry<K,V>> entryIterator = new PreOrderIterator<K, V>(HashTrieMap.this.mRoot);
+            if (mHashes != null) {
+                // iterate the keys directly (without creating entries)
+                final Object[] flat = (Object[]) mRoot;
+                return new Iterator<K>() {
+                    private int mIndex = 0;
+                    @Override
+                    public boolean hasNext() {
+                        return mIndex < flat.length;
+                    }
+                    @Override
+                    public K next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final K key = (K) flat[mIndex];
+                        mIndex += 2;
+                        return key;
+                    }
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its' iterator)");
+                    }
+                };
+            }
+            final Iterator<Entry<K,V>> entryIterator = HashTrieMap.this.entryIterator();
             return new Iterator<K>() {
                 @Override
                 public boolean hasNext() {
@@ -158,6 +338,10 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
         }
     }
 
+    private Iterator<Entry<K, V>> entryIterator() {
+        return mHashes != null ? new FlatIterator<K, V>((Object[]) mRoot) : new PreOrderIterator<K, V>(mRoot);
+    }
+
     @Override
     public Set<Entry<K, V>> entrySet() {
         Set<Entry<K, V>> s = mEntrySet;
@@ -189,6 +373,10 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
         if (key == null || mRoot == null) {
             return null;
         }
+        if (mHashes != null) {
+            final int index = findFlat((Object[]) mRoot, mHashes, key, key.hashCode());
+            return index < mHashes.length ? (V) ((Object[]) mRoot)[2 * index + 1] : null;
+        }
 
         final int hash = key.hashCode();
         int shift = 0;
@@ -202,7 +390,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
                 int mask = 1 << offset;
                 if ((currentNode.hasChild & mask) != 0) {
                     // we have found a child (which must be non-null), so continue searching
-                    current = currentNode.children[Integer.bitCount(currentNode.hasChild & (mask - 1))];
+                    current = currentNode.child(Integer.bitCount(currentNode.hasChild & (mask - 1)));
                     shift += HASH_SHIFT;
                 } else {
                     // no child with that hash - key must be missing
@@ -226,21 +414,136 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
         }
     }
 
-    // helper function to implement 'with'
-    // connects up the object 'next' to the trie between 'root' & 'parent'
-    // returns the new value of the trie root
-    private static Object connect(Object root, Object[] parent, int parentIndex, Object next) {
-        if (root == null) {
-            // we're looking at the root node, return it
-            return next;
+    // *** Flat (small map) helpers ***
+
+    /**
+     * @return the keys &amp; values of this map as a flat array (which must have at most
+     * <code>FLAT_MAX_SIZE</code> entries)
+     */
+    private Object[] flat() {
+        if (mHashes != null) {
+            return (Object[]) mRoot;
+        } else if (mRoot == null) {
+            return FLAT_EMPTY;
         } else {
-            // we're looking at some child node, the root doesn't change,
-            // but we must connect 'next' up to its' parent instead
-            parent[parentIndex] = next;
-            return root;
+            final SimpleImmutableEntry<K,V> entry = (SimpleImmutableEntry) mRoot;
+            return new Object[] { entry.getKey(), entry.getValue() };
         }
     }
 
+    /**
+     * @return the hash codes of the keys of {@link #flat()}
+     */
+    private int[] flatHashes() {
+        if (mHashes != null) {
+            return mHashes;
+        } else if (mRoot == null) {
+            return HASHES_EMPTY;
+        } else {
+            return new int[] { ((SimpleImmutableEntry) mRoot).getKey().hashCode() };
+        }
+    }
+
+    /**
+     * @return a new map from a flat array of keys &amp; values (which is only actually stored flat
+     * if it has at least 2 entries)
+     */
+    private static <K,V> HashTrieMap<K,V> fromFlat(Object[] flat, int[] hashes) {
+        switch (hashes.length) {
+            case 0:
+                return empty();
+            case 1:
+                return new HashTrieMap<K,V>(new SimpleImmutableEntry<K,V>((K) flat[0], (V) flat[1]), 1);
+            default:
+                return new HashTrieMap<K,V>(flat, hashes);
+        }
+    }
+
+    /**
+     * Find a key in a flat array.
+     * @param flat the flat array of alternating keys &amp; values to search
+     * @param hashes the hash codes of the keys in <code>flat</code>
+     * @param key the key to match
+     * @param hash the hash code of <code>key</code>
+     * @return the index of the entry, or <code>hashes.length</code> if not found
+     */
+    private static int findFlat(Object[] flat, int[] hashes, Object key, int hash) {
+        int index = 0;
+        while (index < hashes.length) {
+            if (hashes[index] == hash && key.equals(flat[2 * index])) {
+                break;
+            }
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * @param index the index of the entry to replace, or <code>hashes.length</code> to add a new entry
+     * @param nodes creates the nodes of the trie (if it is promoted)
+     * @return a new map, as <code>flat</code> but with key-&gt;value at index (promoted to a trie, if needed)
+     */
+    private static <K,V> HashTrieMap<K,V> withFlat(Object[] flat, int[] hashes, int index, K key, int hash, V value, Nodes nodes) {
+        if (index < hashes.length) {
+            final Object[] newFlat = flat.clone();
+            newFlat[2 * index + 1] = value;
+            return fromFlat(newFlat, hashes);
+
+        } else if (hashes.length < FLAT_MAX_SIZE) {
+            final Object[] newFlat = Arrays.copyOf(flat, flat.length + 2);
+            newFlat[2 * index] = key;
+            newFlat[2 * index + 1] = value;
+            final int[] newHashes = Arrays.copyOf(hashes, hashes.length + 1);
+            newHashes[index] = hash;
+            return fromFlat(newFlat, newHashes);
+
+        } else {
+            // too big to stay flat - promote to a trie
+            HashTrieMap<K,V> trie = new HashTrieMap<K,V>(new SimpleImmutableEntry<K,V>(key, value), 1);
+            for (int i = 0; i < flat.length; i += 2) {
+                trie = trie.withInTrie((K) flat[i], (V) flat[i + 1], nodes);
+            }
+            return trie;
+        }
+    }
+
+    /**
+     * @param index the index of the entry to remove
+     * @return a new map, as <code>flat</code> but without the entry at index
+     */
+    private static <K,V> HashTrieMap<K,V> withoutFlat(Object[] flat, int[] hashes, int index) {
+        final Object[] newFlat = new Object[flat.length - 2];
+        System.arraycopy(flat, 0, newFlat, 0, 2 * index);
+        System.arraycopy(flat, 2 * index + 2, newFlat, 2 * index, flat.length - 2 * index - 2);
+        final int[] newHashes = new int[hashes.length - 1];
+        System.arraycopy(hashes, 0, newHashes, 0, index);
+        System.arraycopy(hashes, index + 1, newHashes, index, hashes.length - index - 1);
+        return fromFlat(newFlat, newHashes);
+    }
+
+    /**
+     * @param root the new root of a trie (after a removal)
+     * @param size the new size of the map
+     * @return the new map, demoted to a flat array if it is now small enough
+     */
+    private static <K,V> HashTrieMap<K,V> fromTrie(Object root, int size) {
+        if (FLAT_MAX_SIZE < size) {
+            return new HashTrieMap<K,V>(root, size);
+        }
+        final Object[] flat = new Object[2 * size];
+        final int[] hashes = new int[size];
+        final Iterator<Map.Entry<K,V>> it = new PreOrderIterator<K,V>(root);
+        for (int i = 0; i < size; ++i) {
+            final Map.Entry<K,V> entry = it.next();
+            flat[2 * i] = entry.getKey();
+            flat[2 * i + 1] = entry.getValue();
+            hashes[i] = entry.getKey().hashCode();
+        }
+        return fromFlat(flat, hashes);
+    }
+
+    // *** Trie helpers ***
+
     /**
      * Find a key in a collision array.
      * @param entries the collision array to search
@@ -274,62 +577,51 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
 
     @Override
     public HashTrieMap<K, V> with(K key, V value) {
+        return with(key, value, Nodes.PLAIN);
+    }
+
+    /**
+     * As {@link #with(Object, Object)}, but creating any new nodes of the trie with <code>nodes</code>
+     * (which must be the same for every version of the map).
+     */
+    HashTrieMap<K, V> with(K key, V value, Nodes nodes) {
         if (key == null) {
             throw new NullPointerException("Cannot add a null key to a HashTrieMap");
         }
         if (value == null) {
             throw new NullPointerException("Cannot add a null value to a HashTrieMap");
         }
-        // special case the root - the only nullable object
-        if (mRoot == null) {
-            return singleton(key, value);
+        if (mSize <= FLAT_MAX_SIZE) {
+            final Object[] flat = flat();
+            final int[] hashes = flatHashes();
+            final int hash = key.hashCode();
+            return withFlat(flat, hashes, findFlat(flat, hashes, key, hash), key, hash, value, nodes);
         }
+        return withInTrie(key, value, nodes);
+    }
 
-        // convenience
-        final SimpleImmutableEntry<K, V> entry = new SimpleImmutableEntry<K,V>(key, value);
-        final int hash = key.hashCode();
-
-        // a lot of state!
-        Object newRoot = null;
-        Object[] parent = null;
-        int parentIndex = -1;
-        Object current = mRoot;
-        int shift = 0;
-        while (true) {
-            // are we at a leaf (single-element or multi-element 'collision')
-            if (current instanceof SimpleImmutableEntry) {
-                SimpleImmutableEntry<K,V> currentEntry = (SimpleImmutableEntry) current;
-
-                if (key.equals(currentEntry.getKey())) {
-                    // TERMINAL replace the existing entry (same key)
-                    return new HashTrieMap<K,V>(connect(newRoot, parent, parentIndex, entry), mSize);
-
-                } else if (shift < Integer.SIZE) {
-                    // split into a Node (and get handled as 'instanceof Node' below)
-                    int currentEntryHash = (currentEntry.getKey().hashCode() >>> shift) & HASH_MASK;
-                    current = new Node(new Object[] { currentEntry }, 1 << currentEntryHash);
-
-                } else {
-                    // TERMINAL generate a 2-element collision array
-                    return new HashTrieMap<K,V>(connect(newRoot, parent, parentIndex, new SimpleImmutableEntry[] { entry, currentEntry }), mSize + 1);
-                }
-
-            } else if (current instanceof SimpleImmutableEntry[]) {
-                // a collision - we must be a leaf, so just add or replace the entry in the collision list
-                SimpleImmutableEntry<K,V>[] currentCollision = (SimpleImmutableEntry[]) current;
-
-                // find the existing index of the match
-                int idx = findCollision(currentCollision, key);
-                boolean found = idx < currentCollision.length;
-                // expand if needed, and write in the new element
-                SimpleImmutableEntry<K,V>[] newCollision = Arrays.copyOf(currentCollision, currentCollision.length + (found ? 0 : 1));
-                newCollision[idx] = entry;
-
-                // TERMINAL
-                return new HashTrieMap<K,V>(connect(newRoot, parent, parentIndex, newCollision), mSize + (found ? 0 : 1));
-            }
+    /**
+     * Helper function for the implementation of {@link #with(Object, Object)}, for a map with a trie root
+     * (or a single entry).
+     */
+    private HashTrieMap<K, V> withInTrie(K key, V value, Nodes nodes) {
+        final int[] sizeChange = new int[1];
+        final Object newRoot = insertIn(mRoot, new SimpleImmutableEntry<K,V>(key, value), key.hashCode(), 0, sizeChange, nodes);
+        return new HashTrieMap<K,V>(newRoot, mSize + sizeChange[0]);
+    }
 
-            // then we must be at a Node
+    /**
+     * Helper function for the implementation of {@link #with(Object, Object)}.
+     * This is recursive (like {@link #removeFrom(Object, Object, int, int, Nodes)}), as a node must be created after
+     * its (new) children.
+     * @param current the current node, collision list, or entry
+     * @param entry the entry to add (replacing any entry with the same key)
+     * @param hash the hash value of the key
+     * @param sizeChange output - set to +1 if a key is added
+     * @return the new version of current, with 'entry' added
+     */
+    private static <K,V> Object insertIn(Object current, SimpleImmutableEntry<K,V> entry, int hash, int shift, int[] sizeChange, Nodes nodes) {
+        if (current instanceof Node) {
             Node currentNode = (Node) current;
             // take a 5-bit chunk of the hash code
             int offset = (hash >>> shift) & HASH_MASK;
@@ -337,41 +629,58 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
             int childIndex = Integer.bitCount(currentNode.hasChild & (mask - 1));
             if ((currentNode.hasChild & mask) == 0) {
                 // missing key - expand space & add the entry into the empty slot
-                Object[] children = new Object[currentNode.children.length + 1];
-                for (int i = 0; i < childIndex; ++i) {
-                    children[i] = currentNode.children[i];
-                }
-                children[childIndex] = entry;
-                for (int i = childIndex + 1; i < children.length; ++i) {
-                    children[i] = currentNode.children[i-1];
-                }
-                // TERMINAL
-                return new HashTrieMap<K,V>(connect(newRoot, parent, parentIndex, new Node(children, currentNode.hasChild | mask)), mSize + 1);
+                sizeChange[0] = 1;
+                return currentNode.withNewChild(childIndex, mask, entry, nodes);
+
+            } else {
+                // hash prefix collision - add to the child
+                Object newChild = insertIn(currentNode.child(childIndex), entry, hash, shift + HASH_SHIFT, sizeChange, nodes);
+                return currentNode.withChild(childIndex, newChild, nodes);
+            }
+
+        } else if (current instanceof SimpleImmutableEntry) {
+            SimpleImmutableEntry<K,V> currentEntry = (SimpleImmutableEntry) current;
+
+            if (entry.getKey().equals(currentEntry.getKey())) {
+                // replace the existing entry (same key)
+                return entry;
+
+            } else if (shift < Integer.SIZE) {
+                // split into a Node, and add to that
+                int currentEntryHash = (currentEntry.getKey().hashCode() >>> shift) & HASH_MASK;
+                return insertIn(nodes.create(1 << currentEntryHash, currentEntry, null, null, null), entry, hash, shift, sizeChange, nodes);
 
             } else {
-                // NON-TERMINAL hash prefix collision
-                current = currentNode.children[childIndex];
-                shift += HASH_SHIFT;
-                Object[] children = Arrays.copyOf(currentNode.children, currentNode.children.length);
-                children[childIndex] = null;
-                newRoot = connect(newRoot, parent, parentIndex, new Node(children, currentNode.hasChild));
-                parent = children;
-                parentIndex = childIndex;
-                //continue; (implicit)
+                // generate a 2-element collision array
+                sizeChange[0] = 1;
+                return new SimpleImmutableEntry[] { entry, currentEntry };
             }
+
+        } else { // must be an Entry[]
+            // a collision - we must be a leaf, so just add or replace the entry in the collision list
+            SimpleImmutableEntry<K,V>[] currentCollision = (SimpleImmutableEntry[]) current;
+
+            // find the existing index of the match
+            int idx = findCollision(currentCollision, entry.getKey());
+            boolean found = idx < currentCollision.length;
+            // expand if needed, and write in the new element
+            SimpleImmutableEntry<K,V>[] newCollision = Arrays.copyOf(currentCollision, currentCollision.length + (found ? 0 : 1));
+            newCollision[idx] = entry;
+            sizeChange[0] = found ? 0 : 1;
+            return newCollision;
         }
     }
 
     /**
      * Helper function for the implementation of {@link #without(Object)}.
-     * Sadly we must use this recursive method of removal (we cannot be iterative, like with),
-     * as we don't always know if a parent node will be deleted until we reach the leaf.
+     * As for {@link #insertIn(Object, SimpleImmutableEntry, int, int, int[], Nodes)}, this is recursive (we also don't
+     * always know if a parent node will be deleted until we reach the leaf).
      * @param current the current node, collision list, or entry
      * @param key the key to be removed
      * @param hash the hash value of key
      * @return the new version of current, with 'key' removed
      */
-    private static <K> Object removeFrom(Object current, K key, int hash, int shift) {
+    private static <K> Object removeFrom(Object current, K key, int hash, int shift, Nodes nodes) {
         if (current instanceof Node) {
             Node currentNode = (Node) current;
             // take a 5-bit chunk of the hash code
@@ -383,32 +692,30 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
 
             } else {
                 int childIndex = Integer.bitCount(currentNode.hasChild & (mask - 1));
-                Object currentChild = currentNode.children[childIndex];
-                Object newChild = removeFrom(currentChild, key, hash, shift + HASH_SHIFT);
+                Object currentChild = currentNode.child(childIndex);
+                Object newChild = removeFrom(currentChild, key, hash, shift + HASH_SHIFT, nodes);
                 if (currentChild == newChild) {
                     // key not found (recursively) - don't modify
                     return current;
 
                 } else if (newChild == null) {
-                    if (currentNode.children.length == 1) {
+                    if (currentNode.length() == 1) {
                         // no children left - delete this node
                         return null;
 
-                    } else if (currentNode.children.length == 2
-                            && !(currentNode.children[1 - childIndex] instanceof Node)) {
+                    } else if (currentNode.length() == 2
+                            && !(currentNode.child(1 - childIndex) instanceof Node)) {
                         // can 'collapse' to an Entry for the other child, as long as it isn't a Node
-                        return currentNode.children[1 - childIndex];
+                        return currentNode.child(1 - childIndex);
 
                     } else {
                         // remove the child
-                        return new Node(copyWithout(Object.class, currentNode.children, childIndex), currentNode.hasChild & ~mask);
+                        return currentNode.withoutChild(childIndex, mask, nodes);
                     }
 
                 } else {
                     // rebuild children map
-                    Object[] newChildren = Arrays.copyOf(currentNode.children, currentNode.children.length);
-                    newChildren[childIndex] = newChild;
-                    return new Node(newChildren, currentNode.hasChild);
+                    return currentNode.withChild(childIndex, newChild, nodes);
                 }
             }
 
@@ -437,15 +744,246 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
 
     @Override
     public HashTrieMap<K, V> without(K key) {
+        return without(key, Nodes.PLAIN);
+    }
+
+    /**
+     * As {@link #without(Object)}, but creating any new nodes of the trie with <code>nodes</code>
+     * (which must be the same for every version of the map).
+     */
+    HashTrieMap<K, V> without(K key, Nodes nodes) {
         if (key == null) {
             throw new NullPointerException("Cannot add a null key to a HashTrieMap");
         }
         if (mRoot == null) {
             return this; // we were empty - still empty
         }
+        if (mSize <= FLAT_MAX_SIZE) {
+            final Object[] flat = flat();
+            final int[] hashes = flatHashes();
+            final int index = findFlat(flat, hashes, key, key.hashCode());
+            return index < hashes.length ? HashTrieMap.<K,V> withoutFlat(flat, hashes, index) : this;
+        }
         // delegate to a recursive helper
-        Object newRoot = removeFrom(mRoot, key, key.hashCode(), 0);
-        return newRoot == mRoot ? this : new HashTrieMap<K, V>(newRoot, mSize - 1);
+        Object newRoot = removeFrom(mRoot, key, key.hashCode(), 0, nodes);
+        return newRoot == mRoot ? this : HashTrieMap.<K,V> fromTrie(newRoot, mSize - 1);
+    }
+
+    /** A function to compute the new value for a key from its old value, for {@link #compute(Object, Update)}. */
+    interface Update<V> {
+        /**
+         * @param value the current value (or <code>null</code> if there is none)
+         * @return the new value (or <code>null</code> to remove the key),
+         * return <code>value</code> itself to leave the map unchanged
+         */
+        V apply(V value);
+    }
+
+    /**
+     * Return a new map, with the value for <code>key</code> replaced by <code>update.apply(get(key))</code>.
+     * <p>This is equivalent to a <code>get</code>, followed by a <code>with</code> or <code>without</code>,
+     * but only searches the trie once.</p>
+     * @param key the key to update
+     * @param update computes the new value (which is called exactly once)
+     * @return the updated map (or this map, if the value is unchanged)
+     */
+    HashTrieMap<K, V> compute(K key, Update<V> update) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a HashTrieMap");
+        }
+        if (mSize <= FLAT_MAX_SIZE) {
+            final Object[] flat = flat();
+            final int[] hashes = flatHashes();
+            final int hash = key.hashCode();
+            final int index = findFlat(flat, hashes, key, hash);
+            final V oldValue = index < hashes.length ? (V) flat[2 * index + 1] : null;
+            final V newValue = update.apply(oldValue);
+            if (newValue == oldValue) {
+                return this;
+            }
+            return newValue == null
+                    ? HashTrieMap.<K,V> withoutFlat(flat, hashes, index)
+                    : withFlat(flat, hashes, index, key, hash, newValue, Nodes.PLAIN);
+        }
+        final int[] sizeChange = new int[1];
+        Object newRoot = computeIn(mRoot, key, key.hashCode(), 0, update, sizeChange, Nodes.PLAIN);
+        return newRoot == mRoot ? this : HashTrieMap.<K,V> fromTrie(newRoot, mSize + sizeChange[0]);
+    }
+
+    /**
+     * Helper function for the implementation of {@link #compute(Object, Update)} (following
+     * {@link #removeFrom(Object, Object, int, int, Nodes)}).
+     * @param current the current node, collision list or entry
+     * @param sizeChange output - set to +1 if a key is added, -1 if a key is removed
+     * @return the new version of current (or <code>current</code> itself, if unchanged)
+     */
+    private static <K,V> Object computeIn(Object current, K key, int hash, int shift, Update<V> update, int[] sizeChange, Nodes nodes) {
+        if (current instanceof Node) {
+            Node currentNode = (Node) current;
+            // take a 5-bit chunk of the hash code
+            int offset = (hash >>> shift) & HASH_MASK;
+            int mask = 1 << offset;
+            int childIndex = Integer.bitCount(currentNode.hasChild & (mask - 1));
+            if ((currentNode.hasChild & mask) == 0) {
+                final V newValue = update.apply(null);
+                if (newValue == null) {
+                    return current;
+                }
+                // missing key - expand space & add the entry into the empty slot
+                sizeChange[0] = 1;
+                return currentNode.withNewChild(childIndex, mask, new SimpleImmutableEntry<K,V>(key, newValue), nodes);
+            }
+            Object currentChild = currentNode.child(childIndex);
+            Object newChild = computeIn(currentChild, key, hash, shift + HASH_SHIFT, update, sizeChange, nodes);
+            if (currentChild == newChild) {
+                return current;
+
+            } else if (newChild == null) {
+                // the same as removeFrom() - delete or collapse this node if possible
+                if (currentNode.length() == 1) {
+                    return null;
+                } else if (currentNode.length() == 2
+                        && !(currentNode.child(1 - childIndex) instanceof Node)) {
+                    return currentNode.child(1 - childIndex);
+                } else {
+                    return currentNode.withoutChild(childIndex, mask, nodes);
+                }
+
+            } else {
+                return currentNode.withChild(childIndex, newChild, nodes);
+            }
+
+        } else if (current instanceof SimpleImmutableEntry) {
+            SimpleImmutableEntry<K,V> currentEntry = (SimpleImmutableEntry) current;
+            if (key.equals(currentEntry.getKey())) {
+                final V newValue = update.apply(currentEntry.getValue());
+                if (newValue == currentEntry.getValue()) {
+                    return current;
+                } else if (newValue == null) {
+                    sizeChange[0] = -1;
+                    return null;
+                } else {
+                    return new SimpleImmutableEntry<K,V>(key, newValue);
+                }
+
+            } else if (shift < Integer.SIZE) {
+                // split into a Node, and add to that (as in with())
+                int currentEntryHash = (currentEntry.getKey().hashCode() >>> shift) & HASH_MASK;
+                Node split = nodes.create(1 << currentEntryHash, currentEntry, null, null, null);
+                Object result = computeIn(split, key, hash, shift, update, sizeChange, nodes);
+                return result == split ? current : result;
+
+            } else {
+                final V newValue = update.apply(null);
+                if (newValue == null) {
+                    return current;
+                }
+                sizeChange[0] = 1;
+                return new SimpleImmutableEntry[] { new SimpleImmutableEntry<K,V>(key, newValue), currentEntry };
+            }
+
+        } else { // must be an Entry[]
+            SimpleImmutableEntry<K,V>[] currentCollision = (SimpleImmutableEntry[]) current;
+            int idx = findCollision(currentCollision, key);
+            boolean found = idx < currentCollision.length;
+            final V oldValue = found ? currentCollision[idx].getValue() : null;
+            final V newValue = update.apply(oldValue);
+            if (newValue == oldValue) {
+                return current;
+
+            } else if (newValue == null) {
+                sizeChange[0] = -1;
+                return currentCollision.length == 2
+                        ? currentCollision[1 - idx]
+                        : copyWithout(SimpleImmutableEntry.class, currentCollision, idx);
+
+            } else {
+                SimpleImmutableEntry<K,V>[] newCollision = Arrays.copyOf(currentCollision, currentCollision.length + (found ? 0 : 1));
+                newCollision[idx] = new SimpleImmutableEntry<K,V>(key, newValue);
+                sizeChange[0] = found ? 0 : 1;
+                return newCollision;
+            }
+        }
+    }
+
+    /**
+     * @param nodes the nodes that this map was built with (by {@link #with(Object, Object, Nodes)} &amp;
+     * {@link #without(Object, Nodes)})
+     * @return the aggregate of all the values in this map (which is cached in the trie, so O(1))
+     */
+    <A> A aggregate(AggregateNodes<V, A> nodes) {
+        if (mHashes != null) {
+            final Object[] flat = (Object[]) mRoot;
+            A aggregate = nodes.aggregator.of((V) flat[1]);
+            for (int i = 3; i < flat.length; i += 2) {
+                aggregate = nodes.aggregator.combine(aggregate, nodes.aggregator.of((V) flat[i]));
+            }
+            return aggregate;
+        }
+        return mRoot == null ? nodes.aggregator.identity() : nodes.aggregateOf(mRoot);
+    }
+
+    /**
+     * Copy all the keys of this map into <code>dest</code> (in iteration order), without allocating
+     * an iterator.
+     * @param dest the array to copy into, which must have space for {@link #size()} keys after <code>offset</code>
+     * @param offset the position in <code>dest</code> of the first key
+     * @return the number of keys copied (i.e. {@link #size()})
+     */
+    int copyKeys(Object[] dest, int offset) {
+        if (mHashes != null) {
+            final Object[] flat = (Object[]) mRoot;
+            for (int i = 0; i < mSize; ++i) {
+                dest[offset + i] = flat[2 * i];
+            }
+            return mSize;
+        }
+        return copyKeysIn(mRoot, dest, offset) - offset;
+    }
+
+    private static int copyKeysIn(Object current, Object[] dest, int offset) {
+        if (current instanceof Node) {
+            final Node node = (Node) current;
+            for (int i = 0; i < node.length(); ++i) {
+                offset = copyKeysIn(node.child(i), dest, offset);
+            }
+        } else if (current instanceof SimpleImmutableEntry) {
+            dest[offset++] = ((SimpleImmutableEntry) current).getKey();
+        } else if (current != null) {
+            for (SimpleImmutableEntry entry : (SimpleImmutableEntry[]) current) {
+                dest[offset++] = entry.getKey();
+            }
+        }
+        return offset;
+    }
+
+    private static class FlatIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        private final Object[] mFlat;
+        private int mIndex = 0;
+
+        private FlatIterator(Object[] flat) {
+            mFlat = flat;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mIndex < mFlat.length;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<K,V> next = new SimpleImmutableEntry<K,V>((K) mFlat[mIndex], (V) mFlat[mIndex + 1]);
+            mIndex += 2;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its' iterator)");
+        }
     }
 
     private static class PreOrderIterator<K,V> implements Iterator<Map.Entry<K,V>> {
@@ -480,7 +1018,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
 
             } else {
                 // walk up the tree until we have successfully advanced to the next child
-                while (mNodeStack[mNodeStackPointer].children.length <= ++mNodeIndexStack[mNodeStackPointer]) {
+                while (mNodeStack[mNodeStackPointer].length() <= ++mNodeIndexStack[mNodeStackPointer]) {
                     --mNodeStackPointer;
                     if (mNodeStackPointer < 0) {
                         mCurrent = null;
@@ -489,7 +1027,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
                 }
                 // walk down the tree until we have found the first child from the current top of the stack
                 while (true) {
-                    Object child = mNodeStack[mNodeStackPointer].children[mNodeIndexStack[mNodeStackPointer]];
+                    Object child = mNodeStack[mNodeStackPointer].child(mNodeIndexStack[mNodeStackPointer]);
                     if (child instanceof SimpleImmutableEntry) {
                         mCurrent = child;
                         return;
@@ -502,7 +1040,7 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
 
                     } else { // Node
                         // push onto the stack & keep searching
-                        assert(0 < ((Node) child).children.length);
+                        assert(0 < ((Node) child).length());
                         ++mNodeStackPointer;
                         mNodeStack[mNodeStackPointer] = (Node) child;
                         mNodeIndexStack[mNodeStackPointer] = 0;
@@ -551,5 +1089,6 @@ public class HashTrieMap<K,V> extends AbstractMap<K,V> implements SharedMap<K,V>
             m = m.with(entry.getKey(), entry.getValue());
         }
         mRoot = m.mRoot;
+        mHashes = m.mHashes;
     }
 }
@@ -0,0 +1,363 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared multimap, based on a {@link com.github.douglasorr.shared.HashTrieMap}.
+ * <p>A key with a single value stores that value directly in the map (no inner set is allocated),
+ * and only keys with two or more values store a {@link com.github.douglasorr.shared.HashTrieSet}.
+ * Each of {@link #with(Object, Object)}, {@link #without(Object, Object)} and {@link #withoutAll(Object)}
+ * searches the outer map just once, and removing the last value for a key removes the key.</p>
+ */
+public class HashTrieMultimap<K,V> implements SharedMultimap<K,V>, Externalizable {
+    private static final long serialVersionUID = 7386294016528302171L;
+
+    /** Wraps the values for a key with two or more values (so it cannot be confused with a single value). */
+    private static final class Many<V> {
+        final HashTrieSet<V> values;
+        Many(HashTrieSet<V> values) {
+            this.values = values;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // mMap: key -> either the single value (V), or Many<V>
+    private HashTrieMap<K, Object> mMap;
+    private int mSize;
+    // cached implementations
+    private transient Map<K, SharedSet<V>> mAsMap = null;
+    private transient Collection<Map.Entry<K,V>> mEntries = null;
+
+    private HashTrieMultimap(HashTrieMap<K, Object> map, int size) {
+        mMap = map;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    public HashTrieMultimap() {
+        this(HashTrieMap.<K, Object> empty(), 0);
+    }
+    public HashTrieMultimap(Map<? extends K, ? extends Collection<? extends V>> m) {
+        HashTrieMultimap<K,V> multimap = empty();
+        for (Map.Entry<? extends K, ? extends Collection<? extends V>> entry : m.entrySet()) {
+            for (V value : entry.getValue()) {
+                multimap = multimap.with(entry.getKey(), value);
+            }
+        }
+        mMap = multimap.mMap;
+        mSize = multimap.mSize;
+    }
+    public static final HashTrieMultimap EMPTY = new HashTrieMultimap();
+    public static <K,V> HashTrieMultimap<K,V> empty() {
+        return EMPTY;
+    }
+    public static <K,V> HashTrieMultimap<K,V> singleton(K key, V value) {
+        return HashTrieMultimap.<K,V> empty().with(key, value);
+    }
+    public static <K,V> HashTrieMultimap<K,V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a multimap containing the given key-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>HashTrieMultimap.of("one", 1, "odd", 1, "odd", 3);</code>
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type K), and values (type V), which
+     * may repeat keys (to add multiple values for the same key)
+     * @return a multimap containing all of the key-&gt;value pairs
+     */
+    public static <K,V> HashTrieMultimap<K,V> of(K key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("HashTrieMultimap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        HashTrieMultimap<K,V> m = singleton(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((K) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** Queries ***
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mMap.containsKey(key);
+    }
+
+    @Override
+    public boolean containsEntry(Object key, Object value) {
+        final Object current = mMap.get(key);
+        if (current instanceof Many) {
+            return ((Many<V>) current).values.contains(value);
+        }
+        return current != null && current.equals(value);
+    }
+
+    @Override
+    public int count(Object key) {
+        final Object current = mMap.get(key);
+        if (current == null) {
+            return 0;
+        }
+        return current instanceof Many ? ((Many<V>) current).values.size() : 1;
+    }
+
+    @Override
+    public HashTrieSet<V> get(Object key) {
+        return valueSet(mMap.get(key));
+    }
+
+    /** Convert a value from mMap into the set of values it represents. */
+    private static <V> HashTrieSet<V> valueSet(Object current) {
+        if (current == null) {
+            return HashTrieSet.empty();
+        } else if (current instanceof Many) {
+            return ((Many<V>) current).values;
+        } else {
+            return HashTrieSet.singleton((V) current);
+        }
+    }
+
+    // *** SharedMultimap ***
+
+    @Override
+    public HashTrieMultimap<K,V> with(K key, final V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a HashTrieMultimap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a HashTrieMultimap");
+        }
+        final HashTrieMap<K, Object> newMap = mMap.compute(key, new HashTrieMap.Update<Object>() {
+            @Override
+            public Object apply(Object current) {
+                if (current == null) {
+                    return value;
+                } else if (current instanceof Many) {
+                    HashTrieSet<V> values = ((Many<V>) current).values;
+                    return values.contains(value) ? current : new Many<V>(values.with(value));
+                } else if (current.equals(value)) {
+                    return current;
+                } else {
+                    return new Many<V>(HashTrieSet.<V> singleton((V) current).with(value));
+                }
+            }
+        });
+        // a value is only ever added (never replaced), so any change adds one pair
+        return newMap == mMap ? this : new HashTrieMultimap<K,V>(newMap, mSize + 1);
+    }
+
+    @Override
+    public HashTrieMultimap<K,V> without(K key, final V value) {
+        if (key == null || value == null) {
+            return this; // never present
+        }
+        final HashTrieMap<K, Object> newMap = mMap.compute(key, new HashTrieMap.Update<Object>() {
+            @Override
+            public Object apply(Object current) {
+                if (current instanceof Many) {
+                    HashTrieSet<V> values = ((Many<V>) current).values.without(value);
+                    if (values.size() == ((Many<V>) current).values.size()) {
+                        return current;
+                    }
+                    // back to a single value - store it inline
+                    return values.size() == 1 ? values.iterator().next() : new Many<V>(values);
+                } else if (current != null && current.equals(value)) {
+                    return null;
+                } else {
+                    return current;
+                }
+            }
+        });
+        return newMap == mMap ? this : new HashTrieMultimap<K,V>(newMap, mSize - 1);
+    }
+
+    @Override
+    public HashTrieMultimap<K,V> withoutAll(K key) {
+        if (key == null) {
+            return this; // never present
+        }
+        final int[] removed = new int[1];
+        final HashTrieMap<K, Object> newMap = mMap.compute(key, new HashTrieMap.Update<Object>() {
+            @Override
+            public Object apply(Object current) {
+                if (current != null) {
+                    removed[0] = current instanceof Many ? ((Many<V>) current).values.size() : 1;
+                }
+                return null;
+            }
+        });
+        return newMap == mMap ? this : new HashTrieMultimap<K,V>(newMap, mSize - removed[0]);
+    }
+
+    // *** Views ***
+
+    @Override
+    public Set<K> keySet() {
+        return mMap.keySet();
+    }
+
+    private class AsMap extends AbstractMap<K, SharedSet<V>> {
+        @Override
+        public Set<Entry<K, SharedSet<V>>> entrySet() {
+            return new AbstractSet<Entry<K, SharedSet<V>>>() {
+                @Override
+                public Iterator<Entry<K, SharedSet<V>>> iterator() {
+                    final Iterator<Entry<K, Object>> entries = mMap.entrySet().iterator();
+                    return new Iterator<Entry<K, SharedSet<V>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+                        @Override
+                        public Entry<K, SharedSet<V>> next() {
+                            final Entry<K, Object> entry = entries.next();
+                            return new SimpleImmutableEntry<K, SharedSet<V>>(entry.getKey(), HashTrieMultimap.<V> valueSet(entry.getValue()));
+                        }
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMultimap using its iterator)");
+                        }
+                    };
+                }
+                @Override
+                public int size() {
+                    return mMap.size();
+                }
+            };
+        }
+
+        // overridden for performance
+        @Override
+        public boolean containsKey(Object key) {
+            return mMap.containsKey(key);
+        }
+
+        @Override
+        public SharedSet<V> get(Object key) {
+            final Object current = mMap.get(key);
+            return current == null ? null : HashTrieMultimap.<V> valueSet(current);
+        }
+
+        @Override
+        public int size() {
+            return mMap.size();
+        }
+    }
+
+    @Override
+    public Map<K, SharedSet<V>> asMap() {
+        Map<K, SharedSet<V>> m = mAsMap;
+        return m != null ? m : (mAsMap = new AsMap());
+    }
+
+    private class Entries extends AbstractCollection<Map.Entry<K,V>> {
+        @Override
+        public Iterator<Map.Entry<K,V>> iterator() {
+            final Iterator<Map.Entry<K, Object>> keys = mMap.entrySet().iterator();
+            return new Iterator<Map.Entry<K,V>>() {
+                private K mKey = null;
+                private Iterator<V> mValues = Collections.<V> emptySet().iterator();
+                @Override
+                public boolean hasNext() {
+                    return mValues.hasNext() || keys.hasNext();
+                }
+                @Override
+                public Map.Entry<K,V> next() {
+                    if (!mValues.hasNext()) {
+                        if (!keys.hasNext()) {
+                            throw new NoSuchElementException("Iterator next() called at the end of a HashTrieMultimap");
+                        }
+                        final Map.Entry<K, Object> entry = keys.next();
+                        mKey = entry.getKey();
+                        if (!(entry.getValue() instanceof Many)) {
+                            return new AbstractMap.SimpleImmutableEntry<K,V>(mKey, (V) entry.getValue());
+                        }
+                        mValues = ((Many<V>) entry.getValue()).values.iterator();
+                    }
+                    return new AbstractMap.SimpleImmutableEntry<K,V>(mKey, mValues.next());
+                }
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMultimap using its iterator)");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?,?> entry = (Map.Entry) o;
+            return containsEntry(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Collection<Map.Entry<K,V>> entries() {
+        Collection<Map.Entry<K,V>> c = mEntries;
+        return c != null ? c : (mEntries = new Entries());
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof SharedMultimap && asMap().equals(((SharedMultimap) o).asMap()));
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mSize);
+        for (Map.Entry<K,V> entry : entries()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        HashTrieMultimap<K,V> m = HashTrieMultimap.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((K) in.readObject(), (V) in.readObject());
+        }
+        mMap = m.mMap;
+        mSize = m.mSize;
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared multiset, based on a {@link com.github.douglasorr.shared.HashTrieMap}
+ * from each element to its count.
+ * <p>Each of {@link #with(Object, int)} and {@link #without(Object, int)} searches the map just once,
+ * and reducing an element's count to zero removes it.</p>
+ */
+public class HashTrieMultiset<T> extends AbstractCollection<T> implements SharedMultiset<T>, Externalizable {
+    private static final long serialVersionUID = -2817749305367124829L;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private HashTrieMap<T, Integer> mCounts;
+    private int mSize;
+
+    private HashTrieMultiset(HashTrieMap<T, Integer> counts, int size) {
+        mCounts = counts;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    public HashTrieMultiset() {
+        this(HashTrieMap.<T, Integer> empty(), 0);
+    }
+    public HashTrieMultiset(Collection<? extends T> c) {
+        HashTrieMultiset<T> multiset;
+        if (c instanceof HashTrieMultiset) {
+            multiset = (HashTrieMultiset<T>) c;
+        } else {
+            multiset = empty();
+            for (T value : c) {
+                multiset = multiset.with(value);
+            }
+        }
+        mCounts = multiset.mCounts;
+        mSize = multiset.mSize;
+    }
+
+    public static final HashTrieMultiset EMPTY = new HashTrieMultiset();
+    public static <T> HashTrieMultiset<T> empty() {
+        return EMPTY;
+    }
+    public static <T> HashTrieMultiset<T> singleton(T value) {
+        return HashTrieMultiset.<T> empty().with(value);
+    }
+    public static <T> HashTrieMultiset<T> of(T... values) {
+        return new HashTrieMultiset<T>(Arrays.asList(values));
+    }
+
+    // *** Core methods ***
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Map.Entry<T, Integer>> entries = mCounts.entrySet().iterator();
+        return new Iterator<T>() {
+            private T mValue = null;
+            private int mRemaining = 0;
+            @Override
+            public boolean hasNext() {
+                return 0 < mRemaining || entries.hasNext();
+            }
+            @Override
+            public T next() {
+                if (mRemaining == 0) {
+                    if (!entries.hasNext()) {
+                        throw new NoSuchElementException("Iterator next() called at the end of a HashTrieMultiset");
+                    }
+                    final Map.Entry<T, Integer> entry = entries.next();
+                    mValue = entry.getKey();
+                    mRemaining = entry.getValue();
+                }
+                --mRemaining;
+                return mValue;
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMultiset using its iterator)");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    // *** Overridden for performance ***
+
+    @Override
+    public boolean contains(Object value) {
+        return mCounts.containsKey(value);
+    }
+
+    // *** SharedMultiset ***
+
+    @Override
+    public int count(Object value) {
+        final Integer count = mCounts.get(value);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public Set<T> elementSet() {
+        return mCounts.keySet();
+    }
+
+    @Override
+    public HashTrieMultiset<T> with(T value) {
+        return with(value, 1);
+    }
+
+    @Override
+    public HashTrieMultiset<T> with(T value, final int n) {
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a HashTrieMultiset");
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot add a negative number (" + n + ") of a value to a HashTrieMultiset");
+        }
+        if (n == 0) {
+            return this;
+        }
+        if (Integer.MAX_VALUE - mSize < n) {
+            // (every count is at most mSize, so this also prevents the count from overflowing)
+            throw new IllegalArgumentException("Cannot add " + n + " of a value to a HashTrieMultiset of size " + mSize + " (the size would overflow an int)");
+        }
+        final HashTrieMap<T, Integer> newCounts = mCounts.compute(value, new HashTrieMap.Update<Integer>() {
+            @Override
+            public Integer apply(Integer count) {
+                return count == null ? n : count + n;
+            }
+        });
+        return new HashTrieMultiset<T>(newCounts, mSize + n);
+    }
+
+    @Override
+    public HashTrieMultiset<T> without(T value) {
+        return without(value, 1);
+    }
+
+    @Override
+    public HashTrieMultiset<T> without(T value, final int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot remove a negative number (" + n + ") of a value from a HashTrieMultiset");
+        }
+        if (value == null || n == 0) {
+            return this;
+        }
+        final int[] removed = new int[1];
+        final HashTrieMap<T, Integer> newCounts = mCounts.compute(value, new HashTrieMap.Update<Integer>() {
+            @Override
+            public Integer apply(Integer count) {
+                if (count == null) {
+                    return null;
+                }
+                removed[0] = Math.min(count, n);
+                return count <= n ? null : count - n;
+            }
+        });
+        return newCounts == mCounts ? this : new HashTrieMultiset<T>(newCounts, mSize - removed[0]);
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (o instanceof HashTrieMultiset) {
+            return mCounts.equals(((HashTrieMultiset) o).mCounts);
+        } else if (o instanceof SharedMultiset) {
+            final SharedMultiset<?> other = (SharedMultiset) o;
+            if (other.size() != mSize || other.elementSet().size() != mCounts.size()) {
+                return false;
+            }
+            for (Map.Entry<T, Integer> entry : mCounts.entrySet()) {
+                if (other.count(entry.getKey()) != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return mCounts.hashCode();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mCounts.size());
+        for (Map.Entry<T, Integer> entry : mCounts.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        HashTrieMultiset<T> m = HashTrieMultiset.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((T) in.readObject(), in.readInt());
+        }
+        mCounts = m.mCounts;
+        mSize = m.mSize;
+    }
+}
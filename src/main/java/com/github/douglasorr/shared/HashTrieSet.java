@@ -84,6 +84,16 @@ public class HashTrieSet<T> extends AbstractSet<T> implements SharedSet<T>, Exte
         return mapWithoutValue == mMap ? this : new HashTrieSet<T>(mapWithoutValue);
     }
 
+    /**
+     * Copy all the values of this set into <code>dest</code>, without allocating an iterator.
+     * @param dest the array to copy into, which must have space for {@link #size()} values after <code>offset</code>
+     * @param offset the position in <code>dest</code> of the first value
+     * @return the number of values copied (i.e. {@link #size()})
+     */
+    int copyTo(Object[] dest, int offset) {
+        return mMap.copyKeys(dest, offset);
+    }
+
     // *** Externalizable ***
 
     @Override
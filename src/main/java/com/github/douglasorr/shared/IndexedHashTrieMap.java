@@ -0,0 +1,267 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of {@link com.github.douglasorr.shared.SharedIndexedMap}, based on a
+ * {@link com.github.douglasorr.shared.HashTrieMap} of key-&gt;value, and for each index a
+ * {@link com.github.douglasorr.shared.HashTrieMap} from attribute to a
+ * {@link com.github.douglasorr.shared.HashTrieSet} of keys.
+ * <p>{@link #lookupBy(Attribute, Object)} takes O(log(n)) time. {@link #with(Object, Object)} &amp;
+ * {@link #without(Object)} take O(log(n)) time for each index, but an index is shared (not copied) if the attribute
+ * of the new value is equal to that of the old value.</p>
+ * <p>Indexes are identified by their {@link com.github.douglasorr.shared.SharedIndexedMap.Attribute}, compared with
+ * <code>equals()</code> (so to serialize a map, use attributes that are equal after deserialization, such as
+ * enum constants).
+ * The indexes are not considered by {@link #equals(Object)} (which follows the {@link java.util.Map} contract).</p>
+ */
+public class IndexedHashTrieMap<K,V> extends AbstractMap<K,V> implements SharedIndexedMap<K,V>, Externalizable {
+    private static final long serialVersionUID = -7362291630184417285L;
+    private static final Attribute[] NO_ATTRIBUTES = new Attribute[0];
+    private static final HashTrieMap[] NO_INDEXES = new HashTrieMap[0];
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private HashTrieMap<K,V> mMap;
+    // for each attribute, an index :: HashTrieMap<attribute, HashTrieSet<K>>
+    private Attribute[] mAttributes;
+    private HashTrieMap[] mIndexes;
+
+    private IndexedHashTrieMap(HashTrieMap<K,V> map, Attribute[] attributes, HashTrieMap[] indexes) {
+        mMap = map;
+        mAttributes = attributes;
+        mIndexes = indexes;
+    }
+
+    // *** Factories ***
+
+    public IndexedHashTrieMap() {
+        this(HashTrieMap.<K,V> empty(), NO_ATTRIBUTES, NO_INDEXES);
+    }
+    public IndexedHashTrieMap(Map<? extends K, ? extends V> m) {
+        if (m instanceof IndexedHashTrieMap) {
+            final IndexedHashTrieMap<K,V> map = (IndexedHashTrieMap<K,V>) m;
+            mMap = map.mMap;
+            mAttributes = map.mAttributes;
+            mIndexes = map.mIndexes;
+        } else {
+            mMap = new HashTrieMap<K,V>(m);
+            mAttributes = NO_ATTRIBUTES;
+            mIndexes = NO_INDEXES;
+        }
+    }
+
+    public static final IndexedHashTrieMap EMPTY = new IndexedHashTrieMap();
+    public static <K,V> IndexedHashTrieMap<K,V> empty() {
+        return EMPTY;
+    }
+    /**
+     * Create an empty map with the given indexes.
+     * @param indexes the attributes to index
+     * @return an empty map, with an index for each attribute
+     */
+    public static <K,V> IndexedHashTrieMap<K,V> of(Attribute<? super V, ?>... indexes) {
+        IndexedHashTrieMap<K,V> m = empty();
+        for (Attribute<? super V, ?> index : indexes) {
+            m = m.withIndex(index);
+        }
+        return m;
+    }
+
+    // *** AbstractMap ***
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return mMap.entrySet();
+    }
+
+    // overridden for performance
+    @Override
+    public Set<K> keySet() {
+        return mMap.keySet();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mMap.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return mMap.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        return mMap.get(key);
+    }
+
+    // *** Index helpers ***
+
+    private int indexOf(Attribute<?, ?> attribute) {
+        for (int i = 0; i < mAttributes.length; ++i) {
+            if (mAttributes[i].equals(attribute)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static <K> HashTrieMap<Object, HashTrieSet<K>> addKey(HashTrieMap<Object, HashTrieSet<K>> index, Object attribute, final K key) {
+        return index.compute(attribute, new HashTrieMap.Update<HashTrieSet<K>>() {
+            @Override
+            public HashTrieSet<K> apply(HashTrieSet<K> keys) {
+                if (keys == null) {
+                    return HashTrieSet.singleton(key);
+                }
+                return keys.contains(key) ? keys : keys.with(key);
+            }
+        });
+    }
+
+    private static <K> HashTrieMap<Object, HashTrieSet<K>> removeKey(HashTrieMap<Object, HashTrieSet<K>> index, Object attribute, final K key) {
+        return index.compute(attribute, new HashTrieMap.Update<HashTrieSet<K>>() {
+            @Override
+            public HashTrieSet<K> apply(HashTrieSet<K> keys) {
+                if (keys == null) {
+                    return null;
+                }
+                final HashTrieSet<K> remaining = keys.without(key);
+                return remaining.isEmpty() ? null : remaining;
+            }
+        });
+    }
+
+    // *** SharedIndexedMap ***
+
+    @Override
+    public IndexedHashTrieMap<K,V> with(K key, final V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to an IndexedHashTrieMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to an IndexedHashTrieMap");
+        }
+        final Object[] oldValue = new Object[1];
+        final HashTrieMap<K,V> newMap = mMap.compute(key, new HashTrieMap.Update<V>() {
+            @Override
+            public V apply(V current) {
+                oldValue[0] = current;
+                return value;
+            }
+        });
+        if (newMap == mMap) {
+            return this;
+        }
+        HashTrieMap[] indexes = mIndexes;
+        for (int i = 0; i < mAttributes.length; ++i) {
+            final Object oldAttribute = oldValue[0] == null ? null : mAttributes[i].of(oldValue[0]);
+            final Object newAttribute = mAttributes[i].of(value);
+            if (oldAttribute == null ? newAttribute == null : oldAttribute.equals(newAttribute)) {
+                continue; // share the index
+            }
+            if (indexes == mIndexes) {
+                indexes = mIndexes.clone();
+            }
+            if (oldAttribute != null) {
+                indexes[i] = removeKey(indexes[i], oldAttribute, key);
+            }
+            if (newAttribute != null) {
+                indexes[i] = addKey(indexes[i], newAttribute, key);
+            }
+        }
+        return new IndexedHashTrieMap<K,V>(newMap, mAttributes, indexes);
+    }
+
+    @Override
+    public IndexedHashTrieMap<K,V> without(K key) {
+        if (key == null) {
+            throw new NullPointerException("Cannot remove a null key from an IndexedHashTrieMap");
+        }
+        final Object[] oldValue = new Object[1];
+        final HashTrieMap<K,V> newMap = mMap.compute(key, new HashTrieMap.Update<V>() {
+            @Override
+            public V apply(V current) {
+                oldValue[0] = current;
+                return null;
+            }
+        });
+        if (newMap == mMap) {
+            return this;
+        }
+        final HashTrieMap[] indexes = mIndexes.clone();
+        for (int i = 0; i < mAttributes.length; ++i) {
+            final Object oldAttribute = mAttributes[i].of(oldValue[0]);
+            if (oldAttribute != null) {
+                indexes[i] = removeKey(indexes[i], oldAttribute, key);
+            }
+        }
+        return new IndexedHashTrieMap<K,V>(newMap, mAttributes, indexes);
+    }
+
+    @Override
+    public IndexedHashTrieMap<K,V> withIndex(Attribute<? super V, ?> index) {
+        if (index == null) {
+            throw new NullPointerException("Cannot add a null index to an IndexedHashTrieMap");
+        }
+        if (indexOf(index) != -1) {
+            return this;
+        }
+        HashTrieMap<Object, HashTrieSet<K>> newIndex = HashTrieMap.empty();
+        for (Map.Entry<K,V> entry : mMap.entrySet()) {
+            final Object attribute = index.of(entry.getValue());
+            if (attribute != null) {
+                newIndex = addKey(newIndex, attribute, entry.getKey());
+            }
+        }
+        final Attribute[] attributes = Arrays.copyOf(mAttributes, mAttributes.length + 1);
+        attributes[mAttributes.length] = index;
+        final HashTrieMap[] indexes = Arrays.copyOf(mIndexes, mIndexes.length + 1);
+        indexes[mIndexes.length] = newIndex;
+        return new IndexedHashTrieMap<K,V>(mMap, attributes, indexes);
+    }
+
+    @Override
+    public <A> HashTrieSet<K> lookupBy(Attribute<? super V, A> index, A attribute) throws IllegalArgumentException {
+        final int i = indexOf(index);
+        if (i == -1) {
+            throw new IllegalArgumentException("No such index in this IndexedHashTrieMap (" + index + ")");
+        }
+        final HashTrieSet<K> keys = (HashTrieSet<K>) mIndexes[i].get(attribute);
+        return keys == null ? HashTrieSet.<K> empty() : keys;
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mAttributes.length);
+        for (Attribute attribute : mAttributes) {
+            out.writeObject(attribute);
+        }
+        out.writeInt(size());
+        for (Map.Entry<K,V> entry : this.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        IndexedHashTrieMap<K,V> m = IndexedHashTrieMap.empty();
+        final int nindexes = in.readInt();
+        for (int i = 0; i < nindexes; ++i) {
+            m = m.withIndex((Attribute<? super V, ?>) in.readObject());
+        }
+        final int size = in.readInt();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((K) in.readObject(), (V) in.readObject());
+        }
+        mMap = m.mMap;
+        mAttributes = m.mAttributes;
+        mIndexes = m.mIndexes;
+    }
+}
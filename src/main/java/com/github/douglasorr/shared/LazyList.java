@@ -0,0 +1,352 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractMap;
+import java.util.AbstractSequentialList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A shared singly-linked list, where each element (and the rest of the list after it) is only
+ * computed when it is first needed.
+ * <p>Each cell of the list is computed at most once, when {@link #head()} or {@link #tail()} is
+ * first called (this is thread-safe), and then remembered, so the list behaves exactly like an immutable
+ * {@link com.github.douglasorr.shared.LinkedList}, once evaluated. The operators {@link #map(Function)},
+ * {@link #filter(Predicate)}, {@link #take(int)} and {@link #zip(LazyList)} do not evaluate anything, so
+ * may be applied to very long (or unbounded) lists. If you iterate through a long list without keeping
+ * a reference to its head, memory is bounded, as cells that have been passed can be garbage collected.</p>
+ * <p>Note that <code>size()</code>, <code>equals()</code>, <code>hashCode()</code>, <code>toString()</code>
+ * and serialization evaluate the whole list (so never terminate for an unbounded list).</p>
+ */
+public class LazyList<T> extends AbstractSequentialList<T> implements SharedList<T>, Externalizable {
+    private static final long serialVersionUID = -7716003493016279745L;
+
+    /** A function from <code>A</code> to <code>B</code>, used by {@link #map(Function)}. */
+    public interface Function<A, B> {
+        B apply(A value);
+    }
+
+    /** A predicate on <code>T</code>, used by {@link #filter(Predicate)}. */
+    public interface Predicate<T> {
+        boolean test(T value);
+    }
+
+    /** A deferred computation of the rest of a list. */
+    private interface Thunk<T> {
+        LazyList<T> evaluate();
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // (mThunk is non-null until this cell is forced, after which mEmpty, mHead & mTail are valid)
+    private Thunk<T> mThunk;
+    private volatile boolean mForced;
+    private boolean mEmpty;
+    private T mHead;
+    private LazyList<T> mTail;
+
+    private LazyList(Thunk<T> thunk) {
+        mThunk = thunk;
+        mForced = false;
+    }
+    private LazyList(T head, LazyList<T> tail) {
+        mEmpty = false;
+        mHead = head;
+        mTail = tail;
+        mForced = true;
+    }
+
+    private LazyList<T> force() {
+        if (!mForced) {
+            synchronized (this) {
+                if (!mForced) {
+                    LazyList<T> result = mThunk.evaluate().force();
+                    mEmpty = result.mEmpty;
+                    mHead = result.mHead;
+                    mTail = result.mTail;
+                    mThunk = null; // release the thunk (& anything it refers to)
+                    mForced = true;
+                }
+            }
+        }
+        return this;
+    }
+
+    // *** Factories ***
+
+    public LazyList() {
+        mEmpty = true;
+        mForced = true;
+    }
+    public LazyList(Collection<? extends T> c) {
+        LazyList<T> list = (c instanceof LazyList) ? (LazyList<T>) c : LazyList.<T> of((T[]) c.toArray());
+        list.force();
+        mEmpty = list.mEmpty;
+        mHead = list.mHead;
+        mTail = list.mTail;
+        mForced = true;
+    }
+    public static final LazyList<?> EMPTY = new LazyList();
+    public static <T> LazyList<T> empty() { return (LazyList<T>) EMPTY; }
+    public static <T> LazyList<T> singleton(T value) {
+        return new LazyList<T>(value, LazyList.<T> empty());
+    }
+    public static <T> LazyList<T> of(T... elements) {
+        LazyList<T> list = empty();
+        for (int i = elements.length - 1; 0 <= i; --i) {
+            list = list.prepend(elements[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Create a list which contains the remaining elements of an iterator, reading them
+     * only as they are needed.
+     * <p>The iterator must not be used by anything else after this is called.</p>
+     * @param iterator the source of elements
+     * @return a lazy list of the elements of <code>iterator</code>
+     */
+    public static <T> LazyList<T> from(final Iterator<? extends T> iterator) {
+        return new LazyList<T>(new Thunk<T>() {
+            @Override
+            public LazyList<T> evaluate() {
+                return iterator.hasNext()
+                        ? new LazyList<T>(iterator.next(), LazyList.<T> from(iterator))
+                        : LazyList.<T> empty();
+            }
+        });
+    }
+
+    /**
+     * Create an unbounded list <code>seed, f(seed), f(f(seed)), ...</code>.
+     * @param seed the first element of the list
+     * @param f the function to compute each element from the previous one
+     * @return an unbounded lazy list
+     */
+    public static <T> LazyList<T> iterate(final T seed, final Function<? super T, ? extends T> f) {
+        return new LazyList<T>(seed, new LazyList<T>(new Thunk<T>() {
+            @Override
+            public LazyList<T> evaluate() {
+                return iterate((T) f.apply(seed), f);
+            }
+        }));
+    }
+
+    // *** Operators ***
+
+    /**
+     * Returns a list with <code>f</code> applied to each element of this list, applying <code>f</code> lazily.
+     * @param f the function to apply to each element
+     * @return a new lazy list containing <code>f(x)</code> for each <code>x</code> in this list
+     */
+    public <R> LazyList<R> map(final Function<? super T, ? extends R> f) {
+        return new LazyList<R>(new Thunk<R>() {
+            @Override
+            public LazyList<R> evaluate() {
+                force();
+                return mEmpty ? LazyList.<R> empty() : new LazyList<R>(f.apply(mHead), mTail.map(f));
+            }
+        });
+    }
+
+    /**
+     * Returns a list containing only the elements for which <code>predicate</code> is true, testing them lazily.
+     * @param predicate the test for elements to keep
+     * @return a new lazy list containing only the elements that pass <code>predicate</code>
+     */
+    public LazyList<T> filter(final Predicate<? super T> predicate) {
+        return new LazyList<T>(new Thunk<T>() {
+            @Override
+            public LazyList<T> evaluate() {
+                // skip elements iteratively, so a long run of failing elements cannot overflow the stack
+                LazyList<T> list = LazyList.this;
+                while (!list.force().mEmpty) {
+                    if (predicate.test(list.mHead)) {
+                        return new LazyList<T>(list.mHead, list.mTail.filter(predicate));
+                    }
+                    list = list.mTail;
+                }
+                return empty();
+            }
+        });
+    }
+
+    /**
+     * Returns a list containing at most the first <code>n</code> elements of this list.
+     * @param n the maximum number of elements
+     * @return a new lazy list containing the first <code>n</code> elements (or fewer, if this list is shorter)
+     */
+    public LazyList<T> take(final int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot take() a negative number of elements (n: " + n + ")");
+        }
+        return new LazyList<T>(new Thunk<T>() {
+            @Override
+            public LazyList<T> evaluate() {
+                if (n == 0 || force().mEmpty) {
+                    return empty();
+                }
+                return new LazyList<T>(mHead, mTail.take(n - 1));
+            }
+        });
+    }
+
+    /**
+     * Returns a list of pairs of corresponding elements from this list and <code>other</code>.
+     * @param other the list to pair elements with
+     * @return a new lazy list of pairs (key from this list, value from <code>other</code>),
+     * which is as long as the shorter of the two lists
+     */
+    public <U> LazyList<Map.Entry<T, U>> zip(final LazyList<U> other) {
+        return new LazyList<Map.Entry<T, U>>(new Thunk<Map.Entry<T, U>>() {
+            @Override
+            public LazyList<Map.Entry<T, U>> evaluate() {
+                if (force().mEmpty || other.force().mEmpty) {
+                    return empty();
+                }
+                return new LazyList<Map.Entry<T, U>>(
+                        new AbstractMap.SimpleImmutableEntry<T, U>(mHead, other.mHead),
+                        mTail.zip(other.mTail));
+            }
+        });
+    }
+
+    // *** SharedList ***
+
+    @Override
+    public LazyList<T> prepend(T head) {
+        return new LazyList<T>(head, this);
+    }
+
+    @Override
+    public T head() throws NoSuchElementException {
+        if (force().mEmpty) {
+            throw new NoSuchElementException("Head of an empty list");
+        } else {
+            return mHead;
+        }
+    }
+
+    @Override
+    public LazyList<T> tail() throws NoSuchElementException {
+        if (force().mEmpty) {
+            throw new NoSuchElementException("Tail of an empty list");
+        } else {
+            return mTail;
+        }
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public boolean isEmpty() {
+        return force().mEmpty;
+    }
+
+    @Override
+    public ListIterator<T> listIterator(final int startIndex) {
+        if (startIndex < 0) {
+            throw new IndexOutOfBoundsException("ListIterator starts out of the bounds of the list");
+        }
+        final LazyIterator<T> iterator = new LazyIterator<T>(this);
+        for (int i = 0; i < startIndex; ++i) {
+            if (!iterator.hasNext()) {
+                throw new IndexOutOfBoundsException("ListIterator starts out of the bounds of the list");
+            }
+            iterator.next();
+        }
+        return iterator;
+    }
+
+    // static, so that the iterator does not keep the head of the list alive
+    private static final class LazyIterator<T> implements ListIterator<T> {
+        private int index = 0;
+        private LazyList<T> it;
+
+        LazyIterator(LazyList<T> list) {
+            it = list;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !it.isEmpty();
+        }
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+        @Override
+        public T next() {
+            T element = it.head();
+            it = it.tail();
+            ++index;
+            return element;
+        }
+
+        // Backwards iteration - not implemented (pretend we're always at the beginning of the list)
+        @Override
+        public boolean hasPrevious() {
+            return false;
+        }
+        @Override
+        public int previousIndex() {
+            return -1;
+        }
+        @Override
+        public T previous() {
+            throw new UnsupportedOperationException("Cannot iterate backwards through a singly-linked list");
+        }
+
+        // Mutable operations - not implemented
+        @Override
+        public void add(T t) {
+            throw new UnsupportedOperationException("Mutable method called on immutable list");
+        }
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Mutable method called on immutable list");
+        }
+        @Override
+        public void set(T t) {
+            throw new UnsupportedOperationException("Mutable method called on immutable list");
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (LazyList<T> list = this; !list.isEmpty(); list = list.mTail) {
+            ++size;
+        }
+        return size;
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        final Object[] buffer = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            buffer[i] = in.readObject();
+        }
+        final LazyList<T> list = (LazyList<T>) of(buffer);
+        mEmpty = list.mEmpty;
+        mHead = list.mHead;
+        mTail = list.mTail;
+        mForced = true;
+    }
+}
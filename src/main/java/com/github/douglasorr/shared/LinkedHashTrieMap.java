@@ -0,0 +1,233 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared linked map, which iterates in insertion order.
+ * <p>The entries are stored in a {@link com.github.douglasorr.shared.TrieArray}, in insertion order,
+ * and a {@link com.github.douglasorr.shared.HashTrieMap} indexes each key to its position in the array.
+ * Removing a key leaves a tombstone (<code>null</code>) in the array, so {@link #with(Object, Object)}
+ * and {@link #without(Object)} are both O(log(n)). When the tombstones outnumber the live entries,
+ * the array is compacted (which is O(n), but amortized over the removals that created the tombstones).</p>
+ */
+public class LinkedHashTrieMap<K,V> extends AbstractMap<K,V> implements SharedLinkedMap<K,V>, Externalizable {
+    private static final long serialVersionUID = -4281620531960416427L;
+    // always allow this many tombstones, so small maps do not compact too often
+    private static final int MIN_TOMBSTONES = 32;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // mIndex: key -> index of the entry in mEntries
+    private HashTrieMap<K, Integer> mIndex;
+    // entries in insertion order (or null, for removed entries)
+    private TrieArray<Entry<K,V>> mEntries;
+    // cached implementations
+    private transient Set<Entry<K, V>> mEntrySet = null;
+
+    private LinkedHashTrieMap(HashTrieMap<K, Integer> index, TrieArray<Entry<K,V>> entries) {
+        mIndex = index;
+        mEntries = entries;
+    }
+
+    // *** Factories ***
+
+    public LinkedHashTrieMap() {
+        this(HashTrieMap.<K, Integer> empty(), TrieArray.<Entry<K,V>> empty());
+    }
+    public LinkedHashTrieMap(Map<? extends K, ? extends V> m) {
+        LinkedHashTrieMap<K,V> map;
+        if (m instanceof LinkedHashTrieMap) {
+            map = (LinkedHashTrieMap<K,V>) m;
+        } else {
+            map = empty();
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                map = map.with(entry.getKey(), entry.getValue());
+            }
+        }
+        mIndex = map.mIndex;
+        mEntries = map.mEntries;
+    }
+    public static final LinkedHashTrieMap EMPTY = new LinkedHashTrieMap();
+    public static <K,V> LinkedHashTrieMap<K,V> empty() {
+        return EMPTY;
+    }
+    public static <K,V> LinkedHashTrieMap<K,V> singleton(K key, V value) {
+        return LinkedHashTrieMap.<K,V> empty().with(key, value);
+    }
+    public static <K,V> LinkedHashTrieMap<K,V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a map containing the given key-&gt;value pairs (which will be iterated in the same order).
+     * <p>For example:</p>
+     * <code>LinkedHashTrieMap.of("one", 1, "two", 2, "three", 3);</code>
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type K), and values (type V), in which
+     * later mappings will overwrite earlier ones
+     * @return a map containing all of the key-&gt;value mappings
+     */
+    public static <K,V> LinkedHashTrieMap<K,V> of(K key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("LinkedHashTrieMap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        LinkedHashTrieMap<K,V> m = singleton(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((K) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** AbstractMap ***
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            final Iterator<Entry<K,V>> entries = mEntries.iterator();
+            return new Iterator<Entry<K, V>>() {
+                private int mRemaining = mIndex.size();
+                @Override
+                public boolean hasNext() {
+                    return 0 < mRemaining;
+                }
+                @Override
+                public Entry<K, V> next() {
+                    if (mRemaining == 0) {
+                        throw new NoSuchElementException("Iterator next() called at the end of a LinkedHashTrieMap");
+                    }
+                    Entry<K,V> entry;
+                    do {
+                        entry = entries.next();
+                    } while (entry == null);
+                    --mRemaining;
+                    return entry;
+                }
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its iterator)");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return LinkedHashTrieMap.this.size();
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?,?> mapping = (Entry) o;
+            Object value = mapping.getValue();
+            return value != null && value.equals(LinkedHashTrieMap.this.get(mapping.getKey()));
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> s = mEntrySet;
+        return s != null ? s : (mEntrySet = new EntrySet());
+    }
+
+    // overridden for performance
+    @Override
+    public boolean containsKey(Object key) {
+        return mIndex.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return mIndex.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        final Integer index = mIndex.get(key);
+        return index == null ? null : mEntries.get(index).getValue();
+    }
+
+    // *** SharedLinkedMap ***
+
+    @Override
+    public LinkedHashTrieMap<K,V> with(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a LinkedHashTrieMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a LinkedHashTrieMap");
+        }
+        final Entry<K,V> entry = new SimpleImmutableEntry<K,V>(key, value);
+        final Integer index = mIndex.get(key);
+        if (index == null) {
+            return new LinkedHashTrieMap<K,V>(mIndex.with(key, mEntries.size()), mEntries.append(entry));
+        } else if (mEntries.get(index).getValue() == value) {
+            return this;
+        } else {
+            // replace the value, keeping the original position
+            return new LinkedHashTrieMap<K,V>(mIndex, mEntries.update(index, entry));
+        }
+    }
+
+    @Override
+    public LinkedHashTrieMap<K,V> without(K key) {
+        final Integer index = mIndex.get(key);
+        if (index == null) {
+            return this;
+        }
+        final HashTrieMap<K, Integer> newIndex = mIndex.without(key);
+        if (newIndex.isEmpty()) {
+            return empty();
+        }
+        TrieArray<Entry<K,V>> entries = mEntries.update(index, null);
+        // drop any tombstones from the end of the array
+        while (entries.get(entries.size() - 1) == null) {
+            entries = entries.remend();
+        }
+        final int tombstones = entries.size() - newIndex.size();
+        if (MIN_TOMBSTONES < tombstones && newIndex.size() < tombstones) {
+            return compact(entries);
+        }
+        return new LinkedHashTrieMap<K,V>(newIndex, entries);
+    }
+
+    /** Rebuild the map from the live entries (removing all tombstones). */
+    private static <K,V> LinkedHashTrieMap<K,V> compact(TrieArray<Entry<K,V>> entries) {
+        HashTrieMap<K, Integer> newIndex = HashTrieMap.empty();
+        TrieArray<Entry<K,V>> newEntries = TrieArray.empty();
+        for (Entry<K,V> entry : entries) {
+            if (entry != null) {
+                newIndex = newIndex.with(entry.getKey(), newEntries.size());
+                newEntries = newEntries.append(entry);
+            }
+        }
+        return new LinkedHashTrieMap<K,V>(newIndex, newEntries);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (Map.Entry<K,V> entry : this.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        LinkedHashTrieMap<K,V> m = LinkedHashTrieMap.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((K) in.readObject(), (V) in.readObject());
+        }
+        mIndex = m.mIndex;
+        mEntries = m.mEntries;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An implementation of the shared linked set, which iterates in insertion order, based on
+ * a {@link com.github.douglasorr.shared.LinkedHashTrieMap}.
+ */
+public class LinkedHashTrieSet<T> extends AbstractSet<T> implements SharedLinkedSet<T>, Externalizable {
+    private static final long serialVersionUID = 7345291018468225104L;
+    private static final Object PRESENT = new Object();
+    // this would be final, but for Java's horrid readExternal() deserialization
+    private LinkedHashTrieMap<T, Object> mMap;
+
+    private LinkedHashTrieSet(LinkedHashTrieMap<T, Object> map) {
+        mMap = map;
+    }
+
+    // *** Factories ***
+
+    public LinkedHashTrieSet() {
+        mMap = LinkedHashTrieMap.EMPTY;
+    }
+    public LinkedHashTrieSet(Collection<? extends T> c) {
+        LinkedHashTrieMap<T, Object> map;
+        if (c instanceof LinkedHashTrieSet) {
+            map = ((LinkedHashTrieSet<T>) c).mMap;
+        } else {
+            map = LinkedHashTrieMap.empty();
+            for (T value : c) {
+                map = map.with(value, PRESENT);
+            }
+        }
+        mMap = map;
+    }
+
+    public static final LinkedHashTrieSet EMPTY = new LinkedHashTrieSet();
+    public static <T> LinkedHashTrieSet<T> empty() {
+        return EMPTY;
+    }
+    public static <T> LinkedHashTrieSet<T> singleton(T value) {
+        return new LinkedHashTrieSet<T>(LinkedHashTrieMap.singleton(value, PRESENT));
+    }
+    public static <T> LinkedHashTrieSet<T> of(T... values) {
+        return new LinkedHashTrieSet<T>(Arrays.asList(values));
+    }
+
+    // *** Core methods ***
+
+    @Override
+    public Iterator<T> iterator() {
+        return mMap.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+        return mMap.size();
+    }
+
+    // *** Overridden for performance ***
+
+    @Override
+    public boolean contains(Object value) {
+        return mMap.containsKey(value);
+    }
+
+    // *** SharedLinkedSet methods ***
+
+    @Override
+    public LinkedHashTrieSet<T> with(T value) {
+        LinkedHashTrieMap<T, Object> mapWithValue = mMap.with(value, PRESENT);
+        return mapWithValue == mMap ? this : new LinkedHashTrieSet<T>(mapWithValue);
+    }
+
+    @Override
+    public LinkedHashTrieSet<T> without(T value) {
+        LinkedHashTrieMap<T, Object> mapWithoutValue = mMap.without(value);
+        return mapWithoutValue == mMap ? this : new LinkedHashTrieSet<T>(mapWithoutValue);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        // cannot just writeObject(mMap) as we never want to serialize PRESENT
+        out.writeInt(mMap.size());
+        for (T value : this) {
+            out.writeObject(value);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        for (int i = 0; i < size; ++i) {
+            mMap = mMap.with((T) in.readObject(), PRESENT);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of {@link com.github.douglasorr.shared.SharedArray} for write-heavy workloads,
+ * based on a {@link com.github.douglasorr.shared.TrieArray}.
+ * <p>Instead of copying a path through the trie, {@link #update(int, Object)} records the new value
+ * in a small overlay of <em>patches</em> (a {@link com.github.douglasorr.shared.HashTrieMap} from index
+ * to value), which is consulted by {@link #get(int)} before the base array. Once the overlay holds more
+ * than <code>threshold</code> patches, they are all written back into the base array in a single batch,
+ * which copies each affected block only once.</p>
+ * <p>This makes updates cheaper when they are concentrated on a <em>hot set</em> of indices - if the distinct
+ * indices written between write-backs fit under the threshold, repeated writes to the same index merge in the
+ * overlay, and the base array is copied rarely. Updates scattered over a large array gain nothing over a plain
+ * {@link com.github.douglasorr.shared.TrieArray} (each write-back still copies one leaf per update, which costs about
+ * as much as the path copy that {@link com.github.douglasorr.shared.TrieArray} does anyway), and reads through
+ * a non-empty overlay cost an extra hash lookup. Appending &amp; taking operate directly on the base array.</p>
+ */
+public class PatchedTrieArray<T> extends AbstractList<T> implements SharedArray<T>, Externalizable, RandomAccess {
+    private static final long serialVersionUID = -3620858893367512478L;
+    /** The default maximum number of patches before they are written back into the base array. */
+    public static final int DEFAULT_THRESHOLD = 32;
+    // HashTrieMap cannot contain null values, so we patch in this instead
+    private static final Object NULL = new Object();
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private TrieArray<T> mBase;
+    private HashTrieMap<Integer, Object> mPatches;
+    private int mThreshold;
+
+    private PatchedTrieArray(TrieArray<T> base, HashTrieMap<Integer, Object> patches, int threshold) {
+        mBase = base;
+        mPatches = patches;
+        mThreshold = threshold;
+    }
+
+    // *** Factories ***
+
+    public PatchedTrieArray() {
+        this(TrieArray.<T> empty(), HashTrieMap.<Integer, Object> empty(), DEFAULT_THRESHOLD);
+    }
+    public PatchedTrieArray(Collection<T> c) {
+        if (c instanceof PatchedTrieArray) {
+            PatchedTrieArray<T> a = (PatchedTrieArray<T>) c;
+            mBase = a.mBase;
+            mPatches = a.mPatches;
+            mThreshold = a.mThreshold;
+        } else {
+            mBase = (c instanceof TrieArray) ? (TrieArray<T>) c : new TrieArray<T>(c);
+            mPatches = HashTrieMap.empty();
+            mThreshold = DEFAULT_THRESHOLD;
+        }
+    }
+
+    public static final PatchedTrieArray EMPTY = new PatchedTrieArray();
+    public static <T> PatchedTrieArray<T> empty() {
+        return EMPTY;
+    }
+    /**
+     * Create an empty array, that writes patches back once there are more than <code>threshold</code>.
+     * @param threshold the maximum number of patches to keep (if zero, every update is written back)
+     * @return an empty array
+     */
+    public static <T> PatchedTrieArray<T> empty(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("PatchedTrieArray threshold must not be negative (threshold: " + threshold + ")");
+        }
+        return new PatchedTrieArray<T>(TrieArray.<T> empty(), HashTrieMap.<Integer, Object> empty(), threshold);
+    }
+    public static <T> PatchedTrieArray<T> singleton(T value) {
+        return new PatchedTrieArray<T>(TrieArray.singleton(value), HashTrieMap.<Integer, Object> empty(), DEFAULT_THRESHOLD);
+    }
+    public static <T> PatchedTrieArray<T> of(T... values) {
+        return new PatchedTrieArray<T>(TrieArray.of(values), HashTrieMap.<Integer, Object> empty(), DEFAULT_THRESHOLD);
+    }
+
+    // *** Patches ***
+
+    // the patched indices, in ascending order
+    private int[] patchIndices() {
+        int[] indices = new int[mPatches.size()];
+        int n = 0;
+        for (Integer index : mPatches.keySet()) {
+            indices[n++] = index;
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Write all patches back into the base array.
+     * @return an array with the same contents as this, but no patches
+     */
+    public TrieArray<T> toTrieArray() {
+        if (mPatches.isEmpty()) {
+            return mBase;
+        }
+        int[] indices = patchIndices();
+        Object[] values = new Object[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            Object value = mPatches.get(indices[i]);
+            values[i] = (value == NULL ? null : value);
+        }
+        return mBase.updateAll(indices, values);
+    }
+
+    /**
+     * @return the number of updates that have not yet been written back into the base array
+     */
+    public int patchCount() {
+        return mPatches.size();
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public int size() {
+        return mBase.size();
+    }
+
+    @Override
+    public T get(int index) {
+        if (!mPatches.isEmpty()) {
+            Object value = mPatches.get(index);
+            if (value != null) {
+                return value == NULL ? null : (T) value;
+            }
+        }
+        return mBase.get(index);
+    }
+
+    // Overrides for performance
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator(0);
+    }
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+    @Override
+    public ListIterator<T> listIterator(int i) {
+        final ListIterator<T> it = mBase.listIterator(i);
+        return mPatches.isEmpty() ? it : new PatchedIterator(it);
+    }
+
+    // Iterates through the base array, substituting any patches (looked up in a sorted copy of the patches)
+    private class PatchedIterator implements ListIterator<T> {
+        private final ListIterator<T> mBaseIterator;
+        private final int[] mIndices;
+        private final Object[] mValues;
+
+        public PatchedIterator(ListIterator<T> baseIterator) {
+            mBaseIterator = baseIterator;
+            mIndices = patchIndices();
+            mValues = new Object[mIndices.length];
+            for (int j = 0; j < mIndices.length; ++j) {
+                mValues[j] = mPatches.get(mIndices[j]);
+            }
+        }
+
+        private T patched(int index, T value) {
+            int j = Arrays.binarySearch(mIndices, index);
+            if (j < 0) {
+                return value;
+            } else {
+                return mValues[j] == NULL ? null : (T) mValues[j];
+            }
+        }
+
+        @Override
+        public T next() {
+            int index = mBaseIterator.nextIndex();
+            return patched(index, mBaseIterator.next());
+        }
+        @Override
+        public T previous() {
+            int index = mBaseIterator.previousIndex();
+            return patched(index, mBaseIterator.previous());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mBaseIterator.hasNext();
+        }
+        @Override
+        public boolean hasPrevious() {
+            return mBaseIterator.hasPrevious();
+        }
+        @Override
+        public int nextIndex() {
+            return mBaseIterator.nextIndex();
+        }
+        @Override
+        public int previousIndex() {
+            return mBaseIterator.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on a immutable iterator (you cannot mutate a PatchedTrieArray using its' iterator)");
+        }
+        @Override
+        public void set(T t) {
+            throw new UnsupportedOperationException("set() called on a immutable iterator (you cannot mutate a PatchedTrieArray using its' iterator)");
+        }
+        @Override
+        public void add(T t) {
+            throw new UnsupportedOperationException("add() called on a immutable iterator (you cannot mutate a PatchedTrieArray using its' iterator)");
+        }
+    }
+
+    // *** SharedArray ***
+
+    @Override
+    public PatchedTrieArray<T> update(int index, T value) throws IndexOutOfBoundsException {
+        if (index < 0 || size() <= index) {
+            throw new IndexOutOfBoundsException(index + " (size " + size() + ")");
+        }
+        HashTrieMap<Integer, Object> patches = mPatches.with(index, value == null ? NULL : value);
+        if (mThreshold < patches.size()) {
+            // write back all the patches
+            return new PatchedTrieArray<T>(
+                    new PatchedTrieArray<T>(mBase, patches, mThreshold).toTrieArray(),
+                    HashTrieMap.<Integer, Object> empty(),
+                    mThreshold);
+        } else {
+            return new PatchedTrieArray<T>(mBase, patches, mThreshold);
+        }
+    }
+
+    @Override
+    public PatchedTrieArray<T> append(T value) {
+        return new PatchedTrieArray<T>(mBase.append(value), mPatches, mThreshold);
+    }
+
+    @Override
+    public PatchedTrieArray<T> appendAll(Collection<T> values) {
+        return values.isEmpty() ? this : new PatchedTrieArray<T>(mBase.appendAll(values), mPatches, mThreshold);
+    }
+
+    @Override
+    public PatchedTrieArray<T> remend() throws NoSuchElementException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("remend() called on an empty array");
+        }
+        return take(size() - 1);
+    }
+
+    @Override
+    public PatchedTrieArray<T> take(int n) throws IndexOutOfBoundsException {
+        if (n == size()) {
+            return this;
+        }
+        TrieArray<T> base = mBase.take(n);
+        // drop any patches that are no longer in range (there are at most 'threshold')
+        HashTrieMap<Integer, Object> patches = mPatches;
+        for (Integer index : mPatches.keySet()) {
+            if (n <= index) {
+                patches = patches.without(index);
+            }
+        }
+        return new PatchedTrieArray<T>(base, patches, mThreshold);
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mThreshold);
+        out.writeInt(size());
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        mThreshold = in.readInt();
+        int size = in.readInt();
+        TrieArray<T> a = TrieArray.empty();
+        for (int i = 0; i < size; ++i) {
+            a = a.append((T) in.readObject());
+        }
+        mBase = a;
+        mPatches = HashTrieMap.empty();
+    }
+}
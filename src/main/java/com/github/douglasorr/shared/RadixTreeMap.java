@@ -0,0 +1,484 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared prefix map, as a persistent, path-compressed radix tree.
+ * <p>Each node of the tree stores a fragment of key (its edge), so keys that share a prefix
+ * also share the memory used to store that prefix, and a lookup only needs to compare each
+ * character of the key once. Chains of nodes with a single child are compressed into one node.
+ * Each node stores its children in arrays sized exactly to fit (sorted by the first character
+ * of their edge), so that the nodes adapt to their fan-out.</p>
+ * <p>Entries are iterated in key order (the natural order of <code>String</code>).
+ * {@link #prefixView(String)} is O(|prefix|), as it just finds the node that contains the prefix.</p>
+ */
+public class RadixTreeMap<V> extends AbstractMap<String,V> implements SharedPrefixMap<V>, Externalizable {
+    private static final long serialVersionUID = -2395843186203911452L;
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    // search child labels linearly up to this size, then by binary search
+    private static final int LINEAR_SEARCH_MAX = 8;
+
+    private static final class Node {
+        // the fragment of key from the parent node to this node (non-empty, except perhaps for the root)
+        public final String edge;
+        // the value of the key that ends at this node, or null if there is none
+        public final Object value;
+        // the first character of each child's edge, in sorted order
+        public final char[] labels;
+        public final Node[] children;
+        // the number of values in this subtree
+        public final int size;
+        // if value is null, there must be at least two children (except for the root of an empty map)
+        Node(String edge, Object value, char[] labels, Node[] children) {
+            this.edge = edge;
+            this.value = value;
+            this.labels = labels;
+            this.children = children;
+            int total = (value == null) ? 0 : 1;
+            for (Node child : children) {
+                total += child.size;
+            }
+            this.size = total;
+        }
+        Node withEdge(String newEdge) {
+            return new Node(newEdge, value, labels, children);
+        }
+        Node withValue(Object newValue) {
+            return new Node(edge, newValue, labels, children);
+        }
+        int find(char label) {
+            if (labels.length <= LINEAR_SEARCH_MAX) {
+                for (int i = 0; i < labels.length; ++i) {
+                    if (labels[i] == label) {
+                        return i;
+                    }
+                    if (label < labels[i]) {
+                        return -i - 1;
+                    }
+                }
+                return -labels.length - 1;
+            } else {
+                return Arrays.binarySearch(labels, label);
+            }
+        }
+    }
+
+    private static Node leaf(String edge, Object value) {
+        return new Node(edge, value, NO_LABELS, NO_CHILDREN);
+    }
+
+    private static int commonPrefixLength(String a, int aOffset, String b, int bOffset) {
+        final int n = Math.min(a.length() - aOffset, b.length() - bOffset);
+        int i = 0;
+        while (i < n && a.charAt(aOffset + i) == b.charAt(bOffset + i)) {
+            ++i;
+        }
+        return i;
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // all keys start with mPrefix, followed by mRoot.edge (mRoot is null iff the map is empty)
+    private String mPrefix;
+    private Node mRoot;
+    // cached implementations
+    private transient Set<Entry<String, V>> mEntrySet = null;
+    private transient Set<String> mKeySet = null;
+
+    private RadixTreeMap(String prefix, Node root) {
+        mPrefix = prefix;
+        mRoot = root;
+    }
+
+    // *** Factories ***
+
+    public RadixTreeMap() {
+        this("", null);
+    }
+    public RadixTreeMap(Map<String, ? extends V> m) {
+        RadixTreeMap<V> map;
+        if (m instanceof RadixTreeMap) {
+            map = (RadixTreeMap<V>) m;
+        } else {
+            map = empty();
+            for (Map.Entry<String, ? extends V> entry : m.entrySet()) {
+                map = map.with(entry.getKey(), entry.getValue());
+            }
+        }
+        mPrefix = map.mPrefix;
+        mRoot = map.mRoot;
+    }
+    public static final RadixTreeMap EMPTY = new RadixTreeMap();
+    public static <V> RadixTreeMap<V> empty() {
+        return EMPTY;
+    }
+    public static <V> RadixTreeMap<V> singleton(String key, V value) {
+        return RadixTreeMap.<V> empty().with(key, value);
+    }
+    public static <V> RadixTreeMap<V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a map containing the given key-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>RadixTreeMap.of("one", 1, "two", 2, "three", 3);</code>
+     * @param key the first key
+     * @param value the first values
+     * @param keyValues an even number of keys (type String), and values (type V), in which
+     * later mappings will overwrite earlier ones
+     * @return a map containing all of the key-&gt;value mappings
+     */
+    public static <V> RadixTreeMap<V> of(String key, V value, Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("RadixTreeMap.of() called with an odd number of keyValues (cannot partition them into pairs)");
+        }
+        RadixTreeMap<V> m = singleton(key, value);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            m = m.with((String) keyValues[i], (V) keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    // *** Tree helpers ***
+
+    /** Add or replace the value for <code>key.substring(offset)</code>, under <code>node</code>. */
+    private static Node insert(Node node, String key, int offset, Object value) {
+        final String edge = node.edge;
+        final int common = commonPrefixLength(edge, 0, key, offset);
+        if (common < edge.length()) {
+            // split the edge - the new node contains the old node (& maybe a new leaf)
+            final Node tail = node.withEdge(edge.substring(common));
+            final String head = edge.substring(0, common);
+            if (offset + common == key.length()) {
+                return new Node(head, value, new char[] { tail.edge.charAt(0) }, new Node[] { tail });
+            }
+            final Node newLeaf = leaf(key.substring(offset + common), value);
+            return (tail.edge.charAt(0) < newLeaf.edge.charAt(0))
+                    ? new Node(head, null, new char[] { tail.edge.charAt(0), newLeaf.edge.charAt(0) }, new Node[] { tail, newLeaf })
+                    : new Node(head, null, new char[] { newLeaf.edge.charAt(0), tail.edge.charAt(0) }, new Node[] { newLeaf, tail });
+        }
+        final int childOffset = offset + common;
+        if (childOffset == key.length()) {
+            return node.value == value ? node : node.withValue(value);
+        }
+        final char label = key.charAt(childOffset);
+        final int index = node.find(label);
+        if (index < 0) {
+            final int insertAt = -index - 1;
+            final char[] labels = new char[node.labels.length + 1];
+            final Node[] children = new Node[node.children.length + 1];
+            System.arraycopy(node.labels, 0, labels, 0, insertAt);
+            System.arraycopy(node.children, 0, children, 0, insertAt);
+            labels[insertAt] = label;
+            children[insertAt] = leaf(key.substring(childOffset), value);
+            System.arraycopy(node.labels, insertAt, labels, insertAt + 1, node.labels.length - insertAt);
+            System.arraycopy(node.children, insertAt, children, insertAt + 1, node.children.length - insertAt);
+            return new Node(edge, node.value, labels, children);
+        }
+        final Node child = insert(node.children[index], key, childOffset, value);
+        if (child == node.children[index]) {
+            return node;
+        }
+        final Node[] children = Arrays.copyOf(node.children, node.children.length);
+        children[index] = child;
+        return new Node(edge, node.value, node.labels, children);
+    }
+
+    /** Remove the value for <code>key.substring(offset)</code> under <code>node</code> (returning null if it is empty). */
+    private static Node remove(Node node, String key, int offset) {
+        final String edge = node.edge;
+        if (!key.startsWith(edge, offset)) {
+            return node;
+        }
+        final int childOffset = offset + edge.length();
+        if (childOffset == key.length()) {
+            return node.value == null ? node : compress(node.withValue(null));
+        }
+        final int index = node.find(key.charAt(childOffset));
+        if (index < 0) {
+            return node;
+        }
+        final Node child = remove(node.children[index], key, childOffset);
+        if (child == node.children[index]) {
+            return node;
+        } else if (child != null) {
+            final Node[] children = Arrays.copyOf(node.children, node.children.length);
+            children[index] = child;
+            return new Node(edge, node.value, node.labels, children);
+        } else {
+            final char[] labels = new char[node.labels.length - 1];
+            final Node[] children = new Node[node.children.length - 1];
+            System.arraycopy(node.labels, 0, labels, 0, index);
+            System.arraycopy(node.children, 0, children, 0, index);
+            System.arraycopy(node.labels, index + 1, labels, index, labels.length - index);
+            System.arraycopy(node.children, index + 1, children, index, children.length - index);
+            return compress(new Node(edge, node.value, labels, children));
+        }
+    }
+
+    /** Restore the invariant that a node without a value has at least two children. */
+    private static Node compress(Node node) {
+        if (node.value != null || 2 <= node.children.length) {
+            return node;
+        } else if (node.children.length == 1) {
+            final Node child = node.children[0];
+            return child.withEdge(node.edge + child.edge);
+        } else {
+            return null;
+        }
+    }
+
+    // *** AbstractMap ***
+
+    // Iterates through the tree in key order (a node's value, then its children in order)
+    private static class EntryIterator<V> implements Iterator<Entry<String,V>> {
+        // the stack of nodes still to visit, with the key prefix leading to each node
+        private final ArrayDeque<Node> mNodes = new ArrayDeque<Node>();
+        private final ArrayDeque<String> mPaths = new ArrayDeque<String>();
+        private Entry<String, V> mNext;
+
+        EntryIterator(String prefix, Node root) {
+            if (root != null) {
+                mNodes.push(root);
+                mPaths.push(prefix);
+            }
+            mNext = advance();
+        }
+
+        private Entry<String, V> advance() {
+            while (!mNodes.isEmpty()) {
+                final Node node = mNodes.pop();
+                final String path = mPaths.pop() + node.edge;
+                for (int i = node.children.length - 1; 0 <= i; --i) {
+                    mNodes.push(node.children[i]);
+                    mPaths.push(path);
+                }
+                if (node.value != null) {
+                    return new SimpleImmutableEntry<String, V>(path, (V) node.value);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (mNext == null) {
+                throw new NoSuchElementException("Iterator next() called at the end of a RadixTreeMap");
+            }
+            final Entry<String, V> result = mNext;
+            mNext = advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its iterator)");
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, V>> {
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+            return new EntryIterator<V>(mPrefix, mRoot);
+        }
+
+        @Override
+        public int size() {
+            return RadixTreeMap.this.size();
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?,?> mapping = (Entry) o;
+            Object value = mapping.getValue();
+            return value != null && value.equals(RadixTreeMap.this.get(mapping.getKey()));
+        }
+    }
+
+    private class KeySet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<Entry<String,V>> entryIterator = new EntryIterator<V>(mPrefix, mRoot);
+            return new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return entryIterator.hasNext();
+                }
+                @Override
+                public String next() {
+                    return entryIterator.next().getKey();
+                }
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its iterator)");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return RadixTreeMap.this.size();
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object key) {
+            return RadixTreeMap.this.get(key) != null;
+        }
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        Set<Entry<String, V>> s = mEntrySet;
+        return s != null ? s : (mEntrySet = new EntrySet());
+    }
+
+    // overridden for performance
+    @Override
+    public Set<String> keySet() {
+        Set<String> s = mKeySet;
+        return s != null ? s : (mKeySet = new KeySet());
+    }
+
+    // overridden for performance
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return mRoot == null ? 0 : mRoot.size;
+    }
+
+    @Override
+    public V get(Object k) {
+        if (!(k instanceof String) || mRoot == null) {
+            return null;
+        }
+        final String key = (String) k;
+        if (!key.startsWith(mPrefix)) {
+            return null;
+        }
+        Node node = mRoot;
+        int offset = mPrefix.length();
+        while (true) {
+            if (!key.startsWith(node.edge, offset)) {
+                return null;
+            }
+            offset += node.edge.length();
+            if (offset == key.length()) {
+                return (V) node.value;
+            }
+            final int index = node.find(key.charAt(offset));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+        }
+    }
+
+    // *** SharedPrefixMap ***
+
+    @Override
+    public RadixTreeMap<V> with(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Cannot add a null key to a RadixTreeMap");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a RadixTreeMap");
+        }
+        if (mRoot == null) {
+            return new RadixTreeMap<V>("", leaf(key, value));
+        }
+        if (key.startsWith(mPrefix)) {
+            final Node root = insert(mRoot, key, mPrefix.length(), value);
+            return root == mRoot ? this : new RadixTreeMap<V>(mPrefix, root);
+        }
+        // the key is outside our prefix (we must be a prefix view), so move the differing part of
+        // the prefix into the root node
+        final int common = commonPrefixLength(mPrefix, 0, key, 0);
+        final Node root = mRoot.withEdge(mPrefix.substring(common) + mRoot.edge);
+        return new RadixTreeMap<V>(mPrefix.substring(0, common), insert(root, key, common, value));
+    }
+
+    @Override
+    public RadixTreeMap<V> without(String key) {
+        if (key == null) {
+            throw new NullPointerException("Cannot remove a null key from a RadixTreeMap");
+        }
+        if (mRoot == null || !key.startsWith(mPrefix)) {
+            return this;
+        }
+        final Node root = remove(mRoot, key, mPrefix.length());
+        if (root == mRoot) {
+            return this;
+        }
+        return root == null ? RadixTreeMap.<V> empty() : new RadixTreeMap<V>(mPrefix, root);
+    }
+
+    @Override
+    public RadixTreeMap<V> prefixView(String prefix) {
+        if (mPrefix.startsWith(prefix)) {
+            return this;
+        }
+        if (mRoot == null || !prefix.startsWith(mPrefix)) {
+            return empty();
+        }
+        Node node = mRoot;
+        int offset = mPrefix.length();
+        while (true) {
+            final int remaining = prefix.length() - offset;
+            if (remaining <= node.edge.length()) {
+                // the prefix ends within this node's edge
+                return node.edge.startsWith(prefix.substring(offset))
+                        ? new RadixTreeMap<V>(prefix.substring(0, offset), node)
+                        : RadixTreeMap.<V> empty();
+            }
+            if (!prefix.startsWith(node.edge, offset)) {
+                return empty();
+            }
+            offset += node.edge.length();
+            final int index = node.find(prefix.charAt(offset));
+            if (index < 0) {
+                return empty();
+            }
+            node = node.children[index];
+        }
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (Map.Entry<String,V> entry : this.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        RadixTreeMap<V> m = RadixTreeMap.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.with((String) in.readObject(), (V) in.readObject());
+        }
+        mPrefix = m.mPrefix;
+        mRoot = m.mRoot;
+    }
+}
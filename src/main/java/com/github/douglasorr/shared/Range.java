@@ -0,0 +1,107 @@
+package com.github.douglasorr.shared;
+
+import java.io.Serializable;
+
+/**
+ * An immutable half-open range of keys <code>[lower, upper)</code>, which contains every key
+ * <code>k</code> such that <code>lower &lt;= k &lt; upper</code>.
+ * <p>A range with <code>lower == upper</code> is empty (it contains no keys).</p>
+ */
+public final class Range<K extends Comparable<? super K>> implements Serializable {
+    private static final long serialVersionUID = 3512764086157390465L;
+
+    private final K mLower;
+    private final K mUpper;
+
+    private Range(K lower, K upper) {
+        mLower = lower;
+        mUpper = upper;
+    }
+
+    /**
+     * Create the range <code>[lower, upper)</code>.
+     * @param lower the least key in the range (inclusive)
+     * @param upper the end of the range (exclusive)
+     * @return the range from <code>lower</code> up to (but not including) <code>upper</code>
+     * @throws IllegalArgumentException if <code>upper &lt; lower</code>
+     */
+    public static <K extends Comparable<? super K>> Range<K> of(K lower, K upper) {
+        if (lower == null || upper == null) {
+            throw new NullPointerException("Cannot create a Range with a null bound");
+        }
+        if (upper.compareTo(lower) < 0) {
+            throw new IllegalArgumentException("Cannot create a Range with upper < lower (lower: " + lower + ", upper: " + upper + ")");
+        }
+        return new Range<K>(lower, upper);
+    }
+
+    /**
+     * @return the least key in the range (inclusive)
+     */
+    public K lower() {
+        return mLower;
+    }
+
+    /**
+     * @return the end of the range (exclusive)
+     */
+    public K upper() {
+        return mUpper;
+    }
+
+    /**
+     * @return <code>true</code> if the range contains no keys
+     */
+    public boolean isEmpty() {
+        return mLower.compareTo(mUpper) == 0;
+    }
+
+    /**
+     * @param key the key to test
+     * @return <code>true</code> if <code>lower &lt;= key &lt; upper</code>
+     */
+    public boolean contains(K key) {
+        return mLower.compareTo(key) <= 0 && key.compareTo(mUpper) < 0;
+    }
+
+    /**
+     * @param other the range to test
+     * @return <code>true</code> if there is a key in both ranges
+     */
+    public boolean overlaps(Range<K> other) {
+        return mLower.compareTo(other.mUpper) < 0 && other.mLower.compareTo(mUpper) < 0
+                && !isEmpty() && !other.isEmpty();
+    }
+
+    /**
+     * @param other the range to intersect with
+     * @return the range of keys in both ranges, or <code>null</code> if they do not overlap
+     */
+    public Range<K> intersection(Range<K> other) {
+        if (!overlaps(other)) {
+            return null;
+        }
+        final K lower = mLower.compareTo(other.mLower) < 0 ? other.mLower : mLower;
+        final K upper = mUpper.compareTo(other.mUpper) < 0 ? mUpper : other.mUpper;
+        return (lower == mLower && upper == mUpper) ? this : new Range<K>(lower, upper);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Range)) {
+            return false;
+        }
+        final Range<?> other = (Range<?>) o;
+        return mLower.equals(other.mLower) && mUpper.equals(other.mUpper);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mLower.hashCode() + mUpper.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + mLower + ".." + mUpper + ")";
+    }
+}
@@ -0,0 +1,444 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The basic tree-based implementation of {@link com.github.douglasorr.shared.SharedText} (a <em>rope</em>).
+ * <p>The text is split into leaf blocks (a <code>char[]</code> of up to 128 characters, with its number of
+ * newlines), which are the leaves of a balanced tree of up to 32-way branches (like
+ * {@link com.github.douglasorr.shared.TrieArray}, but each branch also keeps the cumulative length &amp; number of
+ * newlines of its children, so that the blocks need not be full). All leaves are at the same depth.</p>
+ * <p>{@link #charAt(int)}, {@link #lineStart(int)} and {@link #lineOf(int)} are O(log(n)).
+ * {@link #replace(int, int, CharSequence)} (and so insert, delete &amp; subSequence) is O(log(n) + m)
+ * (where m is the length of the inserted text), and only copies the path to the edited blocks,
+ * sharing everything else with the original text.</p>
+ */
+public class Rope implements SharedText, Externalizable {
+    private static final long serialVersionUID = -1867311625390418817L;
+    private static final int MAX_LEAF = 128;
+    private static final int MIN_LEAF = MAX_LEAF / 4;
+    private static final int MAX_CHILDREN = 32;
+    private static final int MIN_CHILDREN = MAX_CHILDREN / 4;
+    private static final Leaf EMPTY_LEAF = new Leaf(new char[0]);
+
+    /**
+     * A block of text, which counts its newlines once (so that rebuilding a branch never rescans its leaves).
+     */
+    private static final class Leaf {
+        final char[] chars;
+        final int lines;
+
+        Leaf(char[] chars) {
+            this.chars = chars;
+            this.lines = countLines(chars, chars.length);
+        }
+    }
+
+    /**
+     * A non-terminal node, with children that are either all <code>Leaf</code>, or all <code>Branch</code>.
+     */
+    private static final class Branch {
+        final Object[] children;
+        // cumulative length & number of newlines (i.e. for children [0 i])
+        final int[] ends;
+        final int[] lineEnds;
+
+        Branch(Object[] children) {
+            this.children = children;
+            this.ends = new int[children.length];
+            this.lineEnds = new int[children.length];
+            int end = 0;
+            int lineEnd = 0;
+            for (int i = 0; i < children.length; ++i) {
+                end += length(children[i]);
+                lineEnd += lines(children[i]);
+                ends[i] = end;
+                lineEnds[i] = lineEnd;
+            }
+        }
+
+        /**
+         * @return the index of the child containing <code>index</code> (or the last child, if none does)
+         */
+        int childAt(int index) {
+            int i = 0;
+            while (i < ends.length - 1 && ends[i] <= index) {
+                ++i;
+            }
+            return i;
+        }
+
+        int offset(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // mRoot is a Leaf, or a Branch
+    private Object mRoot;
+
+    private Rope(Object root) {
+        mRoot = root;
+    }
+
+    // *** Factories ***
+
+    public Rope() {
+        this(EMPTY_LEAF);
+    }
+    public Rope(CharSequence text) {
+        mRoot = text instanceof Rope ? ((Rope) text).mRoot : EMPTY.replace(0, 0, text).mRoot;
+    }
+
+    public static final Rope EMPTY = new Rope();
+    public static Rope empty() {
+        return EMPTY;
+    }
+    public static Rope of(CharSequence text) {
+        return new Rope(text);
+    }
+
+    // *** Nodes ***
+
+    private static int length(Object node) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).chars.length;
+        } else {
+            final int[] ends = ((Branch) node).ends;
+            return ends[ends.length - 1];
+        }
+    }
+
+    private static int lines(Object node) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).lines;
+        } else {
+            final int[] lineEnds = ((Branch) node).lineEnds;
+            return lineEnds[lineEnds.length - 1];
+        }
+    }
+
+    private static int countLines(char[] leaf, int end) {
+        int count = 0;
+        for (int i = 0; i < end; ++i) {
+            if (leaf[i] == '\n') {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isUnderfull(Object node) {
+        return node instanceof Leaf
+                ? ((Leaf) node).chars.length < MIN_LEAF
+                : ((Branch) node).children.length < MIN_CHILDREN;
+    }
+
+    /**
+     * Split <code>chars</code> into leaves of (roughly) equal size, no bigger than MAX_LEAF.
+     */
+    private static List<Object> splitLeaves(char[] chars) {
+        final List<Object> leaves = new ArrayList<Object>();
+        if (chars.length <= MAX_LEAF) {
+            if (chars.length != 0) {
+                leaves.add(new Leaf(chars));
+            }
+        } else {
+            final int n = (chars.length + MAX_LEAF - 1) / MAX_LEAF;
+            for (int i = 0; i < n; ++i) {
+                leaves.add(new Leaf(Arrays.copyOfRange(chars, (int) ((long) chars.length * i / n), (int) ((long) chars.length * (i + 1) / n))));
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * Group <code>nodes</code> into branches of (roughly) equal size, no bigger than MAX_CHILDREN.
+     */
+    private static List<Object> splitBranches(List<Object> nodes) {
+        final List<Object> branches = new ArrayList<Object>();
+        final int n = (nodes.size() + MAX_CHILDREN - 1) / MAX_CHILDREN;
+        for (int i = 0; i < n; ++i) {
+            branches.add(new Branch(nodes.subList(nodes.size() * i / n, nodes.size() * (i + 1) / n).toArray()));
+        }
+        return branches;
+    }
+
+    /**
+     * Merge each underfull node in [begin end) of <code>nodes</code> with a neighbour (splitting
+     * them again evenly, if the merged node is too big), until none are underfull (or there is only one node).
+     */
+    private static void rebalance(List<Object> nodes, int begin, int end) {
+        int i = begin;
+        while (i < end && 1 < nodes.size()) {
+            if (!isUnderfull(nodes.get(i))) {
+                ++i;
+                continue;
+            }
+            final int left = i + 1 < nodes.size() ? i : i - 1;
+            final List<Object> pair = nodes.subList(left, left + 2);
+            final List<Object> merged = merge(pair.get(0), pair.get(1));
+            pair.clear();
+            pair.addAll(merged);
+            end = Math.max(end + merged.size() - 2, left + merged.size());
+            i = left;
+        }
+    }
+
+    private static List<Object> merge(Object left, Object right) {
+        if (left instanceof Leaf) {
+            final char[] leftLeaf = ((Leaf) left).chars;
+            final char[] rightLeaf = ((Leaf) right).chars;
+            final char[] chars = Arrays.copyOf(leftLeaf, leftLeaf.length + rightLeaf.length);
+            System.arraycopy(rightLeaf, 0, chars, leftLeaf.length, rightLeaf.length);
+            return splitLeaves(chars);
+        } else {
+            final List<Object> children = new ArrayList<Object>(Arrays.asList(((Branch) left).children));
+            final int leftSize = children.size();
+            children.addAll(Arrays.asList(((Branch) right).children));
+            // an underfull branch may have an underfull child
+            rebalance(children, Math.max(0, leftSize - 1), Math.min(children.size(), leftSize + 1));
+            return splitBranches(children);
+        }
+    }
+
+    /**
+     * Replace [start end) within <code>node</code> with <code>text</code>.
+     * @return the replacement nodes (at the same depth as <code>node</code>), which may be empty,
+     * or contain underfull nodes (which must be rebalanced by the caller)
+     */
+    private static List<Object> replace(Object node, int start, int end, String text) {
+        if (node instanceof Leaf) {
+            final char[] leaf = ((Leaf) node).chars;
+            final int textLength = text.length();
+            final char[] chars = new char[leaf.length - (end - start) + textLength];
+            System.arraycopy(leaf, 0, chars, 0, start);
+            text.getChars(0, textLength, chars, start);
+            System.arraycopy(leaf, end, chars, start + textLength, leaf.length - end);
+            return splitLeaves(chars);
+
+        } else {
+            final Branch branch = (Branch) node;
+            final int first = branch.childAt(start);
+            final int last = start == end ? first : branch.childAt(end - 1);
+            final List<Object> children = new ArrayList<Object>(branch.children.length + 2);
+            children.addAll(Arrays.asList(branch.children).subList(0, first));
+
+            final int firstOffset = branch.offset(first);
+            if (first == last) {
+                children.addAll(replace(branch.children[first], start - firstOffset, end - firstOffset, text));
+            } else {
+                // children strictly between first & last are removed
+                children.addAll(replace(branch.children[first], start - firstOffset, branch.ends[first] - firstOffset, text));
+                children.addAll(replace(branch.children[last], 0, end - branch.offset(last), ""));
+            }
+            final int replacedEnd = children.size();
+            children.addAll(Arrays.asList(branch.children).subList(last + 1, branch.children.length));
+
+            rebalance(children, first, replacedEnd);
+            return children.isEmpty() ? children : splitBranches(children);
+        }
+    }
+
+    private static Object buildRoot(List<Object> nodes) {
+        while (1 < nodes.size()) {
+            nodes = splitBranches(nodes);
+        }
+        Object root = nodes.isEmpty() ? EMPTY_LEAF : nodes.get(0);
+        while (root instanceof Branch && ((Branch) root).children.length == 1) {
+            root = ((Branch) root).children[0];
+        }
+        return root;
+    }
+
+    // *** CharSequence ***
+
+    @Override
+    public int length() {
+        return length(mRoot);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || length() <= index) {
+            throw new IndexOutOfBoundsException(index + " (length " + length() + ")");
+        }
+        Object node = mRoot;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            final int child = branch.childAt(index);
+            index -= branch.offset(child);
+            node = branch.children[child];
+        }
+        return ((Leaf) node).chars[index];
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) throws IndexOutOfBoundsException {
+        final int length = length();
+        checkRange(start, end, length);
+        return delete(end, length).delete(0, start);
+    }
+
+    private static void appendTo(Object node, StringBuilder out) {
+        if (node instanceof Leaf) {
+            out.append(((Leaf) node).chars);
+        } else {
+            for (Object child : ((Branch) node).children) {
+                appendTo(child, out);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder out = new StringBuilder(length());
+        appendTo(mRoot, out);
+        return out.toString();
+    }
+
+    // *** SharedText ***
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end < start || length < end) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d %d) out of bounds (length %d)", start, end, length));
+        }
+    }
+
+    @Override
+    public Rope replace(int start, int end, CharSequence text) throws IndexOutOfBoundsException {
+        checkRange(start, end, length());
+        if (start == end && text.length() == 0) {
+            return this;
+        } else if (start == 0 && end == length() && text.length() == 0) {
+            return empty();
+        }
+        return new Rope(buildRoot(replace(mRoot, start, end, text.toString())));
+    }
+
+    @Override
+    public Rope insert(int index, CharSequence text) throws IndexOutOfBoundsException {
+        return replace(index, index, text);
+    }
+
+    @Override
+    public Rope append(CharSequence text) {
+        return replace(length(), length(), text);
+    }
+
+    @Override
+    public Rope delete(int start, int end) throws IndexOutOfBoundsException {
+        return replace(start, end, "");
+    }
+
+    @Override
+    public int lineCount() {
+        return lines(mRoot) + 1;
+    }
+
+    @Override
+    public int lineStart(int line) throws IndexOutOfBoundsException {
+        if (line < 0 || lineCount() <= line) {
+            throw new IndexOutOfBoundsException(line + " (lines " + lineCount() + ")");
+        }
+        if (line == 0) {
+            return 0;
+        }
+        // find the character after newline number 'line' (counting from 1)
+        int newlines = line;
+        int offset = 0;
+        Object node = mRoot;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            int child = 0;
+            while (branch.lineEnds[child] < newlines) {
+                ++child;
+            }
+            if (child != 0) {
+                newlines -= branch.lineEnds[child - 1];
+                offset += branch.ends[child - 1];
+            }
+            node = branch.children[child];
+        }
+        final char[] leaf = ((Leaf) node).chars;
+        for (int i = 0; ; ++i) {
+            if (leaf[i] == '\n' && --newlines == 0) {
+                return offset + i + 1;
+            }
+        }
+    }
+
+    @Override
+    public int lineOf(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || length() < index) {
+            throw new IndexOutOfBoundsException(index + " (length " + length() + ")");
+        }
+        int line = 0;
+        Object node = mRoot;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            final int child = branch.childAt(index);
+            if (child != 0) {
+                line += branch.lineEnds[child - 1];
+                index -= branch.ends[child - 1];
+            }
+            node = branch.children[child];
+        }
+        return line + countLines(((Leaf) node).chars, index);
+    }
+
+    // *** Object ***
+
+    /**
+     * @return true if <code>o</code> is a shared text with the same characters
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof SharedText
+                && ((SharedText) o).length() == length()
+                && toString().equals(o.toString()));
+    }
+
+    /**
+     * @return the same hash code as <code>toString()</code>
+     */
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // *** Externalizable ***
+
+    private static void writeLeaves(Object node, ObjectOutput out) throws IOException {
+        if (node instanceof Leaf) {
+            for (char c : ((Leaf) node).chars) {
+                out.writeChar(c);
+            }
+        } else {
+            for (Object child : ((Branch) node).children) {
+                writeLeaves(child, out);
+            }
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(length());
+        writeLeaves(mRoot, out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = in.readChar();
+        }
+        mRoot = buildRoot(splitLeaves(chars));
+    }
+}
@@ -18,6 +18,15 @@ public final class SharedArrays {
      * @return a new array, with <code>value</code> at <code>index</code>
      */
     public static <T> SharedArray<T> insert(SharedArray<T> array, int index, T value) {
+        if (array instanceof TrieDeque && index < array.size() / 2) {
+            // shift the elements before index back, instead
+            final TrieDeque<T> deque = (TrieDeque<T>) array;
+            TrieDeque<T> result = deque.drop(index).prepend(value);
+            for (int i = index - 1; 0 <= i; --i) {
+                result = result.prepend(deque.get(i));
+            }
+            return result;
+        }
         return array.take(index)
                     .append(value)
                     .appendAll(array.subList(index, array.size()));
@@ -32,6 +41,15 @@ public final class SharedArrays {
      * @return a new array, with the previous value of <code>index</code> removed.
      */
     public static <T> SharedArray<T> remove(SharedArray<T> array, int index) {
+        if (array instanceof TrieDeque && 0 <= index && index < array.size() / 2) {
+            // shift the elements before index forward, instead
+            final TrieDeque<T> deque = (TrieDeque<T>) array;
+            TrieDeque<T> result = deque.drop(index + 1);
+            for (int i = index - 1; 0 <= i; --i) {
+                result = result.prepend(deque.get(i));
+            }
+            return result;
+        }
         return array.take(index)
                     .appendAll(array.subList(index + 1, array.size()));
     }
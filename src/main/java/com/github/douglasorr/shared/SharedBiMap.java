@@ -0,0 +1,48 @@
+package com.github.douglasorr.shared;
+
+import java.util.Set;
+
+/**
+ * A shared map in which each value is also unique, so the map can be looked up in either direction.
+ * <p>Apart from this, it behaves as a normal {@link SharedMap}. Use {@link #inverse()} to view the
+ * map from values to keys, and {@link #containsValue(Object)} to search for a value efficiently.</p>
+ * <p>As values must be unique, {@link #with(Object, Object)} rejects a value that is already mapped
+ * from a different key - to replace that mapping instead, use {@link #forceWith(Object, Object)}.</p>
+ */
+public interface SharedBiMap<K,V> extends SharedMap<K,V> {
+    /**
+     * Return a new map, with the given key-&gt;value mapping.
+     * <p>If there is already a value for the given key, it is replaced.</p>
+     * @param key the key to insert (must not be <code>null</code>)
+     * @param value the value to add, or replace (must not be <code>null</code>)
+     * @return a new map with the key-&gt;value mapping (the original map is unchanged)
+     * @throws IllegalArgumentException if the value is already mapped from a different key
+     */
+    @Override
+    SharedBiMap<K,V> with(K key, V value);
+
+    /**
+     * Return a new map, with the given key-&gt;value mapping, removing any existing mapping
+     * for the key and any existing mapping to the value.
+     * @param key the key to insert (must not be <code>null</code>)
+     * @param value the value to add, or replace (must not be <code>null</code>)
+     * @return a new map with the key-&gt;value mapping (the original map is unchanged),
+     * so <code>map.get(key) == value</code> and <code>map.inverse().get(value) == key</code>.
+     */
+    SharedBiMap<K,V> forceWith(K key, V value);
+
+    @Override
+    SharedBiMap<K,V> without(K key);
+
+    /**
+     * @return the inverse view of this map, from each value to its key
+     * (so <code>map.inverse().inverse()</code> is equal to <code>map</code>)
+     */
+    SharedBiMap<V,K> inverse();
+
+    /**
+     * @return the (immutable) set of values in the map
+     */
+    @Override
+    Set<V> values();
+}
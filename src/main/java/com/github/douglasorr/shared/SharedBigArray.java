@@ -0,0 +1,59 @@
+package com.github.douglasorr.shared;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A shared array indexed by <code>long</code>, for arrays that may grow beyond the
+ * 2<sup>31</sup> elements that a {@link com.github.douglasorr.shared.SharedArray} (a Java List) can hold.
+ * <p>As it cannot be a Java Collection, it offers only the core operations of
+ * {@link com.github.douglasorr.shared.SharedArray} (with <code>long</code> sizes &amp; indices),
+ * and iteration.</p>
+ */
+public interface SharedBigArray<T> extends Iterable<T> {
+    /**
+     * @return the number of elements in this array
+     */
+    long size();
+
+    /**
+     * @return true if this array contains no elements
+     */
+    boolean isEmpty();
+
+    /**
+     * @param index the index in the array to read
+     * @return the value at <code>index</code>
+     */
+    T get(long index) throws IndexOutOfBoundsException;
+
+    /**
+     * Returns a new array with an updated value at <code>index</code>.
+     * (The original array is unmodified.)
+     * @param index the index in the array to update
+     * @param value new value to set
+     * @return a new array, with <code>index</code> updated to contain <code>value</code>
+     */
+    SharedBigArray<T> update(long index, T value) throws IndexOutOfBoundsException;
+
+    /**
+     * Returns a new array, with <code>value</code> added on to the end.
+     * (The original array is unmodified.)
+     * @param value the value at the end of the returned array.
+     * @return a new array, with <code>value</code> at the end
+     */
+    SharedBigArray<T> append(T value);
+
+    /**
+     * Returns a new array, without the last value.
+     * (The original array is unmodified.)
+     * @return a new array, without the last value.
+     */
+    SharedBigArray<T> remend() throws NoSuchElementException;
+
+    /**
+     * Returns a new array containing the first <code>n</code> elements of this array.
+     * @param n the number of leading elements to return from this array.
+     * @return a new array containing the first <code>n</code> elements
+     */
+    SharedBigArray<T> take(long n) throws IndexOutOfBoundsException;
+}
@@ -0,0 +1,36 @@
+package com.github.douglasorr.shared;
+
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * A list that supports shared updates at both ends, and shared concatenation.
+ * Apart from this, it behaves as a normal {@link com.github.douglasorr.shared.SharedList}.
+ * <p>Instead of using <code>List.add</code>, use {@link #append(Object)}, and
+ * instead of using <code>List.addAll</code>, use {@link #concat(java.util.Collection)}.</p>
+ */
+public interface SharedCatList<T> extends SharedList<T> {
+    @Override
+    SharedCatList<T> tail() throws NoSuchElementException;
+
+    @Override
+    SharedCatList<T> prepend(T head);
+
+    /**
+     * Returns a new list with <code>value</code> added to the end.
+     * (The original list is unmodified.)
+     * @param value the value to add
+     * @return a new list with <code>value</code> as the last element
+     */
+    SharedCatList<T> append(T value);
+
+    /**
+     * Returns a new list with all of <code>values</code> added to the end.
+     * (Neither the original list or <code>values</code> are modified.)
+     * <p>Implementations should make this efficient when <code>values</code> is
+     * another list of the same type.</p>
+     * @param values the values to add, in iteration order
+     * @return a new list containing the elements of this list, followed by <code>values</code>
+     */
+    SharedCatList<T> concat(Collection<? extends T> values);
+}
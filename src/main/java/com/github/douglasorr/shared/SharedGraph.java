@@ -0,0 +1,114 @@
+package com.github.douglasorr.shared;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directed graph of nodes &amp; edges, that supports shared updates.
+ * <p>Instead of mutating the graph in place, use {@link #withNode(Object)}, {@link #withEdge(Object, Object)},
+ * {@link #withoutEdge(Object, Object)} and {@link #withoutNode(Object)}, which return a new graph (the original
+ * graph is unmodified). The successors &amp; predecessors of every node are always consistent, i.e.
+ * <code>successors(a).contains(b) == predecessors(b).contains(a)</code>.</p>
+ * <p>Self-loops are allowed, but parallel edges are not (adding an edge that is already present
+ * leaves the graph unchanged).</p>
+ */
+public interface SharedGraph<N> {
+    /**
+     * @return the set of all nodes in the graph
+     */
+    Set<N> nodes();
+
+    /**
+     * @return the number of edges in the graph
+     */
+    int edgeCount();
+
+    /**
+     * @param node the node to look for
+     * @return true if the node is in the graph
+     */
+    boolean containsNode(Object node);
+
+    /**
+     * @param from the source of the edge
+     * @param to the target of the edge
+     * @return true if there is an edge from <code>from</code> to <code>to</code>
+     */
+    boolean containsEdge(Object from, Object to);
+
+    /**
+     * @param node a node
+     * @return the targets of the edges from <code>node</code> (empty if <code>node</code> is not in the graph)
+     */
+    Set<N> successors(N node);
+
+    /**
+     * @param node a node
+     * @return the sources of the edges to <code>node</code> (empty if <code>node</code> is not in the graph)
+     */
+    Set<N> predecessors(N node);
+
+    /**
+     * Return a new graph, with the given node present.
+     * @param node the node to add
+     * @return a new graph containing <code>node</code> (the original graph is unchanged)
+     */
+    SharedGraph<N> withNode(N node);
+
+    /**
+     * Return a new graph, with the given edge present (adding the nodes <code>from</code> &amp; <code>to</code>
+     * if needed).
+     * @param from the source of the edge
+     * @param to the target of the edge
+     * @return a new graph containing the edge (the original graph is unchanged)
+     */
+    SharedGraph<N> withEdge(N from, N to);
+
+    /**
+     * Return a new graph, without the given edge (the nodes <code>from</code> &amp; <code>to</code> remain).
+     * @param from the source of the edge
+     * @param to the target of the edge
+     * @return a new graph without the edge (the original graph is unchanged)
+     */
+    SharedGraph<N> withoutEdge(N from, N to);
+
+    /**
+     * Return a new graph, without the given node or any edges to or from it.
+     * @param node the node to remove
+     * @return a new graph without <code>node</code> (the original graph is unchanged)
+     */
+    SharedGraph<N> withoutNode(N node);
+
+    /**
+     * @param start the node to start from
+     * @return the nodes reachable from <code>start</code> (including <code>start</code> itself),
+     * in breadth-first order (empty if <code>start</code> is not in the graph)
+     */
+    Iterable<N> breadthFirst(N start);
+
+    /**
+     * @param start the node to start from
+     * @return the nodes reachable from <code>start</code> (including <code>start</code> itself),
+     * in depth-first (pre-)order (empty if <code>start</code> is not in the graph)
+     */
+    Iterable<N> depthFirst(N start);
+
+    /**
+     * @param from the node to start from
+     * @param to the node to look for
+     * @return true if there is a path from <code>from</code> to <code>to</code> (every node
+     * in the graph can reach itself)
+     */
+    boolean isReachable(N from, N to);
+
+    /**
+     * @return true if the graph contains no cycles (including self-loops)
+     */
+    boolean isAcyclic();
+
+    /**
+     * @return all nodes in the graph, ordered such that the source of every edge comes before its target
+     * @throws IllegalStateException if the graph contains a cycle
+     */
+    List<N> topologicalOrder() throws IllegalStateException;
+}
@@ -0,0 +1,50 @@
+package com.github.douglasorr.shared;
+
+import java.util.Set;
+
+/**
+ * A shared map with secondary indexes, so that keys can also be looked up by an attribute of their values.
+ * <p>Apart from this, it behaves as a normal {@link SharedMap}. Each index is defined by an
+ * {@link com.github.douglasorr.shared.SharedIndexedMap.Attribute} (added with {@link #withIndex(Attribute)}),
+ * and is updated by every {@link #with(Object, Object)} &amp; {@link #without(Object)}, so that each version of
+ * the map (&amp; all of its indexes) is a single consistent snapshot.</p>
+ */
+public interface SharedIndexedMap<K,V> extends SharedMap<K,V> {
+    /**
+     * A function that extracts an attribute from a value, to be indexed.
+     * <p>It must be a pure function of the value (i.e. always return an equal attribute for the same value).</p>
+     * @param <V> the type of values
+     * @param <A> the type of the attribute
+     */
+    interface Attribute<V, A> {
+        /**
+         * @param value a value in the map
+         * @return the attribute of <code>value</code> to index
+         * (or <code>null</code>, if the value should not appear in the index)
+         */
+        A of(V value);
+    }
+
+    @Override
+    SharedIndexedMap<K,V> with(K key, V value);
+
+    @Override
+    SharedIndexedMap<K,V> without(K key);
+
+    /**
+     * Return a new map, with an additional index (containing all existing values).
+     * @param index the attribute to index, which identifies the index in {@link #lookupBy(Attribute, Object)}
+     * @return a new map with the index (the original map is unchanged), or this map if
+     * <code>index</code> is already present
+     */
+    SharedIndexedMap<K,V> withIndex(Attribute<? super V, ?> index);
+
+    /**
+     * Find all keys whose values have the given attribute.
+     * @param index the attribute of an index of this map (see {@link #withIndex(Attribute)})
+     * @param attribute the attribute to search for
+     * @return the set of keys <code>k</code> for which <code>index.of(get(k))</code> equals <code>attribute</code>
+     * @throws IllegalArgumentException if <code>index</code> is not an index of this map
+     */
+    <A> Set<K> lookupBy(Attribute<? super V, A> index, A attribute) throws IllegalArgumentException;
+}
@@ -0,0 +1,15 @@
+package com.github.douglasorr.shared;
+
+/**
+ * A shared map that remembers the order in which keys were added.
+ * <p>Apart from iteration order, it behaves as a normal {@link SharedMap}. Iteration follows the order
+ * in which keys were first added (as for <code>LinkedHashMap</code>) - replacing the value for an existing
+ * key does not change its position, but removing a key &amp; adding it again moves it to the end.</p>
+ */
+public interface SharedLinkedMap<K,V> extends SharedMap<K,V> {
+    @Override
+    SharedLinkedMap<K,V> with(K key, V value);
+
+    @Override
+    SharedLinkedMap<K,V> without(K key);
+}
@@ -0,0 +1,15 @@
+package com.github.douglasorr.shared;
+
+/**
+ * A shared set that remembers the order in which values were added.
+ * <p>Apart from iteration order, it behaves as a normal {@link SharedSet}. Iteration follows the order
+ * in which values were first added (as for <code>LinkedHashSet</code>) - adding a value that is already
+ * present does not change its position, but removing a value &amp; adding it again moves it to the end.</p>
+ */
+public interface SharedLinkedSet<T> extends SharedSet<T> {
+    @Override
+    SharedLinkedSet<T> with(T value);
+
+    @Override
+    SharedLinkedSet<T> without(T value);
+}
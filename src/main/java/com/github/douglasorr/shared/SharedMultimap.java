@@ -0,0 +1,91 @@
+package com.github.douglasorr.shared;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map from each key to a set of values, which supports shared updates in place of mutable ones.
+ * <p>A multimap is like a <code>Map&lt;K, Set&lt;V&gt;&gt;</code>, except that you never see an empty
+ * set of values - adding the first value for a key adds the key, and removing the last value removes it.
+ * Instead of putting or removing values from the set for a key, use {@link #with(Object, Object)}
+ * and {@link #without(Object, Object)}.</p>
+ * <p>Two multimaps are equal if their {@link #asMap()} views are equal.</p>
+ */
+public interface SharedMultimap<K,V> {
+    /**
+     * @return the number of key-&gt;value pairs in the multimap (not the number of keys)
+     */
+    int size();
+
+    /**
+     * @return <code>true</code> if the multimap contains no key-&gt;value pairs
+     */
+    boolean isEmpty();
+
+    /**
+     * @param key the key to search for
+     * @return <code>true</code> if there is at least one value for the key
+     */
+    boolean containsKey(Object key);
+
+    /**
+     * @param key the key to search for
+     * @param value the value to search for
+     * @return <code>true</code> if the multimap contains the key-&gt;value pair
+     */
+    boolean containsEntry(Object key, Object value);
+
+    /**
+     * @param key the key to search for
+     * @return the number of values for the key (or zero, if it is absent)
+     */
+    int count(Object key);
+
+    /**
+     * @param key the key to search for
+     * @return the set of values for the key (which is empty if the key is absent, never <code>null</code>)
+     */
+    SharedSet<V> get(Object key);
+
+    /**
+     * Return a new multimap, with the given key-&gt;value pair.
+     * @param key the key to add to (must not be <code>null</code>)
+     * @param value the value to add (must not be <code>null</code>)
+     * @return a new multimap with the pair (the original multimap is unchanged),
+     * so <code>multimap.containsEntry(key, value) == true</code>.
+     */
+    SharedMultimap<K,V> with(K key, V value);
+
+    /**
+     * Return a new multimap, without the given key-&gt;value pair (other values for the key are unchanged).
+     * @param key the key to remove from
+     * @param value the value to remove
+     * @return a new multimap without the pair (the original multimap is unchanged),
+     * so <code>multimap.containsEntry(key, value) == false</code>.
+     */
+    SharedMultimap<K,V> without(K key, V value);
+
+    /**
+     * Return a new multimap, without any values for the given key.
+     * @param key the key to remove
+     * @return a new multimap without the key (the original multimap is unchanged),
+     * so <code>multimap.containsKey(key) == false</code>.
+     */
+    SharedMultimap<K,V> withoutAll(K key);
+
+    /**
+     * @return the (immutable) set of keys that have at least one value
+     */
+    Set<K> keySet();
+
+    /**
+     * @return an immutable view of the multimap as a map from each key to its (non-empty) set of values
+     */
+    Map<K, SharedSet<V>> asMap();
+
+    /**
+     * @return an immutable collection of every key-&gt;value pair in the multimap
+     */
+    Collection<Map.Entry<K,V>> entries();
+}
@@ -0,0 +1,62 @@
+package com.github.douglasorr.shared;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A collection that may contain each element more than once (a 'bag'), which supports
+ * shared updates in place of mutable ones.
+ * <p>Apart from this, it behaves as a normal Java immutable Collection, containing each element
+ * {@link #count(Object)} times (so <code>size()</code> is the total of all the counts).
+ * Instead of using <code>Collection.add</code>, use {@link #with(Object)}, and
+ * instead of using <code>Collection.remove</code>, use {@link #without(Object)}.</p>
+ * <p>Two multisets are equal if they have the same count for every element, and the hash code
+ * is the hash code of the map from each element to its count.</p>
+ */
+public interface SharedMultiset<T> extends Collection<T> {
+    /**
+     * @param value the element to search for
+     * @return the number of times the element is present (or zero, if it is absent)
+     */
+    int count(Object value);
+
+    /**
+     * Return a new multiset, with one more of the given value.
+     * @param value the value to add (must not be <code>null</code>)
+     * @return a new multiset with the count of <code>value</code> increased by one
+     * (the original multiset is unchanged)
+     */
+    SharedMultiset<T> with(T value);
+
+    /**
+     * Return a new multiset, with <code>n</code> more of the given value.
+     * @param value the value to add (must not be <code>null</code>)
+     * @param n the number to add (must not be negative, or make the size of the multiset overflow an int)
+     * @return a new multiset with the count of <code>value</code> increased by <code>n</code>
+     * (the original multiset is unchanged)
+     */
+    SharedMultiset<T> with(T value, int n);
+
+    /**
+     * Return a new multiset, with one fewer of the given value.
+     * @param value the value to remove
+     * @return a new multiset with the count of <code>value</code> decreased by one, if it was present
+     * (the original multiset is unchanged)
+     */
+    SharedMultiset<T> without(T value);
+
+    /**
+     * Return a new multiset, with <code>n</code> fewer of the given value.
+     * @param value the value to remove
+     * @param n the number to remove (must not be negative) - if this is more than the current count,
+     * the value is removed altogether
+     * @return a new multiset with the count of <code>value</code> decreased by <code>n</code>
+     * (the original multiset is unchanged)
+     */
+    SharedMultiset<T> without(T value, int n);
+
+    /**
+     * @return the (immutable) set of distinct elements in the multiset
+     */
+    Set<T> elementSet();
+}
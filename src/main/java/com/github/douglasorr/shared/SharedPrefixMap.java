@@ -0,0 +1,23 @@
+package com.github.douglasorr.shared;
+
+/**
+ * A shared map with <code>String</code> keys, which can efficiently find all the keys that start with a prefix.
+ * <p>Apart from {@link #prefixView(String)}, it behaves as a normal {@link SharedMap}.</p>
+ */
+public interface SharedPrefixMap<V> extends SharedMap<String, V> {
+    @Override
+    SharedPrefixMap<V> with(String key, V value);
+
+    @Override
+    SharedPrefixMap<V> without(String key);
+
+    /**
+     * Return the map of all the entries in this map whose keys start with <code>prefix</code>.
+     * <p>The keys are not modified (so every key in the result starts with <code>prefix</code>).
+     * As with any shared map, the result is a map in its own right, so it can be updated
+     * (including with keys that do not start with <code>prefix</code>).</p>
+     * @param prefix the prefix to search for (the empty string returns the whole map)
+     * @return a map containing just the entries whose keys start with <code>prefix</code>
+     */
+    SharedPrefixMap<V> prefixView(String prefix);
+}
@@ -0,0 +1,43 @@
+package com.github.douglasorr.shared;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * A priority queue that supports shared updates in place of mutable ones.
+ * Apart from this, it behaves as a normal Java immutable Queue (so {@link #peek()} and
+ * {@link #element()} may be used to query the least element of the queue).
+ * <p>Instead of using <code>Queue.offer</code>, use {@link #insert(Object)}, and
+ * instead of using <code>Queue.poll</code>, use {@link #deleteMin()}.
+ * As for <code>java.util.PriorityQueue</code>, iteration order is unspecified.</p>
+ */
+public interface SharedPriorityQueue<T> extends Queue<T> {
+    /**
+     * Return a new queue, with the given value added.
+     * @param value the value to add (must not be null)
+     * @return a new queue with the value added (the original queue is unchanged).
+     */
+    SharedPriorityQueue<T> insert(T value);
+
+    /**
+     * Return a new queue, without the least value (i.e. without <code>peek()</code>).
+     * @return a new queue, with the least element removed (the original queue is unchanged).
+     * @throws NoSuchElementException if the queue is empty
+     */
+    SharedPriorityQueue<T> deleteMin() throws NoSuchElementException;
+
+    /**
+     * Return a new queue, containing all the elements of both queues.
+     * @param other the queue to merge with this one (which should use the same ordering)
+     * @return a new queue containing every element of this queue and <code>other</code>,
+     * ordered by this queue's comparator (both original queues are unchanged).
+     */
+    SharedPriorityQueue<T> meld(SharedPriorityQueue<T> other);
+
+    /**
+     * @return the comparator used to order the queue, or <code>null</code> if
+     * it uses the natural ordering of its elements
+     */
+    Comparator<? super T> comparator();
+}
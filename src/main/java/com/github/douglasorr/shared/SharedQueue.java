@@ -0,0 +1,27 @@
+package com.github.douglasorr.shared;
+
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * A first-in-first-out queue that supports shared updates in place of mutable ones.
+ * Apart from this, it behaves as a normal Java immutable Queue (so {@link #peek()} and
+ * {@link #element()} may be used to query the head of the queue).
+ * <p>Instead of using <code>Queue.offer</code>, use {@link #enqueue(Object)}, and
+ * instead of using <code>Queue.poll</code>, use {@link #dequeue()}.</p>
+ */
+public interface SharedQueue<T> extends Queue<T> {
+    /**
+     * Return a new queue, with the given value at the back.
+     * @param value the value to add (must not be null)
+     * @return a new queue with the value at the back (the original queue is unchanged).
+     */
+    SharedQueue<T> enqueue(T value);
+
+    /**
+     * Return a new queue, without the value at the front (i.e. without <code>peek()</code>).
+     * @return a new queue, with the front element removed (the original queue is unchanged).
+     * @throws NoSuchElementException if the queue is empty
+     */
+    SharedQueue<T> dequeue() throws NoSuchElementException;
+}
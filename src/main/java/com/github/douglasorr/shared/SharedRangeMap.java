@@ -0,0 +1,70 @@
+package com.github.douglasorr.shared;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from disjoint, non-empty ranges of keys to values, which supports shared updates
+ * in place of mutable ones.
+ * <p>Instead of a mapping for each key, each value is mapped from a {@link Range} of keys.
+ * Adding a range with {@link #with(Range, Object)} replaces the values for any keys
+ * in that range (splitting existing ranges if they only partly overlap), and adjacent ranges that map
+ * to equal values are coalesced into one. Use {@link #get(Comparable)} to look up the value for a single key.</p>
+ */
+public interface SharedRangeMap<K extends Comparable<? super K>, V> {
+    /**
+     * @param key the key to search for
+     * @return the value for the range containing <code>key</code>, or <code>null</code> if there is none
+     */
+    V get(K key);
+
+    /**
+     * @param key the key to search for
+     * @return the range containing <code>key</code> &amp; its value, or <code>null</code> if there is none
+     */
+    Map.Entry<Range<K>, V> getEntry(K key);
+
+    /**
+     * Return a new range map, in which every key in <code>range</code> maps to <code>value</code>.
+     * @param range the keys to map (if it is empty, the map is unchanged)
+     * @param value the value to map them to (must not be <code>null</code>)
+     * @return a new range map with the range mapped to the value (the original map is unchanged)
+     */
+    SharedRangeMap<K,V> with(Range<K> range, V value);
+
+    /**
+     * Return a new range map, without any value for the keys in <code>range</code>.
+     * @param range the keys to remove
+     * @return a new range map, without a value for any key in the range (the original map is unchanged)
+     */
+    SharedRangeMap<K,V> without(Range<K> range);
+
+    /**
+     * @param range the keys to include
+     * @return a new range map, containing just the mappings for keys in <code>range</code>
+     * (ranges that partly overlap are clipped)
+     */
+    SharedRangeMap<K,V> subRangeMap(Range<K> range);
+
+    /**
+     * @return the least range that contains every key in this map
+     * @throws NoSuchElementException if the map is empty
+     */
+    Range<K> span() throws NoSuchElementException;
+
+    /**
+     * @return the number of (disjoint) ranges in this map
+     */
+    int size();
+
+    /**
+     * @return <code>true</code> if there are no ranges in this map
+     */
+    boolean isEmpty();
+
+    /**
+     * @return an immutable view of this map as a map from each range to its value,
+     * which iterates in increasing order of range
+     */
+    Map<Range<K>, V> asMapOfRanges();
+}
@@ -0,0 +1,165 @@
+package com.github.douglasorr.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A mutable, thread-safe reference to a shared collection (or any immutable value), for publishing new versions of
+ * the collection to other threads.
+ * <p>{@link #update(Update)} usually behaves as a compare-and-set retry loop (read the current value, apply the update,
+ * publish it if the value has not changed in the meantime). When a compare-and-set fails, the reference is marked as
+ * <em>contended</em>, and subsequent updates are queued instead; one thread (the <em>combiner</em>) applies a batch
+ * of queued updates to a private version of the collection, then publishes them all with a single compare-and-set,
+ * so that concurrent writers don't waste work copying paths that would be discarded by failed compare-and-sets.
+ * The reference returns to the compare-and-set mode when the combiner finds no other updates waiting.</p>
+ * <p>Either way, updates are atomic and linearizable, and {@link #get()} never blocks.</p>
+ * <p>Note that the throughput benefit of combining under contention is unverified - the <code>Ref.put</code> profile
+ * (compared with a plain {@link java.util.concurrent.atomic.AtomicReference} compare-and-set loop) has only been run on
+ * a single CPU, where it eliminates repeated (wasted) updates but otherwise performs the same.</p>
+ */
+public class SharedRef<C> {
+    // the maximum number of queued updates that a combiner applies before publishing
+    private static final int MAX_BATCH = 64;
+
+    /** A function to compute the new value of a reference from its current value, for {@link #update(Update)}. */
+    public interface Update<C> {
+        /**
+         * Note that this may be called more than once for a single update (if another thread updates the
+         * reference concurrently), and may be called from a different thread, so should not have side effects.
+         * @param current the current value
+         * @return the new value, return <code>current</code> itself to leave the reference unchanged
+         */
+        C apply(C current);
+    }
+
+    // a queued update, which is completed by the combiner
+    private static final class Request<C> {
+        final Update<C> update;
+        C result;
+        Throwable error;
+        volatile boolean done;
+
+        Request(Update<C> update) {
+            this.update = update;
+        }
+    }
+
+    private final AtomicReference<C> mValue;
+    private final ConcurrentLinkedQueue<Request<C>> mQueue = new ConcurrentLinkedQueue<Request<C>>();
+    private final AtomicBoolean mCombining = new AtomicBoolean(false);
+    private volatile boolean mContended = false;
+
+    public SharedRef(C initial) {
+        mValue = new AtomicReference<C>(initial);
+    }
+
+    /**
+     * @return the current value of the reference
+     */
+    public C get() {
+        return mValue.get();
+    }
+
+    /**
+     * Unconditionally replace the value of the reference.
+     * @param value the new value
+     * @return the old value
+     */
+    public C swap(C value) {
+        return mValue.getAndSet(value);
+    }
+
+    /**
+     * Atomically replace the value of the reference with <code>update.apply(current)</code>.
+     * @param update computes the new value (see {@link Update} - it may be called more than once)
+     * @return the new value, as returned by <code>update</code>
+     */
+    public C update(Update<C> update) {
+        if (!mContended && !mCombining.get()) {
+            final C current = mValue.get();
+            final C next = update.apply(current);
+            if (mValue.compareAndSet(current, next)) {
+                return next;
+            }
+            mContended = true;
+        }
+        final Request<C> request = new Request<C>(update);
+        mQueue.add(request);
+        while (!request.done) {
+            if (mCombining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } catch (VirtualMachineError e) {
+                    // our own update may still be queued (if it was not in the failed batch) - withdraw it
+                    mQueue.remove(request);
+                    throw e;
+                } finally {
+                    mCombining.set(false);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+        if (request.error != null) {
+            SharedRef.<RuntimeException> rethrow(request.error);
+        }
+        return request.result;
+    }
+
+    // rethrow any Throwable as if it were unchecked (an Update may throw a checked exception 'sneakily')
+    private static <E extends Throwable> void rethrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    // apply (& complete) a batch of queued updates - must hold mCombining
+    private void combine() {
+        final List<Request<C>> batch = new ArrayList<Request<C>>();
+        Request<C> request;
+        while (batch.size() < MAX_BATCH && (request = mQueue.poll()) != null) {
+            batch.add(request);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // retry only if a swap() or an uncontended update() wins the race
+            C current;
+            C next;
+            do {
+                current = mValue.get();
+                next = current;
+                for (Request<C> r : batch) {
+                    try {
+                        next = r.update.apply(next);
+                        r.result = next;
+                        r.error = null;
+                    } catch (VirtualMachineError e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        r.error = e; // only fails this update
+                    }
+                }
+            } while (!mValue.compareAndSet(current, next));
+        } catch (VirtualMachineError e) {
+            // nothing has been published, so fail the whole batch (& the combiner)
+            for (Request<C> r : batch) {
+                r.error = e;
+            }
+            throw e;
+        } finally {
+            // every polled request must be completed, or its thread would wait forever
+            for (Request<C> r : batch) {
+                r.done = true;
+            }
+            mContended = batch.size() > 1 || !mQueue.isEmpty();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SharedRef(" + mValue.get() + ")";
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.douglasorr.shared;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * A sorted map that supports shared updates in place of mutable ones.
+ * Apart from this, it behaves as a normal Java immutable NavigableMap.
+ * <p>Instead of using <code>Map.put</code>, use {@link #with(Object,Object)}, and
+ * instead of using <code>Map.remove</code>, use {@link #without(Object)}.</p>
+ * <p>Unlike <code>TreeMap</code>, the sub-maps returned by {@link #subMap(Object, boolean, Object, boolean)},
+ * {@link #headMap(Object, boolean)} and {@link #tailMap(Object, boolean)} are themselves shared sorted maps
+ * (as the original map can never change, they are just smaller maps).</p>
+ */
+public interface SharedSortedMap<K,V> extends SharedMap<K,V>, NavigableMap<K,V> {
+    @Override
+    SharedSortedMap<K,V> with(K key, V value);
+
+    @Override
+    SharedSortedMap<K,V> without(K key);
+
+    /**
+     * Find the position of a key in the map.
+     * @param key the key to search for (which need not be in the map)
+     * @return the number of keys in this map that come before <code>key</code>
+     * (so, if <code>key</code> is present, <code>select(rank(key)).getKey()</code> is <code>key</code>).
+     */
+    int rank(K key);
+
+    /**
+     * Find the entry at a given position in the map.
+     * @param index the position in the map, in the range <code>[0, size())</code>
+     * @return the <code>index</code>'th entry of the map (in the order of the map)
+     */
+    Map.Entry<K,V> select(int index) throws IndexOutOfBoundsException;
+
+    @Override
+    SharedSortedMap<K,V> descendingMap();
+
+    @Override
+    SharedSortedMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive);
+
+    @Override
+    SharedSortedMap<K,V> headMap(K toKey, boolean inclusive);
+
+    @Override
+    SharedSortedMap<K,V> tailMap(K fromKey, boolean inclusive);
+
+    @Override
+    SharedSortedMap<K,V> subMap(K fromKey, K toKey);
+
+    @Override
+    SharedSortedMap<K,V> headMap(K toKey);
+
+    @Override
+    SharedSortedMap<K,V> tailMap(K fromKey);
+}
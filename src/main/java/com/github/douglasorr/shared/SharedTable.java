@@ -0,0 +1,81 @@
+package com.github.douglasorr.shared;
+
+import java.util.List;
+
+/**
+ * A table of rows &amp; named, typed columns, that supports shared updates.
+ * <p>Instead of mutating rows in place, use {@link #appendRow(Object...)}, {@link #updateCell(int, String, Object)}
+ * and {@link #takeRows(int)}, which return a new table (the original table is unmodified).</p>
+ * <p>Cells are read &amp; written as boxed values: {@link java.lang.Long} for
+ * {@link com.github.douglasorr.shared.SharedTable.ColumnType#LONG} columns (although any
+ * integral {@link java.lang.Number} may be written), {@link java.lang.Double} for
+ * {@link com.github.douglasorr.shared.SharedTable.ColumnType#DOUBLE} columns, and {@link java.lang.String}
+ * (which may be null) for {@link com.github.douglasorr.shared.SharedTable.ColumnType#STRING} columns.</p>
+ */
+public interface SharedTable {
+    /**
+     * The type of values in a column.
+     */
+    enum ColumnType { LONG, DOUBLE, STRING }
+
+    /**
+     * @return the number of rows in the table
+     */
+    int rowCount();
+
+    /**
+     * @return the names of the columns, in the order that they were added
+     */
+    List<String> columnNames();
+
+    /**
+     * @param column the name of a column
+     * @return the type of values in <code>column</code>
+     * @throws IllegalArgumentException if there is no such column
+     */
+    ColumnType columnType(String column) throws IllegalArgumentException;
+
+    /**
+     * @param row the index of the row
+     * @param column the name of the column
+     * @return the (boxed) value of the cell
+     */
+    Object get(int row, String column) throws IndexOutOfBoundsException, IllegalArgumentException;
+
+    /**
+     * Returns a new table with an additional column (at the end).
+     * In existing rows, the new column has value zero (for numeric columns), or null (for string columns).
+     * (The original table is unmodified.)
+     * @param column the name of the new column
+     * @param type the type of the new column
+     * @return a new table, with the new column
+     * @throws IllegalArgumentException if there is already a column called <code>column</code>
+     */
+    SharedTable withColumn(String column, ColumnType type) throws IllegalArgumentException;
+
+    /**
+     * Returns a new table with a row added at the end.
+     * (The original table is unmodified.)
+     * @param values the value of each column, in the order of {@link #columnNames()}
+     * @return a new table, with the new row at the end
+     * @throws IllegalArgumentException if the number of values does not match the number of columns
+     */
+    SharedTable appendRow(Object... values) throws IllegalArgumentException;
+
+    /**
+     * Returns a new table with the value of a cell updated.
+     * (The original table is unmodified.)
+     * @param row the index of the row to update
+     * @param column the name of the column to update
+     * @param value the new value
+     * @return a new table, with the cell updated
+     */
+    SharedTable updateCell(int row, String column, Object value) throws IndexOutOfBoundsException, IllegalArgumentException;
+
+    /**
+     * Returns a new table containing the first <code>n</code> rows of this table.
+     * @param n the number of leading rows to keep
+     * @return a new table containing the first <code>n</code> rows
+     */
+    SharedTable takeRows(int n) throws IndexOutOfBoundsException;
+}
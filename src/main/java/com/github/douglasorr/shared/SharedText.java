@@ -0,0 +1,72 @@
+package com.github.douglasorr.shared;
+
+/**
+ * A sequence of characters that supports shared edits, for large text buffers that are
+ * edited in many small steps (where each version of the text may need to be kept).
+ * <p>Instead of building a new <code>String</code> for each edit, use
+ * {@link #insert(int, CharSequence)}, {@link #delete(int, int)} or {@link #replace(int, int, CharSequence)},
+ * which return a new text sharing most of its structure with the original.</p>
+ * <p>Lines are separated by <code>'\n'</code> - a text with <code>k</code> newlines has <code>k + 1</code>
+ * lines (the last of which may be empty).</p>
+ */
+public interface SharedText extends CharSequence {
+    /**
+     * Returns a new text with the characters in [<code>start</code> <code>end</code>)
+     * replaced by <code>text</code>.
+     * (The original text is unmodified.)
+     * @param start the index of the first character to replace
+     * @param end the index after the last character to replace
+     * @param text the replacement characters (may have a different length to the range)
+     * @return a new text, with the range replaced
+     */
+    SharedText replace(int start, int end, CharSequence text) throws IndexOutOfBoundsException;
+
+    /**
+     * Returns a new text with <code>text</code> inserted before the character at <code>index</code>.
+     * (The original text is unmodified.)
+     * @param index the position to insert at (which may be <code>length()</code>)
+     * @param text the characters to insert
+     * @return a new text, containing <code>text</code> starting at <code>index</code>
+     */
+    SharedText insert(int index, CharSequence text) throws IndexOutOfBoundsException;
+
+    /**
+     * Returns a new text with <code>text</code> added on to the end.
+     * (The original text is unmodified.)
+     * @param text the characters to append
+     * @return a new text, ending with <code>text</code>
+     */
+    SharedText append(CharSequence text);
+
+    /**
+     * Returns a new text without the characters in [<code>start</code> <code>end</code>).
+     * (The original text is unmodified.)
+     * @param start the index of the first character to remove
+     * @param end the index after the last character to remove
+     * @return a new text, without the range
+     */
+    SharedText delete(int start, int end) throws IndexOutOfBoundsException;
+
+    /**
+     * Returns the characters in [<code>start</code> <code>end</code>), as a shared text.
+     */
+    @Override
+    SharedText subSequence(int start, int end) throws IndexOutOfBoundsException;
+
+    /**
+     * @return the number of lines in this text (one more than the number of newlines)
+     */
+    int lineCount();
+
+    /**
+     * @param line the (zero-based) line number
+     * @return the index of the first character of <code>line</code>
+     */
+    int lineStart(int line) throws IndexOutOfBoundsException;
+
+    /**
+     * @param index a character index (which may be <code>length()</code>)
+     * @return the (zero-based) number of the line containing <code>index</code>
+     */
+    int lineOf(int index) throws IndexOutOfBoundsException;
+}
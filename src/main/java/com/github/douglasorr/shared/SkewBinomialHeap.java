@@ -0,0 +1,366 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared priority queue, as a skew binomial heap
+ * (following Okasaki, "Purely Functional Data Structures").
+ * <p>The heap is a list of skew binomial trees, in increasing order of rank, and the least root is cached,
+ * so {@link #peek()} is O(1), {@link #insert(Object)} is worst case O(1), and both {@link #deleteMin()}
+ * and {@link #meld(SharedPriorityQueue)} are O(log(n)). Like other Java queues, it cannot contain null.</p>
+ */
+public class SkewBinomialHeap<T> extends AbstractQueue<T> implements SharedPriorityQueue<T>, Externalizable {
+    private static final long serialVersionUID = -6034957871620335196L;
+
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+        @Override
+        public int compare(Object a, Object b) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+    };
+
+    // an immutable singly linked list (for the trees of the heap, the children of a tree & the extra values of a tree)
+    private static final class Cons<E> {
+        final E head;
+        final Cons<E> tail;
+        Cons(E head, Cons<E> tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+    }
+
+    // A skew binomial tree of rank r contains a root value, up to r extra values (all no less than the root)
+    // and r children, of ranks r-1 down to 0 (whose roots are no less than the root).
+    private static final class Tree<E> {
+        final int rank;
+        final E value;
+        final Cons<E> extras;
+        final Cons<Tree<E>> children;
+        Tree(int rank, E value, Cons<E> extras, Cons<Tree<E>> children) {
+            this.rank = rank;
+            this.value = value;
+            this.extras = extras;
+            this.children = children;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // mTrees: in increasing order of rank (only the first two may have the same rank)
+    private Cons<Tree<T>> mTrees;
+    private int mSize;
+    // the least value in the heap (or null, if empty)
+    private T mMin;
+    // never null (NATURAL_ORDER is used for a null comparator)
+    private Comparator<? super T> mComparator;
+
+    private SkewBinomialHeap(Cons<Tree<T>> trees, int size, T min, Comparator<? super T> comparator) {
+        mTrees = trees;
+        mSize = size;
+        mMin = min;
+        mComparator = comparator;
+    }
+
+    // *** Factories ***
+
+    public SkewBinomialHeap() {
+        this(null, 0, null, NATURAL_ORDER);
+    }
+    public SkewBinomialHeap(Comparator<? super T> comparator) {
+        this(null, 0, null, orNaturalOrder(comparator));
+    }
+    /**
+     * Create a heap containing all the values in a collection. If the collection is a
+     * <code>SharedPriorityQueue</code>, <code>PriorityQueue</code> or <code>SortedSet</code>,
+     * the heap uses the same ordering, otherwise it uses the natural ordering.
+     * @param c the values to add
+     */
+    public SkewBinomialHeap(Collection<? extends T> c) {
+        SkewBinomialHeap<T> heap;
+        if (c instanceof SkewBinomialHeap) {
+            heap = (SkewBinomialHeap<T>) c;
+        } else {
+            Comparator<? super T> comparator = null;
+            if (c instanceof SharedPriorityQueue) {
+                comparator = ((SharedPriorityQueue<T>) c).comparator();
+            } else if (c instanceof PriorityQueue) {
+                comparator = ((PriorityQueue<T>) c).comparator();
+            } else if (c instanceof SortedSet) {
+                comparator = ((SortedSet<T>) c).comparator();
+            }
+            heap = new SkewBinomialHeap<T>(comparator);
+            for (T value : c) {
+                heap = heap.insert(value);
+            }
+        }
+        mTrees = heap.mTrees;
+        mSize = heap.mSize;
+        mMin = heap.mMin;
+        mComparator = heap.mComparator;
+    }
+
+    public static final SkewBinomialHeap EMPTY = new SkewBinomialHeap();
+    public static <T> SkewBinomialHeap<T> empty() {
+        return EMPTY;
+    }
+    public static <T> SkewBinomialHeap<T> empty(Comparator<? super T> comparator) {
+        return comparator == null ? EMPTY : new SkewBinomialHeap<T>(comparator);
+    }
+    public static <T> SkewBinomialHeap<T> singleton(T value) {
+        return SkewBinomialHeap.<T> empty().insert(value);
+    }
+    public static <T> SkewBinomialHeap<T> of(T... values) {
+        return new SkewBinomialHeap<T>(Arrays.asList(values));
+    }
+
+    // *** Core methods ***
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final ArrayDeque<Tree<T>> mPending = new ArrayDeque<Tree<T>>();
+            private Cons<T> mExtras = null;
+            {
+                for (Cons<Tree<T>> trees = mTrees; trees != null; trees = trees.tail) {
+                    mPending.push(trees.head);
+                }
+            }
+            @Override
+            public boolean hasNext() {
+                return mExtras != null || !mPending.isEmpty();
+            }
+            @Override
+            public T next() {
+                if (mExtras != null) {
+                    final T value = mExtras.head;
+                    mExtras = mExtras.tail;
+                    return value;
+                }
+                if (mPending.isEmpty()) {
+                    throw new NoSuchElementException("Iterator next() called at the end of a SkewBinomialHeap");
+                }
+                final Tree<T> tree = mPending.pop();
+                for (Cons<Tree<T>> children = tree.children; children != null; children = children.tail) {
+                    mPending.push(children.head);
+                }
+                mExtras = tree.extras;
+                return tree.value;
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedPriorityQueue using its iterator)");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public T peek() {
+        return mMin;
+    }
+
+    @Override
+    public boolean offer(T value) {
+        throw new UnsupportedOperationException("offer() called on an immutable queue (use insert() instead)");
+    }
+
+    @Override
+    public T poll() {
+        throw new UnsupportedOperationException("poll() called on an immutable queue (use peek() and deleteMin() instead)");
+    }
+
+    // *** SharedPriorityQueue methods ***
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return mComparator == NATURAL_ORDER ? null : mComparator;
+    }
+
+    @Override
+    public SkewBinomialHeap<T> insert(T value) {
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a SkewBinomialHeap");
+        }
+        final Cons<Tree<T>> trees = mTrees;
+        Cons<Tree<T>> newTrees;
+        if (trees != null && trees.tail != null && trees.head.rank == trees.tail.head.rank) {
+            // skew link - combine the first two trees & the new value into a tree of the next rank
+            newTrees = new Cons<Tree<T>>(skewLink(value, trees.head, trees.tail.head, mComparator), trees.tail.tail);
+        } else {
+            newTrees = new Cons<Tree<T>>(new Tree<T>(0, value, null, null), trees);
+        }
+        final T newMin = (mMin == null || mComparator.compare(value, mMin) < 0) ? value : mMin;
+        return new SkewBinomialHeap<T>(newTrees, mSize + 1, newMin, mComparator);
+    }
+
+    @Override
+    public SkewBinomialHeap<T> deleteMin() throws NoSuchElementException {
+        if (mTrees == null) {
+            throw new NoSuchElementException("deleteMin() called on an empty queue");
+        }
+        if (mSize == 1) {
+            return mComparator == NATURAL_ORDER ? SkewBinomialHeap.<T> empty() : new SkewBinomialHeap<T>(mComparator);
+        }
+        // find the tree with the least root, and remove it from the list
+        Tree<T> minTree = mTrees.head;
+        for (Cons<Tree<T>> trees = mTrees.tail; trees != null; trees = trees.tail) {
+            if (mComparator.compare(trees.head.value, minTree.value) < 0) {
+                minTree = trees.head;
+            }
+        }
+        final Cons<Tree<T>> rest = removeTree(mTrees, minTree);
+
+        // merge the children of the removed tree back in (reversed, so they are in increasing order of rank)
+        Cons<Tree<T>> children = null;
+        for (Cons<Tree<T>> c = minTree.children; c != null; c = c.tail) {
+            children = new Cons<Tree<T>>(c.head, children);
+        }
+        SkewBinomialHeap<T> heap = new SkewBinomialHeap<T>(
+                mergeTrees(normalize(children, mComparator), normalize(rest, mComparator), mComparator),
+                mSize - 1 - length(minTree.extras), null, mComparator);
+        heap.mMin = heap.findMin();
+
+        // and re-insert the extra values of the removed tree
+        for (Cons<T> extras = minTree.extras; extras != null; extras = extras.tail) {
+            heap = heap.insert(extras.head);
+        }
+        return heap;
+    }
+
+    @Override
+    public SkewBinomialHeap<T> meld(SharedPriorityQueue<T> other) {
+        if (other instanceof SkewBinomialHeap && ((SkewBinomialHeap<T>) other).mComparator == mComparator) {
+            final SkewBinomialHeap<T> otherHeap = (SkewBinomialHeap<T>) other;
+            if (otherHeap.isEmpty()) {
+                return this;
+            } else if (isEmpty()) {
+                return otherHeap;
+            }
+            return new SkewBinomialHeap<T>(
+                    mergeTrees(normalize(mTrees, mComparator), normalize(otherHeap.mTrees, mComparator), mComparator),
+                    mSize + otherHeap.mSize,
+                    mComparator.compare(otherHeap.mMin, mMin) < 0 ? otherHeap.mMin : mMin,
+                    mComparator);
+        }
+        // a different type or ordering - just insert every value
+        SkewBinomialHeap<T> heap = this;
+        for (T value : other) {
+            heap = heap.insert(value);
+        }
+        return heap;
+    }
+
+    // *** Helpers ***
+
+    private static <T> Comparator<? super T> orNaturalOrder(Comparator<? super T> comparator) {
+        if (comparator == null) {
+            return NATURAL_ORDER;
+        }
+        return comparator;
+    }
+
+    private T findMin() {
+        T min = null;
+        for (Cons<Tree<T>> trees = mTrees; trees != null; trees = trees.tail) {
+            if (min == null || mComparator.compare(trees.head.value, min) < 0) {
+                min = trees.head.value;
+            }
+        }
+        return min;
+    }
+
+    private static int length(Cons<?> list) {
+        int n = 0;
+        for (; list != null; list = list.tail) {
+            ++n;
+        }
+        return n;
+    }
+
+    /** Return a copy of <code>trees</code>, without <code>tree</code> (which must be present). */
+    private static <T> Cons<Tree<T>> removeTree(Cons<Tree<T>> trees, Tree<T> tree) {
+        return trees.head == tree ? trees.tail : new Cons<Tree<T>>(trees.head, removeTree(trees.tail, tree));
+    }
+
+    /** Link two trees of the same rank, making a tree of the next rank. */
+    private static <T> Tree<T> link(Tree<T> a, Tree<T> b, Comparator<? super T> comparator) {
+        if (comparator.compare(a.value, b.value) <= 0) {
+            return new Tree<T>(a.rank + 1, a.value, a.extras, new Cons<Tree<T>>(b, a.children));
+        } else {
+            return new Tree<T>(b.rank + 1, b.value, b.extras, new Cons<Tree<T>>(a, b.children));
+        }
+    }
+
+    /** Link two trees of the same rank, and a new value, making a tree of the next rank. */
+    private static <T> Tree<T> skewLink(T value, Tree<T> a, Tree<T> b, Comparator<? super T> comparator) {
+        // the least of the three values becomes the root, and the new value or a root becomes an extra
+        final Tree<T> root = comparator.compare(a.value, b.value) <= 0 ? a : b;
+        final Tree<T> child = root == a ? b : a;
+        final Cons<Tree<T>> children = new Cons<Tree<T>>(child, root.children);
+        if (comparator.compare(value, root.value) <= 0) {
+            return new Tree<T>(root.rank + 1, value, new Cons<T>(root.value, root.extras), children);
+        } else {
+            return new Tree<T>(root.rank + 1, root.value, new Cons<T>(value, root.extras), children);
+        }
+    }
+
+    /** Add a tree to a list of trees in strictly increasing rank (where tree is no larger than the first). */
+    private static <T> Cons<Tree<T>> insertTree(Tree<T> tree, Cons<Tree<T>> trees, Comparator<? super T> comparator) {
+        while (trees != null && trees.head.rank <= tree.rank) {
+            tree = link(tree, trees.head, comparator);
+            trees = trees.tail;
+        }
+        return new Cons<Tree<T>>(tree, trees);
+    }
+
+    /** Remove the leading duplicate rank (if any) from a list of trees. */
+    private static <T> Cons<Tree<T>> normalize(Cons<Tree<T>> trees, Comparator<? super T> comparator) {
+        return trees == null ? null : insertTree(trees.head, trees.tail, comparator);
+    }
+
+    /** Merge two lists of trees, in strictly increasing rank. */
+    private static <T> Cons<Tree<T>> mergeTrees(Cons<Tree<T>> a, Cons<Tree<T>> b, Comparator<? super T> comparator) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else if (a.head.rank < b.head.rank) {
+            return new Cons<Tree<T>>(a.head, mergeTrees(a.tail, b, comparator));
+        } else if (b.head.rank < a.head.rank) {
+            return new Cons<Tree<T>>(b.head, mergeTrees(a, b.tail, comparator));
+        } else {
+            return insertTree(link(a.head, b.head, comparator), mergeTrees(a.tail, b.tail, comparator), comparator);
+        }
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(comparator());
+        out.writeInt(mSize);
+        for (T value : this) {
+            out.writeObject(value);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        SkewBinomialHeap<T> heap = new SkewBinomialHeap<T>((Comparator<? super T>) in.readObject());
+        final int size = in.readInt();
+        for (int i = 0; i < size; ++i) {
+            heap = heap.insert((T) in.readObject());
+        }
+        mTrees = heap.mTrees;
+        mSize = heap.mSize;
+        mMin = heap.mMin;
+        mComparator = heap.mComparator;
+    }
+}
@@ -0,0 +1,511 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A shared sparse array, which maps non-negative <code>int</code> indices to values,
+ * for index spaces that are huge and mostly empty.
+ * <p>This is a bitmap-compressed radix trie, like {@link com.github.douglasorr.shared.HashTrieMap}
+ * but keyed directly by the index, taking 5-bit chunks from the most significant end (so iteration is in
+ * increasing index order). Each value is stored at the shallowest level where its index is unique, so
+ * memory is proportional to the number of populated indices (not the largest index).
+ * {@link #get(int)}, {@link #withIndex(int, Object)}, {@link #withoutIndex(int)}, {@link #nextSetIndex(int)} and
+ * {@link #previousSetIndex(int)} all take O(log(n)) time (and at most 7 levels).</p>
+ * <p>It is also a {@link SharedMap} from Integer indices, but the <code>int</code> methods avoid boxing the index
+ * (they have distinct names, so that calls such as <code>withIndex(1, 2)</code> on a <code>SparseTrieArray&lt;Integer&gt;</code>
+ * are not ambiguous).</p>
+ */
+public class SparseTrieArray<T> extends AbstractMap<Integer, T> implements SharedMap<Integer, T>, Externalizable {
+    private static final long serialVersionUID = 8150618287962735731L;
+    private static final int SHIFT = 5;
+    private static final int MASK = (1 << SHIFT) - 1;
+    // the shift of the chunk at the root (31 index bits, so the root chunk is just the top bit)
+    private static final int ROOT_SHIFT = 30;
+
+    // A node in the trie, which has a location-defined index prefix (like HashTrieMap.Node).
+    // For a chunk 'c' of the index, it is present if hasChild & (1 << c) != 0,
+    // and the index of the child for 'c' is bitCount(hasChild & ((1 << c) - 1)).
+    private static final class Node {
+        // children :: [Node | Leaf]
+        final Object[] children;
+        final int hasChild;
+        Node(Object[] children, int hasChild) {
+            this.children = children;
+            this.hasChild = hasChild;
+            assert Integer.bitCount(hasChild) == children.length;
+        }
+    }
+
+    // A single index->value mapping, which is also returned as an entry when iterating.
+    private static final class Leaf<T> implements Map.Entry<Integer, T> {
+        final int index;
+        final T value;
+        Leaf(int index, T value) {
+            this.index = index;
+            this.value = value;
+        }
+        @Override
+        public Integer getKey() {
+            return index;
+        }
+        @Override
+        public T getValue() {
+            return value;
+        }
+        @Override
+        public T setValue(T value) {
+            throw new UnsupportedOperationException("setValue() called on an immutable entry");
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?,?> other = (Map.Entry) o;
+            return Integer.valueOf(index).equals(other.getKey()) && value.equals(other.getValue());
+        }
+        @Override
+        public int hashCode() {
+            return index ^ value.hashCode();
+        }
+        @Override
+        public String toString() {
+            return index + "=" + value;
+        }
+    }
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // root :: Node | Leaf | Null
+    private Object mRoot;
+    private int mSize;
+    // cached implementations
+    private transient Set<Entry<Integer, T>> mEntrySet = null;
+
+    private SparseTrieArray(Object root, int size) {
+        mRoot = root;
+        mSize = size;
+    }
+
+    // *** Factories ***
+
+    public SparseTrieArray() {
+        this(null, 0);
+    }
+    public SparseTrieArray(Map<Integer, ? extends T> m) {
+        SparseTrieArray<T> array;
+        if (m instanceof SparseTrieArray) {
+            array = (SparseTrieArray<T>) m;
+        } else {
+            array = empty();
+            for (Map.Entry<Integer, ? extends T> entry : m.entrySet()) {
+                array = array.withIndex(entry.getKey(), entry.getValue());
+            }
+        }
+        mRoot = array.mRoot;
+        mSize = array.mSize;
+    }
+    public static final SparseTrieArray EMPTY = new SparseTrieArray();
+    public static <T> SparseTrieArray<T> empty() {
+        return EMPTY;
+    }
+    public static <T> SparseTrieArray<T> singleton(int index, T value) {
+        return SparseTrieArray.<T> empty().withIndex(index, value);
+    }
+    public static <T> SparseTrieArray<T> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a sparse array containing the given index-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>SparseTrieArray.of(7, "seven", 1000000, "a million");</code>
+     * @param index the first index
+     * @param value the first value
+     * @param indexValues an even number of indices (type Integer), and values (type T), in which
+     * later mappings will overwrite earlier ones
+     * @return a sparse array containing all of the index-&gt;value mappings
+     */
+    public static <T> SparseTrieArray<T> of(int index, T value, Object... indexValues) {
+        if (indexValues.length % 2 != 0) {
+            throw new IllegalArgumentException("SparseTrieArray.of() called with an odd number of indexValues (cannot partition them into pairs)");
+        }
+        SparseTrieArray<T> m = singleton(index, value);
+        for (int i = 0; i < indexValues.length; i += 2) {
+            m = m.withIndex((Integer) indexValues[i], (T) indexValues[i + 1]);
+        }
+        return m;
+    }
+
+    private static int chunk(int index, int shift) {
+        return (index >>> shift) & MASK;
+    }
+
+    // *** AbstractMap ***
+
+    private class EntrySet extends AbstractSet<Entry<Integer, T>> {
+        @Override
+        public Iterator<Entry<Integer, T>> iterator() {
+            return new InOrderIterator<T>(mRoot);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        // overridden for performance
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?,?> mapping = (Entry) o;
+            final Object value = mapping.getValue();
+            return value != null && value.equals(SparseTrieArray.this.get(mapping.getKey()));
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, T>> entrySet() {
+        Set<Entry<Integer, T>> s = mEntrySet;
+        return s != null ? s : (mEntrySet = new EntrySet());
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public T get(Object key) {
+        return key instanceof Integer ? get((int) (Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    // *** Sparse array methods ***
+
+    /**
+     * @param index the index to look up
+     * @return the value at that index, or <code>null</code> if there is none
+     */
+    public T get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        Object current = mRoot;
+        for (int shift = ROOT_SHIFT; current instanceof Node; shift -= SHIFT) {
+            final Node node = (Node) current;
+            final int mask = 1 << chunk(index, shift);
+            if ((node.hasChild & mask) == 0) {
+                return null;
+            }
+            current = node.children[Integer.bitCount(node.hasChild & (mask - 1))];
+        }
+        final Leaf<T> leaf = (Leaf<T>) current;
+        return (leaf != null && leaf.index == index) ? leaf.value : null;
+    }
+
+    /**
+     * @param index the index to look up
+     * @return <code>true</code> if there is a value at that index
+     */
+    public boolean containsIndex(int index) {
+        return get(index) != null;
+    }
+
+    /**
+     * Find the least populated index, no less than <code>fromIndex</code>
+     * (as for <code>BitSet.nextSetBit</code>).
+     * @param fromIndex the index to start searching from (inclusive)
+     * @return the least index <code>&gt;= fromIndex</code> that has a value, or <code>-1</code> if there is none
+     */
+    public int nextSetIndex(int fromIndex) {
+        final Leaf<T> leaf = next(mRoot, Math.max(fromIndex, 0), ROOT_SHIFT);
+        return leaf == null ? -1 : leaf.index;
+    }
+
+    /**
+     * Find the greatest populated index, no greater than <code>fromIndex</code>
+     * (as for <code>BitSet.previousSetBit</code>).
+     * @param fromIndex the index to start searching from (inclusive)
+     * @return the greatest index <code>&lt;= fromIndex</code> that has a value, or <code>-1</code> if there is none
+     */
+    public int previousSetIndex(int fromIndex) {
+        if (fromIndex < 0) {
+            return -1;
+        }
+        final Leaf<T> leaf = previous(mRoot, fromIndex, ROOT_SHIFT);
+        return leaf == null ? -1 : leaf.index;
+    }
+
+    // the leaf with the least index >= fromIndex, under current (or null)
+    private static <T> Leaf<T> next(Object current, int fromIndex, int shift) {
+        if (current == null) {
+            return null;
+        } else if (current instanceof Leaf) {
+            final Leaf<T> leaf = (Leaf<T>) current;
+            return fromIndex <= leaf.index ? leaf : null;
+        }
+        final Node node = (Node) current;
+        final int c = chunk(fromIndex, shift);
+        final int mask = 1 << c;
+        int childIndex = Integer.bitCount(node.hasChild & (mask - 1));
+        if ((node.hasChild & mask) != 0) {
+            final Leaf<T> leaf = next(node.children[childIndex], fromIndex, shift - SHIFT);
+            if (leaf != null) {
+                return leaf;
+            }
+            ++childIndex;
+        }
+        // every index in a later child is greater than fromIndex
+        return childIndex < node.children.length ? SparseTrieArray.<T> first(node.children[childIndex]) : null;
+    }
+
+    // the leaf with the greatest index <= fromIndex, under current (or null)
+    private static <T> Leaf<T> previous(Object current, int fromIndex, int shift) {
+        if (current == null) {
+            return null;
+        } else if (current instanceof Leaf) {
+            final Leaf<T> leaf = (Leaf<T>) current;
+            return leaf.index <= fromIndex ? leaf : null;
+        }
+        final Node node = (Node) current;
+        final int c = chunk(fromIndex, shift);
+        final int mask = 1 << c;
+        final int childIndex = Integer.bitCount(node.hasChild & (mask - 1));
+        if ((node.hasChild & mask) != 0) {
+            final Leaf<T> leaf = previous(node.children[childIndex], fromIndex, shift - SHIFT);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        // every index in an earlier child is less than fromIndex
+        return 0 < childIndex ? SparseTrieArray.<T> last(node.children[childIndex - 1]) : null;
+    }
+
+    // the leaf with the least index under current
+    private static <T> Leaf<T> first(Object current) {
+        while (current instanceof Node) {
+            current = ((Node) current).children[0];
+        }
+        return (Leaf<T>) current;
+    }
+
+    // the leaf with the greatest index under current
+    private static <T> Leaf<T> last(Object current) {
+        while (current instanceof Node) {
+            final Object[] children = ((Node) current).children;
+            current = children[children.length - 1];
+        }
+        return (Leaf<T>) current;
+    }
+
+    // *** SharedMap ***
+
+    @Override
+    public SparseTrieArray<T> with(Integer index, T value) {
+        return withIndex(index, value);
+    }
+
+    @Override
+    public SparseTrieArray<T> without(Integer index) {
+        return index == null ? this : withoutIndex(index);
+    }
+
+    /**
+     * Return a new sparse array, with the given value at the given index.
+     * @param index the index to set (must not be negative)
+     * @param value the value to set (must not be <code>null</code>)
+     * @return a new array with the value at the index (the original array is unchanged)
+     */
+    public SparseTrieArray<T> withIndex(int index, T value) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Cannot add a negative index (" + index + ") to a SparseTrieArray");
+        }
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a SparseTrieArray");
+        }
+        final int[] sizeChange = new int[1];
+        final Object newRoot = insert(mRoot, index, value, ROOT_SHIFT, sizeChange);
+        return newRoot == mRoot ? this : new SparseTrieArray<T>(newRoot, mSize + sizeChange[0]);
+    }
+
+    /**
+     * Return a new sparse array, without any value at the given index.
+     * @param index the index to clear
+     * @return a new array without a value at the index (the original array is unchanged)
+     */
+    public SparseTrieArray<T> withoutIndex(int index) {
+        if (index < 0 || mRoot == null) {
+            return this;
+        }
+        final Object newRoot = remove(mRoot, index, ROOT_SHIFT);
+        if (newRoot == mRoot) {
+            return this;
+        }
+        return newRoot == null ? SparseTrieArray.<T> empty() : new SparseTrieArray<T>(newRoot, mSize - 1);
+    }
+
+    private static <T> Object insert(Object current, int index, T value, int shift, int[] sizeChange) {
+        if (current == null) {
+            sizeChange[0] = 1;
+            return new Leaf<T>(index, value);
+
+        } else if (current instanceof Leaf) {
+            final Leaf<T> leaf = (Leaf<T>) current;
+            if (leaf.index == index) {
+                return leaf.value == value ? current : new Leaf<T>(index, value);
+            }
+            // split into a Node, and insert into that
+            return insert(new Node(new Object[] { leaf }, 1 << chunk(leaf.index, shift)), index, value, shift, sizeChange);
+
+        } else {
+            final Node node = (Node) current;
+            final int mask = 1 << chunk(index, shift);
+            final int childIndex = Integer.bitCount(node.hasChild & (mask - 1));
+            if ((node.hasChild & mask) == 0) {
+                final Object[] children = new Object[node.children.length + 1];
+                System.arraycopy(node.children, 0, children, 0, childIndex);
+                children[childIndex] = new Leaf<T>(index, value);
+                System.arraycopy(node.children, childIndex, children, childIndex + 1, node.children.length - childIndex);
+                sizeChange[0] = 1;
+                return new Node(children, node.hasChild | mask);
+            }
+            final Object child = node.children[childIndex];
+            final Object newChild = insert(child, index, value, shift - SHIFT, sizeChange);
+            if (newChild == child) {
+                return current;
+            }
+            final Object[] children = node.children.clone();
+            children[childIndex] = newChild;
+            return new Node(children, node.hasChild);
+        }
+    }
+
+    private static Object remove(Object current, int index, int shift) {
+        if (current instanceof Leaf) {
+            return ((Leaf) current).index == index ? null : current;
+        }
+        final Node node = (Node) current;
+        final int mask = 1 << chunk(index, shift);
+        if ((node.hasChild & mask) == 0) {
+            return current;
+        }
+        final int childIndex = Integer.bitCount(node.hasChild & (mask - 1));
+        final Object child = node.children[childIndex];
+        final Object newChild = remove(child, index, shift - SHIFT);
+        if (newChild == child) {
+            return current;
+
+        } else if (newChild == null) {
+            // delete or collapse this node if possible (a leaf can move up, as it knows its own index)
+            if (node.children.length == 1) {
+                return null;
+            } else if (node.children.length == 2 && node.children[1 - childIndex] instanceof Leaf) {
+                return node.children[1 - childIndex];
+            }
+            final Object[] children = new Object[node.children.length - 1];
+            System.arraycopy(node.children, 0, children, 0, childIndex);
+            System.arraycopy(node.children, childIndex + 1, children, childIndex, children.length - childIndex);
+            return new Node(children, node.hasChild & ~mask);
+
+        } else if (node.children.length == 1 && newChild instanceof Leaf) {
+            return newChild; // collapse a chain of single-child nodes
+
+        } else {
+            final Object[] children = node.children.clone();
+            children[childIndex] = newChild;
+            return new Node(children, node.hasChild);
+        }
+    }
+
+    private static final class InOrderIterator<T> implements Iterator<Map.Entry<Integer, T>> {
+        // stack of nodes from root to current leaf (31 bits / 5 bits per node = 7 levels)
+        private static final int MAX_DEPTH = 7;
+        private final Node[] mNodeStack = new Node[MAX_DEPTH];
+        private final int[] mNodeIndexStack = new int[MAX_DEPTH];
+        private int mNodeStackPointer = -1;
+        private Leaf<T> mNext;
+
+        private InOrderIterator(Object root) {
+            if (root instanceof Node) {
+                mNodeStack[0] = (Node) root;
+                mNodeIndexStack[0] = -1;
+                mNodeStackPointer = 0;
+                moveToNext();
+            } else {
+                mNext = (Leaf<T>) root;
+            }
+        }
+
+        private void moveToNext() {
+            // walk up the tree until we have successfully advanced to the next child
+            while (0 <= mNodeStackPointer
+                    && mNodeStack[mNodeStackPointer].children.length <= ++mNodeIndexStack[mNodeStackPointer]) {
+                --mNodeStackPointer;
+            }
+            if (mNodeStackPointer < 0) {
+                mNext = null;
+                return;
+            }
+            // walk down the tree to the first leaf
+            Object child = mNodeStack[mNodeStackPointer].children[mNodeIndexStack[mNodeStackPointer]];
+            while (child instanceof Node) {
+                ++mNodeStackPointer;
+                mNodeStack[mNodeStackPointer] = (Node) child;
+                mNodeIndexStack[mNodeStackPointer] = 0;
+                child = ((Node) child).children[0];
+            }
+            mNext = (Leaf<T>) child;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        @Override
+        public Map.Entry<Integer, T> next() {
+            if (mNext == null) {
+                throw new NoSuchElementException("Iterator next() called at the end of a SparseTrieArray");
+            }
+            final Leaf<T> next = mNext;
+            moveToNext();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedMap using its iterator)");
+        }
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mSize);
+        for (Map.Entry<Integer, T> entry : entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        SparseTrieArray<T> m = SparseTrieArray.empty();
+        for (int i = 0; i < size; ++i) {
+            m = m.withIndex(in.readInt(), (T) in.readObject());
+        }
+        mRoot = m.mRoot;
+        mSize = m.mSize;
+    }
+}
@@ -0,0 +1,315 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * An implementation of the shared range map, based on a {@link com.github.douglasorr.shared.BTreeMap}
+ * from the lower bound of each range to the range &amp; its value.
+ * <p>Looking up a key ({@link #get(Comparable)}) is O(log(n)), where n is the number of ranges (not keys).
+ * Adding or removing a range ({@link #with(Range, Object)} and {@link #without(Range)}) is O(log(n))
+ * plus O(log(n)) for each existing range that it covers completely, and
+ * {@link #subRangeMap(Range)} is O(log(n)).</p>
+ */
+public class TreeRangeMap<K extends Comparable<? super K>, V> implements SharedRangeMap<K,V>, Externalizable {
+    private static final long serialVersionUID = -1532877409542641096L;
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    // mRanges: range.lower() -> (range, value), for disjoint non-empty ranges
+    private BTreeMap<K, Map.Entry<Range<K>, V>> mRanges;
+    // cached implementations
+    private transient Map<Range<K>, V> mAsMapOfRanges = null;
+
+    private TreeRangeMap(BTreeMap<K, Map.Entry<Range<K>, V>> ranges) {
+        mRanges = ranges;
+    }
+
+    // *** Factories ***
+
+    public TreeRangeMap() {
+        this(BTreeMap.<K, Map.Entry<Range<K>, V>> empty());
+    }
+    public TreeRangeMap(Map<Range<K>, ? extends V> m) {
+        TreeRangeMap<K,V> map = empty();
+        for (Map.Entry<Range<K>, ? extends V> entry : m.entrySet()) {
+            map = map.with(entry.getKey(), entry.getValue());
+        }
+        mRanges = map.mRanges;
+    }
+    public static final TreeRangeMap EMPTY = new TreeRangeMap();
+    public static <K extends Comparable<? super K>, V> TreeRangeMap<K,V> empty() {
+        return EMPTY;
+    }
+    public static <K extends Comparable<? super K>, V> TreeRangeMap<K,V> singleton(Range<K> range, V value) {
+        return TreeRangeMap.<K,V> empty().with(range, value);
+    }
+    public static <K extends Comparable<? super K>, V> TreeRangeMap<K,V> of() {
+        return EMPTY;
+    }
+    /**
+     * Create a range map containing the given range-&gt;value pairs.
+     * <p>For example:</p>
+     * <code>TreeRangeMap.of(Range.of(0, 10), "low", Range.of(10, 100), "high");</code>
+     * @param range the first range
+     * @param value the first value
+     * @param rangeValues an even number of ranges (type Range&lt;K&gt;), and values (type V), in which
+     * later mappings will overwrite earlier ones, where they overlap
+     * @return a range map containing all of the range-&gt;value mappings
+     */
+    public static <K extends Comparable<? super K>, V> TreeRangeMap<K,V> of(Range<K> range, V value, Object... rangeValues) {
+        if (rangeValues.length % 2 != 0) {
+            throw new IllegalArgumentException("TreeRangeMap.of() called with an odd number of rangeValues (cannot partition them into pairs)");
+        }
+        TreeRangeMap<K,V> m = singleton(range, value);
+        for (int i = 0; i < rangeValues.length; i += 2) {
+            m = m.with((Range<K>) rangeValues[i], (V) rangeValues[i + 1]);
+        }
+        return m;
+    }
+
+    private static <K extends Comparable<? super K>, V> Map.Entry<Range<K>, V> entry(K lower, K upper, V value) {
+        return new AbstractMap.SimpleImmutableEntry<Range<K>, V>(Range.of(lower, upper), value);
+    }
+
+    // *** Queries ***
+
+    @Override
+    public V get(K key) {
+        final Map.Entry<Range<K>, V> entry = getEntry(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public Map.Entry<Range<K>, V> getEntry(K key) {
+        final Map.Entry<K, Map.Entry<Range<K>, V>> floor = mRanges.floorEntry(key);
+        if (floor == null) {
+            return null;
+        }
+        final Map.Entry<Range<K>, V> entry = floor.getValue();
+        return key.compareTo(entry.getKey().upper()) < 0 ? entry : null;
+    }
+
+    @Override
+    public Range<K> span() throws NoSuchElementException {
+        if (mRanges.isEmpty()) {
+            throw new NoSuchElementException("span() called on an empty range map");
+        }
+        return Range.of(mRanges.firstKey(), mRanges.lastEntry().getValue().getKey().upper());
+    }
+
+    @Override
+    public int size() {
+        return mRanges.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mRanges.isEmpty();
+    }
+
+    // *** SharedRangeMap ***
+
+    @Override
+    public TreeRangeMap<K,V> with(Range<K> range, V value) {
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a TreeRangeMap");
+        }
+        if (range.isEmpty()) {
+            return this;
+        }
+        final Map.Entry<Range<K>, V> existing = getEntry(range.lower());
+        if (existing != null && existing.getValue().equals(value)
+                && range.upper().compareTo(existing.getKey().upper()) <= 0) {
+            return this; // already mapped
+        }
+        BTreeMap<K, Map.Entry<Range<K>, V>> ranges = clear(mRanges, range);
+
+        // coalesce with equal neighbours that end at range.lower, or start at range.upper
+        K lower = range.lower();
+        K upper = range.upper();
+        final Map.Entry<K, Map.Entry<Range<K>, V>> before = ranges.lowerEntry(lower);
+        if (before != null && before.getValue().getKey().upper().compareTo(lower) == 0
+                && before.getValue().getValue().equals(value)) {
+            lower = before.getKey();
+            ranges = ranges.without(lower);
+        }
+        final Map.Entry<Range<K>, V> after = ranges.get(upper);
+        if (after != null && after.getValue().equals(value)) {
+            ranges = ranges.without(upper);
+            upper = after.getKey().upper();
+        }
+        return new TreeRangeMap<K,V>(ranges.with(lower, entry(lower, upper, value)));
+    }
+
+    @Override
+    public TreeRangeMap<K,V> without(Range<K> range) {
+        if (range.isEmpty()) {
+            return this;
+        }
+        final BTreeMap<K, Map.Entry<Range<K>, V>> ranges = clear(mRanges, range);
+        return ranges == mRanges ? this : new TreeRangeMap<K,V>(ranges);
+    }
+
+    /**
+     * Remove every key in <code>range</code> from <code>ranges</code>, splitting any ranges that
+     * only partly overlap it.
+     * @return the new ranges (or <code>ranges</code> itself, if there was nothing to remove)
+     */
+    private static <K extends Comparable<? super K>, V> BTreeMap<K, Map.Entry<Range<K>, V>> clear(
+            BTreeMap<K, Map.Entry<Range<K>, V>> ranges, Range<K> range) {
+        final K lower = range.lower();
+        final K upper = range.upper();
+        BTreeMap<K, Map.Entry<Range<K>, V>> result = ranges;
+
+        // a range that starts before 'range' - keep the part before (& after, if it covers all of 'range')
+        final Map.Entry<K, Map.Entry<Range<K>, V>> before = ranges.lowerEntry(lower);
+        if (before != null) {
+            final Range<K> beforeRange = before.getValue().getKey();
+            final V beforeValue = before.getValue().getValue();
+            if (lower.compareTo(beforeRange.upper()) < 0) {
+                result = result.with(before.getKey(), entry(beforeRange.lower(), lower, beforeValue));
+                if (upper.compareTo(beforeRange.upper()) < 0) {
+                    return result.with(upper, entry(upper, beforeRange.upper(), beforeValue));
+                }
+            }
+        }
+
+        // ranges that start within 'range' - remove them, but keep the part after the last one
+        Map.Entry<Range<K>, V> last = null;
+        for (Map.Entry<Range<K>, V> inside : ranges.subMap(lower, true, upper, false).values()) {
+            result = result.without(inside.getKey().lower());
+            last = inside;
+        }
+        if (last != null && upper.compareTo(last.getKey().upper()) < 0) {
+            result = result.with(upper, entry(upper, last.getKey().upper(), last.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public TreeRangeMap<K,V> subRangeMap(Range<K> range) {
+        if (range.isEmpty()) {
+            return empty();
+        }
+        final K lower = range.lower();
+        final K upper = range.upper();
+        BTreeMap<K, Map.Entry<Range<K>, V>> ranges = mRanges.subMap(lower, true, upper, false);
+        // clip the last range (which may extend past upper), and the range before (which may extend past lower)
+        if (!ranges.isEmpty()) {
+            final Map.Entry<Range<K>, V> last = ranges.lastEntry().getValue();
+            if (upper.compareTo(last.getKey().upper()) < 0) {
+                ranges = ranges.with(last.getKey().lower(), entry(last.getKey().lower(), upper, last.getValue()));
+            }
+        }
+        final Map.Entry<K, Map.Entry<Range<K>, V>> before = mRanges.lowerEntry(lower);
+        if (before != null) {
+            final Range<K> clipped = before.getValue().getKey().intersection(range);
+            if (clipped != null) {
+                ranges = ranges.with(lower, new AbstractMap.SimpleImmutableEntry<Range<K>, V>(clipped, before.getValue().getValue()));
+            }
+        }
+        return new TreeRangeMap<K,V>(ranges);
+    }
+
+    // *** Views ***
+
+    private class AsMapOfRanges extends AbstractMap<Range<K>, V> {
+        @Override
+        public Set<Entry<Range<K>, V>> entrySet() {
+            return new AbstractSet<Entry<Range<K>, V>>() {
+                @Override
+                public Iterator<Entry<Range<K>, V>> iterator() {
+                    final Iterator<Entry<Range<K>, V>> entries = mRanges.values().iterator();
+                    return new Iterator<Entry<Range<K>, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+                        @Override
+                        public Entry<Range<K>, V> next() {
+                            return entries.next();
+                        }
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove() called on immutable iterator (you cannot mutate a SharedRangeMap using its iterator)");
+                        }
+                    };
+                }
+                @Override
+                public int size() {
+                    return mRanges.size();
+                }
+            };
+        }
+
+        // overridden for performance
+        @Override
+        public V get(Object key) {
+            if (!(key instanceof Range)) {
+                return null;
+            }
+            final Entry<Range<K>, V> entry = mRanges.get(((Range<K>) key).lower());
+            return entry != null && entry.getKey().equals(key) ? entry.getValue() : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return mRanges.size();
+        }
+    }
+
+    @Override
+    public Map<Range<K>, V> asMapOfRanges() {
+        Map<Range<K>, V> m = mAsMapOfRanges;
+        return m != null ? m : (mAsMapOfRanges = new AsMapOfRanges());
+    }
+
+    // *** Object ***
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof SharedRangeMap && asMapOfRanges().equals(((SharedRangeMap) o).asMapOfRanges()));
+    }
+
+    @Override
+    public int hashCode() {
+        return asMapOfRanges().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMapOfRanges().toString();
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (Map.Entry<Range<K>, V> entry : mRanges.values()) {
+            out.writeObject(entry.getKey().lower());
+            out.writeObject(entry.getKey().upper());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        TreeRangeMap<K,V> m = TreeRangeMap.empty();
+        for (int i = 0; i < size; ++i) {
+            final K lower = (K) in.readObject();
+            final K upper = (K) in.readObject();
+            m = m.with(Range.of(lower, upper), (V) in.readObject());
+        }
+        mRanges = m.mRanges;
+    }
+}
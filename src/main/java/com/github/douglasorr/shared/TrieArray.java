@@ -10,6 +10,10 @@ import java.util.*;
  * The basic trie-based implementation of {@link com.github.douglasorr.shared.SharedArray}.
  * <p>Supports (small) O(log(N)) insertion at end ({@link #append}), update ({@link #update(int, Object)}),
  * and indexing ({@link #get(int)}), and {@link #take(int)}.</p>
+ * <p>Each array also keeps a <em>focus</em> - the leaf block touched by the most recent
+ * {@link #update(int, Object)}. Further updates &amp; reads within the same block of 32 elements are O(1),
+ * as they only copy (or read) the focused block, and the path from the root to that block is only
+ * copied when the focus moves elsewhere.</p>
  */
 public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Externalizable, RandomAccess {
     private static final long serialVersionUID = 5254879707958397211L;
@@ -21,11 +25,20 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
     private int mSize;
     private Object[] mRoot;
     private Object mEnd;
+    // the focus is the most recently updated leaf block of the root, and replaces the (possibly stale)
+    // block at mFocusStart in mRoot - mFocusStart is -1 if there is no focus
+    private Object[] mFocus;
+    private int mFocusStart;
 
-    private TrieArray(Object[] root, Object end, int size) {
+    private TrieArray(Object[] root, Object end, int size, Object[] focus, int focusStart) {
         mRoot = root;
         mEnd = end;
         mSize = size;
+        mFocus = focus;
+        mFocusStart = focusStart;
+    }
+    private TrieArray(Object[] root, Object end, int size) {
+        this(root, end, size, null, -1);
     }
 
     // *** Factories ***
@@ -43,6 +56,8 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
         mRoot = a.mRoot;
         mEnd = a.mEnd;
         mSize = a.mSize;
+        mFocus = a.mFocus;
+        mFocusStart = a.mFocusStart;
     }
 
     public static final TrieArray EMPTY = new TrieArray();
@@ -100,7 +115,7 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
         private T cachedGet(int index) {
             if (index < mRootSize) {
                 if (((mCurrentBlockIndex ^ index) & ~MASK) != 0) {
-                    mCurrentBlock = (Object[]) findNode(mRoot, height(mSize) - 1, index, 1);
+                    mCurrentBlock = findBlock(index);
                     mCurrentBlockIndex = index;
                 }
                 return (T) mCurrentBlock[index & MASK];
@@ -188,6 +203,52 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
         return current;
     }
 
+    /**
+     * Find the leaf block containing <code>index</code> (which must be in the root), taking account of the focus.
+     */
+    private Object[] findBlock(int index) {
+        if (((mFocusStart ^ index) & ~MASK) == 0) {
+            return mFocus;
+        } else {
+            return (Object[]) findNode(mRoot, height(mSize) - 1, index, 1);
+        }
+    }
+
+    /**
+     * Create a copy of the trie with the leaf block at <code>index</code> replaced,
+     * copying only the non-terminal nodes on the path to that block.
+     * @param root node to start from
+     * @param rootLevel level of the root (must be at least 0)
+     * @param index an index within the block to replace
+     * @param block the new leaf block
+     * @return the root of the new trie
+     */
+    private static Object[] replaceBlock(Object[] root, int rootLevel, int index, Object[] block) {
+        if (rootLevel == 0) {
+            return block;
+        }
+        Object[] newRoot = Arrays.copyOf(root, root.length);
+        Object[] parent = newRoot;
+        for (int level = rootLevel; 1 < level; --level) {
+            final int childIndex = (index >>> (NBITS * level)) & MASK;
+            final Object[] child = (Object[]) parent[childIndex];
+            final Object[] copy = Arrays.copyOf(child, child.length);
+            parent[childIndex] = copy;
+            parent = copy;
+        }
+        parent[(index >>> NBITS) & MASK] = block;
+        return newRoot;
+    }
+
+    /**
+     * The focus is only kept while it is within the root of the new array.
+     */
+    private TrieArray<T> withFocus(Object[] root, Object end, int size) {
+        return mFocusStart < rootSize(size)
+                ? new TrieArray<T>(root, end, size, mFocus, mFocusStart)
+                : new TrieArray<T>(root, end, size);
+    }
+
     private static Object shrinkEnd(Object[] end, int n) {
         if (n == 1) {
             return end[0];
@@ -206,6 +267,9 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
 
         int rootSize = rootSize(mSize);
         if (index < rootSize) {
+            if (((mFocusStart ^ index) & ~MASK) == 0) {
+                return (T) mFocus[index & MASK];
+            }
             return (T) findNode(mRoot, height(mSize) - 1, index, 0);
 
         } else if (mSize - rootSize == 1) {
@@ -224,41 +288,115 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
 
         int rootSize = rootSize(mSize);
         if (index < rootSize) {
-            Object[] newRoot = null;
-            Object[] parent = null;
-            int parentIndex = -1;
-            Object[] current = mRoot;
-
-            // build a new slice of the tree, copying from the old
-            for (int level = height(mSize) - 1; 0 <= level; --level) {
-                // patch up the new trie
-                final Object[] copy = Arrays.copyOf(current, current.length);
-                if (newRoot == null) { newRoot = copy; }
-                else { parent[parentIndex] = copy; }
-
-                final int childIndex = (index >>> (NBITS * level)) & MASK;
-                if (level == 0) {
-                    // add our value at the bottom of the trie
-                    copy[childIndex] = value;
-
-                } else {
-                    // keep on going
-                    parent = copy;
-                    parentIndex = childIndex;
-                    current = (Object[]) current[childIndex];
+            Object[] root = mRoot;
+            if (((mFocusStart ^ index) & ~MASK) != 0) {
+                // move the focus - write the old focus back into the trie (copying the path to it),
+                // and start a new focus from the block containing index
+                int rootLevel = height(mSize) - 1;
+                if (mFocus != null) {
+                    root = replaceBlock(mRoot, rootLevel, mFocusStart, mFocus);
                 }
+                Object[] block = (Object[]) findNode(root, rootLevel, index, 1);
+                Object[] focus = Arrays.copyOf(block, block.length);
+                focus[index & MASK] = value;
+                return new TrieArray<T>(root, mEnd, mSize, focus, index & ~MASK);
+
+            } else {
+                // within the focus - just copy the focused block
+                Object[] focus = Arrays.copyOf(mFocus, mFocus.length);
+                focus[index & MASK] = value;
+                return new TrieArray<T>(root, mEnd, mSize, focus, mFocusStart);
             }
-            return new TrieArray<T>(newRoot, mEnd, mSize);
 
         } else if (mSize - rootSize == 1) {
-            return new TrieArray<T>(mRoot, value, mSize);
+            return withFocus(mRoot, value, mSize);
 
         } else {
             Object[] endArray = (Object[]) mEnd;
             Object[] newEnd = Arrays.copyOf(endArray, endArray.length);
             newEnd[index - rootSize] = value;
-            return new TrieArray<T>(mRoot, newEnd, mSize);
+            return withFocus(mRoot, newEnd, mSize);
+        }
+    }
+
+    /**
+     * Update multiple values at once, copying each affected node of the trie only once.
+     * @param node the (non-terminal or leaf) node to copy
+     * @param level the level of node (0 = the level containing leaves)
+     * @param indices indices to update, in ascending order
+     * @param values values for each index
+     * @param begin the first position in indices (&amp; values) within this node
+     * @param end the end position in indices (&amp; values) within this node
+     * @return a copy of node, with all updates in [begin end) applied
+     */
+    private static Object[] updateTrie(Object[] node, int level, int[] indices, Object[] values, int begin, int end) {
+        final Object[] copy = Arrays.copyOf(node, node.length);
+        if (level == 0) {
+            for (int i = begin; i < end; ++i) {
+                copy[indices[i] & MASK] = values[i];
+            }
+        } else {
+            int i = begin;
+            while (i < end) {
+                // find the range of indices that belong to the same child
+                final int childIndex = (indices[i] >>> (NBITS * level)) & MASK;
+                int childEnd = i + 1;
+                while (childEnd < end && ((indices[childEnd] >>> (NBITS * level)) & MASK) == childIndex) {
+                    ++childEnd;
+                }
+                copy[childIndex] = updateTrie((Object[]) node[childIndex], level - 1, indices, values, i, childEnd);
+                i = childEnd;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a new array with a batch of values updated - equivalent to calling
+     * {@link #update(int, Object)} for each index, but each block is copied at most once.
+     * @param indices the indices to update, in ascending order (without duplicates)
+     * @param values the new values, corresponding to <code>indices</code>
+     * @return a new array with all the updates applied
+     */
+    TrieArray<T> updateAll(int[] indices, Object[] values) throws IndexOutOfBoundsException {
+        if (indices.length == 0) {
+            return this;
+        }
+        if (indices[0] < 0 || mSize <= indices[indices.length - 1]) {
+            throw new IndexOutOfBoundsException(String.format("updateAll() indices out of bounds (range: [%d %d], size: %d)",
+                    indices[0], indices[indices.length - 1], mSize));
+        }
+
+        final int rootSize = rootSize(mSize);
+        int rootUpdates = 0;
+        while (rootUpdates < indices.length && indices[rootUpdates] < rootSize) {
+            ++rootUpdates;
+        }
+
+        Object[] root = mRoot;
+        if (rootUpdates != 0) {
+            final int rootLevel = height(mSize) - 1;
+            if (mFocus != null) {
+                root = replaceBlock(root, rootLevel, mFocusStart, mFocus);
+            }
+            root = updateTrie(root, rootLevel, indices, values, 0, rootUpdates);
+        }
+
+        Object end = mEnd;
+        if (rootUpdates != indices.length) {
+            if (mSize - rootSize == 1) {
+                end = values[indices.length - 1];
+            } else {
+                Object[] newEnd = Arrays.copyOf((Object[]) mEnd, ((Object[]) mEnd).length);
+                for (int i = rootUpdates; i < indices.length; ++i) {
+                    newEnd[indices[i] - rootSize] = values[i];
+                }
+                end = newEnd;
+            }
         }
+        return rootUpdates == 0
+                ? withFocus(root, end, mSize)
+                : new TrieArray<T>(root, end, mSize);
     }
 
     @Override
@@ -275,14 +413,14 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
 
         } else if (mSize - rootSize == 1) {
             // split a 1-element 'end'
-            return new TrieArray<T>(mRoot, new Object[]{mEnd, value}, mSize + 1);
+            return withFocus(mRoot, new Object[]{mEnd, value}, mSize + 1);
 
         } else if (mSize - rootSize < BLOCK_SIZE) {
             // extend the 'end' array
             Object[] endArray = (Object[]) mEnd;
             Object[] end = Arrays.copyOf(endArray, endArray.length + 1);
             end[end.length - 1] = value;
-            return new TrieArray<T>(mRoot, end, mSize + 1);
+            return withFocus(mRoot, end, mSize + 1);
 
         } else {
             // insert 'end'
@@ -317,7 +455,8 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
                 }
             }
             parent[parentIndex] = mEnd;
-            return new TrieArray<T>(newRoot, value, mSize + 1);
+            // (the root is only extended, so the focus is still valid)
+            return withFocus(newRoot, value, mSize + 1);
         }
     }
 
@@ -399,7 +538,7 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
             if (newRootSize == oldRootSize) {
                 if (newEndSize == 1) {
                     assert(oldEndSize == 0);
-                    return new TrieArray<T>(mRoot, values.iterator().next(), newSize);
+                    return withFocus(mRoot, values.iterator().next(), newSize);
                 } else {
                     Object[] newEnd = new Object[newEndSize];
                     // copy the old elements
@@ -413,7 +552,7 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
                     for (int i = oldEndSize; i < newEndSize; ++i) {
                         newEnd[i] = it.next();
                     }
-                    return new TrieArray<T>(mRoot, newEnd, newSize);
+                    return withFocus(mRoot, newEnd, newSize);
                 }
             }
 
@@ -444,18 +583,19 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
                 }
             };
 
+            // (existing blocks keep their position, so the focus is still valid)
             Object[] newRoot = concatTrie(mRoot, height(mSize) - 1, height(newSize) - 1, 0, newRootSize - 1, endIterator);
 
             if (newEndSize == 1) {
                 // singleton
-                return new TrieArray<T>(newRoot, endIterator.next(), newSize);
+                return withFocus(newRoot, endIterator.next(), newSize);
             } else {
                 // nothing to copy from the old
                 Object[] newEnd = new Object[newEndSize];
                 for (int i = 0; i < newEndSize; ++i) {
                     newEnd[i] = endIterator.next();
                 }
-                return new TrieArray<T>(newRoot, newEnd, newSize);
+                return withFocus(newRoot, newEnd, newSize);
             }
         }
     }
@@ -480,7 +620,7 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
 
         } else if (1 <= n - rootSize) {
             // just shrink the 'end' array
-            return new TrieArray<T>(mRoot, shrinkEnd((Object[]) mEnd, n - rootSize), n);
+            return withFocus(mRoot, shrinkEnd((Object[]) mEnd, n - rootSize), n);
 
         } else {
             // we have run out of capacity in mEnd, so we need to get a new root, and end
@@ -515,9 +655,9 @@ public class TrieArray<T> extends AbstractList<T> implements SharedArray<T>, Ext
             }
 
             // find the new end node, and resize it as necessary
-            Object newEnd = shrinkEnd((Object[]) findNode(mRoot, oldHeight - 1, newRootSize, 1), n - newRootSize);
+            Object newEnd = shrinkEnd(findBlock(newRootSize), n - newRootSize);
 
-            return new TrieArray<T>(newRoot, newEnd, n);
+            return withFocus(newRoot, newEnd, n);
         }
     }
 
@@ -0,0 +1,548 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * A double-ended trie-based implementation of both {@link com.github.douglasorr.shared.SharedArray}
+ * and {@link com.github.douglasorr.shared.SharedList}.
+ * <p>This works like a {@link com.github.douglasorr.shared.TrieArray}, but as well as the block of
+ * elements at the end, it keeps a block of elements at the head of the array, and the trie in between
+ * may grow in either direction.
+ * So it supports (small) O(log(N)) insertion &amp; removal at either end ({@link #prepend(Object)},
+ * {@link #tail()}, {@link #append(Object)}, {@link #remend()}), as well as indexing ({@link #get(int)}),
+ * update ({@link #update(int, Object)}), {@link #take(int)} and {@link #drop(int)}.
+ * Insertion &amp; removal at either end are O(1), except for one in every 32 operations, which must
+ * move a block into or out of the trie.</p>
+ */
+public class TrieDeque<T> extends AbstractList<T> implements SharedArray<T>, SharedList<T>, Externalizable, RandomAccess {
+    private static final long serialVersionUID = -4410563384683553512L;
+    private static final int NBITS = 5;
+    private static final int BLOCK_SIZE = (1 << NBITS);
+    private static final int MASK = BLOCK_SIZE - 1;
+    // positions in the trie are ints, so the root of a trie can be at most at level 6
+    // (and a root at level 6 may only use children 0 & 1)
+    private static final int MAX_LEVEL = 6;
+    private static final Object[] EMPTY_BLOCK = new Object[0];
+
+    // The elements are: mHead ++ [trie positions mStart to mStart + mRootSize] ++ mEnd
+    // The trie contains only full blocks (so mStart & mRootSize are multiples of BLOCK_SIZE).
+    // Non-terminal nodes always have BLOCK_SIZE children (which are null if they contain no elements), and
+    // the child of a node at 'level' containing position 'p' is ((p >>> (NBITS * level)) & MASK).
+    // Level 0 is the level of the blocks of elements themselves, so mRoot is at level >= 1 (or null, if empty).
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private Object[] mHead;
+    private Object[] mRoot;
+    private int mLevel;
+    private int mStart;
+    private int mRootSize;
+    private Object[] mEnd;
+
+    private TrieDeque(Object[] head, Object[] root, int level, int start, int rootSize, Object[] end) {
+        if (rootSize == 0) {
+            root = null;
+            level = 0;
+            start = 0;
+        } else {
+            // shrink the trie, while the root has only one child
+            while (1 < level) {
+                final int shift = NBITS * level;
+                final int childIndex = (start >>> shift) & MASK;
+                if (childIndex != (((start + rootSize - 1) >>> shift) & MASK)) {
+                    break;
+                }
+                root = (Object[]) root[childIndex];
+                start -= childIndex << shift;
+                --level;
+            }
+        }
+        mHead = head;
+        mRoot = root;
+        mLevel = level;
+        mStart = start;
+        mRootSize = rootSize;
+        mEnd = end;
+    }
+
+    // *** Factories ***
+
+    public TrieDeque() {
+        this(EMPTY_BLOCK, null, 0, 0, 0, EMPTY_BLOCK);
+    }
+    public TrieDeque(Collection<T> c) {
+        TrieDeque<T> a;
+        if (c instanceof TrieDeque) {
+            a = (TrieDeque<T>) c;
+        } else {
+            a = TrieDeque.<T> empty().appendAll(c);
+        }
+        mHead = a.mHead;
+        mRoot = a.mRoot;
+        mLevel = a.mLevel;
+        mStart = a.mStart;
+        mRootSize = a.mRootSize;
+        mEnd = a.mEnd;
+    }
+
+    public static final TrieDeque EMPTY = new TrieDeque();
+    public static <T> TrieDeque<T> empty() {
+        return EMPTY;
+    }
+    public static <T> TrieDeque<T> singleton(T value) {
+        return new TrieDeque<T>(EMPTY_BLOCK, null, 0, 0, 0, new Object[] { value });
+    }
+    public static <T> TrieDeque<T> of(T... values) {
+        return TrieDeque.<T> empty().appendAll(Arrays.asList(values));
+    }
+
+    // *** Trie helpers ***
+
+    /**
+     * Find the block of elements starting at <code>position</code> in the trie.
+     */
+    private Object[] findBlock(int position) {
+        Object[] node = mRoot;
+        for (int level = mLevel; 1 <= level; --level) {
+            node = (Object[]) node[(position >>> (NBITS * level)) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Create a copy of the trie, with a block of elements set at <code>position</code>,
+     * (creating any missing nodes on the path to it).
+     * @param node the node to copy (may be null, for a new node)
+     * @param level the level of node (must be &gt;= 1)
+     * @param position the position of the block
+     * @param block the block of elements to insert
+     * @return the new node
+     */
+    private static Object[] setBlock(Object[] node, int level, int position, Object[] block) {
+        final Object[] copy = (node == null) ? new Object[BLOCK_SIZE] : Arrays.copyOf(node, BLOCK_SIZE);
+        final int childIndex = (position >>> (NBITS * level)) & MASK;
+        copy[childIndex] = (level == 1)
+                ? block
+                : setBlock((Object[]) copy[childIndex], level - 1, position, block);
+        return copy;
+    }
+
+    /**
+     * Create a copy of the trie, with a single element updated.
+     */
+    private static Object[] setElement(Object[] node, int level, int position, Object value) {
+        final Object[] copy = Arrays.copyOf(node, node.length);
+        final int childIndex = (position >>> (NBITS * level)) & MASK;
+        copy[childIndex] = (level == 0)
+                ? value
+                : setElement((Object[]) copy[childIndex], level - 1, position, value);
+        return copy;
+    }
+
+    /**
+     * Create a copy of the trie, keeping only the blocks before <code>end</code>.
+     * @param node the node to copy
+     * @param level the level of node (must be &gt;= 1)
+     * @param end the position of the first block to remove (must be within node)
+     * @return the new node, or null if the new node would be empty
+     */
+    private static Object[] truncateBack(Object[] node, int level, int end) {
+        final int childIndex = (end >>> (NBITS * level)) & MASK;
+        final Object[] copy = new Object[BLOCK_SIZE];
+        System.arraycopy(node, 0, copy, 0, childIndex);
+        if (1 < level && node[childIndex] != null) {
+            copy[childIndex] = truncateBack((Object[]) node[childIndex], level - 1, end);
+        }
+        for (Object child : copy) {
+            if (child != null) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create a copy of the trie, keeping only the blocks at, or after <code>start</code>.
+     * @param node the node to copy
+     * @param level the level of node (must be &gt;= 1)
+     * @param start the position of the first block to keep (must be within node)
+     * @return the new node
+     */
+    private static Object[] truncateFront(Object[] node, int level, int start) {
+        final int childIndex = (start >>> (NBITS * level)) & MASK;
+        final Object[] copy = new Object[BLOCK_SIZE];
+        System.arraycopy(node, childIndex, copy, childIndex, BLOCK_SIZE - childIndex);
+        if (1 < level) {
+            copy[childIndex] = truncateFront((Object[]) node[childIndex], level - 1, start);
+        }
+        return copy;
+    }
+
+    /**
+     * @return a new deque, with <code>block</code> inserted into the trie before the first element of the trie
+     */
+    private TrieDeque<T> pushFront(Object[] head, Object[] block, Object[] end) {
+        if (mRootSize == 0) {
+            return pushFirst(head, block, end);
+        }
+        Object[] root = mRoot;
+        int level = mLevel;
+        int start = mStart;
+        if (start == 0) {
+            // no room at the front of the root - grow a new root, with the old root as the last child
+            if (level == MAX_LEVEL) {
+                throw new IllegalStateException("TrieDeque is too large to prepend to (size: " + size() + ")");
+            }
+            final int childIndex = (level + 1 == MAX_LEVEL) ? 1 : MASK;
+            root = new Object[BLOCK_SIZE];
+            root[childIndex] = mRoot;
+            start += childIndex << (NBITS * (level + 1));
+            ++level;
+        }
+        start -= BLOCK_SIZE;
+        return new TrieDeque<T>(head, setBlock(root, level, start, block), level, start, mRootSize + BLOCK_SIZE, end);
+    }
+
+    /**
+     * @return a new deque, with <code>block</code> inserted into the trie after the last element of the trie
+     */
+    private TrieDeque<T> pushBack(Object[] head, Object[] block, Object[] end) {
+        if (mRootSize == 0) {
+            return pushFirst(head, block, end);
+        }
+        Object[] root = mRoot;
+        int level = mLevel;
+        final int position = mStart + mRootSize;
+        if (level < MAX_LEVEL && (position >>> (NBITS * (level + 1))) != 0) {
+            // no room at the back of the root - grow a new root, with the old root as the first child
+            root = new Object[BLOCK_SIZE];
+            root[0] = mRoot;
+            ++level;
+        }
+        return new TrieDeque<T>(head, setBlock(root, level, position, block), level, mStart, mRootSize + BLOCK_SIZE, end);
+    }
+
+    // create a new trie from a single block (in the middle of the root, so it can grow in either direction)
+    private static <T> TrieDeque<T> pushFirst(Object[] head, Object[] block, Object[] end) {
+        final int start = (BLOCK_SIZE / 2) << NBITS;
+        return new TrieDeque<T>(head, setBlock(null, 1, start, block), 1, start, BLOCK_SIZE, end);
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public int size() {
+        return mHead.length + mRootSize + mEnd.length;
+    }
+
+    @Override
+    public T get(int index) {
+        int i = index;
+        if (0 <= i && i < mHead.length) {
+            return (T) mHead[i];
+        }
+        i -= mHead.length;
+        if (0 <= i && i < mRootSize) {
+            final int position = mStart + i;
+            return (T) findBlock(position)[position & MASK];
+        }
+        i -= mRootSize;
+        if (0 <= i && i < mEnd.length) {
+            return (T) mEnd[i];
+        }
+        throw new IndexOutOfBoundsException(index + " (size " + size() + ")");
+    }
+
+    // Overrides for performance
+
+    @Override
+    public Iterator<T> iterator() {
+        return new CachedIterator(0);
+    }
+    @Override
+    public ListIterator<T> listIterator() {
+        return new CachedIterator(0);
+    }
+    @Override
+    public ListIterator<T> listIterator(int i) {
+        if (0 <= i && i <= size()) {
+            return new CachedIterator(i);
+        } else {
+            throw new IndexOutOfBoundsException(String.format("listIterator() requested for out of bounds index (position: %d, size: %d)", i, size()));
+        }
+    }
+
+    // A more efficient iterator implementation than the one provided by AbstractList
+    private class CachedIterator implements ListIterator<T> {
+        private final int mSize = size();
+        private int mNextIndex;
+        private Object[] mCurrentBlock = null;
+        private int mCurrentBlockPosition = -1;
+
+        public CachedIterator(int index) {
+            mNextIndex = index;
+        }
+
+        /**
+         * A wrapper around TrieDeque.this.get() which caches the most recently used block from the trie.
+         */
+        private T cachedGet(int index) {
+            final int i = index - mHead.length;
+            if (0 <= i && i < mRootSize) {
+                final int position = mStart + i;
+                if (((mCurrentBlockPosition ^ position) & ~MASK) != 0) {
+                    mCurrentBlock = findBlock(position);
+                    mCurrentBlockPosition = position;
+                }
+                return (T) mCurrentBlock[position & MASK];
+            } else {
+                return get(index);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (mNextIndex < mSize) {
+                return cachedGet(mNextIndex++);
+            } else {
+                throw new NoSuchElementException(String.format("Iterator next() out of bounds (position: %d, size: %d)", mNextIndex, mSize));
+            }
+        }
+
+        @Override
+        public T previous() {
+            if (0 < mNextIndex) {
+                return cachedGet(--mNextIndex);
+            } else {
+                throw new NoSuchElementException(String.format("Iterator previous() out of bounds (position: %d)", mNextIndex));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNextIndex < mSize;
+        }
+        @Override
+        public boolean hasPrevious() {
+            return 0 < mNextIndex;
+        }
+        @Override
+        public int nextIndex() {
+            return mNextIndex;
+        }
+        @Override
+        public int previousIndex() {
+            return mNextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() called on a immutable iterator (you cannot mutate a TrieDeque using its' iterator)");
+        }
+        @Override
+        public void set(T t) {
+            throw new UnsupportedOperationException("set() called on a immutable iterator (you cannot mutate a TrieDeque using its' iterator)");
+        }
+        @Override
+        public void add(T t) {
+            throw new UnsupportedOperationException("add() called on a immutable iterator (you cannot mutate a TrieDeque using its' iterator)");
+        }
+    }
+
+    // *** SharedList ***
+
+    @Override
+    public T head() throws NoSuchElementException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Head of an empty deque");
+        }
+        return get(0);
+    }
+
+    @Override
+    public TrieDeque<T> tail() throws NoSuchElementException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Tail of an empty deque");
+        }
+        return drop(1);
+    }
+
+    @Override
+    public TrieDeque<T> prepend(T value) {
+        if (mHead.length < BLOCK_SIZE) {
+            // extend the 'head' array
+            final Object[] head = new Object[mHead.length + 1];
+            head[0] = value;
+            System.arraycopy(mHead, 0, head, 1, mHead.length);
+            return new TrieDeque<T>(head, mRoot, mLevel, mStart, mRootSize, mEnd);
+
+        } else {
+            // move 'head' into the trie
+            return pushFront(new Object[] { value }, mHead, mEnd);
+        }
+    }
+
+    // *** SharedArray ***
+
+    @Override
+    public TrieDeque<T> update(int index, T value) throws IndexOutOfBoundsException {
+        int i = index;
+        if (0 <= i && i < mHead.length) {
+            final Object[] head = Arrays.copyOf(mHead, mHead.length);
+            head[i] = value;
+            return new TrieDeque<T>(head, mRoot, mLevel, mStart, mRootSize, mEnd);
+        }
+        i -= mHead.length;
+        if (0 <= i && i < mRootSize) {
+            return new TrieDeque<T>(mHead, setElement(mRoot, mLevel, mStart + i, value), mLevel, mStart, mRootSize, mEnd);
+        }
+        i -= mRootSize;
+        if (0 <= i && i < mEnd.length) {
+            final Object[] end = Arrays.copyOf(mEnd, mEnd.length);
+            end[i] = value;
+            return new TrieDeque<T>(mHead, mRoot, mLevel, mStart, mRootSize, end);
+        }
+        throw new IndexOutOfBoundsException(index + " (size " + size() + ")");
+    }
+
+    @Override
+    public TrieDeque<T> append(T value) {
+        if (mEnd.length < BLOCK_SIZE) {
+            // extend the 'end' array
+            final Object[] end = Arrays.copyOf(mEnd, mEnd.length + 1);
+            end[mEnd.length] = value;
+            return new TrieDeque<T>(mHead, mRoot, mLevel, mStart, mRootSize, end);
+
+        } else {
+            // move 'end' into the trie
+            return pushBack(mHead, mEnd, new Object[] { value });
+        }
+    }
+
+    @Override
+    public TrieDeque<T> appendAll(Collection<T> values) {
+        if (values.isEmpty()) {
+            return this;
+        }
+        final Object[] elements = values.toArray();
+
+        // fill up the current 'end'
+        final int fill = Math.min(BLOCK_SIZE - mEnd.length, elements.length);
+        Object[] end = Arrays.copyOf(mEnd, mEnd.length + fill);
+        System.arraycopy(elements, 0, end, mEnd.length, fill);
+        TrieDeque<T> result = new TrieDeque<T>(mHead, mRoot, mLevel, mStart, mRootSize, end);
+
+        // then move full blocks into the trie
+        for (int i = fill; i < elements.length; i += BLOCK_SIZE) {
+            end = Arrays.copyOfRange(elements, i, Math.min(i + BLOCK_SIZE, elements.length));
+            result = result.pushBack(result.mHead, result.mEnd, end);
+        }
+        return result;
+    }
+
+    @Override
+    public TrieDeque<T> remend() throws NoSuchElementException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("remend() called on an empty deque");
+        }
+        return take(size() - 1);
+    }
+
+    @Override
+    public TrieDeque<T> take(int n) throws IndexOutOfBoundsException {
+        final int size = size();
+        if (!(0 <= n && n <= size)) {
+            throw new IndexOutOfBoundsException(String.format("Trying to take(%d) from a %d-element deque", n, size));
+
+        } else if (n == size) {
+            return this;
+
+        } else if (n == 0) {
+            return empty();
+
+        } else if (n <= mHead.length) {
+            // just shrink the 'head' array
+            return new TrieDeque<T>(Arrays.copyOf(mHead, n), null, 0, 0, 0, EMPTY_BLOCK);
+
+        } else if (mRootSize < n - mHead.length) {
+            // just shrink the 'end' array
+            return new TrieDeque<T>(mHead, mRoot, mLevel, mStart, mRootSize, Arrays.copyOf(mEnd, n - mHead.length - mRootSize));
+
+        } else {
+            // the last block we keep in the trie becomes the new 'end'
+            final int k = n - mHead.length;
+            final int endSize = k - ((k - 1) & ~MASK);
+            final int rootSize = k - endSize;
+            final Object[] block = findBlock(mStart + rootSize);
+            final Object[] end = (endSize == BLOCK_SIZE) ? block : Arrays.copyOf(block, endSize);
+            final Object[] root = (rootSize == 0) ? null : truncateBack(mRoot, mLevel, mStart + rootSize);
+            return new TrieDeque<T>(mHead, root, mLevel, mStart, rootSize, end);
+        }
+    }
+
+    /**
+     * Returns a new deque containing all but the first <code>n</code> elements of this deque.
+     * @param n the number of leading elements to remove from this deque.
+     * @return a new deque containing the last <code>size() - n</code> elements
+     */
+    public TrieDeque<T> drop(int n) throws IndexOutOfBoundsException {
+        final int size = size();
+        if (!(0 <= n && n <= size)) {
+            throw new IndexOutOfBoundsException(String.format("Trying to drop(%d) from a %d-element deque", n, size));
+
+        } else if (n == 0) {
+            return this;
+
+        } else if (n == size) {
+            return empty();
+
+        } else if (n < mHead.length) {
+            // just shrink the 'head' array
+            return new TrieDeque<T>(Arrays.copyOfRange(mHead, n, mHead.length), mRoot, mLevel, mStart, mRootSize, mEnd);
+
+        } else if (mRootSize <= n - mHead.length) {
+            // just shrink the 'end' array
+            return new TrieDeque<T>(EMPTY_BLOCK, null, 0, 0, 0, Arrays.copyOfRange(mEnd, n - mHead.length - mRootSize, mEnd.length));
+
+        } else {
+            // the first block we keep in the trie becomes the new 'head'
+            final int k = n - mHead.length;
+            final int blockPosition = mStart + (k & ~MASK);
+            final Object[] block = findBlock(blockPosition);
+            final Object[] head = ((k & MASK) == 0) ? block : Arrays.copyOfRange(block, k & MASK, BLOCK_SIZE);
+            final int start = blockPosition + BLOCK_SIZE;
+            final int rootSize = mRootSize - (k & ~MASK) - BLOCK_SIZE;
+            final Object[] root = (rootSize == 0) ? null : truncateFront(mRoot, mLevel, start);
+            return new TrieDeque<T>(head, root, mLevel, start, rootSize, mEnd);
+        }
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        final Object[] buffer = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            buffer[i] = in.readObject();
+        }
+        final TrieDeque<T> a = TrieDeque.<T> empty().appendAll((List<T>) Arrays.asList(buffer));
+        mHead = a.mHead;
+        mRoot = a.mRoot;
+        mLevel = a.mLevel;
+        mStart = a.mStart;
+        mRootSize = a.mRootSize;
+        mEnd = a.mEnd;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of the shared queue, based on
+ * a {@link com.github.douglasorr.shared.TrieDeque}.
+ * <p>Values are enqueued at the back of the deque, and dequeued from the front,
+ * so both operations are amortized O(1) (and worst case O(log(N)), whichever version of
+ * the queue they are applied to). Like other Java queues, it cannot contain null.</p>
+ */
+public class TrieQueue<T> extends AbstractQueue<T> implements SharedQueue<T>, Externalizable {
+    private static final long serialVersionUID = 7245186628513360941L;
+    // this would be final, but for Java's horrid readExternal() deserialization
+    private TrieDeque<T> mDeque;
+
+    private TrieQueue(TrieDeque<T> deque) {
+        mDeque = deque;
+    }
+
+    // *** Factories ***
+
+    public TrieQueue() {
+        mDeque = TrieDeque.EMPTY;
+    }
+    public TrieQueue(Collection<? extends T> c) {
+        if (c instanceof TrieQueue) {
+            mDeque = ((TrieQueue<T>) c).mDeque;
+        } else {
+            TrieDeque<T> deque = TrieDeque.empty();
+            for (T value : c) {
+                deque = deque.append(checkNotNull(value));
+            }
+            mDeque = deque;
+        }
+    }
+
+    public static final TrieQueue EMPTY = new TrieQueue();
+    public static <T> TrieQueue<T> empty() {
+        return EMPTY;
+    }
+    public static <T> TrieQueue<T> singleton(T value) {
+        return new TrieQueue<T>(TrieDeque.singleton(checkNotNull(value)));
+    }
+    public static <T> TrieQueue<T> of(T... values) {
+        return new TrieQueue<T>(Arrays.asList(values));
+    }
+
+    private static <T> T checkNotNull(T value) {
+        if (value == null) {
+            throw new NullPointerException("Cannot add a null value to a TrieQueue");
+        }
+        return value;
+    }
+
+    // *** Core methods ***
+
+    @Override
+    public Iterator<T> iterator() {
+        return mDeque.iterator();
+    }
+
+    @Override
+    public int size() {
+        return mDeque.size();
+    }
+
+    @Override
+    public T peek() {
+        return mDeque.isEmpty() ? null : mDeque.get(0);
+    }
+
+    @Override
+    public boolean offer(T value) {
+        throw new UnsupportedOperationException("offer() called on an immutable queue (use enqueue() instead)");
+    }
+
+    @Override
+    public T poll() {
+        throw new UnsupportedOperationException("poll() called on an immutable queue (use peek() and dequeue() instead)");
+    }
+
+    // Queues are usually compared by identity, but shared queues are values, so compare the elements in order
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TrieQueue && mDeque.equals(((TrieQueue<?>) other).mDeque);
+    }
+
+    @Override
+    public int hashCode() {
+        return mDeque.hashCode();
+    }
+
+    // *** SharedQueue methods ***
+
+    @Override
+    public TrieQueue<T> enqueue(T value) {
+        return new TrieQueue<T>(mDeque.append(checkNotNull(value)));
+    }
+
+    @Override
+    public TrieQueue<T> dequeue() throws NoSuchElementException {
+        if (mDeque.isEmpty()) {
+            throw new NoSuchElementException("dequeue() called on an empty queue");
+        }
+        return new TrieQueue<T>(mDeque.tail());
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(size());
+        for (T value : this) {
+            out.writeObject(value);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        TrieDeque<T> deque = TrieDeque.empty();
+        for (int i = 0; i < size; ++i) {
+            deque = deque.append((T) in.readObject());
+        }
+        mDeque = deque;
+    }
+}
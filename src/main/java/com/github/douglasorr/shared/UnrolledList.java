@@ -0,0 +1,222 @@
+package com.github.douglasorr.shared;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A shared singly-linked list, which stores up to 16 elements in each node.
+ * <p>This behaves like a {@link com.github.douglasorr.shared.LinkedList}, but stores the
+ * elements of the list in small arrays (<em>chunks</em>), which use less memory, and are faster
+ * to iterate through than a node for each element.
+ * {@link #prepend(Object)} copies only the chunk at the head of the list, and {@link #tail()} is O(1),
+ * as the tail can share the head chunk (starting one element further on).</p>
+ * <p>Like {@link com.github.douglasorr.shared.LinkedList}, this list does not support
+ * iteration in reverse order via a <code>listIterator</code>, and indexing is <code>O(n)</code>.</p>
+ */
+public class UnrolledList<T> extends AbstractSequentialList<T> implements SharedList<T>, Externalizable {
+    private static final long serialVersionUID = 5230487431398524701L;
+    private static final int CHUNK_SIZE = 16;
+    private static final Object[] EMPTY_CHUNK = new Object[0];
+
+    // The elements of this list are mChunk[mOffset], mChunk[mOffset+1], ..., followed by mNext
+    // (so a non-empty list always has at least one element in mChunk).
+
+    // these would all be final, but for Java's horrid readExternal() deserialization
+    private Object[] mChunk;
+    private int mOffset;
+    private UnrolledList<T> mNext;
+    private int mSize;
+
+    private UnrolledList(Object[] chunk, int offset, UnrolledList<T> next) {
+        mChunk = chunk;
+        mOffset = offset;
+        mNext = next;
+        mSize = (chunk.length - offset) + (next == null ? 0 : next.mSize);
+    }
+
+    // *** Factories ***
+
+    public UnrolledList() {
+        this(EMPTY_CHUNK, 0, null);
+    }
+    public UnrolledList(Collection<? extends T> c) {
+        UnrolledList<T> list;
+        if (c instanceof UnrolledList) {
+            list = (UnrolledList<T>) c;
+        } else {
+            list = UnrolledList.of((T[]) c.toArray());
+        }
+        mChunk = list.mChunk;
+        mOffset = list.mOffset;
+        mNext = list.mNext;
+        mSize = list.mSize;
+    }
+    public static final UnrolledList<?> EMPTY = new UnrolledList();
+    public static <T> UnrolledList<T> empty() { return (UnrolledList<T>) EMPTY; }
+    public static <T> UnrolledList<T> singleton(T value) {
+        return new UnrolledList<T>(new Object[] { value }, 0, null);
+    }
+    public static <T> UnrolledList<T> of(T... elements) {
+        // fill full chunks from the back, so that only the head chunk has space to prepend into
+        UnrolledList<T> list = null;
+        for (int end = elements.length; 0 < end; end -= CHUNK_SIZE) {
+            list = new UnrolledList<T>(Arrays.copyOfRange(elements, Math.max(0, end - CHUNK_SIZE), end, Object[].class), 0, list);
+        }
+        return list == null ? UnrolledList.<T> empty() : list;
+    }
+
+    // *** SharedList ***
+
+    @Override
+    public UnrolledList<T> prepend(T head) {
+        final int length = mChunk.length - mOffset;
+        if (mSize == 0 || CHUNK_SIZE <= length) {
+            return new UnrolledList<T>(new Object[] { head }, 0, mSize == 0 ? null : this);
+        } else {
+            // copy the live part of the head chunk
+            final Object[] chunk = new Object[length + 1];
+            chunk[0] = head;
+            System.arraycopy(mChunk, mOffset, chunk, 1, length);
+            return new UnrolledList<T>(chunk, 0, mNext);
+        }
+    }
+
+    @Override
+    public T head() throws NoSuchElementException {
+        if (mSize == 0) {
+            throw new NoSuchElementException("Head of an empty list");
+        } else {
+            return (T) mChunk[mOffset];
+        }
+    }
+
+    @Override
+    public UnrolledList<T> tail() throws NoSuchElementException {
+        if (mSize == 0) {
+            throw new NoSuchElementException("Tail of an empty list");
+        } else if (mOffset + 1 < mChunk.length) {
+            return new UnrolledList<T>(mChunk, mOffset + 1, mNext);
+        } else {
+            return mNext == null ? UnrolledList.<T> empty() : mNext;
+        }
+    }
+
+    // *** AbstractList ***
+
+    @Override
+    public ListIterator<T> listIterator(final int startIndex) {
+        if (!(0 <= startIndex && startIndex <= size())) {
+            throw new IndexOutOfBoundsException("ListIterator starts out of the bounds of the list");
+        }
+        return new ListIterator<T>() {
+            private int index = 0;
+            private Object[] chunk = mChunk;
+            private int offset = mOffset;
+            private UnrolledList<T> next = mNext;
+            {
+                // skip whole chunks, then elements within the chunk
+                while (index < startIndex && chunk.length - offset <= startIndex - index) {
+                    index += chunk.length - offset;
+                    nextChunk();
+                }
+                offset += startIndex - index;
+                index = startIndex;
+            }
+
+            private void nextChunk() {
+                if (next == null) {
+                    chunk = EMPTY_CHUNK;
+                    offset = 0;
+                } else {
+                    chunk = next.mChunk;
+                    offset = next.mOffset;
+                    next = next.mNext;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < mSize;
+            }
+            @Override
+            public int nextIndex() {
+                return index;
+            }
+            @Override
+            public T next() {
+                if (mSize <= index) {
+                    throw new NoSuchElementException(String.format("Iterator next() out of bounds (position: %d, size: %d)", index, mSize));
+                }
+                if (offset == chunk.length) {
+                    nextChunk();
+                }
+                ++index;
+                return (T) chunk[offset++];
+            }
+
+            // Backwards iteration - not implemented (pretend we're always at the beginning of the list)
+            @Override
+            public boolean hasPrevious() {
+                return false;
+            }
+            @Override
+            public int previousIndex() {
+                return -1;
+            }
+            @Override
+            public T previous() {
+                throw new UnsupportedOperationException("Cannot iterate backwards through a singly-linked list");
+            }
+
+            // Mutable operations - not implemented
+            @Override
+            public void add(T t) {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+            @Override
+            public void set(T t) {
+                throw new UnsupportedOperationException("Mutable method called on immutable list");
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    // *** Externalizable ***
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(mSize);
+        for (T item : this) {
+            out.writeObject(item);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = in.readInt();
+        final Object[] buffer = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            buffer[i] = in.readObject();
+        }
+        final UnrolledList<T> list = (UnrolledList<T>) of(buffer);
+        mChunk = list.mChunk;
+        mOffset = list.mOffset;
+        mNext = list.mNext;
+        mSize = list.mSize;
+    }
+}
@@ -56,11 +56,76 @@
  *             <td>random access; random update; insertion at back</td>
  *         </tr>
  *         <tr>
+ *             <td>(none - more than 2<sup>31</sup> elements)</td>
+ *             <td>{@link com.github.douglasorr.shared.BigTrieArray}</td>
+ *             <td>random access by <code>long</code> index; random update; insertion at back</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.lang.StringBuilder}</td>
+ *             <td>{@link com.github.douglasorr.shared.Rope}</td>
+ *             <td>insertion &amp; deletion anywhere; random access; line indexing</td>
+ *         </tr>
+ *         <tr>
+ *             <td>(none - a {@link java.util.ArrayList} of rows)</td>
+ *             <td>{@link com.github.douglasorr.shared.ColumnTable}</td>
+ *             <td>insertion of rows at back; cell update; column scans (sum, min/max, filter)</td>
+ *         </tr>
+ *         <tr>
+ *             <td>(none - a {@link java.util.HashMap} of {@link java.util.HashSet}s of successors &amp; predecessors)</td>
+ *             <td>{@link com.github.douglasorr.shared.HashTrieGraph}</td>
+ *             <td>insertion &amp; removal of nodes &amp; edges; successors &amp; predecessors; traversal; topological order</td>
+ *         </tr>
+ *         <tr>
+ *             <td>(none - an {@link java.util.ArrayList} with range sums/min/max recomputed by iteration)</td>
+ *             <td>{@link com.github.douglasorr.shared.AggregatingTrieArray}</td>
+ *             <td>as {@link com.github.douglasorr.shared.TrieArray}; aggregate (e.g. sum, min, max) of any range</td>
+ *         </tr>
+ *         <tr>
+ *             <td>(none - a {@link java.util.HashMap} with totals recomputed by iteration)</td>
+ *             <td>{@link com.github.douglasorr.shared.AggregatingHashTrieMap}</td>
+ *             <td>as {@link com.github.douglasorr.shared.HashTrieMap}; aggregate (e.g. sum, max) of all values</td>
+ *         </tr>
+ *         <tr>
+ *             <td>(none - a {@link java.util.HashMap} with hand-maintained secondary maps)</td>
+ *             <td>{@link com.github.douglasorr.shared.IndexedHashTrieMap}</td>
+ *             <td>as {@link com.github.douglasorr.shared.HashTrieMap}; lookup of keys by an indexed attribute of their values</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.HashMap} (with <code>Integer</code> keys)</td>
+ *             <td>{@link com.github.douglasorr.shared.SparseTrieArray}</td>
+ *             <td>random access &amp; update of sparse indices; ordered iteration; next set index</td>
+ *         </tr>
+ *         <tr>
  *             <td>{@link java.util.LinkedList}</td>
  *             <td>{@link com.github.douglasorr.shared.LinkedList}</td>
  *             <td>query, insertion or removal at front</td>
  *         </tr>
  *         <tr>
+ *             <td>{@link java.util.LinkedList}</td>
+ *             <td>{@link com.github.douglasorr.shared.UnrolledList}</td>
+ *             <td>query, insertion or removal at front; iteration (compact)</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.LinkedList}</td>
+ *             <td>{@link com.github.douglasorr.shared.CatenableList}</td>
+ *             <td>query or removal at front; insertion at front or back; concatenation</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.ArrayDeque}</td>
+ *             <td>{@link com.github.douglasorr.shared.TrieDeque}</td>
+ *             <td>random access; random update; insertion or removal at front or back</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.Queue}</td>
+ *             <td>{@link com.github.douglasorr.shared.TrieQueue}</td>
+ *             <td>enqueue at back; dequeue from front</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.PriorityQueue}</td>
+ *             <td>{@link com.github.douglasorr.shared.SkewBinomialHeap}</td>
+ *             <td>query least; insert; remove least; merge</td>
+ *         </tr>
+ *         <tr>
  *             <td>{@link java.util.HashSet}, {@link java.util.TreeSet}</td>
  *             <td>{@link com.github.douglasorr.shared.HashTrieSet}</td>
  *             <td>unique insert; contains</td>
@@ -70,6 +135,46 @@
  *             <td>{@link com.github.douglasorr.shared.HashTrieMap}</td>
  *             <td>unique insert; lookup</td>
  *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.LinkedHashSet}</td>
+ *             <td>{@link com.github.douglasorr.shared.LinkedHashTrieSet}</td>
+ *             <td>unique insert; contains; iteration in insertion order</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.LinkedHashMap}</td>
+ *             <td>{@link com.github.douglasorr.shared.LinkedHashTrieMap}</td>
+ *             <td>unique insert; lookup; iteration in insertion order</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.TreeMap}</td>
+ *             <td>{@link com.github.douglasorr.shared.BTreeMap}</td>
+ *             <td>unique insert; lookup; ordered iteration; range queries; rank &amp; select</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.HashMap}, {@link java.util.TreeMap} (with <code>String</code> keys)</td>
+ *             <td>{@link com.github.douglasorr.shared.RadixTreeMap}</td>
+ *             <td>unique insert; lookup; prefix queries</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.TreeMap} (of ranges of keys)</td>
+ *             <td>{@link com.github.douglasorr.shared.TreeRangeMap}</td>
+ *             <td>lookup of the range containing a key; insert or remove a range</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.HashMap} (of {@link java.util.HashSet})</td>
+ *             <td>{@link com.github.douglasorr.shared.HashTrieMultimap}</td>
+ *             <td>insert or remove a key-&gt;value pair; lookup all values for a key</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.HashMap} (of counts)</td>
+ *             <td>{@link com.github.douglasorr.shared.HashTrieMultiset}</td>
+ *             <td>increment or decrement a count; count</td>
+ *         </tr>
+ *         <tr>
+ *             <td>{@link java.util.HashMap} (with unique values)</td>
+ *             <td>{@link com.github.douglasorr.shared.HashTrieBiMap}</td>
+ *             <td>unique insert; lookup by key or by value</td>
+ *         </tr>
  *     </tbody>
  * </table>
  *
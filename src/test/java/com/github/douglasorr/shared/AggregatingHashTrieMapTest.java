@@ -0,0 +1,236 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AggregatingHashTrieMapTest {
+    /** Sum (which also counts calls to combine). */
+    private static class Sum implements Aggregator<Long, Long>, Serializable {
+        int combines = 0;
+        @Override
+        public Long identity() {
+            return 0L;
+        }
+        @Override
+        public Long of(Long value) {
+            return value;
+        }
+        @Override
+        public Long combine(Long left, Long right) {
+            ++combines;
+            return left + right;
+        }
+    }
+
+    /** A key with a poor hash function, to test collisions. */
+    private static class BadKey implements Serializable {
+        private final int value;
+        BadKey(int value) {
+            this.value = value;
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BadKey && ((BadKey) o).value == value;
+        }
+        @Override
+        public int hashCode() {
+            return value % 3;
+        }
+    }
+
+    private static long sum(Map<?, Long> reference) {
+        long sum = 0;
+        for (Long value : reference.values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testEmpty() {
+        final Sum sum = new Sum();
+        for (AggregatingHashTrieMap<String, Long, Long> empty : Arrays.asList(
+                AggregatingHashTrieMap.<String, Long, Long> empty(sum),
+                new AggregatingHashTrieMap<String, Long, Long>(sum),
+                new AggregatingHashTrieMap<String, Long, Long>(sum, Collections.<String, Long> emptyMap()),
+                AggregatingHashTrieMap.of(sum, "a", 1L).without("a"))) {
+            assertThat(empty.size(), equalTo(0));
+            assertThat(empty.entrySet(), empty());
+            assertThat(empty.aggregate(), equalTo(0L));
+            assertThat(empty, equalTo((Map<String, Long>) HashTrieMap.<String, Long> empty()));
+            assertThat(empty.aggregator(), sameInstance((Aggregator<Long, Long>) sum));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        final AggregatingHashTrieMap<String, Long, Long> map = AggregatingHashTrieMap.of(new Sum(), "a", 1L, "b", 2L, "c", 3L);
+        assertThat(map, equalTo((Map<String, Long>) HashTrieMap.of("a", 1L, "b", 2L, "c", 3L)));
+        assertThat(map.aggregate(), equalTo(6L));
+        assertThat(map.with("b", 20L).aggregate(), equalTo(24L));
+        assertThat(map.without("a").aggregate(), equalTo(5L));
+        assertThat(map.with("d", 4L).aggregate(), equalTo(10L));
+        assertThat(map.aggregate(), equalTo(6L));
+        assertThat(map.without("missing"), sameInstance(map));
+        assertThat(map.with("a", map.get("a")), sameInstance(map));
+        assertThat(new AggregatingHashTrieMap<String, Long, Long>(map.aggregator(), map), equalTo(map));
+        assertThat(new AggregatingHashTrieMap<String, Long, Long>(map.aggregator(), map).hashCode(), equalTo(map.hashCode()));
+    }
+
+    @Test
+    public void testSmallMaps() {
+        // small maps are flat (as for HashTrieMap), so check growing into a trie & shrinking back
+        AggregatingHashTrieMap<Integer, Long, Long> map = AggregatingHashTrieMap.empty(new Sum());
+        long expected = 0;
+        for (int i = 0; i < 20; ++i) {
+            map = map.with(i, (long) i);
+            expected += i;
+            assertThat(map.aggregate(), equalTo(expected));
+        }
+        for (int i = 0; i < 20; ++i) {
+            map = map.without(i);
+            expected -= i;
+            assertThat(map.aggregate(), equalTo(expected));
+            assertThat(map.size(), equalTo(19 - i));
+        }
+    }
+
+    @Test
+    public void testRandomEdits() {
+        final Random random = new Random(161);
+        final Sum sum = new Sum();
+        AggregatingHashTrieMap<Integer, Long, Long> map = AggregatingHashTrieMap.empty(sum);
+        final Map<Integer, Long> reference = new HashMap<Integer, Long>();
+        final List<AggregatingHashTrieMap<Integer, Long, Long>> versions = new ArrayList<AggregatingHashTrieMap<Integer, Long, Long>>();
+        final List<Map<Integer, Long>> references = new ArrayList<Map<Integer, Long>>();
+        for (int i = 0; i < 20000; ++i) {
+            final Integer key = random.nextInt(5000);
+            if (random.nextInt(3) != 0) {
+                final Long value = (long) random.nextInt(1000);
+                map = map.with(key, value);
+                reference.put(key, value);
+            } else {
+                map = map.without(key);
+                reference.remove(key);
+            }
+            assertThat(map.size(), equalTo(reference.size()));
+            assertThat(map.aggregate(), equalTo(sum(reference)));
+            if (i % 1000 == 0) {
+                assertThat(map, equalTo(reference));
+                versions.add(map);
+                references.add(new HashMap<Integer, Long>(reference));
+            }
+        }
+        assertThat(map, equalTo(reference));
+        for (int i = 0; i < versions.size(); ++i) {
+            assertThat(versions.get(i), equalTo(references.get(i)));
+            assertThat(versions.get(i).aggregate(), equalTo(sum(references.get(i))));
+        }
+
+        // edits only recompute the aggregates on the copied path
+        for (int i = 0; i < 100; ++i) {
+            sum.combines = 0;
+            map = map.with(random.nextInt(5000), (long) random.nextInt(1000));
+            assertThat(sum.combines, lessThanOrEqualTo(4 * 32));
+            sum.combines = 0;
+            map = map.without(random.nextInt(5000));
+            assertThat(sum.combines, lessThanOrEqualTo(4 * 32));
+        }
+    }
+
+    @Test
+    public void testCollisions() {
+        AggregatingHashTrieMap<BadKey, Long, Long> map = AggregatingHashTrieMap.empty(new Sum());
+        final Map<BadKey, Long> reference = new HashMap<BadKey, Long>();
+        for (int i = 0; i < 30; ++i) {
+            map = map.with(new BadKey(i), (long) i);
+            reference.put(new BadKey(i), (long) i);
+            assertThat(map.aggregate(), equalTo(sum(reference)));
+        }
+        assertThat(map, equalTo(reference));
+        for (int i = 0; i < 30; i += 2) {
+            map = map.without(new BadKey(i));
+            reference.remove(new BadKey(i));
+            assertThat(map.aggregate(), equalTo(sum(reference)));
+        }
+        map = map.with(new BadKey(1), 100L);
+        reference.put(new BadKey(1), 100L);
+        assertThat(map, equalTo(reference));
+        assertThat(map.aggregate(), equalTo(sum(reference)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        AggregatingHashTrieMap.<String, Long, Long> empty(new Sum()).with(null, 1L);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        AggregatingHashTrieMap.<String, Long, Long> empty(new Sum()).with("a", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        AggregatingHashTrieMap.of(new Sum(), "a", 1L, "b");
+    }
+
+    @Test
+    public void testNoAggregator() {
+        // the no-argument constructor is only for deserialization, so fails fast until readExternal()
+        final AggregatingHashTrieMap<String, Long, Long> map = new AggregatingHashTrieMap<String, Long, Long>();
+        assertThat(map.aggregator(), nullValue());
+        assertThat(map.isEmpty(), equalTo(true));
+        try {
+            map.aggregate();
+            Assert.fail("aggregate() without an aggregator");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            map.with("a", 1L);
+            Assert.fail("with() without an aggregator");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            map.without("a");
+            Assert.fail("without() without an aggregator");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        final Iterator<Map.Entry<String, Long>> it = AggregatingHashTrieMap.of(new Sum(), "a", 1L, "b", 2L).entrySet().iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        AggregatingHashTrieMap<Object, Long, Long> large = AggregatingHashTrieMap.empty(new Sum());
+        for (int i = 0; i < 1000; ++i) {
+            large = large.with(i % 10 == 0 ? new BadKey(i) : (Object) i, (long) i);
+        }
+        for (AggregatingHashTrieMap<Object, Long, Long> map : Arrays.asList(
+                AggregatingHashTrieMap.<Object, Long, Long> empty(new Sum()),
+                AggregatingHashTrieMap.<Object, Long, Long> of(new Sum(), "a", 1L),
+                large)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(map);
+            out.close();
+            final AggregatingHashTrieMap<Object, Long, Long> copy = (AggregatingHashTrieMap<Object, Long, Long>)
+                    new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertThat(copy, equalTo(map));
+            assertThat(copy.aggregate(), equalTo(map.aggregate()));
+        }
+    }
+}
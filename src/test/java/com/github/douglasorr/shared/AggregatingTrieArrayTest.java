@@ -0,0 +1,229 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AggregatingTrieArrayTest {
+    /** Sum (which also counts calls to combine). */
+    private static class Sum implements Aggregator<Long, Long>, Serializable {
+        int combines = 0;
+        @Override
+        public Long identity() {
+            return 0L;
+        }
+        @Override
+        public Long of(Long value) {
+            return value;
+        }
+        @Override
+        public Long combine(Long left, Long right) {
+            ++combines;
+            return left + right;
+        }
+    }
+
+    /** Concatenation (which is associative but not commutative, so checks the order of aggregation). */
+    private static class Concat implements Aggregator<Integer, String>, Serializable {
+        @Override
+        public String identity() {
+            return "";
+        }
+        @Override
+        public String of(Integer value) {
+            return value + ",";
+        }
+        @Override
+        public String combine(String left, String right) {
+            return left + right;
+        }
+    }
+
+    private static String concat(List<Integer> values) {
+        final StringBuilder sb = new StringBuilder();
+        for (Integer value : values) {
+            sb.append(value).append(',');
+        }
+        return sb.toString();
+    }
+
+    private static void checkConsistency(AggregatingTrieArray<Integer, String> array, List<Integer> reference, Random random) {
+        assertThat(array, equalTo(reference));
+        assertThat(array.size(), equalTo(reference.size()));
+        for (int i = 0; i < reference.size(); ++i) {
+            assertThat(array.get(i), equalTo(reference.get(i)));
+        }
+        assertThat(array.aggregate(), equalTo(concat(reference)));
+        assertThat(array.aggregate(0, reference.size()), equalTo(concat(reference)));
+        for (int i = 0; i < 20; ++i) {
+            final int from = random.nextInt(reference.size() + 1);
+            final int to = from + random.nextInt(reference.size() - from + 1);
+            assertThat(array.aggregate(from, to), equalTo(concat(reference.subList(from, to))));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        final Concat concat = new Concat();
+        for (AggregatingTrieArray<Integer, String> empty : Arrays.asList(
+                AggregatingTrieArray.empty(concat),
+                new AggregatingTrieArray<Integer, String>(concat),
+                new AggregatingTrieArray<Integer, String>(concat, Collections.<Integer> emptyList()),
+                AggregatingTrieArray.of(concat, 1, 2, 3).take(0))) {
+            assertThat(empty, emptyCollectionOf(Integer.class));
+            assertThat(empty.aggregate(), equalTo(""));
+            assertThat(empty.aggregate(0, 0), equalTo(""));
+            assertThat(empty.aggregator(), sameInstance((Aggregator<Integer, String>) concat));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        final AggregatingTrieArray<Integer, String> array = AggregatingTrieArray.of(new Concat(), 1, 2, 3);
+        assertThat(array, contains(1, 2, 3));
+        assertThat(array.aggregate(), equalTo("1,2,3,"));
+        assertThat(array.aggregate(1, 3), equalTo("2,3,"));
+        assertThat(array.update(1, 20).aggregate(), equalTo("1,20,3,"));
+        assertThat(array.append(4).aggregate(0, 2), equalTo("1,2,"));
+        assertThat(array.remend().aggregate(), equalTo("1,2,"));
+        assertThat(array, equalTo((List<Integer>) TrieArray.of(1, 2, 3)));
+        assertThat(new AggregatingTrieArray<Integer, String>(array.aggregator(), array), equalTo(array));
+        assertThat(array.take(3), sameInstance(array));
+    }
+
+    @Test
+    public void testRandomEdits() {
+        final Random random = new Random(271);
+        AggregatingTrieArray<Integer, String> array = AggregatingTrieArray.empty(new Concat());
+        final List<Integer> reference = new ArrayList<Integer>();
+        final List<AggregatingTrieArray<Integer, String>> versions = new ArrayList<AggregatingTrieArray<Integer, String>>();
+        final List<List<Integer>> references = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 5000; ++i) {
+            final int op = random.nextInt(100);
+            if (op < 60 || reference.isEmpty()) {
+                final int value = random.nextInt(1000);
+                array = array.append(value);
+                reference.add(value);
+            } else if (op < 95) {
+                final int index = random.nextInt(reference.size());
+                final int value = random.nextInt(1000);
+                array = array.update(index, value);
+                reference.set(index, value);
+            } else {
+                final int n = random.nextInt(reference.size() + 1);
+                array = array.take(n);
+                reference.subList(n, reference.size()).clear();
+            }
+            if (i % 100 == 0) {
+                checkConsistency(array, reference, random);
+                versions.add(array);
+                references.add(new ArrayList<Integer>(reference));
+            }
+        }
+        checkConsistency(array, reference, random);
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i), random);
+        }
+    }
+
+    @Test
+    public void testLarge() {
+        // a trie of several levels (32^3 < 100000)
+        final Sum sum = new Sum();
+        final List<Long> reference = new ArrayList<Long>();
+        for (long i = 0; i < 100000; ++i) {
+            reference.add(i * i % 1000);
+        }
+        AggregatingTrieArray<Long, Long> array = new AggregatingTrieArray<Long, Long>(sum, reference);
+        assertThat(array, equalTo(reference));
+        final long[] prefixSums = new long[reference.size() + 1];
+        for (int i = 0; i < reference.size(); ++i) {
+            prefixSums[i + 1] = prefixSums[i] + reference.get(i);
+        }
+        assertThat(array.aggregate(), equalTo(prefixSums[reference.size()]));
+
+        // range aggregates only combine O(log(N)) values & nodes
+        final Random random = new Random(99);
+        for (int i = 0; i < 200; ++i) {
+            final int from = random.nextInt(reference.size() + 1);
+            final int to = from + random.nextInt(reference.size() - from + 1);
+            sum.combines = 0;
+            assertThat(array.aggregate(from, to), equalTo(prefixSums[to] - prefixSums[from]));
+            assertThat(sum.combines, lessThanOrEqualTo(4 * 2 * 32));
+        }
+
+        // truncation & update, across levels
+        for (int n : new int[]{99999, 32769, 32768, 32767, 1057, 1056, 1025, 1024, 33, 32, 31, 1}) {
+            final AggregatingTrieArray<Long, Long> taken = array.take(n);
+            assertThat(taken, equalTo(reference.subList(0, n)));
+            assertThat(taken.aggregate(), equalTo(prefixSums[n]));
+            assertThat(taken.append(5L).aggregate(), equalTo(prefixSums[n] + 5));
+        }
+        array = array.update(50000, 1000000L);
+        assertThat(array.aggregate(), equalTo(prefixSums[reference.size()] - reference.get(50000) + 1000000L));
+    }
+
+    @Test
+    public void testIterator() {
+        final List<Integer> reference = new ArrayList<Integer>();
+        for (int i = 0; i < 2000; ++i) {
+            reference.add(i);
+        }
+        final AggregatingTrieArray<Integer, String> array = new AggregatingTrieArray<Integer, String>(new Concat(), reference);
+        final List<Integer> copy = new ArrayList<Integer>();
+        for (Integer value : array) {
+            copy.add(value);
+        }
+        assertThat(copy, equalTo(reference));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        AggregatingTrieArray.of(new Concat(), 1, 2).get(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testAggregateOutOfBounds() {
+        AggregatingTrieArray.of(new Concat(), 1, 2).aggregate(1, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testAggregateBadRange() {
+        AggregatingTrieArray.of(new Concat(), 1, 2).aggregate(2, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testTakeOutOfBounds() {
+        AggregatingTrieArray.of(new Concat(), 1, 2).take(3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        final Iterator<Integer> it = AggregatingTrieArray.of(new Concat(), 1, 2).iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 100; ++i) {
+            values.add(i);
+        }
+        for (List<Integer> reference : Arrays.asList(Collections.<Integer> emptyList(), Arrays.asList(1, 2, 3), values)) {
+            final AggregatingTrieArray<Integer, String> array = new AggregatingTrieArray<Integer, String>(new Concat(), reference);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(array);
+            out.close();
+            final AggregatingTrieArray<Integer, String> copy = (AggregatingTrieArray<Integer, String>)
+                    new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertThat(copy, equalTo(reference));
+            assertThat(copy.aggregate(), equalTo(concat(reference)));
+        }
+    }
+}
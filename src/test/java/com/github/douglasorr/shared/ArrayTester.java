@@ -15,13 +15,18 @@ public abstract class ArrayTester<T> extends Tester {
     public abstract Iterator<T> iterator();
 
     public static class SharedArrayTester<T> extends ArrayTester<T> {
+        private final String mName;
         private final SharedArray<T> mEmpty;
         private SharedArray<T> mArray;
 
-        public SharedArrayTester(SharedArray<T> empty) {
+        public SharedArrayTester(String name, SharedArray<T> empty) {
+            mName = name;
             mEmpty = empty;
             mArray = mEmpty;
         }
+        public SharedArrayTester(SharedArray<T> empty) {
+            this("Doug." + empty.getClass().getSimpleName(), empty);
+        }
 
         @Override
         public T get(int index) {
@@ -57,7 +62,7 @@ public abstract class ArrayTester<T> extends Tester {
         }
         @Override
         public String toString() {
-            return "Doug.TrieArray";
+            return mName;
         }
     }
 
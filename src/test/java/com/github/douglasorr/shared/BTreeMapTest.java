@@ -0,0 +1,247 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BTreeMapTest {
+
+    private static BTreeMap<Integer, String> range(int from, int to) {
+        BTreeMap<Integer, String> map = BTreeMap.empty();
+        for (int i = from; i < to; ++i) {
+            map = map.with(i, Integer.toString(i));
+        }
+        return map;
+    }
+
+    // check that all the NavigableMap queries agree with a reference map
+    private static void assertMatches(NavigableMap<Integer, String> expected, SharedSortedMap<Integer, String> actual, int min, int max) {
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual, equalTo((Map<Integer, String>) expected));
+        assertThat(new ArrayList<Integer>(actual.keySet()), equalTo(new ArrayList<Integer>(expected.keySet())));
+        assertThat(actual.hashCode(), is(expected.hashCode()));
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertThat(actual.select(index), equalTo(entry));
+            assertThat(actual.rank(entry.getKey()), is(index));
+            ++index;
+        }
+        for (int key = min; key <= max; ++key) {
+            assertThat(actual.get(key), equalTo(expected.get(key)));
+            assertThat(actual.lowerKey(key), equalTo(expected.lowerKey(key)));
+            assertThat(actual.floorKey(key), equalTo(expected.floorKey(key)));
+            assertThat(actual.ceilingKey(key), equalTo(expected.ceilingKey(key)));
+            assertThat(actual.higherKey(key), equalTo(expected.higherKey(key)));
+            int rank = 0;
+            for (Integer k : expected.keySet()) {
+                rank += expected.comparator() == null
+                        ? (k < key ? 1 : 0)
+                        : (((Comparator<Integer>) expected.comparator()).compare(k, key) < 0 ? 1 : 0);
+            }
+            assertThat(actual.rank(key), is(rank));
+        }
+        assertThat(actual.firstEntry(), equalTo(expected.firstEntry()));
+        assertThat(actual.lastEntry(), equalTo(expected.lastEntry()));
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (BTreeMap<Object, Object> empty : Arrays.asList(
+                BTreeMap.EMPTY,
+                BTreeMap.<Object, Object> empty(),
+                BTreeMap.<Object, Object> of(),
+                new BTreeMap<Object, Object>(),
+                new BTreeMap<Object, Object>(Collections.emptyMap()),
+                new BTreeMap<Object, Object>(BTreeMap.EMPTY),
+                BTreeMap.<Object, Object> singleton("one", 1).without("one")
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get("foo"), nullValue());
+            assertThat(empty.entrySet().iterator().hasNext(), is(false));
+            assertThat(empty.firstEntry(), nullValue());
+            assertThat(empty.floorKey("foo"), nullValue());
+            assertThat(empty.rank("foo"), is(0));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(BTreeMap.of("one", 1, "two", 2, "three", 3).keySet(), contains("one", "three", "two"));
+        assertThat(BTreeMap.singleton("one", 1).get("one"), is(1));
+        assertThat(new BTreeMap<String, Integer>(Collections.singletonMap("one", 1)).get("one"), is(1));
+
+        TreeMap<String, Integer> reversed = new TreeMap<String, Integer>(Collections.<String>reverseOrder());
+        reversed.put("one", 1);
+        reversed.put("two", 2);
+        reversed.put("three", 3);
+        assertThat(new BTreeMap<String, Integer>(reversed).keySet(), contains("two", "three", "one"));
+        assertThat(BTreeMap.<String, Integer> empty(String.CASE_INSENSITIVE_ORDER).with("a", 1).with("A", 2).size(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        BTreeMap.of("one", 1, "two");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        BTreeMap.empty().with(null, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        BTreeMap.empty().with("foo", null);
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() {
+        range(0, 10).select(10);
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubMapOutOfOrder() {
+        range(0, 10).subMap(5, 3);
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyFirstKey() {
+        BTreeMap.empty().firstKey();
+    }
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPollFirstEntry() {
+        range(0, 10).pollFirstEntry();
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        BTreeMap<Integer, String> map = range(0, 1000);
+        assertThat(map.size(), is(1000));
+        assertThat(map.get(500), is("500"));
+        assertThat(map.get(1000), nullValue());
+        assertThat(map.without(500).get(500), nullValue());
+        assertThat(map.without(500).size(), is(999));
+        assertThat(map.without(1000), sameInstance(map));
+        assertThat(map.with(500, map.get(500)), sameInstance(map));
+        assertThat(map.with(500, "five hundred").get(500), is("five hundred"));
+        assertThat(map.get(500), is("500")); // unchanged
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        BTreeMap<Integer, String> actual = BTreeMap.empty();
+        for (int i = 0; i < 20000; ++i) {
+            int key = random.nextInt(2000);
+            // bias towards adding at the start, & removing at the end
+            if (random.nextInt(3) == 0 || (i > 10000 && random.nextBoolean())) {
+                expected.remove(key);
+                actual = actual.without(key);
+            } else {
+                expected.put(key, Integer.toString(i));
+                actual = actual.with(key, Integer.toString(i));
+            }
+            assertThat(actual.size(), is(expected.size()));
+        }
+        assertMatches(expected, actual, -1, 2001);
+        assertMatches(expected.descendingMap(), actual.descendingMap(), -1, 2001);
+
+        // remove everything
+        for (Integer key : new ArrayList<Integer>(expected.keySet())) {
+            actual = actual.without(key);
+        }
+        assertThat(actual.isEmpty(), is(true));
+    }
+
+    // *** Navigation ***
+
+    @Test
+    public void testNavigation() {
+        BTreeMap<Integer, String> map = BTreeMap.<Integer, String> empty().with(10, "ten").with(20, "twenty").with(30, "thirty");
+        assertThat(map.floorKey(20), is(20));
+        assertThat(map.floorKey(25), is(20));
+        assertThat(map.floorKey(5), nullValue());
+        assertThat(map.ceilingKey(20), is(20));
+        assertThat(map.ceilingKey(25), is(30));
+        assertThat(map.ceilingKey(35), nullValue());
+        assertThat(map.lowerKey(20), is(10));
+        assertThat(map.higherKey(20), is(30));
+        assertThat(map.firstKey(), is(10));
+        assertThat(map.lastKey(), is(30));
+        assertThat(map.rank(20), is(1));
+        assertThat(map.rank(25), is(2));
+        assertThat(map.select(1).getValue(), is("twenty"));
+
+        BTreeMap<Integer, String> descending = map.descendingMap();
+        assertThat(descending.keySet(), contains(30, 20, 10));
+        assertThat(descending.floorKey(25), is(30));
+        assertThat(descending.ceilingKey(25), is(20));
+        assertThat(descending.rank(20), is(1));
+        assertThat(descending.rank(5), is(3));
+        assertThat(descending.firstKey(), is(30));
+        assertThat(descending.descendingMap().keySet(), contains(10, 20, 30));
+        assertThat(descending.with(40, "forty").keySet(), contains(40, 30, 20, 10));
+        assertThat(map.descendingKeySet(), contains(30, 20, 10));
+    }
+
+    @Test
+    public void testSubMaps() {
+        BTreeMap<Integer, String> map = range(0, 1000);
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>(map);
+        for (int[] bounds : new int[][] { {0, 1000}, {-10, 2000}, {100, 900}, {5, 6}, {500, 500}, {0, 40}, {960, 999} }) {
+            int from = bounds[0], to = bounds[1];
+            for (boolean fromInclusive : new boolean[] { true, false }) {
+                for (boolean toInclusive : new boolean[] { true, false }) {
+                    assertMatches(expected.subMap(from, fromInclusive, to, toInclusive),
+                            map.subMap(from, fromInclusive, to, toInclusive), -1, 1001);
+                    assertMatches(expected.descendingMap().subMap(to, toInclusive, from, fromInclusive),
+                            map.descendingMap().subMap(to, toInclusive, from, fromInclusive), -1, 1001);
+                }
+            }
+            assertMatches(expected.headMap(to, false), map.headMap(to), -1, 1001);
+            assertMatches(expected.tailMap(from, true), map.tailMap(from), -1, 1001);
+            assertMatches(expected.descendingMap().headMap(from, true), map.descendingMap().headMap(from, true), -1, 1001);
+            assertMatches(expected.descendingMap().tailMap(to, false), map.descendingMap().tailMap(to, false), -1, 1001);
+        }
+        assertThat(map.subMap(0, 1001), sameInstance(map));
+
+        // sub-maps can be updated
+        BTreeMap<Integer, String> sub = map.subMap(100, 200);
+        TreeMap<Integer, String> expectedSub = new TreeMap<Integer, String>(expected.subMap(100, 200));
+        for (int i = 50; i < 250; i += 3) {
+            sub = sub.without(i).with(i + 1, "updated");
+            expectedSub.remove(i);
+            expectedSub.put(i + 1, "updated");
+        }
+        assertMatches(expectedSub, sub, 0, 300);
+        for (int i = 0; i < 300; ++i) {
+            sub = sub.without(i);
+        }
+        assertThat(sub.isEmpty(), is(true));
+
+        assertThat(map.navigableKeySet().subSet(10, 13), contains(10, 11, 12));
+        assertThat(map.navigableKeySet().headSet(3), contains(0, 1, 2));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(range(0, 100));
+        out.writeObject(range(0, 3).descendingMap());
+        out.writeObject(BTreeMap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((BTreeMap<Integer, String>) in.readObject(), equalTo((Map<Integer, String>) range(0, 100)));
+        assertThat(((BTreeMap<Integer, String>) in.readObject()).keySet(), contains(2, 1, 0));
+        assertThat(((BTreeMap<Object, Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
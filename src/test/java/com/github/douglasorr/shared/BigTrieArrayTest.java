@@ -0,0 +1,200 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BigTrieArrayTest {
+    private static void checkConsistency(BigTrieArray<String> array, List<String> reference) {
+        assertThat(array.size(), equalTo((long) reference.size()));
+        assertThat(array.isEmpty(), equalTo(reference.isEmpty()));
+        for (int i = 0; i < reference.size(); ++i) {
+            assertThat(array.get(i), equalTo(reference.get(i)));
+        }
+        final List<String> iterated = new ArrayList<String>();
+        for (String value : array) {
+            iterated.add(value);
+        }
+        assertThat(iterated, equalTo(reference));
+        assertThat(array.hashCode(), equalTo(reference.hashCode()));
+        assertThat(array.toString(), equalTo(reference.toString()));
+    }
+
+    @Test
+    public void testEmpty() {
+        for (BigTrieArray<String> empty : Arrays.asList(
+                BigTrieArray.<String> empty(),
+                new BigTrieArray<String>(),
+                new BigTrieArray<String>(Collections.<String> emptyList()),
+                BigTrieArray.<String> of(),
+                BigTrieArray.nCopies(0, "x"),
+                BigTrieArray.singleton("x").remend())) {
+            checkConsistency(empty, Collections.<String> emptyList());
+            assertThat(empty, equalTo(BigTrieArray.<String> empty()));
+            assertThat(empty.iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        checkConsistency(BigTrieArray.singleton("one"), Arrays.asList("one"));
+        checkConsistency(BigTrieArray.of("one", "two", "three"), Arrays.asList("one", "two", "three"));
+        checkConsistency(new BigTrieArray<String>(Arrays.asList("a", "b")), Arrays.asList("a", "b"));
+        final BigTrieArray<String> array = BigTrieArray.of("a", "b");
+        assertThat(new BigTrieArray<String>(array), equalTo(array));
+    }
+
+    @Test
+    public void testAppendTakeUpdate() {
+        final Random random = new Random(100);
+        BigTrieArray<String> array = BigTrieArray.empty();
+        final List<String> reference = new ArrayList<String>();
+        for (int n = 0; n < 40000; ++n) {
+            if (n % 997 == 0 || n == 32 * 32 + 33 || n == 32 * 32 * 32 + 33) {
+                checkConsistency(array, reference);
+                // take each interesting prefix
+                for (int size : Arrays.asList(0, 1, 2, 31, 32, 33, 64, 65, 1024, 1056, 1057, n / 2, n - 1)) {
+                    if (0 <= size && size <= n) {
+                        checkConsistency(array.take(size), reference.subList(0, size));
+                    }
+                }
+                // update some random positions
+                if (n != 0) {
+                    BigTrieArray<String> updated = array;
+                    final List<String> updatedReference = new ArrayList<String>(reference);
+                    for (int i = 0; i < 10; ++i) {
+                        final int index = random.nextInt(n);
+                        updated = updated.update(index, "update " + i);
+                        updatedReference.set(index, "update " + i);
+                    }
+                    checkConsistency(updated, updatedReference);
+                    checkConsistency(array, reference);
+                }
+            }
+            array = array.append("item " + n);
+            reference.add("item " + n);
+        }
+        while (!reference.isEmpty()) {
+            array = array.remend();
+            reference.remove(reference.size() - 1);
+            assertThat(array.size(), equalTo((long) reference.size()));
+        }
+        checkConsistency(array, reference);
+    }
+
+    @Test
+    public void testNCopies() {
+        for (int n : Arrays.asList(1, 2, 31, 32, 33, 63, 64, 65, 1024, 1056, 1057, 1058, 32 * 32 * 32 + 32, 40000)) {
+            final BigTrieArray<String> array = BigTrieArray.nCopies(n, "x");
+            checkConsistency(array, Collections.nCopies(n, "x"));
+            assertThat(array, equalTo(new BigTrieArray<String>(Collections.nCopies(n, "x"))));
+            checkConsistency(array.append("y").take(n), Collections.nCopies(n, "x"));
+
+            // updates must not affect the shared blocks
+            final List<String> reference = new ArrayList<String>(Collections.nCopies(n, "x"));
+            reference.set(0, "first");
+            reference.set(n - 1, "last");
+            reference.set(n / 2, "middle");
+            checkConsistency(array.update(0, "first").update(n - 1, "last").update(n / 2, "middle"), reference);
+            checkConsistency(array, Collections.nCopies(n, "x"));
+        }
+    }
+
+    @Test
+    public void testBeyondIntIndices() {
+        final long n = 5L * Integer.MAX_VALUE + 7;
+        BigTrieArray<String> array = BigTrieArray.nCopies(n, "x");
+        assertThat(array.size(), equalTo(n));
+        assertThat(array.get(n - 1), equalTo("x"));
+
+        final long index = 3L * Integer.MAX_VALUE + 12345;
+        final BigTrieArray<String> updated = array.update(index, "y").update(0, "first");
+        assertThat(updated.get(index), equalTo("y"));
+        assertThat(updated.get(index - 1), equalTo("x"));
+        assertThat(updated.get(index + 1), equalTo("x"));
+        assertThat(updated.get(index & 0xffffffffL), equalTo("x"));
+        assertThat(updated.get(0), equalTo("first"));
+        assertThat(array.get(index), equalTo("x"));
+
+        final BigTrieArray<String> appended = updated.append("a").append("b");
+        assertThat(appended.size(), equalTo(n + 2));
+        assertThat(appended.get(n), equalTo("a"));
+        assertThat(appended.get(n + 1), equalTo("b"));
+
+        final BigTrieArray<String> taken = appended.take(index + 1);
+        assertThat(taken.size(), equalTo(index + 1));
+        assertThat(taken.get(index), equalTo("y"));
+        final Iterator<String> it = taken.iterator(index - 40);
+        for (int i = 0; i < 40; ++i) {
+            assertThat(it.next(), equalTo("x"));
+        }
+        assertThat(it.next(), equalTo("y"));
+        assertThat(it.hasNext(), is(false));
+
+        // growing the trie by a level, across the boundary at 2^35
+        final long boundary = 1L << 35;
+        final BigTrieArray<String> edge = BigTrieArray.nCopies(boundary + 32, "x");
+        final BigTrieArray<String> grown = edge.append("z");
+        assertThat(grown.get(boundary + 32), equalTo("z"));
+        assertThat(grown.get(boundary + 31), equalTo("x"));
+        assertThat(grown.get(boundary - 1), equalTo("x"));
+        final BigTrieArray<String> shrunk = grown.take(boundary + 32);
+        assertThat(shrunk.size(), equalTo(edge.size()));
+        assertThat(shrunk.get(boundary + 31), equalTo("x"));
+        assertThat(shrunk.take(boundary - 1).get(boundary - 2), equalTo("x"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        BigTrieArray.of("a", "b").get(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetNegative() {
+        BigTrieArray.of("a", "b").get(-1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUpdateOutOfBounds() {
+        BigTrieArray.nCopies(100, "a").update(100, "b");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testTakeOutOfBounds() {
+        BigTrieArray.nCopies(100, "a").take(101);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testIteratorEnd() {
+        final Iterator<String> it = BigTrieArray.of("a").iterator();
+        it.next();
+        it.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        final Iterator<String> it = BigTrieArray.of("a").iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        for (int n : Arrays.asList(0, 1, 2, 33, 1057)) {
+            BigTrieArray<String> array = BigTrieArray.nCopies(n, "x");
+            if (n != 0) {
+                array = array.update(n / 2, "y");
+            }
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(array);
+            out.close();
+            final Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertThat(copy, equalTo((Object) array));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CatenableListTest {
+    private static void checkConsistency(CatenableList<String> list, List<String> reference) {
+        assertThat(list, equalTo(reference));
+        assertThat(list.size(), equalTo(reference.size()));
+        assertThat(list.isEmpty(), equalTo(reference.isEmpty()));
+        if (!reference.isEmpty()) {
+            assertThat(list.head(), equalTo(reference.get(0)));
+            assertThat(list.get(reference.size() - 1), equalTo(reference.get(reference.size() - 1)));
+        }
+        // drain the list with tail()
+        CatenableList<String> l = list;
+        for (String expected : reference) {
+            assertThat(l.head(), equalTo(expected));
+            l = l.tail();
+        }
+        assertThat(l.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(42);
+        List<CatenableList<String>> versions = new ArrayList<CatenableList<String>>();
+        List<List<String>> references = new ArrayList<List<String>>();
+        versions.add(CatenableList.<String> empty());
+        references.add(Collections.<String> emptyList());
+
+        for (int i = 0; i < 2000; ++i) {
+            // pick an old version at random to operate on
+            int n = random.nextInt(versions.size());
+            CatenableList<String> list = versions.get(n);
+            List<String> reference = new ArrayList<String>(references.get(n));
+            int op = random.nextInt(5);
+            if (op == 0) {
+                list = list.prepend("prepend " + i);
+                reference.add(0, "prepend " + i);
+            } else if (op == 1) {
+                list = list.append("append " + i);
+                reference.add("append " + i);
+            } else if (op == 2 && !reference.isEmpty()) {
+                list = list.tail();
+                reference.remove(0);
+            } else if (op == 3) {
+                int m = random.nextInt(versions.size());
+                list = list.concat(versions.get(m));
+                reference.addAll(references.get(m));
+            } else {
+                LinkedList<String> fragment = LinkedList.of("fragment " + i + ".0", "fragment " + i + ".1");
+                list = list.concat(fragment);
+                reference.addAll(fragment);
+            }
+            if (reference.size() < 500) {
+                versions.add(list);
+                references.add(reference);
+            }
+        }
+        for (int i = 0; i < versions.size(); i += 13) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testConcatMany() {
+        // left-nested and right-nested concatenation of many fragments
+        CatenableList<String> left = CatenableList.empty();
+        CatenableList<String> right = CatenableList.empty();
+        final List<String> leftReference = new ArrayList<String>();
+        final List<String> rightReference = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i) {
+            LinkedList<String> fragment = LinkedList.of("a" + i, "b" + i, "c" + i);
+            left = left.concat(fragment);
+            leftReference.addAll(fragment);
+            right = CatenableList.wrap(fragment).concat(right);
+            rightReference.addAll(0, fragment);
+        }
+        checkConsistency(left, leftReference);
+        checkConsistency(right, rightReference);
+        checkConsistency(left.concat(right), new ArrayList<String>() {{
+            addAll(leftReference);
+            addAll(rightReference);
+        }});
+    }
+
+    @Test
+    public void testWrap() {
+        LinkedList<String> list = LinkedList.of("one", "two", "three");
+        CatenableList<String> wrapped = CatenableList.wrap(list);
+        assertThat(wrapped, equalTo((List<String>) list));
+        assertThat(wrapped.tail(), equalTo(asList("two", "three")));
+        assertThat(CatenableList.wrap(LinkedList.<String> empty()), sameInstance(CatenableList.<String> empty()));
+        assertThat(wrapped.concat(CatenableList.<String> empty()), sameInstance(wrapped));
+        assertThat(CatenableList.<String> empty().concat(wrapped), sameInstance(wrapped));
+    }
+
+    @Test
+    public void testListIterator() {
+        CatenableList<String> list = CatenableList.of("one", "two").concat(asList("three", "four")).append("five");
+        ListIterator<String> it = list.listIterator(2);
+        assertThat(it.nextIndex(), equalTo(2));
+        assertThat(it.next(), equalTo("three"));
+        assertThat(it.next(), equalTo("four"));
+        assertThat(it.next(), equalTo("five"));
+        assertThat(it.hasNext(), is(false));
+    }
+
+    @Test
+    public void testEmpty() {
+        for (CatenableList<Object> empty : Arrays.<CatenableList<Object>> asList(
+                (CatenableList<Object>) CatenableList.EMPTY,
+                CatenableList.empty(),
+                CatenableList.of(),
+                new CatenableList<Object>(),
+                new CatenableList<Object>(Collections.emptyList()),
+                CatenableList.<Object> singleton("one").tail()
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+            assertThat(empty, equalTo(Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(CatenableList.singleton("one"), equalTo(Collections.singletonList("one")));
+        assertThat(CatenableList.of("one", "two", "three"), equalTo(asList("one", "two", "three")));
+        assertThat(new CatenableList<String>(asList("one", "two")), equalTo(asList("one", "two")));
+        CatenableList<String> list = CatenableList.of("one").append("two");
+        assertThat(new CatenableList<String>(list), equalTo(asList("one", "two")));
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testHeadEmpty() {
+        CatenableList.empty().head();
+    }
+    @Test(expected=NoSuchElementException.class)
+    public void testTailEmpty() {
+        CatenableList.empty().tail();
+    }
+    @Test(expected=NullPointerException.class)
+    public void testAppendNull() {
+        CatenableList.of("one").append(null);
+    }
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        CatenableList.of("one").append("two").get(2);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(CatenableList.of(1, 100).concat(CatenableList.of(33)).prepend(0));
+        out.writeObject(CatenableList.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertThat((CatenableList<Integer>) in.readObject(), equalTo(CatenableList.of(0, 1, 100, 33)));
+        Assert.assertThat((CatenableList<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        in.close();
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static com.github.douglasorr.shared.SharedTable.ColumnType.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ColumnTableTest {
+    private static final List<String> NAMES = Arrays.asList("id", "price", "name");
+
+    /** Check all cells &amp; scans against a reference list of rows (id: Long, price: Double, name: String). */
+    private static void checkConsistency(ColumnTable table, List<Object[]> reference) {
+        assertThat(table.rowCount(), equalTo(reference.size()));
+        assertThat(table.columnNames(), equalTo(NAMES));
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        double priceSum = 0;
+        final BitSet inRange = new BitSet();
+        final BitSet priceInRange = new BitSet();
+        final BitSet named = new BitSet();
+        final BitSet unnamed = new BitSet();
+        for (int row = 0; row < reference.size(); ++row) {
+            final Object[] expected = reference.get(row);
+            for (int column = 0; column < NAMES.size(); ++column) {
+                assertThat(table.get(row, NAMES.get(column)), equalTo(expected[column]));
+            }
+            final long id = (Long) expected[0];
+            final double price = (Double) expected[1];
+            assertThat(table.longColumn("id").get(row), equalTo(id));
+            assertThat(table.doubleColumn("price").get(row), equalTo(price));
+            assertThat(table.stringColumn("name").get(row), equalTo(expected[2]));
+            sum += id;
+            min = Math.min(min, id);
+            max = Math.max(max, id);
+            priceSum += price;
+            inRange.set(row, 10 <= id && id < 50);
+            priceInRange.set(row, 0.25 <= price && price < 0.5);
+            named.set(row, "name 3".equals(expected[2]));
+            unnamed.set(row, expected[2] == null);
+        }
+        final ColumnTable.LongColumn ids = table.longColumn("id");
+        assertThat(ids.size(), equalTo(reference.size()));
+        assertThat(ids.sum(), equalTo(sum));
+        if (!reference.isEmpty()) {
+            assertThat(ids.min(), equalTo(min));
+            assertThat(ids.max(), equalTo(max));
+        }
+        assertThat(ids.filterRange(10, 50), equalTo(inRange));
+        assertThat(table.doubleColumn("price").sum(), closeTo(priceSum, 1e-9));
+        assertThat(table.doubleColumn("price").filterRange(0.25, 0.5), equalTo(priceInRange));
+        assertThat(table.stringColumn("name").filterEquals("name 3"), equalTo(named));
+        assertThat(table.stringColumn("name").filterEquals(null), equalTo(unnamed));
+        assertThat(table.stringColumn("name").filterEquals("missing"), equalTo(new BitSet()));
+    }
+
+    private static ColumnTable emptyTable() {
+        return ColumnTable.of("id", LONG, "price", DOUBLE, "name", STRING);
+    }
+
+    @Test
+    public void testEmpty() {
+        for (ColumnTable empty : Arrays.asList(
+                ColumnTable.empty(),
+                new ColumnTable(),
+                new ColumnTable(ColumnTable.empty()))) {
+            assertThat(empty.rowCount(), equalTo(0));
+            assertThat(empty.columnNames(), empty());
+            assertThat(empty, equalTo(ColumnTable.empty()));
+            assertThat(empty.toString(), equalTo("{}"));
+        }
+        checkConsistency(emptyTable(), Collections.<Object[]> emptyList());
+        checkConsistency(emptyTable().appendRow(1L, 2.0, "x").takeRows(0), Collections.<Object[]> emptyList());
+    }
+
+    @Test
+    public void testConstruction() {
+        final ColumnTable table = emptyTable()
+                .appendRow(1L, 0.5, "one")
+                .appendRow(2, 1.5f, null);
+        assertThat(table.columnType("id"), equalTo(LONG));
+        assertThat(table.columnType("price"), equalTo(DOUBLE));
+        assertThat(table.columnType("name"), equalTo(STRING));
+        checkConsistency(table, Arrays.asList(new Object[]{1L, 0.5, "one"}, new Object[]{2L, 1.5, null}));
+        assertThat(table.toString(), equalTo("{id=[1, 2], price=[0.5, 1.5], name=[one, null]}"));
+        assertThat(table.appendRow(3L, 0.0, "x").takeRows(2), equalTo(table));
+        assertThat(table.hashCode(), equalTo(new ColumnTable(table).hashCode()));
+    }
+
+    @Test
+    public void testWithColumn() {
+        ColumnTable table = ColumnTable.of("id", LONG);
+        for (long i = 0; i < 200; ++i) {
+            table = table.appendRow(i);
+        }
+        final ColumnTable wider = table.withColumn("price", DOUBLE).withColumn("name", STRING);
+        final List<Object[]> reference = new ArrayList<Object[]>();
+        for (long i = 0; i < 200; ++i) {
+            reference.add(new Object[]{i, 0.0, null});
+        }
+        checkConsistency(wider, reference);
+        assertThat(wider.longColumn("id"), sameInstance(table.longColumn("id")));
+        assertThat(table.columnNames(), equalTo(Arrays.asList("id")));
+
+        // updating the (shared) default blocks
+        reference.get(70)[1] = 2.5;
+        reference.get(5)[2] = "five";
+        checkConsistency(wider.updateCell(70, "price", 2.5).updateCell(5, "name", "five"), reference);
+        assertThat(wider.get(70, "price"), equalTo((Object) 0.0));
+    }
+
+    @Test
+    public void testRandomized() {
+        final Random random = new Random(100);
+        ColumnTable table = emptyTable();
+        final List<Object[]> reference = new ArrayList<Object[]>();
+        final List<ColumnTable> versions = new ArrayList<ColumnTable>();
+        final List<List<Object[]>> references = new ArrayList<List<Object[]>>();
+        for (int i = 0; i < 3000; ++i) {
+            final int op = random.nextInt(20);
+            if (op < 12 || reference.isEmpty()) {
+                final Object[] row = {(long) random.nextInt(100), random.nextDouble(),
+                        random.nextInt(10) == 0 ? null : "name " + random.nextInt(20)};
+                table = table.appendRow(row);
+                reference.add(row);
+            } else if (op < 19) {
+                final int row = random.nextInt(reference.size());
+                final int column = random.nextInt(NAMES.size());
+                final Object value = column == 0 ? (Object) (long) random.nextInt(100)
+                        : column == 1 ? (Object) random.nextDouble()
+                        : "name " + random.nextInt(20);
+                final ColumnTable updated = table.updateCell(row, NAMES.get(column), value);
+                if (column != 0) {
+                    assertThat(updated.longColumn("id"), sameInstance(table.longColumn("id")));
+                }
+                table = updated;
+                final Object[] newRow = reference.get(row).clone();
+                newRow[column] = value;
+                reference.set(row, newRow);
+            } else {
+                final int n = random.nextInt(reference.size() + 1);
+                table = table.takeRows(n);
+                reference.subList(n, reference.size()).clear();
+            }
+            if (i % 200 == 0) {
+                checkConsistency(table, reference);
+                versions.add(table);
+                references.add(new ArrayList<Object[]>(reference));
+            }
+        }
+        checkConsistency(table, reference);
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testUpdateSharesColumns() {
+        final ColumnTable table = emptyTable().appendRow(1L, 1.0, "a").appendRow(2L, 2.0, "b");
+        final ColumnTable updated = table.updateCell(1, "price", 3.0);
+        assertThat(updated.longColumn("id"), sameInstance(table.longColumn("id")));
+        assertThat(updated.stringColumn("name"), sameInstance(table.stringColumn("name")));
+        assertThat(table.takeRows(2), sameInstance(table));
+        assertThat(updated, not(equalTo(table)));
+        assertThat(updated.updateCell(1, "price", 2.0), equalTo(table));
+    }
+
+    @Test
+    public void testDictionary() {
+        ColumnTable table = ColumnTable.of("name", STRING);
+        for (int i = 0; i < 1000; ++i) {
+            table = table.appendRow("name " + (i % 3));
+        }
+        assertThat(table.stringColumn("name").dictionarySize(), equalTo(3));
+        assertThat(table.stringColumn("name").filterEquals("name 1").cardinality(), equalTo(333));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownColumn() {
+        emptyTable().get(0, "missing");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongColumnType() {
+        emptyTable().longColumn("price");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateColumn() {
+        emptyTable().withColumn("id", DOUBLE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendWrongArity() {
+        emptyTable().appendRow(1L, 2.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendWrongType() {
+        emptyTable().appendRow(1.5, 2.0, "x");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testAppendNullNumber() {
+        emptyTable().appendRow(null, 2.0, "x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        ColumnTable.of("id", LONG, "price");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUpdateOutOfBounds() {
+        emptyTable().appendRow(1L, 2.0, "x").updateCell(1, "id", 2L);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testTakeRowsOutOfBounds() {
+        emptyTable().appendRow(1L, 2.0, "x").takeRows(2);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testMinEmpty() {
+        emptyTable().longColumn("id").min();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final Random random = new Random(200);
+        ColumnTable table = emptyTable();
+        for (int i = 0; i < 100; ++i) {
+            table = table.appendRow((long) i, random.nextDouble(), i % 7 == 0 ? null : "name " + (i % 5));
+        }
+        for (ColumnTable t : Arrays.asList(ColumnTable.empty(), emptyTable(), table)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(t);
+            out.close();
+            final Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertThat(copy, equalTo((Object) t));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HashTrieBiMapTest {
+
+    private static <K,V> void assertConsistent(Map<K,V> expected, HashTrieBiMap<K,V> actual) {
+        assertThat(actual, equalTo(expected));
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual.inverse().size(), is(expected.size()));
+        assertThat(actual.values(), equalTo((Set<V>) new HashSet<V>(expected.values())));
+        for (Map.Entry<K,V> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey()), equalTo(entry.getValue()));
+            assertThat(actual.inverse().get(entry.getValue()), equalTo(entry.getKey()));
+            assertThat(actual.containsValue(entry.getValue()), is(true));
+        }
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (HashTrieBiMap<Object, Object> empty : Arrays.asList(
+                HashTrieBiMap.EMPTY,
+                HashTrieBiMap.empty(),
+                HashTrieBiMap.of(),
+                new HashTrieBiMap<Object, Object>(),
+                new HashTrieBiMap<Object, Object>(Collections.emptyMap()),
+                HashTrieBiMap.<Object, Object> singleton("one", 1).without("one"),
+                HashTrieBiMap.<Object, Object> singleton("one", 1).inverse().without(1).inverse()
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get("one"), nullValue());
+            assertThat(empty.containsValue(1), is(false));
+            assertThat(empty.inverse().isEmpty(), is(true));
+            assertThat(empty.entrySet().iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        HashTrieBiMap<String, Integer> map = HashTrieBiMap.of("one", 1, "two", 2, "three", 3);
+        assertThat(map, equalTo((Map<String, Integer>) HashTrieMap.of("one", 1, "two", 2, "three", 3)));
+        assertThat(HashTrieBiMap.singleton("one", 1).inverse().get(1), is("one"));
+        assertThat(new HashTrieBiMap<String, Integer>(Collections.singletonMap("one", 1)).inverse().get(1), is("one"));
+        assertThat(new HashTrieBiMap<String, Integer>(map), equalTo((Map<String, Integer>) map));
+        // a later mapping for the same key replaces the earlier one (& frees its value)
+        assertThat(HashTrieBiMap.of("one", 1, "one", 2, "two", 1).inverse(),
+                equalTo((Map<Integer, String>) HashTrieMap.of(2, "one", 1, "two")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        HashTrieBiMap.of("one", 1, "two");
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfDuplicateValues() {
+        HashTrieBiMap.of("one", 1, "uno", 1);
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        HashTrieBiMap.empty().with(null, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        HashTrieBiMap.empty().with("foo", null);
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        HashTrieBiMap<String, Integer> map = HashTrieBiMap.of("one", 1, "two", 2);
+        assertThat(map.with("one", 1), sameInstance(map));
+        assertThat(map.forceWith("one", 1), sameInstance(map));
+        assertThat(map.without("three"), sameInstance(map));
+        assertThat(map.without(null), sameInstance(map));
+
+        assertThat(map.with("one", 10).inverse().get(10), is("one"));
+        assertThat(map.with("one", 10).containsValue(1), is(false));
+        assertThat(map.without("one").inverse().get(1), nullValue());
+        assertThat(map.without("one").containsValue(1), is(false));
+        assertThat(map.without("one").get("two"), is(2));
+
+        // forceWith() removes the existing key for a value
+        HashTrieBiMap<String, Integer> forced = map.forceWith("one", 2);
+        assertThat(forced, equalTo((Map<String, Integer>) HashTrieMap.of("one", 2)));
+        assertThat(forced.inverse(), equalTo((Map<Integer, String>) HashTrieMap.of(2, "one")));
+        assertThat(map.forceWith("uno", 1), equalTo((Map<String, Integer>) HashTrieMap.of("uno", 1, "two", 2)));
+        assertThat(map.forceWith("three", 3), equalTo((Map<String, Integer>) HashTrieMap.of("one", 1, "two", 2, "three", 3)));
+        assertThat(map.get("one"), is(1)); // unchanged
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithDuplicateValue() {
+        HashTrieBiMap.of("one", 1, "two", 2).with("one", 2);
+    }
+
+    @Test
+    public void testInverse() {
+        HashTrieBiMap<String, Integer> map = HashTrieBiMap.of("one", 1, "two", 2);
+        assertThat(map.inverse(), sameInstance(map.inverse()));
+        assertThat(map.inverse().inverse(), sameInstance(map));
+        assertThat(map.inverse().keySet(), equalTo(map.values()));
+        assertThat(map.inverse().with(3, "three").get(3), is("three"));
+        assertThat(map.inverse().with(3, "three").inverse().get("three"), is(3));
+        assertThat(map.inverse().without(1).inverse(), equalTo((Map<String, Integer>) HashTrieMap.of("two", 2)));
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> expectedInverse = new HashMap<Integer, Integer>();
+        HashTrieBiMap<Integer, Integer> actual = HashTrieBiMap.empty();
+        for (int i = 0; i < 20000; ++i) {
+            final Integer key = random.nextInt(500);
+            final Integer value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expectedInverse.remove(expected.remove(key));
+                actual = actual.without(key);
+            } else {
+                // forceWith()
+                expected.remove(expectedInverse.remove(value));
+                expectedInverse.remove(expected.put(key, value));
+                expectedInverse.put(value, key);
+                actual = actual.forceWith(key, value);
+            }
+        }
+        assertConsistent(expected, actual);
+        assertConsistent(expectedInverse, actual.inverse());
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(HashTrieBiMap.of("one", 1, "two", 2, "three", 3));
+        out.writeObject(HashTrieBiMap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        HashTrieBiMap<String, Integer> map = (HashTrieBiMap<String, Integer>) in.readObject();
+        assertThat(map, equalTo((Map<String, Integer>) HashTrieMap.of("one", 1, "two", 2, "three", 3)));
+        assertThat(map.inverse().get(2), is("two"));
+        assertThat(((HashTrieBiMap<Object, Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
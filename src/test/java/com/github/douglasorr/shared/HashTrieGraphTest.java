@@ -0,0 +1,334 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class HashTrieGraphTest {
+    /** A mutable reference graph, as a map from node to successors. */
+    private static Map<Integer, Set<Integer>> copy(Map<Integer, Set<Integer>> reference) {
+        final Map<Integer, Set<Integer>> result = new HashMap<Integer, Set<Integer>>();
+        for (Map.Entry<Integer, Set<Integer>> entry : reference.entrySet()) {
+            result.put(entry.getKey(), new HashSet<Integer>(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static Set<Integer> reachable(Map<Integer, Set<Integer>> reference, Integer start) {
+        final Set<Integer> visited = new HashSet<Integer>();
+        final Deque<Integer> pending = new ArrayDeque<Integer>();
+        pending.add(start);
+        visited.add(start);
+        while (!pending.isEmpty()) {
+            for (Integer next : reference.get(pending.remove())) {
+                if (visited.add(next)) {
+                    pending.add(next);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static boolean isAcyclic(Map<Integer, Set<Integer>> reference) {
+        for (Map.Entry<Integer, Set<Integer>> entry : reference.entrySet()) {
+            for (Integer successor : entry.getValue()) {
+                if (reachable(reference, successor).contains(entry.getKey())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void checkConsistency(HashTrieGraph<Integer> graph, Map<Integer, Set<Integer>> reference) {
+        assertThat(graph.nodes(), equalTo(reference.keySet()));
+        int edges = 0;
+        final Map<Integer, Set<Integer>> predecessors = new HashMap<Integer, Set<Integer>>();
+        for (Integer node : reference.keySet()) {
+            predecessors.put(node, new HashSet<Integer>());
+        }
+        for (Map.Entry<Integer, Set<Integer>> entry : reference.entrySet()) {
+            assertThat(graph.containsNode(entry.getKey()), is(true));
+            assertThat(graph.successors(entry.getKey()), equalTo(entry.getValue()));
+            edges += entry.getValue().size();
+            for (Integer successor : entry.getValue()) {
+                assertThat(graph.containsEdge(entry.getKey(), successor), is(true));
+                predecessors.get(successor).add(entry.getKey());
+            }
+        }
+        assertThat(graph.edgeCount(), equalTo(edges));
+        for (Integer node : reference.keySet()) {
+            assertThat(graph.predecessors(node), equalTo(predecessors.get(node)));
+        }
+    }
+
+    private static void checkTraversals(HashTrieGraph<Integer> graph, Map<Integer, Set<Integer>> reference, Integer start) {
+        final Set<Integer> expected = reference.containsKey(start) ? reachable(reference, start) : Collections.<Integer> emptySet();
+
+        // breadth-first: each node is visited once, after a predecessor, at a non-decreasing distance
+        final Map<Integer, Integer> distance = new HashMap<Integer, Integer>();
+        int lastDistance = 0;
+        for (Integer node : graph.breadthFirst(start)) {
+            int d = 0;
+            if (!node.equals(start)) {
+                d = Integer.MAX_VALUE;
+                for (Integer predecessor : graph.predecessors(node)) {
+                    if (distance.containsKey(predecessor)) {
+                        d = Math.min(d, distance.get(predecessor) + 1);
+                    }
+                }
+            }
+            assertThat(d, greaterThanOrEqualTo(lastDistance));
+            assertThat(distance.put(node, d), nullValue());
+            lastDistance = d;
+        }
+        assertThat(distance.keySet(), equalTo(expected));
+
+        // depth-first: each node is visited once, after a predecessor
+        final Set<Integer> visited = new HashSet<Integer>();
+        for (Integer node : graph.depthFirst(start)) {
+            if (!node.equals(start)) {
+                assertThat(Collections.disjoint(visited, graph.predecessors(node)), is(false));
+            }
+            assertThat(visited.add(node), is(true));
+        }
+        assertThat(visited, equalTo(expected));
+    }
+
+    private static void checkOrder(HashTrieGraph<Integer> graph, Map<Integer, Set<Integer>> reference) {
+        final boolean acyclic = isAcyclic(reference);
+        assertThat(graph.isAcyclic(), equalTo(acyclic));
+        if (acyclic) {
+            final List<Integer> order = graph.topologicalOrder();
+            assertThat(new HashSet<Integer>(order), equalTo(reference.keySet()));
+            assertThat(order.size(), equalTo(reference.size()));
+            for (Map.Entry<Integer, Set<Integer>> entry : reference.entrySet()) {
+                for (Integer successor : entry.getValue()) {
+                    assertThat(order.indexOf(entry.getKey()), lessThan(order.indexOf(successor)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (HashTrieGraph<Integer> empty : Arrays.asList(
+                HashTrieGraph.<Integer> empty(),
+                new HashTrieGraph<Integer>(),
+                new HashTrieGraph<Integer>(HashTrieGraph.<Integer> empty()),
+                HashTrieGraph.of(1, 2).withoutNode(1).withoutNode(2))) {
+            checkConsistency(empty, new HashMap<Integer, Set<Integer>>());
+            assertThat(empty, equalTo(HashTrieGraph.<Integer> empty()));
+            assertThat(empty.isAcyclic(), is(true));
+            assertThat(empty.topologicalOrder(), empty());
+            assertThat(empty.breadthFirst(1).iterator().hasNext(), is(false));
+            assertThat(empty.depthFirst(1).iterator().hasNext(), is(false));
+            assertThat(empty.successors(1), empty());
+            assertThat(empty.predecessors(1), empty());
+            assertThat(empty.toString(), equalTo("{}"));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        final HashTrieGraph<String> graph = HashTrieGraph.of("a", "b", "b", "c", "a", "c");
+        assertThat(graph.nodes(), containsInAnyOrder("a", "b", "c"));
+        assertThat(graph.edgeCount(), equalTo(3));
+        assertThat(graph.successors("a"), containsInAnyOrder("b", "c"));
+        assertThat(graph.predecessors("c"), containsInAnyOrder("a", "b"));
+        assertThat(graph.predecessors("a"), empty());
+        assertThat(graph.topologicalOrder(), contains("a", "b", "c"));
+        assertThat(graph.isReachable("a", "c"), is(true));
+        assertThat(graph.isReachable("c", "a"), is(false));
+        assertThat(graph.isReachable("c", "c"), is(true));
+        assertThat(graph.isReachable("a", "missing"), is(false));
+        assertThat(new HashTrieGraph<String>(graph), equalTo(graph));
+        assertThat(new HashTrieGraph<String>(graph).hashCode(), equalTo(graph.hashCode()));
+    }
+
+    @Test
+    public void testEdits() {
+        final HashTrieGraph<String> graph = HashTrieGraph.of("a", "b", "b", "c");
+        assertThat(graph.withEdge("a", "b"), sameInstance(graph));
+        assertThat(graph.withNode("a"), sameInstance(graph));
+        assertThat(graph.withoutEdge("a", "c"), sameInstance(graph));
+        assertThat(graph.withoutNode("d"), sameInstance(graph));
+
+        final HashTrieGraph<String> withD = graph.withNode("d");
+        assertThat(withD.nodes(), containsInAnyOrder("a", "b", "c", "d"));
+        assertThat(withD.edgeCount(), equalTo(2));
+
+        final HashTrieGraph<String> withoutB = graph.withoutNode("b");
+        assertThat(withoutB.nodes(), containsInAnyOrder("a", "c"));
+        assertThat(withoutB.edgeCount(), equalTo(0));
+        assertThat(withoutB.successors("a"), empty());
+        assertThat(withoutB.predecessors("c"), empty());
+
+        final HashTrieGraph<String> withoutEdge = graph.withoutEdge("a", "b");
+        assertThat(withoutEdge.nodes(), containsInAnyOrder("a", "b", "c"));
+        assertThat(withoutEdge.edgeCount(), equalTo(1));
+
+        final HashTrieGraph<String> loop = graph.withEdge("c", "c");
+        assertThat(loop.edgeCount(), equalTo(3));
+        assertThat(loop.isAcyclic(), is(false));
+        assertThat(loop.withoutNode("c").edgeCount(), equalTo(1));
+        assertThat(loop.withoutEdge("c", "c").isAcyclic(), is(true));
+
+        // the original graph is unchanged
+        assertThat(graph.nodes(), containsInAnyOrder("a", "b", "c"));
+        assertThat(graph.edgeCount(), equalTo(2));
+    }
+
+    @Test
+    public void testIncrementalOrder() {
+        // establish the order first, so that every later version maintains it incrementally
+        HashTrieGraph<Integer> graph = HashTrieGraph.<Integer> empty();
+        assertThat(graph.isAcyclic(), is(true));
+        for (int i = 0; i < 20; ++i) {
+            graph = graph.withNode(i);
+        }
+        // add edges against the initial order (i.e. from high to low)
+        for (int i = 19; 0 < i; --i) {
+            graph = graph.withEdge(i, i - 1);
+            assertThat(graph.isAcyclic(), is(true));
+        }
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 19; 0 <= i; --i) {
+            expected.add(i);
+        }
+        assertThat(graph.topologicalOrder(), equalTo(expected));
+        assertThat(graph.isReachable(19, 0), is(true));
+        assertThat(graph.isReachable(0, 19), is(false));
+        assertThat(graph.withEdge(0, 19).isAcyclic(), is(false));
+        assertThat(graph.withEdge(0, 19).withoutEdge(10, 9).isAcyclic(), is(true));
+        assertThat(graph.withEdge(-1, 5).withEdge(5, 20).topologicalOrder().size(), equalTo(22));
+    }
+
+    @Test
+    public void testRandomEdits() {
+        final Random random = new Random(314);
+        HashTrieGraph<Integer> graph = HashTrieGraph.empty();
+        Map<Integer, Set<Integer>> reference = new HashMap<Integer, Set<Integer>>();
+        final List<HashTrieGraph<Integer>> versions = new ArrayList<HashTrieGraph<Integer>>();
+        final List<Map<Integer, Set<Integer>>> references = new ArrayList<Map<Integer, Set<Integer>>>();
+        for (int i = 0; i < 2000; ++i) {
+            final int op = random.nextInt(20);
+            // mostly acyclic edits (from low to high), with occasional back edges
+            final int a = random.nextInt(40);
+            final int b = random.nextInt(40);
+            final Integer from = random.nextInt(10) == 0 ? Math.max(a, b) : Math.min(a, b);
+            final Integer to = random.nextInt(10) == 0 ? Math.min(a, b) : Math.max(a, b);
+            if (op < 12) {
+                graph = graph.withEdge(from, to);
+                if (!reference.containsKey(from)) {
+                    reference.put(from, new HashSet<Integer>());
+                }
+                if (!reference.containsKey(to)) {
+                    reference.put(to, new HashSet<Integer>());
+                }
+                reference.get(from).add(to);
+            } else if (op < 17) {
+                graph = graph.withoutEdge(from, to);
+                if (reference.containsKey(from)) {
+                    reference.get(from).remove(to);
+                }
+            } else if (op < 18) {
+                graph = graph.withNode(from);
+                if (!reference.containsKey(from)) {
+                    reference.put(from, new HashSet<Integer>());
+                }
+            } else {
+                graph = graph.withoutNode(from);
+                reference.remove(from);
+                for (Set<Integer> successors : reference.values()) {
+                    successors.remove(from);
+                }
+            }
+            checkConsistency(graph, reference);
+            checkOrder(graph, reference);
+            if (i % 50 == 0) {
+                checkTraversals(graph, reference, from);
+                for (Integer target : reference.keySet()) {
+                    assertThat(graph.isReachable(from, target),
+                            equalTo(reference.containsKey(from) && reachable(reference, from).contains(target)));
+                }
+                versions.add(graph);
+                references.add(copy(reference));
+            }
+        }
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+            checkOrder(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testLargeTraversal() {
+        // a long chain, with shortcuts
+        HashTrieGraph<Integer> graph = HashTrieGraph.empty();
+        final Map<Integer, Set<Integer>> reference = new HashMap<Integer, Set<Integer>>();
+        for (int i = 0; i < 5000; ++i) {
+            reference.put(i, new HashSet<Integer>());
+        }
+        for (int i = 0; i + 1 < 5000; ++i) {
+            graph = graph.withEdge(i, i + 1);
+            reference.get(i).add(i + 1);
+            if (i % 7 == 0 && i + 100 < 5000) {
+                graph = graph.withEdge(i, i + 100);
+                reference.get(i).add(i + 100);
+            }
+        }
+        checkTraversals(graph, reference, 0);
+        checkTraversals(graph, reference, 4000);
+        assertThat(graph.isReachable(0, 4999), is(true));
+        assertThat(graph.isReachable(4999, 0), is(false));
+        assertThat(graph.topologicalOrder().get(0), equalTo(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCyclicTopologicalOrder() {
+        HashTrieGraph.of(1, 2, 2, 3, 3, 1).topologicalOrder();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullNode() {
+        HashTrieGraph.empty().withNode(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullEdge() {
+        HashTrieGraph.of(1, 2).withEdge(1, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        HashTrieGraph.of(1, 2, 3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        final Iterator<Integer> it = HashTrieGraph.of(1, 2).breadthFirst(1).iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        for (HashTrieGraph<?> g : Arrays.asList(
+                HashTrieGraph.empty(),
+                HashTrieGraph.empty().withNode("lonely"),
+                HashTrieGraph.of(1, 2, 2, 3, 3, 3, 4, 1))) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(g);
+            out.close();
+            final HashTrieGraph<?> copy = (HashTrieGraph<?>) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertThat(copy, equalTo((Object) g));
+            assertThat(copy.edgeCount(), equalTo(g.edgeCount()));
+        }
+    }
+}
@@ -206,6 +206,23 @@ public class HashTrieMapTest extends TestCase {
         return new TestHash<T>(value, hash);
     }
 
+    /** Growing &amp; shrinking across the size at which a small (flat) map is promoted to a trie. */
+    public void testFlatPromotion() {
+        Verifier<TestHash<String>, Integer> test = new Verifier<TestHash<String>, Integer>();
+        for (int i = 0; i < 12; ++i) {
+            // include some collisions, which are kept when promoted/demoted
+            test.put(th("k" + i, i % 5), i);
+        }
+        test.put(th("k3", 3), 30); // replace (in a trie)
+        for (int i = 11; 0 <= i; i -= 2) {
+            test.remove(th("k" + i, i % 5));
+        }
+        test.put(th("k6", 1), 60); // replace (in a flat map)
+        for (int i = 0; i < 12; i += 2) {
+            test.remove(th("k" + i, i % 5));
+        }
+    }
+
     /** Messing with the array of children. */
     public void testChildMovement() {
         Verifier<TestHash<String>, Integer> test = new Verifier<TestHash<String>, Integer>();
@@ -395,6 +412,64 @@ public class HashTrieMapTest extends TestCase {
         }
     }
 
+    /** compute() as a counter (adding, incrementing &amp; removing at zero), including collisions */
+    public void testCompute() {
+        final HashTrieMap.Update<Integer> increment = new HashTrieMap.Update<Integer>() {
+            @Override
+            public Integer apply(Integer value) {
+                return value == null ? 1 : value + 1;
+            }
+        };
+        final HashTrieMap.Update<Integer> decrement = new HashTrieMap.Update<Integer>() {
+            @Override
+            public Integer apply(Integer value) {
+                return value == null || value == 1 ? null : value - 1;
+            }
+        };
+        for (IntegerGenerator generator : Arrays.asList(GOOD_RANDOM_GENERATOR, limitedRandomGenerator(20))) {
+            Random random = new Random(42);
+            List<TestHash<Integer>> keys = new ArrayList<TestHash<Integer>>();
+            for (int i = 0; i < 200; ++i) {
+                keys.add(th(i, generator.next(random)));
+            }
+            HashTrieMap<TestHash<Integer>, Integer> map = HashTrieMap.empty();
+            HashMap<TestHash<Integer>, Integer> reference = new HashMap<TestHash<Integer>, Integer>();
+            for (int i = 0; i < 20000; ++i) {
+                TestHash<Integer> key = keys.get(random.nextInt(keys.size()));
+                if (random.nextBoolean()) {
+                    map = map.compute(key, increment);
+                    reference.put(key, reference.containsKey(key) ? reference.get(key) + 1 : 1);
+                } else {
+                    map = map.compute(key, decrement);
+                    if (reference.containsKey(key)) {
+                        if (reference.get(key) == 1) {
+                            reference.remove(key);
+                        } else {
+                            reference.put(key, reference.get(key) - 1);
+                        }
+                    }
+                }
+                assertThat(map.size(), is(reference.size()));
+            }
+            checkConsistency(map, reference);
+            for (TestHash<Integer> key : keys) {
+                while (map.containsKey(key)) {
+                    map = map.compute(key, decrement);
+                }
+            }
+            assertThat(map.isEmpty(), is(true));
+        }
+
+        HashTrieMap<String, Integer> m = HashTrieMap.of("one", 1);
+        assertThat(m.compute("two", decrement), sameInstance(m));
+        assertThat(m.compute("one", new HashTrieMap.Update<Integer>() {
+            @Override
+            public Integer apply(Integer value) {
+                return value;
+            }
+        }), sameInstance(m));
+    }
+
     @Test
     public void testSerialization() throws IOException, ClassNotFoundException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
@@ -0,0 +1,165 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HashTrieMultimapTest {
+
+    private static <K,V> void assertMatches(Map<K, Set<V>> expected, HashTrieMultimap<K,V> actual) {
+        int size = 0;
+        for (Map.Entry<K, Set<V>> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey()), equalTo(entry.getValue()));
+            assertThat(actual.count(entry.getKey()), is(entry.getValue().size()));
+            for (V value : entry.getValue()) {
+                assertThat(actual.containsEntry(entry.getKey(), value), is(true));
+            }
+            size += entry.getValue().size();
+        }
+        assertThat(actual.size(), is(size));
+        assertThat(actual.keySet(), equalTo(expected.keySet()));
+        assertThat(actual.asMap(), equalTo((Map) expected));
+        assertThat(actual.entries().size(), is(size));
+        assertThat(new HashSet<Map.Entry<K,V>>(actual.entries()).size(), is(size));
+        for (Map.Entry<K,V> entry : actual.entries()) {
+            assertThat(expected.get(entry.getKey()), hasItem(entry.getValue()));
+        }
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (HashTrieMultimap<Object, Object> empty : Arrays.asList(
+                HashTrieMultimap.EMPTY,
+                HashTrieMultimap.empty(),
+                HashTrieMultimap.of(),
+                new HashTrieMultimap<Object, Object>(),
+                new HashTrieMultimap<Object, Object>(Collections.<Object, Collection<Object>> emptyMap()),
+                HashTrieMultimap.<Object, Object> singleton("one", 1).without("one", 1),
+                HashTrieMultimap.<Object, Object> of("one", 1, "one", 2).withoutAll("one")
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.containsKey("one"), is(false));
+            assertThat(empty.containsEntry("one", 1), is(false));
+            assertThat(empty.count("one"), is(0));
+            assertThat(empty.get("one").isEmpty(), is(true));
+            assertThat(empty.keySet().isEmpty(), is(true));
+            assertThat(empty.asMap().isEmpty(), is(true));
+            assertThat(empty.entries().iterator().hasNext(), is(false));
+            assertThat(empty, equalTo((Object) HashTrieMultimap.EMPTY));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        HashTrieMultimap<String, Integer> map = HashTrieMultimap.of("odd", 1, "even", 2, "odd", 3);
+        assertThat(map.size(), is(3));
+        assertThat(map.get("odd"), containsInAnyOrder(1, 3));
+        assertThat(map.get("even"), contains(2));
+        assertThat(HashTrieMultimap.singleton("one", 1).get("one"), contains(1));
+
+        Map<String, List<Integer>> source = new HashMap<String, List<Integer>>();
+        source.put("odd", Arrays.asList(1, 3, 1));
+        source.put("even", Arrays.asList(2));
+        source.put("none", Collections.<Integer> emptyList());
+        assertThat(new HashTrieMultimap<String, Integer>(source), equalTo(map));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        HashTrieMultimap.of("one", 1, "two");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        HashTrieMultimap.empty().with(null, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        HashTrieMultimap.empty().with("foo", null);
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        HashTrieMultimap<String, Integer> map = HashTrieMultimap.of("one", 1);
+        assertThat(map.with("one", 1), sameInstance(map));
+        assertThat(map.without("one", 2), sameInstance(map));
+        assertThat(map.without("two", 1), sameInstance(map));
+        assertThat(map.without(null, null), sameInstance(map));
+        assertThat(map.withoutAll("two"), sameInstance(map));
+
+        HashTrieMultimap<String, Integer> many = map.with("one", 2).with("one", 3);
+        assertThat(many.size(), is(3));
+        assertThat(many.get("one"), containsInAnyOrder(1, 2, 3));
+        assertThat(many.with("one", 2), sameInstance(many));
+        assertThat(many.without("one", 4), sameInstance(many));
+        assertThat(many.without("one", 2).get("one"), containsInAnyOrder(1, 3));
+        assertThat(many.without("one", 2).without("one", 3).get("one"), contains(1));
+        assertThat(many.without("one", 2).without("one", 3), equalTo(map));
+        assertThat(many.without("one", 2).without("one", 3).without("one", 1).isEmpty(), is(true));
+        assertThat(many.withoutAll("one").isEmpty(), is(true));
+        assertThat(many.with("two", 2).withoutAll("one"), equalTo(HashTrieMultimap.of("two", 2)));
+        assertThat(map.get("one"), contains(1)); // unchanged
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAsMapImmutable() {
+        HashTrieMultimap.of("one", 1).asMap().put("two", HashTrieSet.<Integer> singleton(2));
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        Map<Integer, Set<Integer>> expected = new HashMap<Integer, Set<Integer>>();
+        HashTrieMultimap<Integer, Integer> actual = HashTrieMultimap.empty();
+        for (int i = 0; i < 20000; ++i) {
+            // many keys have a single value, some have several
+            final Integer key = random.nextInt(500);
+            final Integer value = random.nextInt(1 + key % 8);
+            final int op = random.nextInt(10);
+            if (op == 0) {
+                expected.remove(key);
+                actual = actual.withoutAll(key);
+            } else if (op < 4) {
+                if (expected.containsKey(key)) {
+                    expected.get(key).remove(value);
+                    if (expected.get(key).isEmpty()) {
+                        expected.remove(key);
+                    }
+                }
+                actual = actual.without(key, value);
+            } else {
+                if (!expected.containsKey(key)) {
+                    expected.put(key, new HashSet<Integer>());
+                }
+                expected.get(key).add(value);
+                actual = actual.with(key, value);
+            }
+        }
+        assertMatches(expected, actual);
+        assertThat(actual.hashCode(), is(expected.hashCode()));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(HashTrieMultimap.of("odd", 1, "even", 2, "odd", 3));
+        out.writeObject(HashTrieMultimap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), equalTo((Object) HashTrieMultimap.of("odd", 1, "even", 2, "odd", 3)));
+        assertThat(((HashTrieMultimap<Object, Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
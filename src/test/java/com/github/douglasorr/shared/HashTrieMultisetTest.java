@@ -0,0 +1,162 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HashTrieMultisetTest {
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (HashTrieMultiset<Object> empty : Arrays.asList(
+                HashTrieMultiset.EMPTY,
+                HashTrieMultiset.empty(),
+                HashTrieMultiset.of(),
+                new HashTrieMultiset<Object>(),
+                new HashTrieMultiset<Object>(Collections.emptyList()),
+                HashTrieMultiset.<Object> singleton("one").without("one"),
+                HashTrieMultiset.<Object> of("one", "one").without("one", 5)
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.contains("one"), is(false));
+            assertThat(empty.count("one"), is(0));
+            assertThat(empty.elementSet().isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+            assertThat(empty, equalTo((Object) HashTrieMultiset.EMPTY));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        HashTrieMultiset<String> set = HashTrieMultiset.of("a", "b", "a", "c", "a");
+        assertThat(set.size(), is(5));
+        assertThat(set.count("a"), is(3));
+        assertThat(set.count("b"), is(1));
+        assertThat(set.count("d"), is(0));
+        assertThat(set, containsInAnyOrder("a", "a", "a", "b", "c"));
+        assertThat(set.elementSet(), containsInAnyOrder("a", "b", "c"));
+        assertThat(new HashTrieMultiset<String>(set), equalTo(set));
+        assertThat(new HashTrieMultiset<String>(Arrays.asList("c", "a", "a", "b", "a")), equalTo(set));
+        assertThat(set, not(equalTo(HashTrieMultiset.of("a", "b", "c"))));
+        assertThat(set.hashCode(), is(HashTrieMap.of("a", 3, "b", 1, "c", 1).hashCode()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        HashTrieMultiset.empty().with(null);
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWith() {
+        HashTrieMultiset.of("one").with("one", -1);
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWithout() {
+        HashTrieMultiset.of("one").without("one", -1);
+    }
+    @Test
+    public void testOverflow() {
+        final HashTrieMultiset<String> full = HashTrieMultiset.of("one").with("one", Integer.MAX_VALUE - 1);
+        assertThat(full.count("one"), equalTo(Integer.MAX_VALUE));
+        assertThat(full.size(), equalTo(Integer.MAX_VALUE));
+        // overflowing either the count or the size fails (rather than wrapping to a negative)
+        for (String value : Arrays.asList("one", "two")) {
+            try {
+                full.with(value);
+                Assert.fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertThat(full.without("one", 2).with("two", 2).size(), equalTo(Integer.MAX_VALUE));
+    }
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        HashTrieMultiset.of("one").add("two");
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        HashTrieMultiset<String> set = HashTrieMultiset.of("one");
+        assertThat(set.with("one", 0), sameInstance(set));
+        assertThat(set.without("one", 0), sameInstance(set));
+        assertThat(set.without("two"), sameInstance(set));
+        assertThat(set.without(null), sameInstance(set));
+
+        assertThat(set.with("one").count("one"), is(2));
+        assertThat(set.with("one", 10).count("one"), is(11));
+        assertThat(set.with("one", 10).size(), is(11));
+        assertThat(set.with("one", 10).without("one", 4).count("one"), is(7));
+        assertThat(set.with("one", 10).without("one", 4).size(), is(7));
+        assertThat(set.with("one", 10).without("one", 11).isEmpty(), is(true));
+        assertThat(set.with("one", 10).without("one", 100).isEmpty(), is(true));
+        assertThat(set.with("one", 10).without("one", 100).contains("one"), is(false));
+        assertThat(set.with("two").without("one"), equalTo(HashTrieMultiset.of("two")));
+        assertThat(set.count("one"), is(1)); // unchanged
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        HashTrieMultiset<Integer> actual = HashTrieMultiset.empty();
+        for (int i = 0; i < 20000; ++i) {
+            final Integer value = random.nextInt(300);
+            final int n = random.nextInt(4);
+            final int current = expected.containsKey(value) ? expected.get(value) : 0;
+            if (random.nextBoolean()) {
+                if (0 < current + n) {
+                    expected.put(value, current + n);
+                }
+                actual = actual.with(value, n);
+            } else {
+                if (current <= n) {
+                    expected.remove(value);
+                } else {
+                    expected.put(value, current - n);
+                }
+                actual = actual.without(value, n);
+            }
+        }
+        int size = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertThat(actual.count(entry.getKey()), is(entry.getValue()));
+            size += entry.getValue();
+        }
+        assertThat(actual.size(), is(size));
+        assertThat(actual.elementSet(), equalTo(expected.keySet()));
+        assertThat(actual.hashCode(), is(expected.hashCode()));
+
+        int iterated = 0;
+        for (Integer value : actual) {
+            assertThat(expected.containsKey(value), is(true));
+            ++iterated;
+        }
+        assertThat(iterated, is(size));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(HashTrieMultiset.of("a", "b", "a"));
+        out.writeObject(HashTrieMultiset.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), equalTo((Object) HashTrieMultiset.of("a", "b", "a")));
+        assertThat(((HashTrieMultiset<Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
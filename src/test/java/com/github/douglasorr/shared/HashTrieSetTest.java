@@ -67,6 +67,23 @@ public class HashTrieSetTest extends TestCase {
         assertThat(s.contains("b"), is(true));
     }
 
+    @Test
+    public void testCopyTo() {
+        final Set<Object> reference = new HashSet<Object>();
+        HashTrieSet<Object> s = HashTrieSet.empty();
+        for (int i = 0; i < 1000; ++i) {
+            final Object[] values = new Object[s.size() + 3];
+            assertThat(s.copyTo(values, 2), equalTo(s.size()));
+            assertThat(values[0], nullValue());
+            assertThat(values[values.length - 1], nullValue());
+            assertThat(new HashSet<Object>(asList(values).subList(2, 2 + s.size())), equalTo(reference));
+            // include some hash collisions (every third value shares one of 10 hash codes)
+            final Object value = i % 3 == 0 ? new HashTrieMapTest.TestHash<Integer>(i, i % 30) : (Object) i;
+            s = s.with(value);
+            reference.add(value);
+        }
+    }
+
 
     @Test
     public void testSerialization() throws IOException, ClassNotFoundException {
@@ -0,0 +1,171 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IndexedHashTrieMapTest {
+    private static class Person implements Serializable {
+        final String city;
+        final Integer age;
+        Person(String city, Integer age) {
+            this.city = city;
+            this.age = age;
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Person && ((Person) o).city.equals(city)
+                    && (age == null ? ((Person) o).age == null : age.equals(((Person) o).age));
+        }
+        @Override
+        public int hashCode() {
+            return 31 * city.hashCode() + (age == null ? 0 : age.hashCode());
+        }
+    }
+
+    private enum ByCity implements SharedIndexedMap.Attribute<Person, String> {
+        INDEX;
+        @Override
+        public String of(Person value) {
+            return value.city;
+        }
+    }
+
+    private enum ByAge implements SharedIndexedMap.Attribute<Person, Integer> {
+        INDEX;
+        @Override
+        public Integer of(Person value) {
+            return value.age;
+        }
+    }
+
+    private static final List<String> CITIES = Arrays.asList("London", "Paris", "Tokyo", "Lima");
+
+    private static void checkConsistency(IndexedHashTrieMap<Integer, Person> map, Map<Integer, Person> reference) {
+        assertThat(map, equalTo(reference));
+        final Map<String, Set<Integer>> byCity = new HashMap<String, Set<Integer>>();
+        final Map<Integer, Set<Integer>> byAge = new HashMap<Integer, Set<Integer>>();
+        for (Map.Entry<Integer, Person> entry : reference.entrySet()) {
+            if (!byCity.containsKey(entry.getValue().city)) {
+                byCity.put(entry.getValue().city, new HashSet<Integer>());
+            }
+            byCity.get(entry.getValue().city).add(entry.getKey());
+            if (entry.getValue().age != null) {
+                if (!byAge.containsKey(entry.getValue().age)) {
+                    byAge.put(entry.getValue().age, new HashSet<Integer>());
+                }
+                byAge.get(entry.getValue().age).add(entry.getKey());
+            }
+        }
+        for (String city : CITIES) {
+            assertThat(map.lookupBy(ByCity.INDEX, city),
+                    equalTo(byCity.containsKey(city) ? byCity.get(city) : Collections.<Integer> emptySet()));
+        }
+        for (int age = 0; age < 10; ++age) {
+            assertThat(map.lookupBy(ByAge.INDEX, age),
+                    equalTo(byAge.containsKey(age) ? byAge.get(age) : Collections.<Integer> emptySet()));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (IndexedHashTrieMap<Integer, Person> empty : Arrays.asList(
+                IndexedHashTrieMap.<Integer, Person> empty(),
+                new IndexedHashTrieMap<Integer, Person>(),
+                new IndexedHashTrieMap<Integer, Person>(Collections.<Integer, Person> emptyMap()))) {
+            assertThat(empty.size(), equalTo(0));
+            assertThat(empty, equalTo(Collections.<Integer, Person> emptyMap()));
+        }
+        checkConsistency(IndexedHashTrieMap.<Integer, Person> of(ByCity.INDEX, ByAge.INDEX), Collections.<Integer, Person> emptyMap());
+    }
+
+    @Test
+    public void testLookup() {
+        final IndexedHashTrieMap<Integer, Person> map = IndexedHashTrieMap.<Integer, Person> of(ByCity.INDEX)
+                .with(1, new Person("London", 30))
+                .with(2, new Person("Paris", 40))
+                .with(3, new Person("London", null));
+        assertThat(map.lookupBy(ByCity.INDEX, "London"), containsInAnyOrder(1, 3));
+        assertThat(map.lookupBy(ByCity.INDEX, "Tokyo"), empty());
+        assertThat(map.with(3, new Person("Tokyo", 5)).lookupBy(ByCity.INDEX, "London"), contains(1));
+        assertThat(map.without(1).lookupBy(ByCity.INDEX, "London"), contains(3));
+        assertThat(map.lookupBy(ByCity.INDEX, "London"), containsInAnyOrder(1, 3));
+
+        // adding an index to an existing map (null attributes are not indexed)
+        final IndexedHashTrieMap<Integer, Person> withAge = map.withIndex(ByAge.INDEX);
+        assertThat(withAge.lookupBy(ByAge.INDEX, 30), contains(1));
+        assertThat(withAge.withIndex(ByAge.INDEX), sameInstance(withAge));
+        assertThat(withAge, equalTo(map));
+
+        // an index is shared if the attribute is unchanged
+        final IndexedHashTrieMap<Integer, Person> older = withAge.with(1, new Person("London", 31));
+        assertThat(older.lookupBy(ByCity.INDEX, "London"), sameInstance(withAge.lookupBy(ByCity.INDEX, "London")));
+        assertThat(older.lookupBy(ByAge.INDEX, 31), contains(1));
+        assertThat(older.lookupBy(ByAge.INDEX, 30), empty());
+        assertThat(map.without(4), sameInstance(map));
+    }
+
+    @Test
+    public void testRandomEdits() {
+        final Random random = new Random(808);
+        IndexedHashTrieMap<Integer, Person> map = IndexedHashTrieMap.of(ByCity.INDEX, ByAge.INDEX);
+        final Map<Integer, Person> reference = new HashMap<Integer, Person>();
+        final List<IndexedHashTrieMap<Integer, Person>> versions = new ArrayList<IndexedHashTrieMap<Integer, Person>>();
+        final List<Map<Integer, Person>> references = new ArrayList<Map<Integer, Person>>();
+        for (int i = 0; i < 3000; ++i) {
+            final Integer key = random.nextInt(200);
+            if (random.nextInt(3) != 0) {
+                final Person person = new Person(CITIES.get(random.nextInt(CITIES.size())),
+                        random.nextInt(5) == 0 ? null : random.nextInt(10));
+                map = map.with(key, person);
+                reference.put(key, person);
+            } else {
+                map = map.without(key);
+                reference.remove(key);
+            }
+            if (i % 100 == 0) {
+                checkConsistency(map, reference);
+                versions.add(map);
+                references.add(new HashMap<Integer, Person>(reference));
+            }
+        }
+        checkConsistency(map, reference);
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownIndex() {
+        IndexedHashTrieMap.<Integer, Person> of(ByCity.INDEX).lookupBy(ByAge.INDEX, 3);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        IndexedHashTrieMap.<Integer, Person> of(ByCity.INDEX).with(1, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testWithoutNullKey() {
+        IndexedHashTrieMap.<Integer, Person> of(ByCity.INDEX).without(null);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        IndexedHashTrieMap<Integer, Person> map = IndexedHashTrieMap.of(ByCity.INDEX, ByAge.INDEX);
+        for (int i = 0; i < 100; ++i) {
+            map = map.with(i, new Person(CITIES.get(i % CITIES.size()), i % 7 == 0 ? null : i % 10));
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+        final IndexedHashTrieMap<Integer, Person> copy = (IndexedHashTrieMap<Integer, Person>)
+                new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        checkConsistency(copy, map);
+    }
+}
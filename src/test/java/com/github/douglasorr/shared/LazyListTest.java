@@ -0,0 +1,179 @@
+package com.github.douglasorr.shared;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LazyListTest {
+    private static final LazyList.Function<Integer, Integer> INCREMENT = new LazyList.Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer value) {
+            return value + 1;
+        }
+    };
+    private static final LazyList.Predicate<Integer> IS_EVEN = new LazyList.Predicate<Integer>() {
+        @Override
+        public boolean test(Integer value) {
+            return value % 2 == 0;
+        }
+    };
+
+    // a function which counts how many times it has been called
+    private static class CountingSquare implements LazyList.Function<Integer, Integer> {
+        final AtomicInteger count = new AtomicInteger(0);
+        @Override
+        public Integer apply(Integer value) {
+            count.incrementAndGet();
+            return value * value;
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (LazyList<?> empty : asList(
+                LazyList.EMPTY,
+                LazyList.empty(),
+                LazyList.of(),
+                new LazyList<Object>(),
+                new LazyList<Object>(Collections.emptySet()),
+                LazyList.from(Collections.emptyList().iterator()),
+                LazyList.of(1, 3, 5).filter(IS_EVEN),
+                LazyList.of(1, 2, 3).take(0)
+        )) {
+            assertThat(empty, Matchers.empty());
+            assertThat(empty, hasSize(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+        }
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyHead() {
+        LazyList.empty().head();
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyTail() {
+        LazyList.of(1).map(INCREMENT).tail().tail();
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        LazyList.of(1, 2, 3).get(3);
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testTakeNegative() {
+        LazyList.of(1, 2, 3).take(-1);
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(LazyList.of(1, 2, 3), contains(1, 2, 3));
+        assertThat(LazyList.singleton("one"), contains("one"));
+        assertThat(new LazyList<Integer>(asList(1, 2, 3)), contains(1, 2, 3));
+        assertThat(new LazyList<Integer>(LazyList.of(1, 2, 3).map(INCREMENT)), contains(2, 3, 4));
+        assertThat(LazyList.from(asList(1, 2, 3).iterator()), contains(1, 2, 3));
+        assertThat(LazyList.of(1, 2, 3).prepend(0), contains(0, 1, 2, 3));
+        assertThat(LazyList.of(1, null, 3), contains(1, null, 3));
+    }
+
+    @Test
+    public void testOperators() {
+        LazyList<Integer> naturals = LazyList.iterate(0, INCREMENT);
+        assertThat(naturals.take(5), contains(0, 1, 2, 3, 4));
+        assertThat(naturals.map(INCREMENT).take(3), contains(1, 2, 3));
+        assertThat(naturals.filter(IS_EVEN).take(4), contains(0, 2, 4, 6));
+        assertThat(naturals.get(100), is(100));
+        assertThat(LazyList.of(1, 2).take(5), contains(1, 2));
+
+        LazyList<Map.Entry<Integer, String>> zipped = naturals.zip(LazyList.of("zero", "one", "two"));
+        assertThat(zipped, hasSize(3));
+        assertThat(zipped.get(2).getKey(), is(2));
+        assertThat(zipped.get(2).getValue(), is("two"));
+    }
+
+    @Test
+    public void testLaziness() {
+        CountingSquare square = new CountingSquare();
+        LazyList<Integer> squares = LazyList.iterate(0, INCREMENT).map(square).filter(IS_EVEN).take(1000);
+        assertThat(square.count.get(), is(0));
+
+        assertThat(squares.head(), is(0));
+        assertThat(square.count.get(), is(1));
+
+        // memoized - evaluating again does not call the function
+        assertThat(squares.take(3), contains(0, 4, 16));
+        assertThat(square.count.get(), is(5));
+        assertThat(squares.take(3), contains(0, 4, 16));
+        assertThat(square.count.get(), is(5));
+    }
+
+    @Test
+    public void testIterator() {
+        Iterator<Integer> source = asList(1, 2, 3, 4).iterator();
+        LazyList<Integer> list = LazyList.from(source);
+        assertThat(list.head(), is(1));
+        assertThat(source.next(), is(2)); // only one element was read
+        assertThat(list, contains(1, 3, 4));
+    }
+
+    @Test
+    public void testLongFilter() {
+        // should not overflow the stack
+        LazyList<Integer> list = LazyList.iterate(1, INCREMENT).filter(new LazyList.Predicate<Integer>() {
+            @Override
+            public boolean test(Integer value) {
+                return value % 1000000 == 0;
+            }
+        });
+        assertThat(list.head(), is(1000000));
+    }
+
+    @Test
+    public void testConcurrentForce() throws Exception {
+        final CountingSquare square = new CountingSquare();
+        final LazyList<Integer> list = LazyList.iterate(0, INCREMENT).map(square).take(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; ++i) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int sum = 0;
+                        for (int x : list) {
+                            sum += x;
+                        }
+                        return sum;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), is(332833500));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // each element was computed exactly once
+        assertThat(square.count.get(), is(1000));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(LazyList.iterate(0, INCREMENT).take(3));
+        out.writeObject(LazyList.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((LazyList<Integer>) in.readObject(), contains(0, 1, 2));
+        assertThat((LazyList<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        in.close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LinkedHashTrieMapTest {
+
+    // the number of entries (including tombstones) in the map's ordered array
+    private static int capacity(LinkedHashTrieMap<?, ?> map) throws Exception {
+        Field entries = LinkedHashTrieMap.class.getDeclaredField("mEntries");
+        entries.setAccessible(true);
+        return ((TrieArray<?>) entries.get(map)).size();
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (LinkedHashTrieMap<Object, Object> empty : Arrays.asList(
+                LinkedHashTrieMap.EMPTY,
+                LinkedHashTrieMap.empty(),
+                LinkedHashTrieMap.of(),
+                new LinkedHashTrieMap<Object, Object>(),
+                new LinkedHashTrieMap<Object, Object>(Collections.emptyMap()),
+                LinkedHashTrieMap.<Object, Object> singleton("one", 1).without("one")
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get("foo"), nullValue());
+            assertThat(empty.containsKey("foo"), is(false));
+            assertThat(empty.without("foo"), sameInstance(empty));
+            assertThat(empty.entrySet().iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(LinkedHashTrieMap.of("one", 1, "two", 2, "three", 3).keySet(), contains("one", "two", "three"));
+        assertThat(LinkedHashTrieMap.singleton("one", 1).get("one"), is(1));
+
+        Map<String, Integer> linked = new LinkedHashMap<String, Integer>();
+        linked.put("z", 26);
+        linked.put("a", 1);
+        linked.put("m", 13);
+        assertThat(new LinkedHashTrieMap<String, Integer>(linked).keySet(), contains("z", "a", "m"));
+        assertThat(new LinkedHashTrieMap<String, Integer>(linked), equalTo(linked));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        LinkedHashTrieMap.of("one", 1, "two");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        LinkedHashTrieMap.empty().with(null, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        LinkedHashTrieMap.empty().with("foo", null);
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testInsertionOrder() {
+        LinkedHashTrieMap<String, Integer> map = LinkedHashTrieMap.<String, Integer> empty()
+                .with("c", 3).with("a", 1).with("b", 2);
+        assertThat(map.keySet(), contains("c", "a", "b"));
+        assertThat(map.values(), contains(3, 1, 2));
+
+        // replacing a value keeps its position
+        assertThat(map.with("a", 100).keySet(), contains("c", "a", "b"));
+        assertThat(map.with("a", 100).get("a"), is(100));
+        assertThat(map.with("a", map.get("a")), sameInstance(map));
+
+        // removing & re-adding moves it to the end
+        assertThat(map.without("c").keySet(), contains("a", "b"));
+        assertThat(map.without("c").with("c", 3).keySet(), contains("a", "b", "c"));
+        assertThat(map.without("a").keySet(), contains("c", "b"));
+        assertThat(map.without("b").keySet(), contains("c", "a"));
+        assertThat(map.without("d"), sameInstance(map));
+        assertThat(map.keySet(), contains("c", "a", "b")); // unchanged
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new LinkedHashMap<Integer, Integer>();
+        LinkedHashTrieMap<Integer, Integer> actual = LinkedHashTrieMap.empty();
+        for (int i = 0; i < 20000; ++i) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.without(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.with(key, i);
+            }
+            assertThat(actual.size(), is(expected.size()));
+        }
+        assertThat(actual, equalTo(expected));
+        assertThat(new ArrayList<Map.Entry<Integer, Integer>>(actual.entrySet()),
+                equalTo(new ArrayList<Map.Entry<Integer, Integer>>(expected.entrySet())));
+        for (int key = 0; key < 1000; ++key) {
+            assertThat(actual.get(key), equalTo(expected.get(key)));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        LinkedHashTrieMap<Integer, Integer> map = LinkedHashTrieMap.empty();
+        for (int i = 0; i < 10000; ++i) {
+            map = map.with(i, i);
+        }
+        // remove from the front, so that tombstones cannot just be trimmed from the end
+        for (int i = 0; i < 9990; ++i) {
+            map = map.without(i);
+            assertThat(capacity(map), lessThanOrEqualTo(Math.max(2 * map.size(), map.size() + 32)));
+        }
+        assertThat(map.keySet(), contains(9990, 9991, 9992, 9993, 9994, 9995, 9996, 9997, 9998, 9999));
+        assertThat(map.get(9995), is(9995));
+
+        // removing from the end trims the tombstones
+        map = map.without(9999).without(9998);
+        assertThat(capacity(map), lessThanOrEqualTo(map.size() + 32));
+        assertThat(map.with(0, 0).keySet(), contains(9990, 9991, 9992, 9993, 9994, 9995, 9996, 9997, 0));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(LinkedHashTrieMap.of("one", 1, "two", 2, "three", 3).without("two").with("two", 2));
+        out.writeObject(LinkedHashTrieMap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(((LinkedHashTrieMap<String, Integer>) in.readObject()).keySet(), contains("one", "three", "two"));
+        assertThat(((LinkedHashTrieMap<Object, Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
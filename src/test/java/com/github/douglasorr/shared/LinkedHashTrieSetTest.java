@@ -0,0 +1,61 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+// LinkedHashTrieSet is an adapter onto LinkedHashTrieMap, so there shouldn't be too
+// much testing in it
+public class LinkedHashTrieSetTest {
+    @Test
+    public void testEmpty() {
+        for (LinkedHashTrieSet<Object> empty : asList(
+                LinkedHashTrieSet.EMPTY,
+                LinkedHashTrieSet.empty(),
+                LinkedHashTrieSet.of(),
+                new LinkedHashTrieSet<Object>(),
+                new LinkedHashTrieSet<Object>(Collections.emptySet())
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.contains("foo"), is(false));
+            assertThat(empty.without("foo"), sameInstance(empty));
+            assertThat(empty.toString(), is("[]"));
+            assertThat(empty.iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testInsertionOrder() {
+        LinkedHashTrieSet<String> s = LinkedHashTrieSet.of("c", "a", "b");
+        assertThat(s, contains("c", "a", "b"));
+        assertThat(s.contains("a"), is(true));
+        assertThat(s.contains("d"), is(false));
+        assertThat(s.with("a"), sameInstance(s));
+        assertThat(s.with("d"), contains("c", "a", "b", "d"));
+        assertThat(s.without("c").with("c"), contains("a", "b", "c"));
+        assertThat(s.without("d"), sameInstance(s));
+        // equality ignores order, as for LinkedHashSet
+        assertThat(s.equals(new HashSet<String>(asList("a", "b", "c"))), is(true));
+        assertThat(new LinkedHashTrieSet<String>(new LinkedHashSet<String>(asList("z", "y", "x"))), contains("z", "y", "x"));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(LinkedHashTrieSet.of("c", "a", "b"));
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((LinkedHashTrieSet<String>) in.readObject(), contains("c", "a", "b"));
+        in.close();
+    }
+}
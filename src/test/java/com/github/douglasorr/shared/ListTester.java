@@ -0,0 +1,148 @@
+package com.github.douglasorr.shared;
+
+import java.util.Iterator;
+
+/** Abstracts away the details of (linked) list implementations, for fair-ish comparison. */
+public abstract class ListTester<T> extends Tester {
+    public abstract void prepend(T value);
+    public abstract T head();
+    public abstract void tail();
+    public abstract boolean isEmpty();
+    /** Add all the elements of <code>fragment</code> to the end of the list. */
+    public abstract void concat(LinkedList<T> fragment);
+    public abstract Iterator<T> iterator();
+
+    public static class SharedCatListTester<T> extends ListTester<T> {
+        private final SharedCatList<T> mEmpty;
+        private SharedCatList<T> mList;
+
+        public SharedCatListTester(SharedCatList<T> empty) {
+            mEmpty = empty;
+            mList = mEmpty;
+        }
+
+        @Override
+        public void prepend(T value) {
+            mList = mList.prepend(value);
+        }
+        @Override
+        public T head() {
+            return mList.head();
+        }
+        @Override
+        public void tail() {
+            mList = mList.tail();
+        }
+        @Override
+        public boolean isEmpty() {
+            return mList.isEmpty();
+        }
+        @Override
+        public void concat(LinkedList<T> fragment) {
+            mList = mList.concat(fragment);
+        }
+        @Override
+        public void reset() {
+            mList = mEmpty;
+        }
+        @Override
+        public Iterator<T> iterator() {
+            return mList.iterator();
+        }
+        @Override
+        public String toString() {
+            return "Doug." + mEmpty.getClass().getSimpleName();
+        }
+    }
+
+    /** A plain SharedList, which must rebuild the whole list to concatenate onto the end. */
+    public static class SharedListTester<T> extends ListTester<T> {
+        private final SharedList<T> mEmpty;
+        private SharedList<T> mList;
+
+        public SharedListTester(SharedList<T> empty) {
+            mEmpty = empty;
+            mList = mEmpty;
+        }
+
+        @Override
+        public void prepend(T value) {
+            mList = mList.prepend(value);
+        }
+        @Override
+        public T head() {
+            return mList.head();
+        }
+        @Override
+        public void tail() {
+            mList = mList.tail();
+        }
+        @Override
+        public boolean isEmpty() {
+            return mList.isEmpty();
+        }
+        @Override
+        public void concat(LinkedList<T> fragment) {
+            Object[] left = mList.toArray();
+            Object[] right = fragment.toArray();
+            SharedList<T> list = mEmpty;
+            for (int i = right.length - 1; 0 <= i; --i) {
+                list = list.prepend((T) right[i]);
+            }
+            for (int i = left.length - 1; 0 <= i; --i) {
+                list = list.prepend((T) left[i]);
+            }
+            mList = list;
+        }
+        @Override
+        public void reset() {
+            mList = mEmpty;
+        }
+        @Override
+        public Iterator<T> iterator() {
+            return mList.iterator();
+        }
+        @Override
+        public String toString() {
+            return "Doug." + mEmpty.getClass().getSimpleName();
+        }
+    }
+
+    public static class JavaLinkedListTester<T> extends ListTester<T> {
+        private java.util.LinkedList<T> mList;
+        { reset(); }
+
+        @Override
+        public void prepend(T value) {
+            mList.addFirst(value);
+        }
+        @Override
+        public T head() {
+            return mList.getFirst();
+        }
+        @Override
+        public void tail() {
+            mList.removeFirst();
+        }
+        @Override
+        public boolean isEmpty() {
+            return mList.isEmpty();
+        }
+        @Override
+        public void concat(LinkedList<T> fragment) {
+            mList.addAll(fragment);
+        }
+        @Override
+        public void reset() {
+            mList = new java.util.LinkedList<T>();
+        }
+        @Override
+        public Iterator<T> iterator() {
+            return mList.iterator();
+        }
+        @Override
+        public String toString() {
+            return "Java.LinkedList";
+        }
+    }
+}
@@ -5,6 +5,7 @@ import scala.Option;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -14,6 +15,17 @@ public abstract class MapTester<K,V> extends Tester {
     public abstract void put(K key, V value);
     public abstract Iterator<Map.Entry<K,V>> iterator();
 
+    /** Count the entries with (String) keys that start with <code>prefix</code> (by a full scan, unless overridden). */
+    public int countPrefix(String prefix) {
+        int count = 0;
+        for (Iterator<Map.Entry<K,V>> it = iterator(); it.hasNext(); ) {
+            if (((String) it.next().getKey()).startsWith(prefix)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
     public static class SharedMapTester<K,V> extends MapTester<K,V> {
         private final SharedMap<K,V> mEmpty;
         private SharedMap<K,V> mMap;
@@ -34,12 +46,24 @@ public abstract class MapTester<K,V> extends Tester {
             return mMap.entrySet().iterator();
         }
         @Override
+        public int countPrefix(String prefix) {
+            if (!(mMap instanceof SharedPrefixMap)) {
+                return super.countPrefix(prefix);
+            }
+            int count = 0;
+            for (Iterator<? extends Map.Entry<String, ?>> it = ((SharedPrefixMap<?>) mMap).prefixView(prefix).entrySet().iterator(); it.hasNext(); ) {
+                it.next();
+                ++count;
+            }
+            return count;
+        }
+        @Override
         public void reset() {
             mMap = mEmpty;
         }
         @Override
         public String toString() {
-            return "Doug.HashTrieMap";
+            return "Doug." + mEmpty.getClass().getSimpleName();
         }
     }
 
@@ -71,12 +95,32 @@ public abstract class MapTester<K,V> extends Tester {
         }
     }
 
+    public static class JavaLinkedHashMapTester<K,V> extends JavaMapTester<K,V> {
+        @Override
+        public void reset() {
+            mMap = new LinkedHashMap<K, V>();
+        }
+        @Override
+        public String toString() {
+            return "Java.LinkedHashMap";
+        }
+    }
+
     public static class JavaTreeMapTester<K,V> extends JavaMapTester<K,V> {
         @Override
         public void reset() {
             mMap = new TreeMap<K, V>();
         }
         @Override
+        public int countPrefix(String prefix) {
+            int count = 0;
+            for (Iterator<?> it = ((TreeMap<String, V>) mMap).subMap(prefix, prefix + Character.MAX_VALUE).entrySet().iterator(); it.hasNext(); ) {
+                it.next();
+                ++count;
+            }
+            return count;
+        }
+        @Override
         public String toString() {
             return "Java.TreeMap";
         }
@@ -84,12 +128,17 @@ public abstract class MapTester<K,V> extends Tester {
 
     public static class ClojureIPersistentMapTester<K,V> extends MapTester<K,V> {
         private final IPersistentMap mEmpty;
+        private final String mName;
         private IPersistentMap mMap;
 
-        public ClojureIPersistentMapTester(IPersistentMap empty) {
+        public ClojureIPersistentMapTester(IPersistentMap empty, String name) {
             mEmpty = empty;
+            mName = name;
             mMap = mEmpty;
         }
+        public ClojureIPersistentMapTester(IPersistentMap empty) {
+            this(empty, "Clojure.HashMap");
+        }
 
         @Override @SuppressWarnings("unchecked")
         public V get(K key) {
@@ -109,17 +158,22 @@ public abstract class MapTester<K,V> extends Tester {
         }
         @Override
         public String toString() {
-            return "Clojure.HashMap";
+            return mName;
         }
     }
 
     public static class ScalaImmutableMapTester<K,V> extends MapTester<K,V> {
         private final scala.collection.immutable.Map<K,V> mEmpty;
+        private final String mName;
         private scala.collection.immutable.Map<K,V> mMap;
-        public ScalaImmutableMapTester(scala.collection.immutable.Map<K,V> empty) {
+        public ScalaImmutableMapTester(scala.collection.immutable.Map<K,V> empty, String name) {
             mEmpty = empty;
+            mName = name;
             mMap = empty;
         }
+        public ScalaImmutableMapTester(scala.collection.immutable.Map<K,V> empty) {
+            this(empty, "Scala.HashMap");
+        }
         @Override
         public V get(K key) {
             Option<V> opt = mMap.get(key);
@@ -139,7 +193,7 @@ public abstract class MapTester<K,V> extends Tester {
         }
         @Override
         public String toString() {
-            return "Scala.HashMap";
+            return mName;
         }
     }
 }
@@ -0,0 +1,145 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+// PatchedTrieArray is mostly an adapter onto TrieArray, so concentrate on the patches
+public class PatchedTrieArrayTest {
+    private static final List<Integer> THRESHOLDS = asList(0, 1, 4, PatchedTrieArray.DEFAULT_THRESHOLD);
+
+    private static void checkConsistency(PatchedTrieArray<String> array, List<String> reference) {
+        assertThat(array, equalTo(reference));
+        assertThat(array.size(), equalTo(reference.size()));
+        assertThat(array.toTrieArray(), equalTo(reference));
+        for (int i = 0; i < reference.size(); ++i) {
+            assertThat(array.get(i), equalTo(reference.get(i)));
+        }
+
+        // reverse iteration
+        ListIterator<String> rIt = reference.listIterator(reference.size());
+        ListIterator<String> aIt = array.listIterator(array.size());
+        while (rIt.hasPrevious()) {
+            assertThat(aIt.previousIndex(), equalTo(rIt.previousIndex()));
+            assertThat(aIt.previous(), equalTo(rIt.previous()));
+        }
+        assertThat(aIt.hasPrevious(), is(false));
+    }
+
+    @Test
+    public void testUpdate() {
+        for (int threshold : THRESHOLDS) {
+            Random random = new Random(42);
+            PatchedTrieArray<String> array = PatchedTrieArray.empty(threshold);
+            List<String> reference = new ArrayList<String>();
+            for (int i = 0; i < 1100; ++i) {
+                array = array.append("item " + i);
+                reference.add("item " + i);
+            }
+
+            List<PatchedTrieArray<String>> versions = new ArrayList<PatchedTrieArray<String>>();
+            List<List<String>> references = new ArrayList<List<String>>();
+            for (int i = 0; i < 200; ++i) {
+                int index = random.nextInt(reference.size());
+                String value = (i % 17 == 0) ? null : ("update " + i);
+                array = array.update(index, value);
+                reference.set(index, value);
+                assertThat(array.get(index), equalTo(value));
+                assertThat(array.patchCount(), lessThanOrEqualTo(threshold));
+                versions.add(array);
+                references.add(new ArrayList<String>(reference));
+            }
+            // all versions are still valid
+            for (int i = 0; i < versions.size(); i += 10) {
+                checkConsistency(versions.get(i), references.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAppendTake() {
+        for (int threshold : THRESHOLDS) {
+            PatchedTrieArray<String> array = PatchedTrieArray.<String> empty(threshold)
+                    .appendAll(asList("zero", "one", "two", "three", "four"))
+                    .update(1, "ONE")
+                    .update(3, "THREE")
+                    .update(4, "FOUR");
+            checkConsistency(array, asList("zero", "ONE", "two", "THREE", "FOUR"));
+            checkConsistency(array.take(4), asList("zero", "ONE", "two", "THREE"));
+            checkConsistency(array.take(2), asList("zero", "ONE"));
+            checkConsistency(array.remend().remend().append("three"), asList("zero", "ONE", "two", "three"));
+            checkConsistency(array.take(0), Collections.<String> emptyList());
+            checkConsistency(array.append("five").update(5, "FIVE"),
+                    asList("zero", "ONE", "two", "THREE", "FOUR", "FIVE"));
+        }
+    }
+
+    @Test
+    public void testToTrieArray() {
+        TrieArray<Integer> base = TrieArray.of(1, 2, 3);
+        PatchedTrieArray<Integer> array = new PatchedTrieArray<Integer>(base);
+        assertThat(array.toTrieArray(), sameInstance(base));
+        assertThat(array.update(1, 20).toTrieArray(), equalTo(asList(1, 20, 3)));
+        assertThat(base, equalTo(asList(1, 2, 3)));
+    }
+
+    @Test
+    public void testEmpty() {
+        for (PatchedTrieArray<Object> empty : Arrays.asList(
+                PatchedTrieArray.EMPTY,
+                PatchedTrieArray.empty(),
+                PatchedTrieArray.of(),
+                new PatchedTrieArray<Object>(),
+                new PatchedTrieArray<Object>(Collections.emptyList())
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+            assertThat(empty, equalTo(Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(PatchedTrieArray.singleton("one"), equalTo(Collections.singletonList("one")));
+        assertThat(PatchedTrieArray.of("one", "two", "three"), equalTo(asList("one", "two", "three")));
+        PatchedTrieArray<String> patched = PatchedTrieArray.of("one", "two").update(0, "ONE");
+        assertThat(new PatchedTrieArray<String>(patched), equalTo(asList("ONE", "two")));
+        assertThat(new PatchedTrieArray<String>(asList("one", "two")), equalTo(asList("one", "two")));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testUpdateOutOfBounds() {
+        PatchedTrieArray.of("one", "two").update(2, "three");
+    }
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        PatchedTrieArray.of("one", "two").update(1, "TWO").get(2);
+    }
+    @Test(expected=NoSuchElementException.class)
+    public void testRemendEmpty() {
+        PatchedTrieArray.empty().remend();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(PatchedTrieArray.of(1, 100, 33).update(1, 200));
+        out.writeObject(PatchedTrieArray.empty());
+        out.writeObject(PatchedTrieArray.singleton("foobar"));
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertThat((PatchedTrieArray<Integer>) in.readObject(), equalTo(PatchedTrieArray.of(1, 200, 33)));
+        Assert.assertThat((PatchedTrieArray<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        Assert.assertThat((PatchedTrieArray<String>) in.readObject(), equalTo(PatchedTrieArray.singleton("foobar")));
+        in.close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.douglasorr.shared;
+
+/** Abstracts away the details of priority queue implementations, for fair-ish comparison. */
+public abstract class PriorityQueueTester<T> extends Tester {
+    public abstract void insert(T value);
+    public abstract T peek();
+    public abstract void deleteMin();
+    public abstract boolean isEmpty();
+
+    public static class SharedPriorityQueueTester<T> extends PriorityQueueTester<T> {
+        private final SharedPriorityQueue<T> mEmpty;
+        private SharedPriorityQueue<T> mQueue;
+
+        public SharedPriorityQueueTester(SharedPriorityQueue<T> empty) {
+            mEmpty = empty;
+            mQueue = mEmpty;
+        }
+
+        @Override
+        public void insert(T value) {
+            mQueue = mQueue.insert(value);
+        }
+        @Override
+        public T peek() {
+            return mQueue.peek();
+        }
+        @Override
+        public void deleteMin() {
+            mQueue = mQueue.deleteMin();
+        }
+        @Override
+        public boolean isEmpty() {
+            return mQueue.isEmpty();
+        }
+        @Override
+        public void reset() {
+            mQueue = mEmpty;
+        }
+        @Override
+        public String toString() {
+            return "Doug." + mEmpty.getClass().getSimpleName();
+        }
+    }
+
+    public static class JavaPriorityQueueTester<T> extends PriorityQueueTester<T> {
+        private java.util.PriorityQueue<T> mQueue;
+        { reset(); }
+
+        @Override
+        public void insert(T value) {
+            mQueue.add(value);
+        }
+        @Override
+        public T peek() {
+            return mQueue.peek();
+        }
+        @Override
+        public void deleteMin() {
+            mQueue.remove();
+        }
+        @Override
+        public boolean isEmpty() {
+            return mQueue.isEmpty();
+        }
+        @Override
+        public void reset() {
+            mQueue = new java.util.PriorityQueue<T>();
+        }
+        @Override
+        public String toString() {
+            return "Java.PriorityQueue";
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,18 +26,56 @@ public class Profile {
 
     public static final List<MapTester<String, Integer>> TEST_MAPS = asList(
             new MapTester.SharedMapTester<String, Integer>(HashTrieMap.<String, Integer>empty()),
+            new MapTester.SharedMapTester<String, Integer>(BTreeMap.<String, Integer>empty()),
+            new MapTester.SharedMapTester<String, Integer>(RadixTreeMap.<Integer>empty()),
+            new MapTester.SharedMapTester<String, Integer>(LinkedHashTrieMap.<String, Integer>empty()),
             new MapTester.JavaHashMapTester<String, Integer>(),
+            new MapTester.JavaLinkedHashMapTester<String, Integer>(),
             new MapTester.JavaTreeMapTester<String, Integer>(),
             new MapTester.ClojureIPersistentMapTester<String, Integer>(clojure.lang.PersistentHashMap.create()),
-            new MapTester.ScalaImmutableMapTester<String, Integer>(scala.collection.immutable.HashMap$.MODULE$.<String, Integer>empty())
+            // (via RT, as PersistentTreeMap cannot be initialized before the Clojure runtime)
+            new MapTester.ClojureIPersistentMapTester<String, Integer>(
+                    (clojure.lang.IPersistentMap) clojure.lang.RT.var("clojure.core", "sorted-map").invoke(), "Clojure.TreeMap"),
+            new MapTester.ScalaImmutableMapTester<String, Integer>(scala.collection.immutable.HashMap$.MODULE$.<String, Integer>empty()),
+            new MapTester.ScalaImmutableMapTester<String, Integer>(
+                    scala.collection.immutable.TreeMap$.MODULE$.<String, Integer>empty(scala.math.Ordering.String$.MODULE$),
+                    "Scala.TreeMap")
+    );
+
+    // maps keyed by hierarchical paths (see pathKey())
+    public static final List<MapTester<String, Integer>> TEST_PATH_MAPS = asList(
+            new MapTester.SharedMapTester<String, Integer>(HashTrieMap.<String, Integer>empty()),
+            new MapTester.SharedMapTester<String, Integer>(RadixTreeMap.<Integer>empty()),
+            new MapTester.JavaTreeMapTester<String, Integer>()
     );
 
     public static final List<ArrayTester<Integer>> TEST_ARRAYS = asList(
             new ArrayTester.SharedArrayTester<Integer>(TrieArray.<Integer>empty()),
+            new ArrayTester.SharedArrayTester<Integer>("Doug.PatchedTrieArray(8)", PatchedTrieArray.<Integer>empty(8)),
+            new ArrayTester.SharedArrayTester<Integer>("Doug.PatchedTrieArray(64)", PatchedTrieArray.<Integer>empty(64)),
+            new ArrayTester.SharedArrayTester<Integer>("Doug.PatchedTrieArray(512)", PatchedTrieArray.<Integer>empty(512)),
+            new ArrayTester.SharedArrayTester<Integer>(TrieDeque.<Integer>empty()),
             new ArrayTester.JavaArrayListTester<Integer>(),
             new ArrayTester.ClojureVectorTester<Integer>(clojure.lang.PersistentVector.create())
     );
 
+    public static final List<ListTester<Integer>> TEST_LISTS = asList(
+            new ListTester.SharedListTester<Integer>(LinkedList.<Integer>empty()),
+            new ListTester.SharedListTester<Integer>(UnrolledList.<Integer>empty()),
+            new ListTester.SharedCatListTester<Integer>(CatenableList.<Integer>empty()),
+            new ListTester.JavaLinkedListTester<Integer>()
+    );
+
+    public static final List<PriorityQueueTester<Integer>> TEST_PRIORITY_QUEUES = asList(
+            new PriorityQueueTester.SharedPriorityQueueTester<Integer>(SkewBinomialHeap.<Integer>empty()),
+            new PriorityQueueTester.JavaPriorityQueueTester<Integer>()
+    );
+
+    public static final List<RefTester<String, Integer>> TEST_REFS = asList(
+            new RefTester.SharedRefTester<String, Integer>(),
+            new RefTester.CasLoopTester<String, Integer>()
+    );
+
     // Test infrastructure
 
     public static abstract class Measurement {
@@ -154,9 +193,34 @@ public class Profile {
 
     private static final int SMALL_PRIME = 61;
 
+    /** A hierarchical key, like a metric name, e.g. "metrics/3/a/1234". */
+    private static String pathKey(int i) {
+        return "metrics/" + Integer.toHexString(i % 16) + "/" + Integer.toHexString((i / 16) % 16) + "/" + i;
+    }
+    private static final String[] PATH_PREFIXES = {
+            "metrics/0/", "metrics/3/", "metrics/7/a/", "metrics/f/f/", "metrics/1/0/1", "metrics/8/2/"
+    };
+
+    /** A pseudo-random priority, so that values are not inserted in order. */
+    private static int priority(int i) {
+        return (SMALL_PRIME * i) % 1000003;
+    }
+
+    /** Every size within an inclusive range [lo hi]. */
+    private static List<Integer> linearSeries(int lo, int hi) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int size = lo; size <= hi; ++size) {
+            result.add(size);
+        }
+        return result;
+    }
+
     public static abstract class MemoryTest<T extends Tester> extends Test<T> {
         public MemoryTest() {
-            super(geometricSeries(1, (int) 1E6, 10));
+            this(geometricSeries(1, (int) 1E6, 10));
+        }
+        public MemoryTest(List<Integer> sizes) {
+            super(sizes);
         }
         @Override
         protected Measurement runSingle(T tester, int size) {
@@ -199,12 +263,68 @@ public class Profile {
         }
     };
 
+    // small maps (e.g. attribute bags), which are common
+    private static final Test<MapTester<String, Integer>> MEASURE_SMALL_MAP = new MemoryTest<MapTester<String, Integer>>(linearSeries(0, 10)) {
+        @Override
+        protected void fill(MapTester<String, Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.put(Integer.toHexString(SMALL_PRIME * i), i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "SmallMap.memory";
+        }
+    };
+
+    private static final Test<MapTester<String, Integer>> MEASURE_PATH_MAP = new MemoryTest<MapTester<String, Integer>>() {
+        @Override
+        protected void fill(MapTester<String, Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.put(pathKey(i), i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "PathMap.memory";
+        }
+    };
+
+    private static final Test<ListTester<Integer>> MEASURE_LIST = new MemoryTest<ListTester<Integer>>() {
+        @Override
+        protected void fill(ListTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.prepend(i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "List.memory";
+        }
+    };
+
+    private static final Test<PriorityQueueTester<Integer>> MEASURE_PRIORITY_QUEUE = new MemoryTest<PriorityQueueTester<Integer>>() {
+        @Override
+        protected void fill(PriorityQueueTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.insert(priority(i));
+            }
+        }
+        @Override
+        public String toString() {
+            return "PriorityQueue.memory";
+        }
+    };
+
     // Latency tests
 
     private static abstract class LatencyTest<T extends Tester> extends Test<T> {
         private final int mOpsPerSize;
         public LatencyTest(int maxSize, int opsPerSize) {
-            super(geometricSeries(10, maxSize, 10));
+            this(geometricSeries(10, maxSize, 10), opsPerSize);
+        }
+        public LatencyTest(List<Integer> sizes, int opsPerSize) {
+            super(sizes);
             mOpsPerSize = opsPerSize;
         }
         @Override
@@ -261,6 +381,26 @@ public class Profile {
         }
     };
 
+    public static final Test<MapTester<String, Integer>> RUN_SMALL_MAP_GET
+            = new LatencyTest<MapTester<String,Integer>>(linearSeries(1, 10), (int) 1E8) {
+        @Override
+        public void prepare(MapTester<String, Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.put(Integer.toHexString(SMALL_PRIME * i), i);
+            }
+        }
+        @Override
+        public void execute(MapTester<String, Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.get(Integer.toHexString(SMALL_PRIME * i));
+            }
+        }
+        @Override
+        public String toString() {
+            return "SmallMap.get";
+        }
+    };
+
     public static final Test<MapTester<String, Integer>> RUN_MAP_ITERATE
             = new LatencyTest<MapTester<String, Integer>>((int) 1E7, (int) 1E8) {
         @Override
@@ -282,6 +422,50 @@ public class Profile {
         }
     };
 
+    public static final Test<MapTester<String, Integer>> RUN_PATH_MAP_GET
+            = new LatencyTest<MapTester<String,Integer>>((int) 1E6, (int) 1E7) {
+        // (keys are built in advance, as building them would take longer than the lookup)
+        private String[] mKeys;
+        @Override
+        public void prepare(MapTester<String, Integer> tester, int size) {
+            mKeys = new String[size];
+            for (int i = 0; i < size; ++i) {
+                mKeys[i] = pathKey(i);
+                tester.put(mKeys[i], i);
+            }
+        }
+        @Override
+        public void execute(MapTester<String, Integer> tester, int size) {
+            for (String key : mKeys) {
+                tester.get(key);
+            }
+        }
+        @Override
+        public String toString() {
+            return "PathMap.get";
+        }
+    };
+
+    public static final Test<MapTester<String, Integer>> RUN_PATH_MAP_PREFIX
+            = new LatencyTest<MapTester<String,Integer>>((int) 1E5, (int) 1E7) {
+        @Override
+        public void prepare(MapTester<String, Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.put(pathKey(i), i);
+            }
+        }
+        @Override
+        public void execute(MapTester<String, Integer> tester, int size) {
+            for (String prefix : PATH_PREFIXES) {
+                tester.countPrefix(prefix);
+            }
+        }
+        @Override
+        public String toString() {
+            return "PathMap.prefix";
+        }
+    };
+
     public static final Test<ArrayTester<Integer>> RUN_ARRAY_ADD
             = new LatencyTest<ArrayTester<Integer>>((int) 1E7, (int) 1E8) {
         @Override
@@ -347,6 +531,75 @@ public class Profile {
         }
     };
 
+    // PatchedTrieArray vs TrieArray, at 1M elements (ns per update):
+    //  - Array.updateRandom (scattered): TrieArray 760, PatchedTrieArray 800-950 (no gain, at any threshold)
+    //  - Array.updateHot (16 hot indices): TrieArray 183, PatchedTrieArray(64+) 66
+    //  - (with 256 hot indices: TrieArray 159, PatchedTrieArray(512) 108)
+    // i.e. patching only pays off when the hot set fits under the threshold
+    public static final Test<ArrayTester<Integer>> RUN_ARRAY_UPDATE_RANDOM
+            = new LatencyTest<ArrayTester<Integer>>((int) 1E6, (int) 1E7) {
+        @Override
+        public void prepare(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.add(i);
+            }
+        }
+        @Override
+        public void execute(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.set((SMALL_PRIME * i) % size, -i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "Array.updateRandom";
+        }
+    };
+
+    // repeated updates to a small set of 'hot' indices
+    public static final Test<ArrayTester<Integer>> RUN_ARRAY_UPDATE_HOT
+            = new LatencyTest<ArrayTester<Integer>>((int) 1E6, (int) 1E7) {
+        private static final int HOT_INDICES = 16;
+        @Override
+        public void prepare(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.add(i);
+            }
+        }
+        @Override
+        public void execute(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.set((SMALL_PRIME * (i % HOT_INDICES)) % size, -i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "Array.updateHot";
+        }
+    };
+
+    // one read after every write (to show the cost of reading through any pending updates)
+    public static final Test<ArrayTester<Integer>> RUN_ARRAY_UPDATE_GET
+            = new LatencyTest<ArrayTester<Integer>>((int) 1E6, (int) 1E7) {
+        @Override
+        public void prepare(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.add(i);
+            }
+        }
+        @Override
+        public void execute(ArrayTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.set((SMALL_PRIME * i) % size, -i);
+                tester.get((SMALL_PRIME * (size - i)) % size);
+            }
+        }
+        @Override
+        public String toString() {
+            return "Array.updateGet";
+        }
+    };
+
     public static final Test<ArrayTester<Integer>> RUN_ARRAY_REMOVE
             = new LatencyTest<ArrayTester<Integer>>((int) 1E7, (int) 1E8) {
         @Override
@@ -386,12 +639,234 @@ public class Profile {
         }
     };
 
+    public static final Test<ListTester<Integer>> RUN_LIST_PREPEND
+            = new LatencyTest<ListTester<Integer>>((int) 1E7, (int) 1E8) {
+        @Override
+        public void execute(ListTester<Integer> tester, int size) {
+            tester.reset();
+            for (int i = 0; i < size; ++i) {
+                tester.prepend(i);
+            }
+        }
+        @Override
+        public String toString() {
+            return "List.prepend";
+        }
+    };
+
+    private static final LinkedList<Integer> LIST_FRAGMENT = LinkedList.of(0, 1, 2, 3, 4, 5, 6, 7);
+
+    // build a list by concatenating many small fragments onto the end
+    public static final Test<ListTester<Integer>> RUN_LIST_CONCAT
+            = new LatencyTest<ListTester<Integer>>((int) 1E4, (int) 1E6) {
+        @Override
+        public void execute(ListTester<Integer> tester, int size) {
+            tester.reset();
+            for (int i = 0; i < size; i += LIST_FRAGMENT.size()) {
+                tester.concat(LIST_FRAGMENT);
+            }
+        }
+        @Override
+        public String toString() {
+            return "List.concat";
+        }
+    };
+
+    // as List.concat, but then consume the list from the front
+    public static final Test<ListTester<Integer>> RUN_LIST_CONCAT_DRAIN
+            = new LatencyTest<ListTester<Integer>>((int) 1E4, (int) 1E6) {
+        @Override
+        public void execute(ListTester<Integer> tester, int size) {
+            tester.reset();
+            for (int i = 0; i < size; i += LIST_FRAGMENT.size()) {
+                tester.concat(LIST_FRAGMENT);
+            }
+            while (!tester.isEmpty()) {
+                tester.head();
+                tester.tail();
+            }
+        }
+        @Override
+        public String toString() {
+            return "List.concatDrain";
+        }
+    };
+
+    public static final Test<ListTester<Integer>> RUN_LIST_ITERATE
+            = new LatencyTest<ListTester<Integer>>((int) 1E7, (int) 1E9) {
+        @Override
+        public void prepare(ListTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.prepend(i);
+            }
+        }
+        @Override
+        public void execute(ListTester<Integer> tester, int size) {
+            Iterator<Integer> it = tester.iterator();
+            while (it.hasNext()) {
+                it.next();
+            }
+        }
+        @Override
+        public String toString() {
+            return "List.iterate";
+        }
+    };
+
+    public static final Test<PriorityQueueTester<Integer>> RUN_PRIORITY_QUEUE_INSERT
+            = new LatencyTest<PriorityQueueTester<Integer>>((int) 1E6, (int) 1E8) {
+        @Override
+        public void execute(PriorityQueueTester<Integer> tester, int size) {
+            tester.reset();
+            for (int i = 0; i < size; ++i) {
+                tester.insert(priority(i));
+            }
+        }
+        @Override
+        public String toString() {
+            return "PriorityQueue.insert";
+        }
+    };
+
+    // as PriorityQueue.insert, but then remove every value in priority order
+    public static final Test<PriorityQueueTester<Integer>> RUN_PRIORITY_QUEUE_DRAIN
+            = new LatencyTest<PriorityQueueTester<Integer>>((int) 1E6, (int) 1E7) {
+        @Override
+        public void execute(PriorityQueueTester<Integer> tester, int size) {
+            tester.reset();
+            for (int i = 0; i < size; ++i) {
+                tester.insert(priority(i));
+            }
+            while (!tester.isEmpty()) {
+                tester.peek();
+                tester.deleteMin();
+            }
+        }
+        @Override
+        public String toString() {
+            return "PriorityQueue.insertDrain";
+        }
+    };
+
+    // a scheduler-like steady state - repeatedly remove the least value & insert a later one
+    public static final Test<PriorityQueueTester<Integer>> RUN_PRIORITY_QUEUE_HOLD
+            = new LatencyTest<PriorityQueueTester<Integer>>((int) 1E5, (int) 1E7) {
+        @Override
+        public void prepare(PriorityQueueTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                tester.insert(priority(i));
+            }
+        }
+        @Override
+        public void execute(PriorityQueueTester<Integer> tester, int size) {
+            for (int i = 0; i < size; ++i) {
+                int next = tester.peek() + priority(i) % 1000;
+                tester.deleteMin();
+                tester.insert(next);
+            }
+        }
+        @Override
+        public String toString() {
+            return "PriorityQueue.hold";
+        }
+    };
+
+    // Throughput tests (the size of each test is the number of threads)
+
+    private static abstract class ThroughputTest<T extends Tester> extends Test<T> {
+        private final int mOps;
+        public ThroughputTest(int maxThreads, int ops) {
+            super(geometricSeries(1, maxThreads, 2));
+            mOps = ops;
+        }
+        @Override
+        protected Measurement runSingle(final T tester, int nthreads) {
+            final int runs = mOps / nthreads;
+
+            tester.reset();
+            prepare(tester);
+            final List<Thread> threads = new ArrayList<Thread>();
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < nthreads; ++t) {
+                final int thread = t;
+                threads.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        for (int i = 0; i < runs; ++i) {
+                            execute(tester, thread, i);
+                        }
+                    }
+                });
+            }
+            for (Thread t : threads) {
+                t.start();
+            }
+            System.gc(); System.gc();
+            long t0 = System.nanoTime();
+            start.countDown();
+            try {
+                for (Thread t : threads) {
+                    t.join();
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            long t1 = System.nanoTime();
+
+            return new LatencyMeasurement(nthreads, (long) runs * nthreads, t1 - t0);
+        }
+        protected void prepare(T tester) { }
+        protected abstract void execute(T tester, int thread, int i);
+    }
+
+    // many writers updating a single map
+    private static final int CONCURRENT_MAP_SIZE = 10000;
+    public static final Test<RefTester<String, Integer>> RUN_REF_PUT
+            = new ThroughputTest<RefTester<String, Integer>>(64, (int) 1E6) {
+        @Override
+        protected void prepare(RefTester<String, Integer> tester) {
+            for (int i = 0; i < CONCURRENT_MAP_SIZE; ++i) {
+                tester.put(Integer.toHexString(SMALL_PRIME * i), i);
+            }
+        }
+        @Override
+        protected void execute(RefTester<String, Integer> tester, int thread, int i) {
+            tester.put(Integer.toHexString(SMALL_PRIME * ((thread * 7919 + i) % CONCURRENT_MAP_SIZE)), i);
+        }
+        @Override
+        public String toString() {
+            return "Ref.put";
+        }
+    };
+
     public static final List<Test<ArrayTester<Integer>>> ARRAY_TESTS = asList(
             MEASURE_ARRAY, RUN_ARRAY_ADD, RUN_ARRAY_ADD_FIRST, RUN_ARRAY_ADD_MID,
-            RUN_ARRAY_ITERATE, RUN_ARRAY_REMOVE, RUN_ARRAY_REMOVE, RUN_ARRAY_UPDATE);
+            RUN_ARRAY_ITERATE, RUN_ARRAY_REMOVE, RUN_ARRAY_REMOVE, RUN_ARRAY_UPDATE,
+            RUN_ARRAY_UPDATE_RANDOM, RUN_ARRAY_UPDATE_HOT, RUN_ARRAY_UPDATE_GET);
+
+    public static final List<Test<ListTester<Integer>>> LIST_TESTS = asList(
+            MEASURE_LIST, RUN_LIST_PREPEND, RUN_LIST_CONCAT, RUN_LIST_CONCAT_DRAIN, RUN_LIST_ITERATE
+    );
 
     public static final List<Test<MapTester<String, Integer>>> MAP_TESTS = asList(
-            MEASURE_MAP, RUN_MAP_GET, RUN_MAP_ITERATE, RUN_MAP_PUT
+            MEASURE_MAP, RUN_MAP_GET, RUN_MAP_ITERATE, RUN_MAP_PUT, MEASURE_SMALL_MAP, RUN_SMALL_MAP_GET
+    );
+
+    public static final List<Test<MapTester<String, Integer>>> PATH_MAP_TESTS = asList(
+            MEASURE_PATH_MAP, RUN_PATH_MAP_GET, RUN_PATH_MAP_PREFIX
+    );
+
+    public static final List<Test<PriorityQueueTester<Integer>>> PRIORITY_QUEUE_TESTS = asList(
+            MEASURE_PRIORITY_QUEUE, RUN_PRIORITY_QUEUE_INSERT, RUN_PRIORITY_QUEUE_DRAIN, RUN_PRIORITY_QUEUE_HOLD
+    );
+
+    public static final List<Test<RefTester<String, Integer>>> REF_TESTS = asList(
+            RUN_REF_PUT
     );
 
     private static class TestRun<T extends Tester> {
@@ -416,11 +891,31 @@ public class Profile {
                 runs.add(new TestRun<ArrayTester<Integer>>(test, tester));
             }
         }
+        for (final Test<ListTester<Integer>> test : LIST_TESTS) {
+            for (final ListTester<Integer> tester : TEST_LISTS) {
+                runs.add(new TestRun<ListTester<Integer>>(test, tester));
+            }
+        }
         for (final Test<MapTester<String, Integer>> test : MAP_TESTS) {
             for (final MapTester<String, Integer> tester : TEST_MAPS) {
                 runs.add(new TestRun<MapTester<String, Integer>>(test, tester));
             }
         }
+        for (final Test<MapTester<String, Integer>> test : PATH_MAP_TESTS) {
+            for (final MapTester<String, Integer> tester : TEST_PATH_MAPS) {
+                runs.add(new TestRun<MapTester<String, Integer>>(test, tester));
+            }
+        }
+        for (final Test<PriorityQueueTester<Integer>> test : PRIORITY_QUEUE_TESTS) {
+            for (final PriorityQueueTester<Integer> tester : TEST_PRIORITY_QUEUES) {
+                runs.add(new TestRun<PriorityQueueTester<Integer>>(test, tester));
+            }
+        }
+        for (final Test<RefTester<String, Integer>> test : REF_TESTS) {
+            for (final RefTester<String, Integer> tester : TEST_REFS) {
+                runs.add(new TestRun<RefTester<String, Integer>>(test, tester));
+            }
+        }
         return runs;
     }
 
@@ -0,0 +1,190 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RadixTreeMapTest {
+
+    // all the entries of 'map' with keys starting with 'prefix'
+    private static <V> SortedMap<String, V> expectedPrefix(SortedMap<String, V> map, String prefix) {
+        SortedMap<String, V> result = new TreeMap<String, V>();
+        for (Map.Entry<String, V> entry : map.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static <V> void assertMatches(SortedMap<String, V> expected, RadixTreeMap<V> actual) {
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual, equalTo((Map<String, V>) expected));
+        // iteration is in key order
+        assertThat(new ArrayList<String>(actual.keySet()), equalTo(new ArrayList<String>(expected.keySet())));
+        for (String key : expected.keySet()) {
+            assertThat(actual.get(key), equalTo(expected.get(key)));
+        }
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (RadixTreeMap<Object> empty : Arrays.asList(
+                RadixTreeMap.EMPTY,
+                RadixTreeMap.empty(),
+                RadixTreeMap.of(),
+                new RadixTreeMap<Object>(),
+                new RadixTreeMap<Object>(Collections.<String, Object> emptyMap()),
+                RadixTreeMap.<Object> singleton("one", 1).without("one"),
+                RadixTreeMap.<Object> singleton("one", 1).prefixView("two")
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get("foo"), nullValue());
+            assertThat(empty.get(""), nullValue());
+            assertThat(empty.entrySet().iterator().hasNext(), is(false));
+            assertThat(empty.prefixView("foo").isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(RadixTreeMap.of("one", 1, "two", 2, "three", 3).keySet(), contains("one", "three", "two"));
+        assertThat(RadixTreeMap.singleton("one", 1).get("one"), is(1));
+        assertThat(new RadixTreeMap<Integer>(Collections.singletonMap("one", 1)).get("one"), is(1));
+        RadixTreeMap<Integer> map = RadixTreeMap.of("one", 1);
+        assertThat(new RadixTreeMap<Integer>(map), equalTo((Map<String, Integer>) map));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        RadixTreeMap.of("one", 1, "two");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullKey() {
+        RadixTreeMap.empty().with(null, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        RadixTreeMap.empty().with("foo", null);
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        RadixTreeMap<Integer> map = RadixTreeMap.<Integer> empty()
+                .with("romane", 1).with("romanus", 2).with("romulus", 3).with("rubens", 4)
+                .with("ruber", 5).with("rubicon", 6).with("rubicundus", 7).with("rom", 8).with("", 9);
+        assertThat(map.size(), is(9));
+        assertThat(map.get("romanus"), is(2));
+        assertThat(map.get("rom"), is(8));
+        assertThat(map.get(""), is(9));
+        assertThat(map.get("ro"), nullValue());
+        assertThat(map.get("romanusx"), nullValue());
+        assertThat(map.get(1), nullValue());
+        assertThat(map.keySet(), contains("", "rom", "romane", "romanus", "romulus", "rubens", "ruber", "rubicon", "rubicundus"));
+
+        assertThat(map.without("rom").get("rom"), nullValue());
+        assertThat(map.without("rom").get("romane"), is(1));
+        assertThat(map.without("rom").size(), is(8));
+        assertThat(map.without("ro"), sameInstance(map));
+        assertThat(map.without("romanusx"), sameInstance(map));
+        assertThat(map.with("rom", map.get("rom")), sameInstance(map));
+        assertThat(map.with("rom", 100).get("rom"), is(100));
+        assertThat(map.get("rom"), is(8)); // unchanged
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+        RadixTreeMap<Integer> actual = RadixTreeMap.empty();
+        for (int i = 0; i < 20000; ++i) {
+            // short keys from a small alphabet, so that there are many shared prefixes
+            StringBuilder key = new StringBuilder();
+            for (int n = random.nextInt(8); 0 < n; --n) {
+                key.append((char) ('a' + random.nextInt(4)));
+            }
+            if (random.nextInt(3) == 0) {
+                expected.remove(key.toString());
+                actual = actual.without(key.toString());
+            } else {
+                expected.put(key.toString(), i);
+                actual = actual.with(key.toString(), i);
+            }
+            assertThat(actual.size(), is(expected.size()));
+        }
+        assertMatches(expected, actual);
+
+        for (String prefix : Arrays.asList("", "a", "ab", "dcb", "abcdabcd", "e")) {
+            assertMatches(expectedPrefix(expected, prefix), actual.prefixView(prefix));
+        }
+
+        for (String key : new ArrayList<String>(expected.keySet())) {
+            actual = actual.without(key);
+        }
+        assertThat(actual.isEmpty(), is(true));
+    }
+
+    // *** Prefix views ***
+
+    @Test
+    public void testPrefixView() {
+        RadixTreeMap<Integer> map = RadixTreeMap.of(
+                "a/b/c", 1, "a/b/d", 2, "a/bc", 3, "a/e", 4, "b", 5, "a", 6);
+        assertThat(map.prefixView("").keySet(), contains("a", "a/b/c", "a/b/d", "a/bc", "a/e", "b"));
+        assertThat(map.prefixView(""), sameInstance(map));
+        assertThat(map.prefixView("a").keySet(), contains("a", "a/b/c", "a/b/d", "a/bc", "a/e"));
+        assertThat(map.prefixView("a/").keySet(), contains("a/b/c", "a/b/d", "a/bc", "a/e"));
+        assertThat(map.prefixView("a/b").keySet(), contains("a/b/c", "a/b/d", "a/bc"));
+        assertThat(map.prefixView("a/b/").keySet(), contains("a/b/c", "a/b/d"));
+        assertThat(map.prefixView("a/b/c").keySet(), contains("a/b/c"));
+        assertThat(map.prefixView("a/b/cd").isEmpty(), is(true));
+        assertThat(map.prefixView("a/x").isEmpty(), is(true));
+        assertThat(map.prefixView("c").isEmpty(), is(true));
+
+        // views of views
+        RadixTreeMap<Integer> view = map.prefixView("a/b");
+        assertThat(view.prefixView("a/b/"), equalTo((Map<String, Integer>) map.prefixView("a/b/")));
+        assertThat(view.prefixView("a"), sameInstance(view));
+        assertThat(view.prefixView("a/c").isEmpty(), is(true));
+        assertThat(view.get("a/b/c"), is(1));
+        assertThat(view.get("a/e"), nullValue());
+        assertThat(view.get("b"), nullValue());
+
+        // views can be updated, inside or outside the prefix
+        assertThat(view.with("a/b/x", 7).keySet(), contains("a/b/c", "a/b/d", "a/b/x", "a/bc"));
+        assertThat(view.with("a/x", 7).keySet(), contains("a/b/c", "a/b/d", "a/bc", "a/x"));
+        assertThat(view.with("z", 7).keySet(), contains("a/b/c", "a/b/d", "a/bc", "z"));
+        assertThat(view.with("", 7).keySet(), contains("", "a/b/c", "a/b/d", "a/bc"));
+        assertThat(view.with("a/", 7).get("a/"), is(7));
+        assertThat(view.without("a/b/c").keySet(), contains("a/b/d", "a/bc"));
+        assertThat(view.without("a/e"), sameInstance(view));
+        assertThat(view.without("a/b/c").without("a/b/d").without("a/bc").isEmpty(), is(true));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(RadixTreeMap.of("one", 1, "two", 2, "three", 3));
+        out.writeObject(RadixTreeMap.of("a/b", 1, "a/c", 2, "b", 3).prefixView("a/"));
+        out.writeObject(RadixTreeMap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((RadixTreeMap<Integer>) in.readObject(), equalTo((Map<String, Integer>) RadixTreeMap.of("one", 1, "two", 2, "three", 3)));
+        assertThat(((RadixTreeMap<Integer>) in.readObject()).keySet(), contains("a/b", "a/c"));
+        assertThat(((RadixTreeMap<Object>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.douglasorr.shared;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Abstracts away the details of updating a shared map from many threads at once, for fair-ish comparison. */
+public abstract class RefTester<K, V> extends Tester {
+    /** Must be safe to call from multiple threads concurrently. */
+    public abstract void put(K key, V value);
+    public abstract int size();
+
+    public static class SharedRefTester<K, V> extends RefTester<K, V> {
+        private SharedRef<HashTrieMap<K, V>> mRef;
+        { reset(); }
+
+        @Override
+        public void put(final K key, final V value) {
+            mRef.update(new SharedRef.Update<HashTrieMap<K, V>>() {
+                @Override
+                public HashTrieMap<K, V> apply(HashTrieMap<K, V> current) {
+                    return current.with(key, value);
+                }
+            });
+        }
+        @Override
+        public int size() {
+            return mRef.get().size();
+        }
+        @Override
+        public void reset() {
+            mRef = new SharedRef<HashTrieMap<K, V>>(HashTrieMap.<K, V> empty());
+        }
+        @Override
+        public String toString() {
+            return "Doug.SharedRef";
+        }
+    }
+
+    // the naive alternative to SharedRef
+    public static class CasLoopTester<K, V> extends RefTester<K, V> {
+        private AtomicReference<HashTrieMap<K, V>> mRef;
+        { reset(); }
+
+        @Override
+        public void put(K key, V value) {
+            HashTrieMap<K, V> current;
+            do {
+                current = mRef.get();
+            } while (!mRef.compareAndSet(current, current.with(key, value)));
+        }
+        @Override
+        public int size() {
+            return mRef.get().size();
+        }
+        @Override
+        public void reset() {
+            mRef = new AtomicReference<HashTrieMap<K, V>>(HashTrieMap.<K, V> empty());
+        }
+        @Override
+        public String toString() {
+            return "Java.AtomicReference";
+        }
+    }
+}
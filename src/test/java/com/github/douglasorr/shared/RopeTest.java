@@ -0,0 +1,192 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RopeTest {
+    private static String randomText(Random random, int maxLength) {
+        final int length = random.nextInt(maxLength + 1);
+        final StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            text.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    private static void checkConsistency(Rope rope, String reference) {
+        assertThat(rope.length(), equalTo(reference.length()));
+        assertThat(rope.toString(), equalTo(reference));
+        assertThat(rope, equalTo(Rope.of(reference)));
+        assertThat(rope.hashCode(), equalTo(reference.hashCode()));
+        for (int i = 0; i < reference.length(); ++i) {
+            assertThat(rope.charAt(i), equalTo(reference.charAt(i)));
+        }
+
+        // lines
+        final List<Integer> lineStarts = new ArrayList<Integer>();
+        lineStarts.add(0);
+        for (int i = 0; i < reference.length(); ++i) {
+            if (reference.charAt(i) == '\n') {
+                lineStarts.add(i + 1);
+            }
+        }
+        assertThat(rope.lineCount(), equalTo(lineStarts.size()));
+        for (int line = 0; line < lineStarts.size(); ++line) {
+            assertThat(rope.lineStart(line), equalTo(lineStarts.get(line)));
+        }
+        int line = 0;
+        for (int i = 0; i <= reference.length(); ++i) {
+            while (line + 1 < lineStarts.size() && lineStarts.get(line + 1) <= i) {
+                ++line;
+            }
+            assertThat(rope.lineOf(i), equalTo(line));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (Rope empty : Arrays.asList(
+                Rope.empty(),
+                new Rope(),
+                new Rope(""),
+                Rope.of(new StringBuilder()),
+                Rope.of("abc").delete(0, 3),
+                Rope.of("abc").subSequence(1, 1))) {
+            checkConsistency(empty, "");
+            assertThat(empty, equalTo(Rope.empty()));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        checkConsistency(Rope.of("hello"), "hello");
+        checkConsistency(Rope.of("one\ntwo\n"), "one\ntwo\n");
+        checkConsistency(new Rope(new StringBuilder("abc")), "abc");
+        final Rope rope = Rope.of("abc");
+        assertThat(new Rope(rope), equalTo(rope));
+
+        final String large = randomText(new Random(123), 100000);
+        checkConsistency(Rope.of(large), large);
+        checkConsistency(Rope.of(Rope.of(large)), large);
+    }
+
+    @Test
+    public void testEdits() {
+        final Rope rope = Rope.of("hello world");
+        checkConsistency(rope.insert(5, ","), "hello, world");
+        checkConsistency(rope.insert(0, ">> "), ">> hello world");
+        checkConsistency(rope.append("!\n"), "hello world!\n");
+        checkConsistency(rope.delete(5, 11), "hello");
+        checkConsistency(rope.replace(6, 11, "there"), "hello there");
+        checkConsistency(rope.subSequence(6, 11), "world");
+        checkConsistency(rope, "hello world");
+        assertThat(rope.insert(3, ""), sameInstance(rope));
+        assertThat(rope.delete(3, 3), sameInstance(rope));
+    }
+
+    @Test
+    public void testRandomEdits() {
+        final Random random = new Random(456);
+        Rope rope = Rope.empty();
+        String reference = "";
+        final List<Rope> versions = new ArrayList<Rope>();
+        final List<String> references = new ArrayList<String>();
+        for (int i = 0; i < 3000; ++i) {
+            final int start = random.nextInt(reference.length() + 1);
+            final int op = random.nextInt(10);
+            if (op < 6) {
+                // typing (insert a few characters), with an occasional paste
+                final String text = randomText(random, random.nextInt(50) == 0 ? 2000 : 5);
+                rope = rope.insert(start, text);
+                reference = reference.substring(0, start) + text + reference.substring(start);
+            } else if (op < 9) {
+                final int end = Math.min(reference.length(), start + random.nextInt(random.nextInt(50) == 0 ? 5000 : 10));
+                rope = rope.delete(start, end);
+                reference = reference.substring(0, start) + reference.substring(end);
+            } else {
+                final int end = Math.min(reference.length(), start + random.nextInt(20));
+                final String text = randomText(random, 20);
+                rope = rope.replace(start, end, text);
+                reference = reference.substring(0, start) + text + reference.substring(end);
+            }
+            assertThat(rope.length(), equalTo(reference.length()));
+            if (i % 100 == 0) {
+                checkConsistency(rope, reference);
+                versions.add(rope);
+                references.add(reference);
+            }
+        }
+        checkConsistency(rope, reference);
+
+        // old versions are unchanged by later edits
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testLargeEdits() {
+        final Random random = new Random(789);
+        final String text = randomText(random, 200000);
+        final Rope rope = Rope.of(text);
+        final int n = text.length();
+
+        checkConsistency(rope.subSequence(n / 3, 2 * n / 3), text.substring(n / 3, 2 * n / 3));
+        checkConsistency(rope.delete(10, n - 10), text.substring(0, 10) + text.substring(n - 10));
+        checkConsistency(rope.delete(n / 2, n), text.substring(0, n / 2));
+        checkConsistency(rope.insert(n / 2, rope), text.substring(0, n / 2) + text + text.substring(n / 2));
+
+        // shrink a large text by repeated deletes of a small range
+        Rope shrinking = rope;
+        String reference = text;
+        while (1000 < reference.length()) {
+            final int start = random.nextInt(reference.length() - 1000);
+            shrinking = shrinking.delete(start, start + 1000);
+            reference = reference.substring(0, start) + reference.substring(start + 1000);
+        }
+        checkConsistency(shrinking, reference);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testCharAtOutOfBounds() {
+        Rope.of("abc").charAt(3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInsertOutOfBounds() {
+        Rope.of("abc").insert(4, "d");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testDeleteBadRange() {
+        Rope.of("abc").delete(2, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testLineStartOutOfBounds() {
+        Rope.of("one\ntwo").lineStart(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testLineOfOutOfBounds() {
+        Rope.of("one\ntwo").lineOf(8);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        for (String text : Arrays.asList("", "a", "one\ntwo\n", randomText(new Random(1), 10000))) {
+            final Rope rope = Rope.of(text);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(rope);
+            out.close();
+            final Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            checkConsistency((Rope) copy, text);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SharedRefTest {
+    private static SharedRef.Update<HashTrieMap<String, Integer>> with(final String key, final Integer value) {
+        return new SharedRef.Update<HashTrieMap<String, Integer>>() {
+            @Override
+            public HashTrieMap<String, Integer> apply(HashTrieMap<String, Integer> current) {
+                return current.with(key, value);
+            }
+        };
+    }
+
+    private static SharedRef.Update<HashTrieMap<String, Integer>> increment(final String key) {
+        return new SharedRef.Update<HashTrieMap<String, Integer>>() {
+            @Override
+            public HashTrieMap<String, Integer> apply(HashTrieMap<String, Integer> current) {
+                final Integer count = current.get(key);
+                // give up the CPU between read & write, so that updates contend even on a single CPU
+                Thread.yield();
+                return current.with(key, count == null ? 1 : count + 1);
+            }
+        };
+    }
+
+    @Test
+    public void testGetSwapUpdate() {
+        final SharedRef<HashTrieMap<String, Integer>> ref = new SharedRef<HashTrieMap<String, Integer>>(
+                HashTrieMap.<String, Integer> empty());
+        assertThat(ref.get(), sameInstance(HashTrieMap.<String, Integer> empty()));
+
+        final HashTrieMap<String, Integer> one = ref.update(with("one", 1));
+        assertThat(one, equalTo(HashTrieMap.of("one", 1)));
+        assertThat(ref.get(), sameInstance(one));
+
+        final HashTrieMap<String, Integer> two = HashTrieMap.of("two", 2);
+        assertThat(ref.swap(two), sameInstance(one));
+        assertThat(ref.get(), sameInstance(two));
+        assertThat(ref.update(increment("two")), equalTo(HashTrieMap.of("two", 3)));
+        assertThat(ref.toString(), containsString("two"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateThrows() {
+        final SharedRef<String> ref = new SharedRef<String>("x");
+        ref.update(new SharedRef.Update<String>() {
+            @Override
+            public String apply(String current) {
+                throw new IllegalStateException("failed");
+            }
+        });
+    }
+
+    private static <E extends Throwable> void sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    // apply an update that throws 'error' in the same combined batch as a normal update
+    private static void combineWithFailure(final Throwable error) throws InterruptedException {
+        final SharedRef<HashTrieMap<String, Integer>> ref = new SharedRef<HashTrieMap<String, Integer>>(
+                HashTrieMap.<String, Integer> empty());
+        final CountDownLatch combining = new CountDownLatch(1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicReference<Object> normalResult = new AtomicReference<Object>();
+
+        // 1. the combiner - its first (uncontended) apply forces a failed compare-and-set, so it queues & combines
+        final Thread combiner = new Thread() {
+            @Override
+            public void run() {
+                ref.update(new SharedRef.Update<HashTrieMap<String, Integer>>() {
+                    private boolean mFirst = true;
+                    @Override
+                    public HashTrieMap<String, Integer> apply(HashTrieMap<String, Integer> current) {
+                        if (mFirst) {
+                            mFirst = false;
+                            ref.swap(HashTrieMap.<String, Integer> empty().with("swapped", 0));
+                            return current;
+                        }
+                        combining.countDown();
+                        try {
+                            queued.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return current;
+                    }
+                });
+            }
+        };
+        // 2. while it is combining, queue a failing & a normal update (which are applied in the same batch)
+        final Thread failing = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    ref.update(new SharedRef.Update<HashTrieMap<String, Integer>>() {
+                        @Override
+                        public HashTrieMap<String, Integer> apply(HashTrieMap<String, Integer> current) {
+                            SharedRefTest.<RuntimeException> sneakyThrow(error);
+                            return current;
+                        }
+                    });
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        final Thread normal = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    normalResult.set(ref.update(with("normal", 1)));
+                } catch (Throwable e) {
+                    normalResult.set(e);
+                }
+            }
+        };
+        combiner.start();
+        combining.await();
+        failing.start();
+        normal.start();
+        Thread.sleep(200); // (allow both to be queued)
+        queued.countDown();
+
+        for (Thread thread : Arrays.asList(combiner, failing, normal)) {
+            thread.join(10000);
+            assertThat("update() completes", thread.isAlive(), equalTo(false));
+        }
+        assertThat(failure.get(), sameInstance(error));
+        if (!(error instanceof VirtualMachineError)) {
+            assertThat(normalResult.get(), equalTo((Object) HashTrieMap.of("swapped", 0, "normal", 1)));
+        }
+        // the reference is still usable
+        assertThat(ref.update(with("after", 2)).get("after"), equalTo(2));
+    }
+
+    @Test
+    public void testCombineCheckedException() throws InterruptedException {
+        combineWithFailure(new IOException("checked"));
+    }
+
+    @Test
+    public void testCombineVirtualMachineError() throws InterruptedException {
+        combineWithFailure(new StackOverflowError());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final int nthreads = 32;
+        final int nupdates = 2000;
+        final SharedRef<HashTrieMap<String, Integer>> ref = new SharedRef<HashTrieMap<String, Integer>>(
+                HashTrieMap.<String, Integer> empty());
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < nthreads; ++t) {
+            final String own = "thread-" + t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < nupdates; ++i) {
+                            // a shared counter (which is always contended) & a counter for this thread
+                            ref.update(increment("total"));
+                            final HashTrieMap<String, Integer> updated = ref.update(increment(own));
+                            assertThat(updated.get(own), equalTo(i + 1));
+                            if (i % 100 == 0) {
+                                // failures must only affect this update
+                                try {
+                                    ref.update(new SharedRef.Update<HashTrieMap<String, Integer>>() {
+                                        @Override
+                                        public HashTrieMap<String, Integer> apply(HashTrieMap<String, Integer> current) {
+                                            throw new IllegalStateException(own);
+                                        }
+                                    });
+                                    failure.compareAndSet(null, new AssertionError("update() did not throw"));
+                                } catch (IllegalStateException e) {
+                                    assertThat(e.getMessage(), equalTo(own));
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failure.get(), nullValue());
+
+        final HashTrieMap<String, Integer> result = ref.get();
+        assertThat(result.size(), equalTo(nthreads + 1));
+        assertThat(result.get("total"), equalTo(nthreads * nupdates));
+        for (int t = 0; t < nthreads; ++t) {
+            assertThat(result.get("thread-" + t), equalTo(nupdates));
+        }
+    }
+
+    @Test
+    public void testConcurrentSwap() throws InterruptedException {
+        // swap() may race with a combiner, which must then re-apply its batch
+        final SharedRef<HashTrieMap<String, Integer>> ref = new SharedRef<HashTrieMap<String, Integer>>(
+                HashTrieMap.<String, Integer> empty());
+        final int nthreads = 8;
+        final int nupdates = 2000;
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < nthreads; ++t) {
+            final String own = "thread-" + t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < nupdates; ++i) {
+                        ref.update(increment(own));
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < 1000; ++i) {
+            // swap in a copy (a different instance, with the same contents)
+            ref.update(increment("swapper"));
+            HashTrieMap<String, Integer> current = ref.get();
+            ref.swap(new HashTrieMap<String, Integer>(current));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final HashTrieMap<String, Integer> result = ref.get();
+        for (int t = 0; t < nthreads; ++t) {
+            // updates between a get() & swap() may be lost, but never exceed the number applied
+            assertThat(result.get("thread-" + t), lessThanOrEqualTo(nupdates));
+        }
+        assertThat(result.get("swapper"), equalTo(1000));
+    }
+}
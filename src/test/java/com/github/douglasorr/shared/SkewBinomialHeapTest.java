@@ -0,0 +1,177 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SkewBinomialHeapTest {
+    /** Check the heap has the same contents as the reference (including duplicates), by draining a copy. */
+    private static <T> void checkConsistency(SkewBinomialHeap<T> heap, PriorityQueue<T> reference) {
+        assertThat(heap.size(), equalTo(reference.size()));
+        assertThat(heap.isEmpty(), equalTo(reference.isEmpty()));
+        assertThat(heap.peek(), equalTo(reference.peek()));
+        List<T> iterated = new ArrayList<T>(heap);
+        List<T> expected = new ArrayList<T>(reference);
+        assertThat(iterated.size(), equalTo(expected.size()));
+        assertThat(new HashSet<T>(iterated), equalTo(new HashSet<T>(expected)));
+
+        PriorityQueue<T> copy = new PriorityQueue<T>(reference);
+        while (!heap.isEmpty()) {
+            assertThat(heap.peek(), equalTo(copy.poll()));
+            heap = heap.deleteMin();
+        }
+        assertThat(copy.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testEmpty() {
+        for (SkewBinomialHeap<Integer> empty : Arrays.asList(
+                SkewBinomialHeap.EMPTY,
+                SkewBinomialHeap.empty(),
+                SkewBinomialHeap.of(),
+                new SkewBinomialHeap<Integer>(),
+                new SkewBinomialHeap<Integer>(Collections.reverseOrder()),
+                new SkewBinomialHeap<Integer>(Collections.<Integer> emptyList()),
+                SkewBinomialHeap.singleton(1).deleteMin()
+        )) {
+            assertThat(empty.size(), equalTo(0));
+            assertThat(empty.isEmpty(), equalTo(true));
+            assertThat(empty.peek(), nullValue());
+            assertThat(empty.iterator().hasNext(), equalTo(false));
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testDeleteMinEmpty() {
+        SkewBinomialHeap.empty().deleteMin();
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testElementEmpty() {
+        SkewBinomialHeap.empty().element();
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        SkewBinomialHeap.empty().insert(null);
+    }
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOffer() {
+        SkewBinomialHeap.<Integer> empty().offer(1);
+    }
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPoll() {
+        SkewBinomialHeap.of(1).poll();
+    }
+
+    @Test
+    public void testBasic() {
+        SkewBinomialHeap<Integer> heap = SkewBinomialHeap.of(5, 3, 8, 3, 1);
+        assertThat(heap.size(), equalTo(5));
+        assertThat(heap.peek(), equalTo(1));
+        assertThat(heap.element(), equalTo(1));
+        assertThat(heap, containsInAnyOrder(1, 3, 3, 5, 8));
+        assertThat(heap.deleteMin().peek(), equalTo(3));
+        assertThat(heap.deleteMin().deleteMin().peek(), equalTo(3));
+        assertThat(heap.deleteMin().deleteMin().deleteMin().peek(), equalTo(5));
+        assertThat(heap.insert(0).peek(), equalTo(0));
+        assertThat(heap.insert(2).deleteMin().peek(), equalTo(2));
+        assertThat(heap.peek(), equalTo(1)); // unchanged
+        assertThat(heap.comparator(), nullValue());
+    }
+
+    @Test
+    public void testComparator() {
+        Comparator<Integer> reverse = Collections.reverseOrder();
+        SkewBinomialHeap<Integer> heap = SkewBinomialHeap.<Integer> empty(reverse).insert(5).insert(3).insert(8);
+        assertThat(heap.peek(), equalTo(8));
+        assertThat(heap.deleteMin().peek(), equalTo(5));
+        assertThat(heap.comparator(), sameInstance((Object) reverse));
+        assertThat(heap.deleteMin().deleteMin().deleteMin().comparator(), sameInstance((Object) reverse));
+
+        // the ordering is taken from ordered collections
+        PriorityQueue<Integer> reference = new PriorityQueue<Integer>(10, reverse);
+        reference.addAll(Arrays.asList(1, 2, 3));
+        assertThat(new SkewBinomialHeap<Integer>(reference).peek(), equalTo(3));
+        assertThat(new SkewBinomialHeap<Integer>(heap).peek(), equalTo(8));
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        SkewBinomialHeap<Integer> heap = SkewBinomialHeap.empty();
+        PriorityQueue<Integer> reference = new PriorityQueue<Integer>();
+        List<SkewBinomialHeap<Integer>> versions = new ArrayList<SkewBinomialHeap<Integer>>();
+        List<PriorityQueue<Integer>> references = new ArrayList<PriorityQueue<Integer>>();
+        for (int i = 0; i < 5000; ++i) {
+            if (random.nextInt(3) != 0 || reference.isEmpty()) {
+                int value = random.nextInt(1000);
+                heap = heap.insert(value);
+                reference.add(value);
+            } else {
+                assertThat(heap.peek(), equalTo(reference.peek()));
+                heap = heap.deleteMin();
+                reference.poll();
+            }
+            assertThat(heap.size(), equalTo(reference.size()));
+            if (i % 97 == 0) {
+                versions.add(heap);
+                references.add(new PriorityQueue<Integer>(reference));
+            }
+        }
+        checkConsistency(heap, reference);
+        // all versions are still valid
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testMeld() {
+        Random random = new Random(42);
+        for (int n = 0; n < 50; ++n) {
+            SkewBinomialHeap<Integer> a = SkewBinomialHeap.empty();
+            SkewBinomialHeap<Integer> b = SkewBinomialHeap.empty();
+            PriorityQueue<Integer> reference = new PriorityQueue<Integer>();
+            for (int i = random.nextInt(200); 0 < i; --i) {
+                a = a.insert(i);
+                reference.add(i);
+            }
+            for (int i = random.nextInt(200); 0 < i; --i) {
+                int value = random.nextInt(100);
+                b = b.insert(value);
+                reference.add(value);
+            }
+            checkConsistency(a.meld(b), reference);
+            checkConsistency(b.meld(a), reference);
+        }
+        SkewBinomialHeap<Integer> heap = SkewBinomialHeap.of(1, 2);
+        assertThat(heap.meld(SkewBinomialHeap.<Integer> empty()), sameInstance(heap));
+        assertThat(SkewBinomialHeap.<Integer> empty().meld(heap), sameInstance(heap));
+        // different orderings are merged by inserting
+        SkewBinomialHeap<Integer> reversed = SkewBinomialHeap.<Integer> empty(Collections.<Integer> reverseOrder()).insert(0).insert(3);
+        assertThat(heap.meld(reversed).peek(), equalTo(0));
+        assertThat(reversed.meld(heap).peek(), equalTo(3));
+        assertThat(heap.meld(reversed).size(), equalTo(4));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(SkewBinomialHeap.of(3, 1, 2));
+        out.writeObject(SkewBinomialHeap.<Integer> empty(Collections.<Integer> reverseOrder()).insert(1).insert(2));
+        out.writeObject(SkewBinomialHeap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SkewBinomialHeap<Integer> heap = (SkewBinomialHeap<Integer>) in.readObject();
+        assertThat(heap, containsInAnyOrder(1, 2, 3));
+        assertThat(heap.peek(), equalTo(1));
+        assertThat(((SkewBinomialHeap<Integer>) in.readObject()).peek(), equalTo(2));
+        assertThat(((SkewBinomialHeap<Integer>) in.readObject()).isEmpty(), equalTo(true));
+        in.close();
+    }
+}
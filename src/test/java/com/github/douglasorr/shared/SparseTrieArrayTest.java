@@ -0,0 +1,177 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SparseTrieArrayTest {
+
+    private static void assertMatches(TreeMap<Integer, String> expected, SparseTrieArray<String> actual) {
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual, equalTo((Map<Integer, String>) expected));
+        // iteration is in index order
+        assertThat(new ArrayList<Integer>(actual.keySet()), equalTo(new ArrayList<Integer>(expected.keySet())));
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertThat(actual.get((int) entry.getKey()), equalTo(entry.getValue()));
+            assertThat(actual.containsIndex(entry.getKey()), is(true));
+        }
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (SparseTrieArray<String> empty : Arrays.asList(
+                SparseTrieArray.EMPTY,
+                SparseTrieArray.empty(),
+                SparseTrieArray.of(),
+                new SparseTrieArray<String>(),
+                new SparseTrieArray<String>(Collections.<Integer, String> emptyMap()),
+                SparseTrieArray.singleton(10, "ten").without(10)
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get(0), nullValue());
+            assertThat(empty.get((Object) 0), nullValue());
+            assertThat(empty.nextSetIndex(0), is(-1));
+            assertThat(empty.previousSetIndex(Integer.MAX_VALUE), is(-1));
+            assertThat(empty.entrySet().iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        SparseTrieArray<String> array = SparseTrieArray.of(1000000, "a million", 7, "seven", 0, "zero");
+        assertThat(array.keySet(), contains(0, 7, 1000000));
+        assertThat(array.values(), contains("zero", "seven", "a million"));
+        assertThat(new SparseTrieArray<String>(array), equalTo((Map<Integer, String>) array));
+        assertThat(new SparseTrieArray<String>(Collections.singletonMap(3, "three")).get(3), is("three"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        SparseTrieArray.of(1, "one", 2);
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNegativeIndex() {
+        SparseTrieArray.empty().withIndex(-1, "foo");
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        SparseTrieArray.empty().with(1, null);
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testWithWithout() {
+        SparseTrieArray<String> array = SparseTrieArray.<String> empty()
+                .with(5, "five").with(Integer.MAX_VALUE, "max").with(0, "zero").with(37, "37").with(36, "36");
+        assertThat(array.size(), is(5));
+        assertThat(array.get(Integer.MAX_VALUE), is("max"));
+        assertThat(array.get(36), is("36"));
+        assertThat(array.get(4), nullValue());
+        assertThat(array.get(-1), nullValue());
+        assertThat(array.get("5"), nullValue());
+        assertThat(array.keySet(), contains(0, 5, 36, 37, Integer.MAX_VALUE));
+
+        assertThat(array.withIndex(5, array.get(5)), sameInstance(array));
+        assertThat(array.withoutIndex(4), sameInstance(array));
+        assertThat(array.withoutIndex(-1), sameInstance(array));
+        assertThat(array.without((Integer) null), sameInstance(array));
+        assertThat(array.withIndex(5, "FIVE").get(5), is("FIVE"));
+        assertThat(array.with((Integer) 5, "FIVE").get(5), is("FIVE"));
+        assertThat(array.withoutIndex(36).keySet(), contains(0, 5, 37, Integer.MAX_VALUE));
+        assertThat(array.without((Integer) 36).size(), is(4));
+        assertThat(array.get(36), is("36")); // unchanged
+    }
+
+    @Test
+    public void testIntegerValues() {
+        // the int & Integer index methods must not be ambiguous when the values are also Integers
+        SparseTrieArray<Integer> array = SparseTrieArray.<Integer> empty().withIndex(1, 2).withIndex(3, 4);
+        assertThat(array.get(1), is(2));
+        assertThat(array.with(5, 6).keySet(), contains(1, 3, 5));
+        assertThat(array.withoutIndex(1).keySet(), contains(3));
+        assertThat(array.without(3).keySet(), contains(1));
+        assertThat(SparseTrieArray.of(1, 2, 3, 4), equalTo(array));
+    }
+
+    @Test
+    public void testNextPreviousSetIndex() {
+        SparseTrieArray<String> array = SparseTrieArray.of(3, "a", 40, "b", 41, "c", 100000, "d", 1 << 30, "e");
+        assertThat(array.nextSetIndex(-10), is(3));
+        assertThat(array.nextSetIndex(0), is(3));
+        assertThat(array.nextSetIndex(3), is(3));
+        assertThat(array.nextSetIndex(4), is(40));
+        assertThat(array.nextSetIndex(41), is(41));
+        assertThat(array.nextSetIndex(42), is(100000));
+        assertThat(array.nextSetIndex(100001), is(1 << 30));
+        assertThat(array.nextSetIndex((1 << 30) + 1), is(-1));
+
+        assertThat(array.previousSetIndex(-1), is(-1));
+        assertThat(array.previousSetIndex(2), is(-1));
+        assertThat(array.previousSetIndex(3), is(3));
+        assertThat(array.previousSetIndex(39), is(3));
+        assertThat(array.previousSetIndex(99999), is(41));
+        assertThat(array.previousSetIndex(Integer.MAX_VALUE), is(1 << 30));
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        SparseTrieArray<String> actual = SparseTrieArray.empty();
+        for (int i = 0; i < 20000; ++i) {
+            // a mixture of dense, clustered indices & sparse ones over the whole range
+            int index = random.nextBoolean() ? random.nextInt(2000) : random.nextInt(Integer.MAX_VALUE);
+            if (random.nextInt(3) == 0) {
+                // usually remove a present index
+                Integer present = expected.ceilingKey(index);
+                if (present != null && random.nextBoolean()) {
+                    index = present;
+                }
+                expected.remove(index);
+                actual = actual.withoutIndex(index);
+            } else {
+                expected.put(index, "v" + i);
+                actual = actual.withIndex(index, "v" + i);
+            }
+            assertThat(actual.size(), is(expected.size()));
+        }
+        assertMatches(expected, actual);
+
+        for (int i = 0; i < 2000; ++i) {
+            int index = random.nextBoolean() ? random.nextInt(2000) : random.nextInt(Integer.MAX_VALUE);
+            Integer next = expected.ceilingKey(index);
+            Integer previous = expected.floorKey(index);
+            assertThat(actual.nextSetIndex(index), is(next == null ? -1 : next));
+            assertThat(actual.previousSetIndex(index), is(previous == null ? -1 : previous));
+        }
+
+        for (Integer index : new ArrayList<Integer>(expected.keySet())) {
+            actual = actual.withoutIndex(index);
+        }
+        assertThat(actual.isEmpty(), is(true));
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(SparseTrieArray.of(1, "one", 1000000, "a million"));
+        out.writeObject(SparseTrieArray.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((SparseTrieArray<String>) in.readObject(), equalTo((Map<Integer, String>) SparseTrieArray.of(1, "one", 1000000, "a million")));
+        assertThat(((SparseTrieArray<String>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TreeRangeMapTest {
+    private static final int KEYS = 200;
+
+    /** Check the range map matches a per-key reference, and that its ranges are disjoint &amp; coalesced. */
+    private static void assertMatches(String[] expected, TreeRangeMap<Integer, String> actual) {
+        for (int key = -1; key <= expected.length; ++key) {
+            String value = 0 <= key && key < expected.length ? expected[key] : null;
+            assertThat(actual.get(key), equalTo(value));
+            Map.Entry<Range<Integer>, String> entry = actual.getEntry(key);
+            if (value != null) {
+                assertThat(entry.getKey().contains(key), is(true));
+            }
+        }
+        int ranges = 0;
+        Range<Integer> previous = null;
+        String previousValue = null;
+        for (Map.Entry<Range<Integer>, String> entry : actual.asMapOfRanges().entrySet()) {
+            Range<Integer> range = entry.getKey();
+            assertThat(range.isEmpty(), is(false));
+            for (int key = range.lower(); key < range.upper(); ++key) {
+                assertThat(expected[key], equalTo(entry.getValue()));
+            }
+            if (previous != null) {
+                assertThat(previous.upper(), lessThanOrEqualTo(range.lower()));
+                if (previous.upper().equals(range.lower())) {
+                    assertThat("adjacent ranges are coalesced", previousValue, not(equalTo(entry.getValue())));
+                }
+            }
+            previous = range;
+            previousValue = entry.getValue();
+            ++ranges;
+        }
+        assertThat(actual.size(), is(ranges));
+        assertThat(actual.isEmpty(), is(ranges == 0));
+    }
+
+    // *** Construction ***
+
+    @Test
+    public void testEmpty() {
+        for (TreeRangeMap<Integer, String> empty : Arrays.asList(
+                TreeRangeMap.EMPTY,
+                TreeRangeMap.empty(),
+                TreeRangeMap.of(),
+                new TreeRangeMap<Integer, String>(),
+                new TreeRangeMap<Integer, String>(Collections.<Range<Integer>, String> emptyMap()),
+                TreeRangeMap.singleton(Range.of(0, 10), "a").without(Range.of(-5, 15)),
+                TreeRangeMap.singleton(Range.of(0, 10), "a").subRangeMap(Range.of(10, 20)),
+                TreeRangeMap.singleton(Range.of(0, 0), "a")
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.get(0), nullValue());
+            assertThat(empty.getEntry(0), nullValue());
+            assertThat(empty.asMapOfRanges().isEmpty(), is(true));
+            assertThat(empty, equalTo((Object) TreeRangeMap.EMPTY));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        TreeRangeMap<Integer, String> map = TreeRangeMap.of(Range.of(0, 10), "low", Range.of(10, 100), "high");
+        assertThat(map.size(), is(2));
+        assertThat(map.get(-1), nullValue());
+        assertThat(map.get(0), is("low"));
+        assertThat(map.get(9), is("low"));
+        assertThat(map.get(10), is("high"));
+        assertThat(map.get(99), is("high"));
+        assertThat(map.get(100), nullValue());
+        assertThat(map.span(), equalTo(Range.of(0, 100)));
+        assertThat(new TreeRangeMap<Integer, String>(map.asMapOfRanges()), equalTo(map));
+        assertThat(map.toString(), is("{[0..10)=low, [10..100)=high}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfOddArguments() {
+        TreeRangeMap.of(Range.of(0, 10), "low", Range.of(10, 100));
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        Range.of(10, 0);
+    }
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        TreeRangeMap.<Integer, String> empty().with(Range.of(0, 10), null);
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptySpan() {
+        TreeRangeMap.empty().span();
+    }
+
+    // *** Basic use ***
+
+    @Test
+    public void testSplitAndCoalesce() {
+        TreeRangeMap<Integer, String> map = TreeRangeMap.singleton(Range.of(0, 100), "a");
+        // splitting
+        TreeRangeMap<Integer, String> split = map.with(Range.of(40, 60), "b");
+        assertThat(split.asMapOfRanges().keySet(), contains(Range.of(0, 40), Range.of(40, 60), Range.of(60, 100)));
+        assertThat(split.get(39), is("a"));
+        assertThat(split.get(40), is("b"));
+        assertThat(split.get(60), is("a"));
+        assertThat(map.without(Range.of(40, 60)).asMapOfRanges().keySet(), contains(Range.of(0, 40), Range.of(60, 100)));
+        // coalescing
+        assertThat(split.with(Range.of(40, 60), "a"), equalTo(map));
+        assertThat(split.with(Range.of(30, 70), "a"), equalTo(map));
+        assertThat(TreeRangeMap.of(Range.of(0, 10), "a", Range.of(20, 30), "a").with(Range.of(10, 20), "a"),
+                equalTo(TreeRangeMap.singleton(Range.of(0, 30), "a")));
+        assertThat(TreeRangeMap.of(Range.of(0, 10), "a", Range.of(10, 20), "a").size(), is(1));
+        // replacing
+        assertThat(split.with(Range.of(-10, 110), "c"), equalTo(TreeRangeMap.singleton(Range.of(-10, 110), "c")));
+        assertThat(split.with(Range.of(50, 80), "c").asMapOfRanges().keySet(),
+                contains(Range.of(0, 40), Range.of(40, 50), Range.of(50, 80), Range.of(80, 100)));
+        // unchanged
+        assertThat(map.with(Range.of(10, 20), "a"), sameInstance(map));
+        assertThat(map.with(Range.of(10, 10), "b"), sameInstance(map));
+        assertThat(map.without(Range.of(100, 200)), sameInstance(map));
+        assertThat(map.without(Range.of(-100, 0)), sameInstance(map));
+        assertThat(map.get(50), is("a"));
+    }
+
+    @Test
+    public void testSubRangeMap() {
+        TreeRangeMap<Integer, String> map = TreeRangeMap.of(
+                Range.of(0, 10), "a", Range.of(10, 20), "b", Range.of(30, 40), "c");
+        assertThat(map.subRangeMap(Range.of(5, 35)),
+                equalTo(TreeRangeMap.of(Range.of(5, 10), "a", Range.of(10, 20), "b", Range.of(30, 35), "c")));
+        assertThat(map.subRangeMap(Range.of(2, 8)), equalTo(TreeRangeMap.singleton(Range.of(2, 8), "a")));
+        assertThat(map.subRangeMap(Range.of(20, 30)).isEmpty(), is(true));
+        assertThat(map.subRangeMap(Range.of(-100, 100)), equalTo(map));
+        assertThat(map.subRangeMap(Range.of(10, 20)), equalTo(TreeRangeMap.singleton(Range.of(10, 20), "b")));
+    }
+
+    @Test
+    public void testRange() {
+        Range<Integer> range = Range.of(10, 20);
+        assertThat(range.contains(9), is(false));
+        assertThat(range.contains(10), is(true));
+        assertThat(range.contains(19), is(true));
+        assertThat(range.contains(20), is(false));
+        assertThat(range.overlaps(Range.of(19, 30)), is(true));
+        assertThat(range.overlaps(Range.of(20, 30)), is(false));
+        assertThat(range.overlaps(Range.of(15, 15)), is(false));
+        assertThat(range.intersection(Range.of(15, 30)), equalTo(Range.of(15, 20)));
+        assertThat(range.intersection(Range.of(0, 30)), sameInstance(range));
+        assertThat(range.intersection(Range.of(20, 30)), nullValue());
+        assertThat(range, equalTo(Range.of(10, 20)));
+        assertThat(range.hashCode(), is(Range.of(10, 20).hashCode()));
+    }
+
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        String[] expected = new String[KEYS];
+        TreeRangeMap<Integer, String> actual = TreeRangeMap.empty();
+        List<TreeRangeMap<Integer, String>> versions = new ArrayList<TreeRangeMap<Integer, String>>();
+        List<String[]> references = new ArrayList<String[]>();
+        for (int i = 0; i < 3000; ++i) {
+            int lower = random.nextInt(KEYS);
+            int upper = Math.min(KEYS, lower + random.nextInt(random.nextBoolean() ? 5 : 50));
+            String value = random.nextInt(4) == 0 ? null : String.valueOf((char) ('a' + random.nextInt(3)));
+            for (int key = lower; key < upper; ++key) {
+                expected[key] = value;
+            }
+            actual = value == null
+                    ? actual.without(Range.of(lower, upper))
+                    : actual.with(Range.of(lower, upper), value);
+            if (i % 101 == 0) {
+                versions.add(actual);
+                references.add(expected.clone());
+            }
+        }
+        assertMatches(expected, actual);
+        // all versions are still valid
+        for (int i = 0; i < versions.size(); ++i) {
+            assertMatches(references.get(i), versions.get(i));
+        }
+        // sub-range maps
+        for (int i = 0; i < 100; ++i) {
+            int lower = random.nextInt(KEYS);
+            int upper = lower + random.nextInt(KEYS - lower + 1);
+            String[] sub = new String[KEYS];
+            System.arraycopy(expected, lower, sub, lower, upper - lower);
+            assertMatches(sub, actual.subRangeMap(Range.of(lower, upper)));
+        }
+    }
+
+    // *** Serialization ***
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(TreeRangeMap.of(Range.of(0, 10), "low", Range.of(10, 100), "high"));
+        out.writeObject(TreeRangeMap.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readObject(), equalTo((Object) TreeRangeMap.of(Range.of(0, 10), "low", Range.of(10, 100), "high")));
+        assertThat(((TreeRangeMap<Integer, String>) in.readObject()).isEmpty(), is(true));
+        in.close();
+    }
+}
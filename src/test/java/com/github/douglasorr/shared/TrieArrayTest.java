@@ -235,6 +235,53 @@ public class TrieArrayTest {
         });
     }
 
+    @Test
+    public void testUpdateFocus() {
+        foreachInterestingSize(new Op() {
+            @Override
+            public void run(int n, List<String> reference, TrieArray<String> array) {
+                // a 'cursor' that makes a few local updates, then jumps
+                List<String> newReference = new ArrayList<String>(reference);
+                TrieArray<String> newArray = array;
+                List<TrieArray<String>> versions = new ArrayList<TrieArray<String>>();
+                List<List<String>> references = new ArrayList<List<String>>();
+                for (int cursor = 0; cursor < n; cursor += 37) {
+                    for (int i = cursor; i < Math.min(n, cursor + 3); ++i) {
+                        newReference.set(i, "testUpdateFocus " + i);
+                        newArray = newArray.update(i, "testUpdateFocus " + i);
+                        assertThat(newArray.get(i), equalTo(newReference.get(i)));
+                    }
+                    versions.add(newArray);
+                    references.add(new ArrayList<String>(newReference));
+                }
+                // every version is still valid (as is the original)
+                for (int i = 0; i < versions.size(); ++i) {
+                    checkConsistency(versions.get(i), references.get(i));
+                }
+                checkConsistency(array, reference);
+
+                // operations on a focused array
+                if (0 < n) {
+                    newArray = array.update(n / 2, "focus");
+                    newReference = new ArrayList<String>(reference);
+                    newReference.set(n / 2, "focus");
+                    checkConsistencyWithModification(newArray, newReference);
+                    for (int i : asList(0, n / 2, n / 2 + 1, n - 1)) {
+                        checkConsistency(newArray.take(i), newReference.subList(0, i));
+                    }
+                    List<String> concatReference = new ArrayList<String>(newReference);
+                    concatReference.addAll(reference);
+                    checkConsistency(newArray.appendAll(array), concatReference);
+
+                    List<String> doubledReference = new ArrayList<String>(newReference);
+                    doubledReference.addAll(newReference);
+                    doubledReference.set(n / 2, "refocus");
+                    checkConsistency(newArray.appendAll(newArray).update(n / 2, "refocus"), doubledReference);
+                }
+            }
+        });
+    }
+
     @Test
     public void testCopy() {
         foreachInterestingSize(new Op() {
@@ -0,0 +1,237 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TrieDequeTest {
+    private static void checkConsistency(TrieDeque<String> deque, List<String> reference) {
+        assertThat(deque, equalTo(reference));
+        assertThat(deque.size(), equalTo(reference.size()));
+        assertThat(deque.isEmpty(), equalTo(reference.isEmpty()));
+        for (int i = 0; i < reference.size(); ++i) {
+            assertThat(deque.get(i), equalTo(reference.get(i)));
+        }
+        if (!reference.isEmpty()) {
+            assertThat(deque.head(), equalTo(reference.get(0)));
+        }
+
+        // reverse iteration
+        ListIterator<String> rIt = reference.listIterator(reference.size());
+        ListIterator<String> aIt = deque.listIterator(deque.size());
+        while (rIt.hasPrevious()) {
+            assertThat(aIt.previousIndex(), equalTo(rIt.previousIndex()));
+            assertThat(aIt.previous(), equalTo(rIt.previous()));
+        }
+        assertThat(aIt.hasPrevious(), is(false));
+    }
+
+    @Test
+    public void testPrepend() {
+        TrieDeque<String> deque = TrieDeque.empty();
+        List<String> reference = new java.util.LinkedList<String>();
+        for (int i = 0; i < 3000; ++i) {
+            deque = deque.prepend("item " + i);
+            reference.add(0, "item " + i);
+            if (i % 97 == 0) {
+                checkConsistency(deque, reference);
+            }
+        }
+        checkConsistency(deque, reference);
+
+        // now remove from the front
+        while (!deque.isEmpty()) {
+            deque = deque.tail();
+            reference.remove(0);
+            if (reference.size() % 89 == 0) {
+                checkConsistency(deque, reference);
+            }
+        }
+        checkConsistency(deque, reference);
+    }
+
+    @Test
+    public void testAppendRemend() {
+        TrieDeque<String> deque = TrieDeque.empty();
+        List<String> reference = new ArrayList<String>();
+        for (int i = 0; i < 3000; ++i) {
+            deque = deque.append("item " + i);
+            reference.add("item " + i);
+        }
+        checkConsistency(deque, reference);
+        while (!deque.isEmpty()) {
+            deque = deque.remend();
+            reference.remove(reference.size() - 1);
+            if (reference.size() % 89 == 0) {
+                checkConsistency(deque, reference);
+            }
+        }
+        checkConsistency(deque, reference);
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(100);
+        TrieDeque<String> deque = TrieDeque.empty();
+        List<String> reference = new ArrayList<String>();
+        List<TrieDeque<String>> versions = new ArrayList<TrieDeque<String>>();
+        List<List<String>> references = new ArrayList<List<String>>();
+        for (int i = 0; i < 5000; ++i) {
+            int op = random.nextInt(10);
+            String value = "item " + i;
+            if (op < 3) {
+                deque = deque.prepend(value);
+                reference.add(0, value);
+            } else if (op < 6) {
+                deque = deque.append(value);
+                reference.add(value);
+            } else if (op < 7 && !reference.isEmpty()) {
+                deque = deque.tail();
+                reference.remove(0);
+            } else if (op < 8 && !reference.isEmpty()) {
+                deque = deque.remend();
+                reference.remove(reference.size() - 1);
+            } else if (op < 9 && !reference.isEmpty()) {
+                int index = random.nextInt(reference.size());
+                deque = deque.update(index, value);
+                reference.set(index, value);
+            } else {
+                List<String> values = new ArrayList<String>();
+                for (int j = random.nextInt(70); 0 < j; --j) {
+                    values.add(value + "." + j);
+                }
+                deque = deque.appendAll(values);
+                reference.addAll(values);
+            }
+            if (i % 50 == 0) {
+                versions.add(deque);
+                references.add(new ArrayList<String>(reference));
+            }
+        }
+        checkConsistency(deque, reference);
+        // all versions are still valid
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testTakeDrop() {
+        TrieDeque<String> deque = TrieDeque.empty();
+        List<String> reference = new ArrayList<String>();
+        for (int i = 0; i < 500; ++i) {
+            deque = deque.prepend("prepend " + i).append("append " + i);
+            reference.add(0, "prepend " + i);
+            reference.add("append " + i);
+        }
+        for (int n : asList(0, 1, 2, 31, 32, 33, 63, 64, 65, 100, 499, 500, 501, 937, 967, 968, 969, 999, 1000)) {
+            checkConsistency(deque.take(n), reference.subList(0, n));
+            checkConsistency(deque.drop(n), reference.subList(n, reference.size()));
+            checkConsistency(deque.drop(n).take(Math.min(40, 1000 - n)),
+                    reference.subList(n, n + Math.min(40, 1000 - n)));
+        }
+        assertThat(deque.take(1000), sameInstance(deque));
+        assertThat(deque.drop(0), sameInstance(deque));
+    }
+
+    @Test
+    public void testInsertRemove() {
+        TrieDeque<String> deque = TrieDeque.empty();
+        List<String> reference = new ArrayList<String>();
+        for (int i = 0; i < 100; ++i) {
+            deque = deque.prepend("prepend " + i).append("append " + i);
+            reference.add(0, "prepend " + i);
+            reference.add("append " + i);
+        }
+        for (int i = 0; i <= reference.size(); i += 7) {
+            List<String> inserted = new ArrayList<String>(reference);
+            inserted.add(i, "foobar");
+            checkConsistency((TrieDeque<String>) SharedArrays.insert(deque, i, "foobar"), inserted);
+            if (i < reference.size()) {
+                List<String> removed = new ArrayList<String>(reference);
+                removed.remove(i);
+                checkConsistency((TrieDeque<String>) SharedArrays.remove(deque, i), removed);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (TrieDeque<Object> empty : Arrays.asList(
+                TrieDeque.EMPTY,
+                TrieDeque.empty(),
+                TrieDeque.of(),
+                new TrieDeque<Object>(),
+                new TrieDeque<Object>(Collections.emptyList()),
+                TrieDeque.singleton("one").tail(),
+                TrieDeque.singleton("one").remend()
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+            assertThat(empty, equalTo(Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(TrieDeque.singleton("one"), equalTo(Collections.singletonList("one")));
+        assertThat(TrieDeque.of("one", "two", "three"), equalTo(asList("one", "two", "three")));
+        TrieDeque<String> deque = TrieDeque.of("one", "two");
+        assertThat(new TrieDeque<String>(deque), equalTo(asList("one", "two")));
+        assertThat(new TrieDeque<String>(asList("one", "two")), equalTo(asList("one", "two")));
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testHeadEmpty() {
+        TrieDeque.empty().head();
+    }
+    @Test(expected=NoSuchElementException.class)
+    public void testTailEmpty() {
+        TrieDeque.empty().tail();
+    }
+    @Test(expected=NoSuchElementException.class)
+    public void testRemendEmpty() {
+        TrieDeque.empty().remend();
+    }
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        TrieDeque.of("one", "two").prepend("zero").get(3);
+    }
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testUpdateOutOfBounds() {
+        TrieDeque.of("one", "two").update(-1, "zero");
+    }
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testDropOutOfBounds() {
+        TrieDeque.of("one", "two").drop(3);
+    }
+    @Test(expected=UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        Iterator<String> it = TrieDeque.of("one", "two").iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(TrieDeque.of(1, 100, 33).prepend(0));
+        out.writeObject(TrieDeque.empty());
+        out.writeObject(TrieDeque.singleton("foobar"));
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertThat((TrieDeque<Integer>) in.readObject(), equalTo(TrieDeque.of(0, 1, 100, 33)));
+        Assert.assertThat((TrieDeque<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        Assert.assertThat((TrieDeque<String>) in.readObject(), equalTo(TrieDeque.singleton("foobar")));
+        in.close();
+    }
+}
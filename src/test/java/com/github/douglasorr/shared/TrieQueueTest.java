@@ -0,0 +1,121 @@
+package com.github.douglasorr.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TrieQueueTest {
+    private static void checkConsistency(TrieQueue<String> queue, List<String> reference) {
+        assertThat(queue.size(), equalTo(reference.size()));
+        assertThat(queue.isEmpty(), equalTo(reference.isEmpty()));
+        assertThat(new ArrayList<String>(queue), equalTo(reference));
+        assertThat(queue.peek(), equalTo(reference.isEmpty() ? null : reference.get(0)));
+    }
+
+    @Test
+    public void testEnqueueDequeue() {
+        Random random = new Random(42);
+        TrieQueue<String> queue = TrieQueue.empty();
+        List<String> reference = new ArrayList<String>();
+        List<TrieQueue<String>> versions = new ArrayList<TrieQueue<String>>();
+        List<List<String>> references = new ArrayList<List<String>>();
+        for (int i = 0; i < 3000; ++i) {
+            if (random.nextInt(3) != 0 || reference.isEmpty()) {
+                queue = queue.enqueue("item " + i);
+                reference.add("item " + i);
+            } else {
+                assertThat(queue.element(), equalTo(reference.get(0)));
+                queue = queue.dequeue();
+                reference.remove(0);
+            }
+            if (i % 37 == 0) {
+                versions.add(queue);
+                references.add(new ArrayList<String>(reference));
+            }
+        }
+        checkConsistency(queue, reference);
+        // all versions are still valid
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testDequeueOldVersion() {
+        TrieQueue<String> queue = TrieQueue.of("one", "two", "three");
+        assertThat(queue.dequeue().peek(), equalTo("two"));
+        assertThat(queue.dequeue().peek(), equalTo("two"));
+        assertThat(queue.enqueue("four").dequeue().dequeue().dequeue().peek(), equalTo("four"));
+        assertThat(queue.peek(), equalTo("one"));
+        assertThat(queue.size(), equalTo(3));
+    }
+
+    @Test
+    public void testEmpty() {
+        for (TrieQueue<Object> empty : Arrays.asList(
+                TrieQueue.EMPTY,
+                TrieQueue.empty(),
+                TrieQueue.of(),
+                new TrieQueue<Object>(),
+                new TrieQueue<Object>(Collections.emptyList()),
+                TrieQueue.singleton("one").dequeue()
+        )) {
+            assertThat(empty.size(), is(0));
+            assertThat(empty.isEmpty(), is(true));
+            assertThat(empty.iterator().hasNext(), is(false));
+            assertThat(empty.peek(), nullValue());
+            assertThat(empty, equalTo(TrieQueue.empty()));
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertThat(TrieQueue.singleton("one"), contains("one"));
+        assertThat(TrieQueue.of("one", "two", "three"), contains("one", "two", "three"));
+        assertThat(new TrieQueue<String>(TrieQueue.of("one", "two")), contains("one", "two"));
+        assertThat(new TrieQueue<String>(asList("one", "two")), contains("one", "two"));
+        assertThat(TrieQueue.of("one", "two"), equalTo(TrieQueue.<String> empty().enqueue("one").enqueue("two")));
+        assertThat(TrieQueue.of("one", "two"), not(equalTo(TrieQueue.of("two", "one"))));
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testDequeueEmpty() {
+        TrieQueue.empty().dequeue();
+    }
+    @Test(expected=NoSuchElementException.class)
+    public void testElementEmpty() {
+        TrieQueue.empty().element();
+    }
+    @Test(expected=NullPointerException.class)
+    public void testEnqueueNull() {
+        TrieQueue.empty().enqueue(null);
+    }
+    @Test(expected=UnsupportedOperationException.class)
+    public void testOffer() {
+        TrieQueue.of("one").offer("two");
+    }
+    @Test(expected=UnsupportedOperationException.class)
+    public void testPoll() {
+        TrieQueue.of("one").poll();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(TrieQueue.of(1, 100, 33).dequeue().enqueue(5));
+        out.writeObject(TrieQueue.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertThat((TrieQueue<Integer>) in.readObject(), equalTo(TrieQueue.of(100, 33, 5)));
+        Assert.assertThat((TrieQueue<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        in.close();
+    }
+}
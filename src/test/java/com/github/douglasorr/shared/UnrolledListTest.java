@@ -0,0 +1,128 @@
+package com.github.douglasorr.shared;
+
+import com.google.common.collect.ImmutableSet;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class UnrolledListTest {
+    private static void checkConsistency(UnrolledList<String> list, List<String> reference) {
+        assertThat(list, Matchers.<List<String>> equalTo(reference));
+        assertThat(list, hasSize(reference.size()));
+        for (int i = 0; i <= reference.size(); i += 7) {
+            ListIterator<String> it = list.listIterator(i);
+            assertThat(it.nextIndex(), is(i));
+            assertThat(it.hasNext(), is(i < reference.size()));
+            if (i < reference.size()) {
+                assertThat(it.next(), is(reference.get(i)));
+                assertThat(list.get(i), is(reference.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        for (UnrolledList<?> empty : asList(
+                UnrolledList.EMPTY,
+                UnrolledList.empty(),
+                UnrolledList.of(),
+                new UnrolledList<Object>(),
+                new UnrolledList<Object>(Collections.emptySet()),
+                UnrolledList.singleton("one").tail()
+        )) {
+            assertThat(empty, Matchers.empty());
+            assertThat(empty, hasSize(0));
+            assertThat(empty.iterator().hasNext(), is(false));
+        }
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyIteratorNext() {
+        UnrolledList.empty().iterator().next();
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyHead() {
+        UnrolledList.empty().head();
+    }
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyTail() {
+        UnrolledList.empty().tail();
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testListIteratorOutOfBounds() {
+        UnrolledList.of(1, 2, 3).listIterator(4);
+    }
+
+    @Test
+    public void testPrependTail() {
+        UnrolledList<String> list = UnrolledList.empty();
+        List<String> reference = new ArrayList<String>();
+        List<UnrolledList<String>> versions = new ArrayList<UnrolledList<String>>();
+        List<List<String>> references = new ArrayList<List<String>>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; ++i) {
+            if (random.nextInt(4) == 0 && !reference.isEmpty()) {
+                assertThat(list.head(), is(reference.get(0)));
+                list = list.tail();
+                reference.remove(0);
+            } else {
+                list = list.prepend(i % 11 == 0 ? null : "item " + i);
+                reference.add(0, i % 11 == 0 ? null : "item " + i);
+            }
+            if (i % 47 == 0) {
+                versions.add(list);
+                references.add(new ArrayList<String>(reference));
+            }
+        }
+        checkConsistency(list, reference);
+        // all versions are still valid
+        for (int i = 0; i < versions.size(); ++i) {
+            checkConsistency(versions.get(i), references.get(i));
+        }
+    }
+
+    @Test
+    public void testSharing() {
+        UnrolledList<Integer> list = UnrolledList.of(1, 2, 3);
+        UnrolledList<Integer> a = list.prepend(10);
+        UnrolledList<Integer> b = list.tail().prepend(20);
+        assertThat(list, contains(1, 2, 3));
+        assertThat(a, contains(10, 1, 2, 3));
+        assertThat(b, contains(20, 2, 3));
+        assertThat(list.tail().tail().tail(), sameInstance(UnrolledList.<Integer> empty()));
+    }
+
+    @Test
+    public void testConstruction() {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 100; ++i) {
+            values.add(i);
+        }
+        assertThat(new UnrolledList<Integer>(values), Matchers.<List<Integer>> equalTo(values));
+        assertThat(UnrolledList.of(values.toArray(new Integer[0])), Matchers.<List<Integer>> equalTo(values));
+        UnrolledList<Integer> oneTwoThree = UnrolledList.of(1, 2, 3);
+        assertThat(oneTwoThree, contains(1, 2, 3));
+        assertThat(new UnrolledList<Integer>(oneTwoThree), Matchers.<List<Integer>> equalTo(oneTwoThree));
+        assertThat(new UnrolledList<Integer>(ImmutableSet.of(1, 2, 3)), containsInAnyOrder(1, 2, 3));
+        assertThat(UnrolledList.singleton("element"), contains("element"));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(UnrolledList.of(1, 100, 33).prepend(0));
+        out.writeObject(UnrolledList.empty());
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat((UnrolledList<Integer>) in.readObject(), contains(0, 1, 100, 33));
+        assertThat((UnrolledList<Object>) in.readObject(), emptyCollectionOf(Object.class));
+        in.close();
+    }
+}